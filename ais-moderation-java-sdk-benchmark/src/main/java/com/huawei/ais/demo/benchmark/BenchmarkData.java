@@ -0,0 +1,148 @@
+package com.huawei.ais.demo.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.moderation.model.Category;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+import com.huawei.ais.demo.moderation.model.JobResult;
+
+/**
+ * 基准测试用的数据，按固定随机种子生成，多次运行之间结果可比
+ */
+public final class BenchmarkData {
+
+    private static final String[] SUGGESTIONS = {"pass", "review", "block"};
+    private static final String[] CATEGORIES = {"politics", "terrorism", "porn"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成与引擎查询响应格式相同的json：{"result": {..., "frames": [...]}}<br/>
+     * 约三分之一的帧带可疑类别和置信度详情
+     *
+     * @param frames 帧数
+     * @return UTF-8编码的响应体
+     */
+    public static byte[] jobResultResponse(int frames) {
+        return jobResultResponse("b6b7f7f1-0c8a-4b4e-9d6c-000000000001", "2020-06-01T00:00:00Z",
+                "2020-06-01T00:03:20Z", frames);
+    }
+
+    /**
+     * 生成指定任务的查询响应，帧结果只由帧数决定
+     *
+     * @param jobId      任务id
+     * @param createTime 任务创建时间，格式为yyyy-MM-dd'T'HH:mm:ssX
+     * @param updateTime 任务结束时间，格式同上
+     * @param frames     帧数
+     * @return UTF-8编码的响应体
+     */
+    public static byte[] jobResultResponse(String jobId, String createTime, String updateTime, int frames) {
+        Random random = new Random(frames);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(frames * 160 + 256);
+        try (JsonGenerator gen = new JsonFactory().createGenerator(output)) {
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("result");
+            gen.writeStringField("job_id", jobId);
+            gen.writeStringField("status", "finish");
+            gen.writeStringField("create_time", createTime);
+            gen.writeStringField("update_time", updateTime);
+            gen.writeStringField("suggestion", "block");
+            gen.writeArrayFieldStart("frames");
+            for (int i = 0; i < frames; i++) {
+                gen.writeStartObject();
+                gen.writeNumberField("frame_begin", i * 5);
+                gen.writeNumberField("frame_end", i * 5 + 5);
+                boolean suspect = random.nextInt(3) == 0;
+                gen.writeStringField("frame_suggestion", suspect ? SUGGESTIONS[1 + random.nextInt(2)] : "pass");
+                gen.writeArrayFieldStart("suspect_categories");
+                String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                if (suspect) {
+                    gen.writeString(category);
+                }
+                gen.writeEndArray();
+                gen.writeObjectFieldStart("detail");
+                if (suspect) {
+                    gen.writeArrayFieldStart(category);
+                    gen.writeStartObject();
+                    gen.writeStringField("label", category + "_" + random.nextInt(10));
+                    gen.writeNumberField("confidence", Math.round(random.nextDouble() * 10000) / 10000.0);
+                    gen.writeEndObject();
+                    gen.writeEndArray();
+                }
+                gen.writeEndObject();
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * @param body 响应体
+     * @return 状态码为200的响应，响应体可重复读取
+     */
+    public static HttpResponse okResponse(byte[] body) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    public static JobResult jobResult(int frames) {
+        try {
+            return HttpJsonDataUtils.getResponseObject(okResponse(jobResultResponse(frames)), JobResult.class,
+                    "result");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static JobMetaInfo jobMetaInfo() {
+        JobMetaInfo jobMetaInfo = new JobMetaInfo();
+        jobMetaInfo.setUrl("https://bucket.obs.cn-north-1.myhuaweicloud.com/0123456789abcdef/video.mp4"
+                + "?AccessKeyId=ABCDEFGHIJKLMNOPQRST&Expires=1591000000&Signature=abcdefghijklmnopqrstuvwxyz%3D");
+        jobMetaInfo.setFrameInterval(5);
+        for (Category category : Category.values()) {
+            jobMetaInfo.addCategory(category);
+        }
+        return jobMetaInfo;
+    }
+
+    /**
+     * 丢弃写入的数据，只统计字节数
+     */
+    public static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
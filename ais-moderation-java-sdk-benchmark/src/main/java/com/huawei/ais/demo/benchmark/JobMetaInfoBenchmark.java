@@ -0,0 +1,41 @@
+package com.huawei.ais.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+
+/**
+ * 提交任务时请求体的编码
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobMetaInfoBenchmark {
+
+    private JobMetaInfo jobMetaInfo;
+
+    @Setup
+    public void setUp() {
+        jobMetaInfo = BenchmarkData.jobMetaInfo();
+    }
+
+    @Benchmark
+    public long encodeRequest() {
+        return HttpJsonDataUtils.objectToHttpEntity(jobMetaInfo).getContentLength();
+    }
+}
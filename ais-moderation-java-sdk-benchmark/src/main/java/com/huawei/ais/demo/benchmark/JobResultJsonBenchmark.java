@@ -0,0 +1,70 @@
+package com.huawei.ais.demo.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.moderation.model.JobResult;
+
+/**
+ * 查询响应中的任务结果的解析和序列化，帧数覆盖短视频到数小时的长视频
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobResultJsonBenchmark {
+
+    @Param({"10000", "100000"})
+    public int frames;
+
+    private HttpResponse response;
+    private JobResult jobResult;
+
+    @Setup
+    public void setUp() {
+        response = BenchmarkData.okResponse(BenchmarkData.jobResultResponse(frames));
+        jobResult = BenchmarkData.jobResult(frames);
+    }
+
+    /**
+     * 从响应体流式解析为列存的帧结果
+     */
+    @Benchmark
+    public JobResult parseResponse() throws IOException {
+        return HttpJsonDataUtils.getResponseObject(response, JobResult.class, "result");
+    }
+
+    /**
+     * 序列化为内存中的请求体，回调日志和去重缓存使用这种方式
+     */
+    @Benchmark
+    public long serializeToEntity() throws IOException {
+        return HttpJsonDataUtils.objectToHttpEntity(jobResult).getContentLength();
+    }
+
+    /**
+     * 边序列化边写出，回调请求使用这种方式
+     */
+    @Benchmark
+    public long serializeStreaming() throws IOException {
+        BenchmarkData.CountingOutputStream output = new BenchmarkData.CountingOutputStream();
+        HttpJsonDataUtils.objectToStreamingHttpEntity(jobResult).writeTo(output);
+        return output.getCount();
+    }
+}
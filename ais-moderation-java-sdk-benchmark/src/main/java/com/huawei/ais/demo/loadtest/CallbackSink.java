@@ -0,0 +1,127 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.moderation.metrics.LatencyHistogram;
+
+/**
+ * 回调接收方，POST /callback 接收单条通知或合并回调的通知数组，返回200即视为全部确认<br/>
+ * 按job_id去重统计送达的任务；提交前通过expect()登记的视频，记录从提交到收到回调的端到端耗时
+ */
+class CallbackSink extends FakeService {
+
+    static final String PATH = "/callback";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final long[] LATENCY_BOUNDS = {10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000,
+            30000, 60000, 120000, 300000, 600000, 1800000, 3600000};
+
+    private final FakeModerationEngine engine;
+
+    private final Map<String, Long> expectedVideos = new ConcurrentHashMap<>();
+    private final Set<String> deliveredJobs = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram endToEnd = new LatencyHistogram(LATENCY_BOUNDS);
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder failedJobs = new LongAdder();
+
+    /**
+     * @param latency   每个回调请求的处理耗时
+     * @param errorRate 返回500的回调请求比例，用来触发SDK的回调重试
+     * @param engine    用于把job_id对应到提交的视频
+     */
+    CallbackSink(LatencyDistribution latency, double errorRate, FakeModerationEngine engine) {
+        super(latency, errorRate);
+        this.engine = engine;
+    }
+
+    /**
+     * 登记即将提交的视频，收到其回调时记录端到端耗时
+     *
+     * @param videoName 视频文件名
+     */
+    void expect(String videoName) {
+        expectedVideos.put(videoName, System.nanoTime());
+    }
+
+    /**
+     * 提交失败、不会有回调的视频不再等待
+     *
+     * @param videoName 视频文件名
+     */
+    void forget(String videoName) {
+        expectedVideos.remove(videoName);
+    }
+
+    @Override
+    void serve(HttpRequest request, HttpResponse response) throws IOException {
+        if (!"POST".equals(method(request))) {
+            send(response, 405);
+            return;
+        }
+        JsonNode body = MAPPER.readTree(readBody(request));
+        if (body.isArray()) {
+            for (JsonNode notification : body) {
+                receive(notification);
+            }
+        } else {
+            receive(body);
+        }
+        send(response, 200);
+    }
+
+    private void receive(JsonNode notification) {
+        notifications.increment();
+        String jobId = notification.path("job_id").asText();
+        if (!deliveredJobs.add(jobId)) {
+            duplicates.increment();
+            return;
+        }
+        if ("failed".equals(notification.path("moderation_result").path("status").asText())) {
+            failedJobs.increment();
+        }
+        String videoName = engine.getVideoName(jobId);
+        Long submittedAt = videoName != null ? expectedVideos.remove(videoName) : null;
+        if (submittedAt != null) {
+            endToEnd.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submittedAt));
+        }
+    }
+
+    /**
+     * @return 送达的不同任务数
+     */
+    int getDeliveredCount() {
+        return deliveredJobs.size();
+    }
+
+    long getNotificationCount() {
+        return notifications.sum();
+    }
+
+    long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    long getFailedJobCount() {
+        return failedJobs.sum();
+    }
+
+    /**
+     * @return 从提交到收到回调的耗时分布，ms
+     */
+    LatencyHistogram getEndToEndLatency() {
+        return endToEnd;
+    }
+}
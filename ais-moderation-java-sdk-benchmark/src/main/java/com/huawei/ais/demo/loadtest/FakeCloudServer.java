@@ -0,0 +1,133 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+
+/**
+ * 本地模拟的云端服务，一个端口上同时提供：<p/>
+ * - /v1.0/moderation/video：视频审核引擎的提交和查询接口<br/>
+ * - /videos/{name}：视频源站<br/>
+ * - /callback：回调接收方<br/>
+ * - 其他路径：以路径方式访问的OBS<p/>
+ * 各服务的处理耗时和错误比例可配置，参数见{@link #FakeCloudServer(Options)}；每个连接占用一个线程，
+ * 模拟的耗时不会阻塞其他连接上的请求<br/>
+ * 使用httpcore而不是JDK自带的HttpServer，因为后者会把响应头改写成Etag，OBS SDK只识别ETag和etag<br/>
+ * 也可以单独启动，供其他进程中的SDK连接：java ... FakeCloudServer --port 18080
+ */
+public class FakeCloudServer implements Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(FakeCloudServer.class);
+
+    private final HttpServer server;
+
+    private final FakeModerationEngine engine;
+    private final FakeObsService obs;
+    private final VideoSource videoSource;
+    private final CallbackSink callbackSink;
+
+    /**
+     * 参数及默认值，耗时分布的格式见{@link LatencyDistribution}：<p/>
+     * - host=127.0.0.1、port=0（随机端口）<br/>
+     * - engine.latency=fixed:5、engine.error.rate=0：引擎每个提交和查询请求的耗时、返回500的比例<br/>
+     * - job.latency=lognormal:5000,0.5、job.failure.rate=0、frames=100：任务的引擎耗时、以failed结束的比例、结果帧数<br/>
+     * - obs.latency=fixed:2、obs.error.rate=0：OBS每个请求（包括每个分段）的耗时、返回500的比例<br/>
+     * - video.size=65536、download.latency=fixed:0、download.error.rate=0：视频字节数、源站首字节耗时、返回500的比例<br/>
+     * - video.ranges=true：源站是否支持Range请求<br/>
+     * - callback.latency=fixed:1、callback.error.rate=0：回调接收方的处理耗时、返回500的比例
+     *
+     * @param options 参数
+     * @throws IOException 端口监听失败
+     */
+    public FakeCloudServer(Options options) throws IOException {
+        engine = new FakeModerationEngine(options.getLatency("engine.latency", "fixed:5"),
+                options.getDouble("engine.error.rate", 0), options.getLatency("job.latency", "lognormal:5000,0.5"),
+                options.getDouble("job.failure.rate", 0), options.getInt("frames", 100));
+        obs = new FakeObsService(options.getLatency("obs.latency", "fixed:2"), options.getDouble("obs.error.rate", 0));
+        videoSource = new VideoSource(options.getLatency("download.latency", "fixed:0"),
+                options.getDouble("download.error.rate", 0), options.getLong("video.size", 64 * 1024),
+                Boolean.parseBoolean(options.getString("video.ranges", "true")));
+        callbackSink = new CallbackSink(options.getLatency("callback.latency", "fixed:1"),
+                options.getDouble("callback.error.rate", 0), engine);
+
+        server = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName(options.getString("host", "127.0.0.1")))
+                .setListenerPort(options.getInt("port", 0))
+                .setServerInfo("FakeCloudServer")
+                .setSocketConfig(SocketConfig.custom().setTcpNoDelay(true).setBacklogSize(1024).build())
+                .registerHandler(FakeModerationEngine.PATH, engine)
+                .registerHandler(VideoSource.PATH + "*", videoSource)
+                .registerHandler(CallbackSink.PATH, callbackSink)
+                .registerHandler("*", obs)
+                .create();
+        server.start();
+        LOGGER.info("Fake cloud server started at " + getBaseUrl());
+    }
+
+    /**
+     * @return 服务地址，如 http://127.0.0.1:18080
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort();
+    }
+
+    /**
+     * @param videoName 视频文件名
+     * @return 模拟源站上该视频的url
+     */
+    public String getVideoUrl(String videoName) {
+        return getBaseUrl() + VideoSource.PATH + videoName;
+    }
+
+    public String getCallbackUrl() {
+        return getBaseUrl() + CallbackSink.PATH;
+    }
+
+    CallbackSink getCallbackSink() {
+        return callbackSink;
+    }
+
+    /**
+     * 输出各模拟服务收到的请求数、注入的错误数和处理量
+     */
+    public void printStatistics(PrintStream out) {
+        out.printf("engine    requests:%d injected errors:%d submitted:%d queries:%d finished:%d failed:%d%n",
+                engine.getRequestCount(), engine.getInjectedErrorCount(), engine.getSubmittedCount(),
+                engine.getQueryCount(), engine.getFinishedCount(), engine.getFailedCount());
+        out.printf("obs       requests:%d injected errors:%d objects:%d parts:%d received:%d bytes%n",
+                obs.getRequestCount(), obs.getInjectedErrorCount(), obs.getObjectsPut(), obs.getPartsUploaded(),
+                obs.getBytesReceived());
+        out.printf("source    requests:%d injected errors:%d ranges:%d sent:%d bytes%n",
+                videoSource.getRequestCount(), videoSource.getInjectedErrorCount(),
+                videoSource.getRangeRequestCount(), videoSource.getBytesSent());
+        out.printf("callback  requests:%d injected errors:%d notifications:%d jobs:%d duplicates:%d failed jobs:%d%n",
+                callbackSink.getRequestCount(), callbackSink.getInjectedErrorCount(),
+                callbackSink.getNotificationCount(), callbackSink.getDeliveredCount(),
+                callbackSink.getDuplicateCount(), callbackSink.getFailedJobCount());
+    }
+
+    @Override
+    public void close() {
+        server.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        FakeCloudServer server = new FakeCloudServer(Options.parse(args));
+        System.out.println("Fake cloud server listening at " + server.getBaseUrl());
+        System.out.println("  service.moderation.endpint=" + server.getBaseUrl());
+        System.out.println("  service.obs.endpoint=" + server.getBaseUrl());
+        System.out.println("  callback url: " + server.getCallbackUrl());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.printStatistics(System.out);
+            server.close();
+        }));
+    }
+}
@@ -0,0 +1,180 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.benchmark.BenchmarkData;
+
+/**
+ * 模拟视频审核引擎的 /v1.0/moderation/video 接口<p/>
+ * - POST 提交任务，任务的引擎耗时按jobLatency分布随机生成<br/>
+ * - GET ?job_id= 查询任务，未到结束时间时返回running，之后返回finish和帧结果，按jobFailureRate比例返回failed<br/>
+ * 请求签名和视频地址都不做校验，只从视频地址中解析出文件名，用于把回调对应到提交的视频
+ */
+class FakeModerationEngine extends FakeService {
+
+    static final String PATH = "/v1.0/moderation/video";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final LatencyDistribution jobLatency;
+    private final double jobFailureRate;
+    private final int frames;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param latency        每个请求的处理耗时
+     * @param errorRate      返回500的请求比例
+     * @param jobLatency     任务从提交到结束的引擎耗时
+     * @param jobFailureRate 以failed结束的任务比例
+     * @param frames         结果中的帧数
+     */
+    FakeModerationEngine(LatencyDistribution latency, double errorRate, LatencyDistribution jobLatency,
+                         double jobFailureRate, int frames) {
+        super(latency, errorRate);
+        this.jobLatency = jobLatency;
+        this.jobFailureRate = jobFailureRate;
+        this.frames = frames;
+    }
+
+    @Override
+    void serve(HttpRequest request, HttpResponse response) throws IOException {
+        if ("POST".equals(method(request))) {
+            submit(request, response);
+        } else if ("GET".equals(method(request))) {
+            query(request, response);
+        } else {
+            send(response, 405);
+        }
+    }
+
+    private void submit(HttpRequest request, HttpResponse response) throws IOException {
+        String url = MAPPER.readTree(readBody(request)).path("url").asText(null);
+        if (url == null || url.isEmpty()) {
+            sendError(response, 400, "AIS.0005", "url is required");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean fail = jobFailureRate > 0 && ThreadLocalRandom.current().nextDouble() < jobFailureRate;
+        Job job = new Job(fileName(url), now, now + jobLatency.sample(), fail);
+        String jobId = UUID.randomUUID().toString();
+        jobs.put(jobId, job);
+        submitted.increment();
+        send(response, 200, JSON, "{\"result\":{\"job_id\":\"" + jobId + "\"}}");
+    }
+
+    private void query(HttpRequest request, HttpResponse response) {
+        queries.increment();
+        String jobId = queryParameters(request).get("job_id");
+        Job job = jobId != null ? jobs.get(jobId) : null;
+        if (job == null) {
+            sendError(response, 400, "AIS.0012", "job not found");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String createTime = formatTime(job.createdAt);
+        if (now < job.finishAt) {
+            send(response, 200, JSON, String.format("{\"result\":{\"job_id\":\"%s\",\"status\":\"running\","
+                    + "\"create_time\":\"%s\"}}", jobId, createTime));
+            return;
+        }
+        if (job.countFinish()) {
+            (job.fail ? failed : finished).increment();
+        }
+        if (job.fail) {
+            send(response, 200, JSON, String.format("{\"result\":{\"job_id\":\"%s\",\"status\":\"failed\","
+                            + "\"create_time\":\"%s\",\"update_time\":\"%s\",\"cause\":\"injected failure\"}}",
+                    jobId, createTime, formatTime(job.finishAt)));
+        } else {
+            send(response, 200, JSON,
+                    BenchmarkData.jobResultResponse(jobId, createTime, formatTime(job.finishAt), frames));
+        }
+    }
+
+    private static void sendError(HttpResponse response, int status, String code, String message) {
+        send(response, status, JSON, String.format("{\"error_code\":\"%s\",\"error_msg\":\"%s\"}", code, message));
+    }
+
+    /**
+     * 引擎返回的时间只精确到秒
+     */
+    private static String formatTime(long millis) {
+        return Instant.ofEpochMilli(millis).truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    /**
+     * OBS临时链接路径的最后一段就是SDK上传时使用的文件名
+     */
+    private static String fileName(String url) {
+        int end = url.indexOf('?');
+        String path = end < 0 ? url : url.substring(0, end);
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @return 任务对应的视频文件名，未知任务返回null
+     */
+    String getVideoName(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? job.videoName : null;
+    }
+
+    long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    long getQueryCount() {
+        return queries.sum();
+    }
+
+    long getFinishedCount() {
+        return finished.sum();
+    }
+
+    long getFailedCount() {
+        return failed.sum();
+    }
+
+    private static class Job {
+        private final String videoName;
+        private final long createdAt;
+        private final long finishAt;
+        private final boolean fail;
+        private boolean counted;
+
+        Job(String videoName, long createdAt, long finishAt, boolean fail) {
+            this.videoName = videoName;
+            this.createdAt = createdAt;
+            this.finishAt = finishAt;
+            this.fail = fail;
+        }
+
+        /**
+         * @return 是否第一次查询到结束状态
+         */
+        synchronized boolean countFinish() {
+            if (counted) {
+                return false;
+            }
+            counted = true;
+            return true;
+        }
+    }
+}
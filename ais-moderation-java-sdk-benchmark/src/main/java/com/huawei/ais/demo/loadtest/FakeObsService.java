@@ -0,0 +1,212 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+
+/**
+ * 以路径方式（/{bucket}/{key}）模拟OBS中SDK用到的接口：创建桶、上传对象、查询对象元数据、删除对象，
+ * 以及分段上传的初始化、上传分段、列举分段、合并、取消和列举未完成的上传<br/>
+ * 只记录对象大小，不保存内容，下载对象时返回同样大小的全零内容；请求签名不做校验
+ */
+class FakeObsService extends FakeService {
+
+    private static final String NS = "http://obs.myhwcloud.com/doc/2015-06-30/";
+    private static final ContentType BINARY = ContentType.create("binary/octet-stream");
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    // bucket/key -> 对象大小
+    private final Map<String, Long> objects = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+
+    private final LongAdder objectsPut = new LongAdder();
+    private final LongAdder partsUploaded = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    /**
+     * @param latency   每个请求的处理耗时，上传分段和上传对象各算一个请求
+     * @param errorRate 返回500的请求比例
+     */
+    FakeObsService(LatencyDistribution latency, double errorRate) {
+        super(latency, errorRate);
+    }
+
+    @Override
+    void serve(HttpRequest request, HttpResponse response) throws IOException {
+        String path = path(request);
+        int slash = path.indexOf('/', 1);
+        String bucket = slash < 0 ? path.substring(1) : path.substring(1, slash);
+        String key = slash < 0 ? "" : path.substring(slash + 1);
+        if (bucket.isEmpty()) {
+            send(response, 400);
+        } else if (key.isEmpty()) {
+            serveBucket(request, response, bucket);
+        } else {
+            serveObject(request, response, bucket, key);
+        }
+    }
+
+    private void serveBucket(HttpRequest request, HttpResponse response, String bucket) throws IOException {
+        String method = method(request);
+        Map<String, String> parameters = queryParameters(request);
+        if ("PUT".equals(method) || "HEAD".equals(method)) {
+            drain(request);
+            send(response, 200);
+        } else if ("GET".equals(method) && parameters.containsKey("uploads")) {
+            StringBuilder xml = new StringBuilder(xmlHeader("ListMultipartUploadsResult"))
+                    .append("<Bucket>").append(bucket).append("</Bucket>");
+            String prefix = bucket + "/";
+            for (Map.Entry<String, MultipartUpload> entry : uploads.entrySet()) {
+                MultipartUpload upload = entry.getValue();
+                if (upload.objectPath.startsWith(prefix)) {
+                    xml.append("<Upload><Key>").append(upload.objectPath.substring(prefix.length()))
+                            .append("</Key><UploadId>").append(entry.getKey())
+                            .append("</UploadId><StorageClass>STANDARD</StorageClass><Initiated>")
+                            .append(Instant.ofEpochMilli(upload.initiatedAt)).append("</Initiated></Upload>");
+                }
+            }
+            xml.append("<IsTruncated>false</IsTruncated></ListMultipartUploadsResult>");
+            sendXml(response, xml);
+        } else {
+            send(response, 405);
+        }
+    }
+
+    private void serveObject(HttpRequest request, HttpResponse response, String bucket, String key)
+            throws IOException {
+        String objectPath = bucket + "/" + key;
+        String method = method(request);
+        Map<String, String> parameters = queryParameters(request);
+        String uploadId = parameters.get("uploadId");
+        if ("POST".equals(method) && parameters.containsKey("uploads")) {
+            drain(request);
+            uploadId = UUID.randomUUID().toString().replace("-", "");
+            uploads.put(uploadId, new MultipartUpload(objectPath));
+            sendXml(response, new StringBuilder(xmlHeader("InitiateMultipartUploadResult"))
+                    .append("<Bucket>").append(bucket).append("</Bucket><Key>").append(key)
+                    .append("</Key><UploadId>").append(uploadId)
+                    .append("</UploadId></InitiateMultipartUploadResult>"));
+        } else if (uploadId != null) {
+            serveUpload(request, response, bucket, key, uploadId, parameters.get("partNumber"));
+        } else if ("PUT".equals(method)) {
+            long size = drain(request);
+            bytesReceived.add(size);
+            objects.put(objectPath, size);
+            objectsPut.increment();
+            response.setHeader("ETag", etag(objectPath, size));
+            send(response, 200);
+        } else if ("HEAD".equals(method) || "GET".equals(method)) {
+            Long size = objects.get(objectPath);
+            if (size == null) {
+                send(response, 404);
+                return;
+            }
+            response.setHeader("ETag", etag(objectPath, size));
+            response.setStatusCode(200);
+            response.setEntity(repeatedEntity(new byte[0], ZEROS, 0, size, BINARY));
+        } else if ("DELETE".equals(method)) {
+            objects.remove(objectPath);
+            send(response, 204);
+        } else {
+            send(response, 405);
+        }
+    }
+
+    private void serveUpload(HttpRequest request, HttpResponse response, String bucket, String key,
+                             String uploadId, String partNumber) throws IOException {
+        String method = method(request);
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            drain(request);
+            sendXml(response, 404, new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error>")
+                    .append("<Code>NoSuchUpload</Code><Message>The specified upload does not exist.</Message>")
+                    .append("</Error>"));
+            return;
+        }
+        if ("PUT".equals(method) && partNumber != null) {
+            long size = drain(request);
+            bytesReceived.add(size);
+            upload.parts.put(Integer.parseInt(partNumber), size);
+            partsUploaded.increment();
+            response.setHeader("ETag", etag(uploadId + "-" + partNumber, size));
+            send(response, 200);
+        } else if ("GET".equals(method)) {
+            StringBuilder xml = new StringBuilder(xmlHeader("ListPartsResult"))
+                    .append("<Bucket>").append(bucket).append("</Bucket><Key>").append(key)
+                    .append("</Key><UploadId>").append(uploadId).append("</UploadId>");
+            for (Map.Entry<Integer, Long> part : upload.parts.entrySet()) {
+                xml.append("<Part><PartNumber>").append(part.getKey()).append("</PartNumber><LastModified>")
+                        .append(Instant.ofEpochMilli(upload.initiatedAt)).append("</LastModified><ETag>")
+                        .append(etag(uploadId + "-" + part.getKey(), part.getValue())).append("</ETag><Size>")
+                        .append(part.getValue()).append("</Size></Part>");
+            }
+            xml.append("<IsTruncated>false</IsTruncated></ListPartsResult>");
+            sendXml(response, xml);
+        } else if ("POST".equals(method)) {
+            drain(request);
+            uploads.remove(uploadId);
+            long size = 0;
+            for (long partSize : upload.parts.values()) {
+                size += partSize;
+            }
+            String objectPath = bucket + "/" + key;
+            objects.put(objectPath, size);
+            objectsPut.increment();
+            sendXml(response, new StringBuilder(xmlHeader("CompleteMultipartUploadResult"))
+                    .append("<Location>/").append(objectPath).append("</Location><Bucket>").append(bucket)
+                    .append("</Bucket><Key>").append(key).append("</Key><ETag>").append(etag(objectPath, size))
+                    .append("</ETag></CompleteMultipartUploadResult>"));
+        } else if ("DELETE".equals(method)) {
+            uploads.remove(uploadId);
+            send(response, 204);
+        } else {
+            send(response, 405);
+        }
+    }
+
+    private static String xmlHeader(String root) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><" + root + " xmlns=\"" + NS + "\">";
+    }
+
+    private static String etag(String name, long size) {
+        return "\"" + Integer.toHexString(name.hashCode()) + Long.toHexString(size) + "\"";
+    }
+
+    private static void sendXml(HttpResponse response, CharSequence xml) {
+        sendXml(response, 200, xml);
+    }
+
+    private static void sendXml(HttpResponse response, int status, CharSequence xml) {
+        send(response, status, XML, xml.toString());
+    }
+
+    long getObjectsPut() {
+        return objectsPut.sum();
+    }
+
+    long getPartsUploaded() {
+        return partsUploaded.sum();
+    }
+
+    long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    private static class MultipartUpload {
+        private final String objectPath;
+        private final long initiatedAt = System.currentTimeMillis();
+        private final Map<Integer, Long> parts = new ConcurrentSkipListMap<>();
+
+        MultipartUpload(String objectPath) {
+            this.objectPath = objectPath;
+        }
+    }
+}
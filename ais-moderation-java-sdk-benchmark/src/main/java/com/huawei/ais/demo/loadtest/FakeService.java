@@ -0,0 +1,206 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * 模拟服务的公共部分：请求计数、按比例注入错误、读写请求和响应<br/>
+ * 处理过程中抛出的异常以500响应返回，不会让客户端一直等待
+ */
+abstract class FakeService implements HttpRequestHandler {
+
+    private static final Log LOGGER = LogFactory.getLog(FakeService.class);
+
+    static final ContentType JSON = ContentType.APPLICATION_JSON;
+    // OBS SDK只接受不带charset的application/xml
+    static final ContentType XML = ContentType.create("application/xml");
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    /**
+     * @param latency   每个请求的处理耗时
+     * @param errorRate 返回500的请求比例，0~1
+     */
+    FakeService(LatencyDistribution latency, double errorRate) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public final void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+        requests.increment();
+        try {
+            latency.sleep();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.increment();
+                drain(request);
+                send(response, 500, JSON, "{\"error_code\":\"LOADTEST.0500\",\"error_msg\":\"injected error\"}");
+                return;
+            }
+            serve(request, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(response, 503);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn(String.format("%s failed.", request.getRequestLine()), e);
+            response.setHeaders(new Header[0]);
+            send(response, 500);
+        }
+    }
+
+    /**
+     * 处理一个请求，把状态码、响应头和响应体写入response，响应在返回后由服务端发送
+     */
+    abstract void serve(HttpRequest request, HttpResponse response) throws IOException;
+
+    long getRequestCount() {
+        return requests.sum();
+    }
+
+    long getInjectedErrorCount() {
+        return injectedErrors.sum();
+    }
+
+    static void send(HttpResponse response, int status) {
+        response.setStatusCode(status);
+        response.setEntity(null);
+    }
+
+    static void send(HttpResponse response, int status, ContentType contentType, String body) {
+        send(response, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void send(HttpResponse response, int status, ContentType contentType, byte[] body) {
+        response.setStatusCode(status);
+        response.setEntity(new ByteArrayEntity(body, contentType));
+    }
+
+    static String method(HttpRequest request) {
+        return request.getRequestLine().getMethod();
+    }
+
+    /**
+     * @return 解码后的请求路径，不含查询参数
+     */
+    static String path(HttpRequest request) {
+        return URI.create(request.getRequestLine().getUri()).getPath();
+    }
+
+    /**
+     * @return 查询参数，没有值的参数（如?uploads）对应空字符串
+     */
+    static Map<String, String> queryParameters(HttpRequest request) {
+        Map<String, String> parameters = new HashMap<>();
+        for (NameValuePair pair : URLEncodedUtils.parse(URI.create(request.getRequestLine().getUri()),
+                StandardCharsets.UTF_8)) {
+            parameters.put(pair.getName(), pair.getValue() != null ? pair.getValue() : "");
+        }
+        return parameters;
+    }
+
+    static byte[] readBody(HttpRequest request) throws IOException {
+        HttpEntity entity = getEntity(request);
+        return entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+    }
+
+    /**
+     * 读完并丢弃请求体
+     *
+     * @return 请求体字节数
+     */
+    static long drain(HttpRequest request) throws IOException {
+        HttpEntity entity = getEntity(request);
+        if (entity == null) {
+            return 0;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (InputStream input = entity.getContent()) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    private static HttpEntity getEntity(HttpRequest request) {
+        return request instanceof HttpEntityEnclosingRequest ? ((HttpEntityEnclosingRequest) request).getEntity()
+                : null;
+    }
+
+    /**
+     * 不占用内存的大响应体：完整内容为head之后重复block，这里返回从offset开始的length字节；HEAD请求只用到其长度
+     */
+    static HttpEntity repeatedEntity(byte[] head, byte[] block, long offset, long length, ContentType contentType) {
+        AbstractHttpEntity entity = new AbstractHttpEntity() {
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            public long getContentLength() {
+                return length;
+            }
+
+            @Override
+            public InputStream getContent() {
+                throw new UnsupportedOperationException("Write the content with writeTo()");
+            }
+
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                long position = offset;
+                long remaining = length;
+                if (position < head.length) {
+                    int headLength = (int) Math.min(head.length - position, remaining);
+                    output.write(head, (int) position, headLength);
+                    position += headLength;
+                    remaining -= headLength;
+                }
+                while (remaining > 0) {
+                    int blockOffset = (int) ((position - head.length) % block.length);
+                    int chunk = (int) Math.min(block.length - blockOffset, remaining);
+                    output.write(block, blockOffset, chunk);
+                    position += chunk;
+                    remaining -= chunk;
+                }
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        };
+        entity.setContentType(contentType.toString());
+        return entity;
+    }
+}
@@ -0,0 +1,92 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟服务使用的耗时分布，单位为ms，以字符串描述：<p/>
+ * - fixed:100 固定值<br/>
+ * - uniform:50,200 [50, 200)内均匀分布<br/>
+ * - exp:100 均值为100的指数分布<br/>
+ * - lognormal:100,0.5 中位数为100、对数标准差为0.5的对数正态分布，长尾，接近真实引擎耗时
+ */
+public final class LatencyDistribution {
+
+    private enum Kind {
+        FIXED, UNIFORM, EXP, LOGNORMAL
+    }
+
+    private final String spec;
+    private final Kind kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, Kind kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * @param spec 分布描述，格式见类注释
+     * @return 对应的分布
+     * @throws IllegalArgumentException 格式不正确
+     */
+    public static LatencyDistribution parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+        }
+        Kind kind;
+        try {
+            kind = Kind.valueOf(spec.substring(0, colon).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+        String[] params = spec.substring(colon + 1).split(",");
+        int expected = kind == Kind.UNIFORM || kind == Kind.LOGNORMAL ? 2 : 1;
+        if (params.length != expected) {
+            throw new IllegalArgumentException(String.format("%s expects %d parameters: %s",
+                    kind.name().toLowerCase(Locale.ROOT), expected, spec));
+        }
+        double a = Double.parseDouble(params[0].trim());
+        double b = expected == 2 ? Double.parseDouble(params[1].trim()) : 0;
+        if (a < 0 || b < 0 || (kind == Kind.UNIFORM && b < a)) {
+            throw new IllegalArgumentException("Invalid latency distribution: " + spec);
+        }
+        return new LatencyDistribution(spec, kind, a, b);
+    }
+
+    /**
+     * @return 一个随机耗时，ms
+     */
+    public long sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (kind) {
+            case UNIFORM:
+                return (long) (a + random.nextDouble() * (b - a));
+            case EXP:
+                return (long) (-a * Math.log(1 - random.nextDouble()));
+            case LOGNORMAL:
+                return (long) (a * Math.exp(b * random.nextGaussian()));
+            default:
+                return (long) a;
+        }
+    }
+
+    /**
+     * 按分布随机休眠，用来模拟服务端处理时间
+     */
+    public void sleep() throws InterruptedException {
+        long millis = sample();
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,238 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import com.huawei.ais.demo.moderation.ext.ModerationServiceUtils;
+import com.huawei.ais.demo.moderation.metrics.LatencyHistogram;
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
+import com.huawei.ais.demo.moderation.model.Category;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+
+/**
+ * 端到端压测：启动{@link FakeCloudServer}，生成指向它的config.properties，
+ * 然后通过ModerationServiceUtils.callAsrService()提交大量任务，等待全部回调送达或超时<p/>
+ * 结束后输出吞吐量、错误率、端到端耗时和SDK各阶段耗时的分位数，以及模拟服务的统计<br/>
+ * 参数除{@link FakeCloudServer#FakeCloudServer(Options)}中的服务参数外，还有：<br/>
+ * - jobs=2000：提交的任务数<br/>
+ * - rate=0：每秒提交的任务数，0表示不限速，由SDK的准入控制决定提交速度<br/>
+ * - timeout=600：等待全部回调的最长时间（s）<br/>
+ * - report.interval=10：输出进度的间隔（s）<br/>
+ * - sdk.{key}={value}：写入config.properties的SDK配置，例如 --sdk.submit.pool.max.size 64<p/>
+ * SDK从当前目录读取config.properties，所以要在单独的工作目录中运行；
+ * 当前目录中已有不是由压测生成的config.properties时拒绝运行
+ */
+public class LoadGenerator {
+
+    private static final String CONFIG_FILE = "config.properties";
+    private static final String GENERATED_MARKER = "# Generated by LoadGenerator";
+    private static final String DATA_DIR = "data";
+
+    private final Options options;
+    private final FakeCloudServer server;
+    private final PrintStream out = System.out;
+
+    private int accepted;
+    private int rejected;
+    private int submitFailed;
+    private long submitNanos;
+
+    LoadGenerator(Options options, FakeCloudServer server) {
+        this.options = options;
+        this.server = server;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        File configFile = new File(CONFIG_FILE);
+        if (configFile.exists() && !FileUtils.readFileToString(configFile, StandardCharsets.UTF_8)
+                .startsWith(GENERATED_MARKER)) {
+            System.err.println(configFile.getAbsolutePath()
+                    + " was not generated by the load generator, run it in a separate directory.");
+            System.exit(2);
+        }
+        // 上次压测下载的视频
+        FileUtils.deleteDirectory(new File(DATA_DIR));
+
+        try (FakeCloudServer server = new FakeCloudServer(options)) {
+            writeSdkConfig(configFile, server, options);
+            new LoadGenerator(options, server).run();
+        }
+    }
+
+    /**
+     * 压测默认使用较短的查询和回调重试间隔，使任务在数秒内结束；sdk.*参数覆盖这些默认值
+     */
+    static void writeSdkConfig(File configFile, FakeCloudServer server, Options options) throws IOException {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("user.ak", "loadtest");
+        properties.put("user.sk", "loadtest");
+        properties.put("service.obs.bucket.name", "loadtest-bucket");
+        properties.put("service.moderation.endpint", server.getBaseUrl());
+        properties.put("service.obs.endpoint", server.getBaseUrl());
+        properties.put("service.moderation.query.interval", "1000");
+        properties.put("service.moderation.query.interval.min", "200");
+        properties.put("callback.retry.times", "3");
+        properties.put("callback.retry.interval", "1");
+        properties.put("callback.retry.interval.max", "10");
+        properties.putAll(options.getSdkProperties());
+
+        StringBuilder content = new StringBuilder(GENERATED_MARKER).append(", overwritten on every run.\n");
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            content.append(property.getKey()).append('=').append(property.getValue()).append('\n');
+        }
+        FileUtils.writeStringToFile(configFile, content.toString(), StandardCharsets.UTF_8);
+    }
+
+    void run() throws InterruptedException {
+        int jobs = options.getInt("jobs", 2000);
+        double rate = options.getDouble("rate", 0);
+        long timeout = TimeUnit.SECONDS.toNanos(options.getLong("timeout", 600));
+        long reportInterval = TimeUnit.SECONDS.toNanos(options.getLong("report.interval", 10));
+
+        ModerationServiceUtils moderationServiceUtils = ModerationServiceUtils.getInstance();
+        CallbackSink callbackSink = server.getCallbackSink();
+        List<String> videoNames = new ArrayList<>(jobs);
+        List<Future<String>> submissions = new ArrayList<>(jobs);
+
+        out.printf("Submitting %d jobs to %s%s%n", jobs, server.getBaseUrl(),
+                rate > 0 ? String.format(" at %.1f jobs/s", rate) : "");
+        long start = System.nanoTime();
+        long nextReport = start + reportInterval;
+        for (int i = 0; i < jobs; i++) {
+            if (rate > 0) {
+                long due = start + (long) (i * TimeUnit.SECONDS.toNanos(1) / rate);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            String videoName = String.format("video-%06d.mp4", i);
+            callbackSink.expect(videoName);
+            try {
+                submissions.add(moderationServiceUtils.callAsrService(server.getVideoUrl(videoName),
+                        server.getCallbackUrl(), newJobMetaInfo()));
+                videoNames.add(videoName);
+                accepted++;
+            } catch (RejectedExecutionException e) {
+                callbackSink.forget(videoName);
+                rejected++;
+            }
+            if (System.nanoTime() >= nextReport) {
+                printProgress(start, submissions);
+                nextReport += reportInterval;
+            }
+        }
+        submitNanos = System.nanoTime() - start;
+
+        long deadline = start + timeout;
+        while (System.nanoTime() < deadline && countFinished(submissions, videoNames) < accepted) {
+            TimeUnit.MILLISECONDS.sleep(100);
+            if (System.nanoTime() >= nextReport) {
+                printProgress(start, submissions);
+                nextReport += reportInterval;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        // 销毁后外部注册的计数器会被清除，先输出结果
+        printReport(jobs, elapsed);
+        moderationServiceUtils.destroy();
+    }
+
+    /**
+     * 统计已有结论的任务：回调已送达、提交失败（不会回调）或回调重试耗尽
+     */
+    private int countFinished(List<Future<String>> submissions, List<String> videoNames) {
+        submitFailed = 0;
+        for (int i = 0; i < submissions.size(); i++) {
+            Future<String> submission = submissions.get(i);
+            if (submission.isDone() && isFailed(submission)) {
+                server.getCallbackSink().forget(videoNames.get(i));
+                submitFailed++;
+            }
+        }
+        return server.getCallbackSink().getDeliveredCount() + submitFailed
+                + (int) ModerationMetrics.getInstance().getCount(ModerationMetrics.Counter.CALLBACK_GIVE_UPS);
+    }
+
+    private static boolean isFailed(Future<String> submission) {
+        try {
+            return submission.get() == null;
+        } catch (ExecutionException | RuntimeException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static JobMetaInfo newJobMetaInfo() {
+        // 提交时会写入OBS地址，每个任务使用单独的对象
+        JobMetaInfo jobMetaInfo = new JobMetaInfo();
+        for (Category category : Category.values()) {
+            jobMetaInfo.addCategory(category);
+        }
+        return jobMetaInfo;
+    }
+
+    private void printProgress(long start, List<Future<String>> submissions) {
+        long submitted = 0;
+        for (Future<String> submission : submissions) {
+            if (submission.isDone()) {
+                submitted++;
+            }
+        }
+        out.printf("[%4ds] accepted:%d rejected:%d submitted:%d callbacks:%d%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), accepted, rejected, submitted,
+                server.getCallbackSink().getDeliveredCount());
+    }
+
+    private void printReport(int jobs, long elapsed) {
+        ModerationMetrics metrics = ModerationMetrics.getInstance();
+        CallbackSink callbackSink = server.getCallbackSink();
+        int delivered = callbackSink.getDeliveredCount();
+        long giveUps = metrics.getCount(ModerationMetrics.Counter.CALLBACK_GIVE_UPS);
+        long unfinished = Math.max(0, accepted - delivered - submitFailed - giveUps);
+        double elapsedSeconds = elapsed / 1e9;
+
+        out.println();
+        out.println("==== Load test result ====");
+        out.printf("jobs:%d accepted:%d rejected:%d submit failed:%d delivered:%d engine failed:%d "
+                        + "callback give-ups:%d unfinished:%d%n",
+                jobs, accepted, rejected, submitFailed, delivered, callbackSink.getFailedJobCount(), giveUps,
+                unfinished);
+        out.printf("elapsed:%.1fs accept rate:%.1f jobs/s throughput:%.1f jobs/s error rate:%.2f%%%n",
+                elapsedSeconds, accepted / (submitNanos / 1e9), delivered / elapsedSeconds,
+                100.0 * (rejected + submitFailed + giveUps + unfinished) / jobs);
+        out.println();
+        out.printf("%-16s %8s %10s %8s %8s %8s %8s%n", "stage", "count", "mean", "p50", "p90", "p99", "max");
+        printHistogram("end_to_end_ms", callbackSink.getEndToEndLatency());
+        for (ModerationMetrics.Stage stage : ModerationMetrics.Stage.values()) {
+            printHistogram(stage.name().toLowerCase(), metrics.getHistogram(stage));
+        }
+        out.println("(percentiles are histogram bucket upper bounds)");
+        out.println();
+        for (Map.Entry<String, Long> counter : metrics.getCounters().entrySet()) {
+            out.printf("%-32s %d%n", counter.getKey(), counter.getValue());
+        }
+        out.println();
+        server.printStatistics(out);
+    }
+
+    private void printHistogram(String name, LatencyHistogram histogram) {
+        out.printf("%-16s %8d %10.1f %8d %8d %8d %8d%n", name, histogram.getCount(), histogram.getMean(),
+                histogram.getP50(), histogram.getP90(), histogram.getP99(), histogram.getMax());
+    }
+}
@@ -0,0 +1,72 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 命令行参数，格式为 --name value 或 --name=value
+ */
+public class Options {
+
+    static final String SDK_PREFIX = "sdk.";
+
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    /**
+     * @throws IllegalArgumentException 参数不是以--开头或缺少值
+     */
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || arg.length() == 2) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.values.put(arg.substring(2, equals), arg.substring(equals + 1));
+            } else if (i + 1 < args.length) {
+                options.values.put(arg.substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value of " + arg);
+            }
+        }
+        return options;
+    }
+
+    String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    LatencyDistribution getLatency(String name, String defaultValue) {
+        return LatencyDistribution.parse(getString(name, defaultValue));
+    }
+
+    /**
+     * @return 以sdk.开头的参数，去掉前缀后作为SDK的配置项
+     */
+    Map<String, String> getSdkProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (entry.getKey().startsWith(SDK_PREFIX)) {
+                properties.put(entry.getKey().substring(SDK_PREFIX.length()), entry.getValue());
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,104 @@
+package com.huawei.ais.demo.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+
+/**
+ * 模拟视频源站，GET /videos/{name} 返回videoSize字节的视频内容<br/>
+ * 内容以文件名开头，其余部分所有视频相同，开启内容去重时不同文件名不会互相命中；
+ * 响应带ETag和Last-Modified，条件请求命中时返回304；支持单个区间的Range请求（bytes=a-b、bytes=a-），
+ * 返回206，不支持时忽略Range头按200返回整个视频
+ */
+class VideoSource extends FakeService {
+
+    static final String PATH = "/videos/";
+
+    private static final ContentType VIDEO = ContentType.create("video/mp4");
+    private static final String LAST_MODIFIED = "Mon, 01 Jun 2020 00:00:00 GMT";
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final long videoSize;
+    private final boolean rangesSupported;
+    private final byte[] block = new byte[64 * 1024];
+
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder rangeRequests = new LongAdder();
+
+    /**
+     * @param latency   每个请求开始返回内容前的耗时
+     * @param errorRate 返回500的请求比例
+     * @param videoSize       每个视频的字节数
+     * @param rangesSupported 是否支持Range请求
+     */
+    VideoSource(LatencyDistribution latency, double errorRate, long videoSize, boolean rangesSupported) {
+        super(latency, errorRate);
+        this.videoSize = videoSize;
+        this.rangesSupported = rangesSupported;
+        new Random(videoSize).nextBytes(block);
+    }
+
+    @Override
+    void serve(HttpRequest request, HttpResponse response) {
+        String method = method(request);
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            send(response, 405);
+            return;
+        }
+        String name = path(request).substring(PATH.length());
+        String etag = "\"" + Integer.toHexString(name.hashCode()) + "-" + videoSize + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Last-Modified", LAST_MODIFIED);
+        Header ifNoneMatch = request.getFirstHeader("If-None-Match");
+        if (ifNoneMatch != null && etag.equals(ifNoneMatch.getValue())) {
+            send(response, 304);
+            return;
+        }
+        byte[] head = name.getBytes(StandardCharsets.UTF_8);
+        Header range = rangesSupported ? request.getFirstHeader("Range") : null;
+        if (rangesSupported) {
+            response.setHeader("Accept-Ranges", "bytes");
+        }
+        long start = 0;
+        long end = videoSize - 1;
+        if (range != null) {
+            Matcher matcher = RANGE.matcher(range.getValue().trim());
+            if (!matcher.matches() || Long.parseLong(matcher.group(1)) >= videoSize) {
+                response.setHeader("Content-Range", "bytes */" + videoSize);
+                send(response, 416);
+                return;
+            }
+            start = Long.parseLong(matcher.group(1));
+            if (!matcher.group(2).isEmpty()) {
+                end = Math.min(Long.parseLong(matcher.group(2)), videoSize - 1);
+            }
+            if (end < start) {
+                response.setHeader("Content-Range", "bytes */" + videoSize);
+                send(response, 416);
+                return;
+            }
+            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + videoSize);
+            rangeRequests.increment();
+        }
+        response.setStatusCode(range != null ? 206 : 200);
+        response.setEntity(repeatedEntity(head, block, start, end - start + 1, VIDEO));
+        if ("GET".equals(method)) {
+            bytesSent.add(end - start + 1);
+        }
+    }
+
+    long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    long getRangeRequestCount() {
+        return rangeRequests.sum();
+    }
+}
@@ -0,0 +1,123 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.huawei.ais.demo.moderation.CommonUtils;
+
+/**
+ * 失败回调重试调度的吞吐量：队列中积压了大量尚未到期的回调时，到期回调从入队到分发给回调线程池的速度<br/>
+ * 回调线程池换成只计数的执行器，测量的只是调度本身
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallbackRetrySchedulerBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // 等待重试、尚未到期的回调数
+    @Param({"10000", "1000000"})
+    public int backlog;
+
+    private CountingExecutor callbackExecutors;
+    private CallbackRetryScheduler scheduler;
+    private List<CallbackTask> dueTasks;
+
+    @Setup
+    public void setUp() {
+        callbackExecutors = new CountingExecutor();
+        scheduler = new CallbackRetryScheduler(callbackExecutors,
+                CommonUtils.ThreadFactoryConstructor(true, "benchmark-retry-callback-%d"));
+        for (int i = 0; i < backlog; i++) {
+            CallbackTask waiting = newTask("backlog-" + i);
+            waiting.backToWaiting();
+            scheduler.schedule(waiting, TimeUnit.HOURS.toMillis(1) + i);
+        }
+        dueTasks = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            dueTasks.add(newTask("due-" + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * 一批到期的回调入队，等待分发线程把它们全部交给回调线程池
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long scheduleAndDispatch() {
+        long target = callbackExecutors.executed.get() + BATCH_SIZE;
+        for (CallbackTask task : dueTasks) {
+            // 上一轮分发时已转为执行中
+            task.backToWaiting();
+            scheduler.schedule(task, 0);
+        }
+        while (callbackExecutors.executed.get() < target) {
+            Thread.yield();
+        }
+        return target;
+    }
+
+    private static CallbackTask newTask(String jobId) {
+        return new CallbackTask("https://example.com/video.mp4", jobId, "https://example.com/callback", null, null,
+                null);
+    }
+
+    private static class CountingExecutor extends AbstractExecutorService {
+        private final AtomicLong executed = new AtomicLong();
+
+        @Override
+        public void execute(Runnable command) {
+            executed.incrementAndGet();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.benchmark.BenchmarkData;
+import com.huawei.ais.demo.moderation.model.JobResult;
+
+/**
+ * 回调通知的序列化：单条通知，以及合并回调时100条通知组成的数组<br/>
+ * 与SDK同包，以便直接使用包内可见的{@link CallbackTask.Notification}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NotificationBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"100", "10000"})
+    public int frames;
+
+    private CallbackTask.Notification notification;
+    private List<CallbackTask.Notification> batch;
+
+    @Setup
+    public void setUp() {
+        JobResult jobResult = BenchmarkData.jobResult(frames);
+        notification = new CallbackTask.Notification(jobResult.getId(), jobResult);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new CallbackTask.Notification(jobResult.getId() + i, jobResult));
+        }
+    }
+
+    @Benchmark
+    public long single() throws IOException {
+        BenchmarkData.CountingOutputStream output = new BenchmarkData.CountingOutputStream();
+        HttpJsonDataUtils.objectToStreamingHttpEntity(notification).writeTo(output);
+        return output.getCount();
+    }
+
+    @Benchmark
+    public long batch() throws IOException {
+        BenchmarkData.CountingOutputStream output = new BenchmarkData.CountingOutputStream();
+        HttpJsonDataUtils.objectToStreamingHttpEntity(batch).writeTo(output);
+        return output.getCount();
+    }
+}
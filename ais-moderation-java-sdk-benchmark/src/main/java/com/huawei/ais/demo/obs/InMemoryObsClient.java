@@ -0,0 +1,61 @@
+package com.huawei.ais.demo.obs;
+
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+import com.obs.services.ObsClient;
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.AbortMultipartUploadRequest;
+import com.obs.services.model.CompleteMultipartUploadRequest;
+import com.obs.services.model.CompleteMultipartUploadResult;
+import com.obs.services.model.HeaderResponse;
+import com.obs.services.model.InitiateMultipartUploadRequest;
+import com.obs.services.model.InitiateMultipartUploadResult;
+import com.obs.services.model.UploadPartRequest;
+import com.obs.services.model.UploadPartResult;
+
+/**
+ * 只实现分段上传接口的OBS桩，不发出网络请求，分段数据不读取<br/>
+ * 可以为每个分段设置固定的模拟耗时，用来观察上传线程的调度是否均衡
+ */
+class InMemoryObsClient extends ObsClient {
+
+    private final long partLatencyNanos;
+
+    /**
+     * @param partLatencyNanos 每个分段的模拟上传耗时，ns，为0时立即返回
+     */
+    InMemoryObsClient(long partLatencyNanos) {
+        super("ak", "sk", "http://127.0.0.1:1");
+        this.partLatencyNanos = partLatencyNanos;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request)
+            throws ObsException {
+        return new InitiateMultipartUploadResult(request.getBucketName(), request.getObjectKey(),
+                UUID.randomUUID().toString(), null);
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) throws ObsException {
+        if (partLatencyNanos > 0) {
+            LockSupport.parkNanos(partLatencyNanos);
+        }
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setEtag("etag-" + request.getPartNumber());
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request)
+            throws ObsException {
+        return new CompleteMultipartUploadResult();
+    }
+
+    @Override
+    public HeaderResponse abortMultipartUpload(AbortMultipartUploadRequest request) throws ObsException {
+        return new HeaderResponse();
+    }
+}
@@ -0,0 +1,80 @@
+package com.huawei.ais.demo.obs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 分段上传的调度开销：多个上传同时向共享的上传线程池添加分段，OBS由内存中的桩代替<br/>
+ * 分段耗时为0时测量的是纯调度开销；设置分段耗时后，结果接近 分段总数 * 分段耗时 / 线程数 时说明线程没有空转或饥饿
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultipartSchedulingBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int PARTS_PER_UPLOAD = 200;
+
+    // 同时进行的上传数
+    @Param({"1", "16"})
+    public int uploads;
+
+    @Param({"0", "200"})
+    public int partLatencyMicros;
+
+    private MultipartUploadEngine engine;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        engine = new MultipartUploadEngine(new InMemoryObsClient(TimeUnit.MICROSECONDS.toNanos(partLatencyMicros)),
+                THREADS);
+        buffer = new byte[64 * 1024];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    /**
+     * 所有上传交错添加分段，然后等待全部完成
+     */
+    @Benchmark
+    public int uploadAll() throws IOException {
+        List<MultipartUploadEngine.UploadSession> sessions = new ArrayList<>(uploads);
+        for (int i = 0; i < uploads; i++) {
+            sessions.add(engine.openSession("benchmark", "video-" + i + ".mp4"));
+        }
+        for (int partNumber = 1; partNumber <= PARTS_PER_UPLOAD; partNumber++) {
+            for (MultipartUploadEngine.UploadSession session : sessions) {
+                session.addPart(MultipartUploadEngine.Part.ofBuffer(partNumber, buffer, buffer.length, null));
+            }
+        }
+        for (MultipartUploadEngine.UploadSession session : sessions) {
+            session.seal();
+        }
+        for (MultipartUploadEngine.UploadSession session : sessions) {
+            session.awaitAndComplete();
+        }
+        return sessions.size();
+    }
+}
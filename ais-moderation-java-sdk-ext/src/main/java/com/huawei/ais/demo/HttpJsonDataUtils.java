@@ -1,6 +1,8 @@
 package com.huawei.ais.demo;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -8,9 +10,9 @@ import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.entity.EntityTemplate;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -18,12 +20,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
- * http数据转换工具，适用于请求响应均为Json格式的情况
+ * http数据转换工具，适用于请求响应均为Json格式的情况<br/>
+ * 响应直接从实体的输入流解析，不经过中间字符串；ObjectReader按(类型, 根节点名)缓存，不再每次调用都创建
  */
 public class HttpJsonDataUtils {
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 没有根节点名时在缓存中使用的键
+    private static final String NO_ROOT_NAME = "";
+
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, ObjectReader>> READER_CACHE =
+            new ConcurrentHashMap<>();
+
     public static String requestToString(HttpRequestBase httpReq) throws ParseException, IOException {
         final StringBuilder builder = new StringBuilder("\n")
                 .append(httpReq.getMethod())
@@ -64,8 +73,7 @@ public class HttpJsonDataUtils {
         if (!isOKResponded(response)) {
             throw new IllegalArgumentException("the response status is not '200 OK'");
         }
-        return objectMapper.readValue(EntityUtils.toString(response.getEntity(),
-                ContentType.APPLICATION_JSON.getCharset()), responseType);
+        return readEntity(response.getEntity(), readerFor(responseType, NO_ROOT_NAME));
     }
 
     public static <T> T getResponseObject(HttpResponse response, Class<T> responseType, String jsonRootName)
@@ -73,8 +81,7 @@ public class HttpJsonDataUtils {
         if (!isOKResponded(response)) {
             throw new IllegalArgumentException("the response status code is not in [200, 300)!");
         }
-        ObjectReader reader = objectMapper.readerFor(responseType).withRootName(jsonRootName);
-        return reader.readValue(EntityUtils.toString(response.getEntity(), ContentType.APPLICATION_JSON.getCharset()));
+        return readEntity(response.getEntity(), readerFor(responseType, jsonRootName));
     }
 
     public static String objectToJsonString(Object object) {
@@ -102,26 +109,69 @@ public class HttpJsonDataUtils {
      */
     public static String prettify(String jsonString) {
         try {
-            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(objectMapper.readValue(jsonString, Object.class));
+            return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(objectMapper.readTree(jsonString));
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
     }
 
     public static String entityToPrettyString(HttpEntity entity) throws IOException {
-        final String jsonStr = EntityUtils.toString(entity, ContentType.APPLICATION_JSON.getCharset());
-        return "\n" + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(
-                objectMapper.readValue(jsonStr, JsonNode.class)) + "\n";
+        final JsonNode jsonNode;
+        try (InputStream content = entity.getContent()) {
+            jsonNode = objectMapper.readTree(content);
+        }
+        return "\n" + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(jsonNode) + "\n";
     }
 
+    /**
+     * 将对象序列化为UTF-8字节数组作为请求体，带Content-Length，可重复读取（签名、重试）
+     *
+     * @param object 请求对象
+     * @return json请求体
+     */
     public static HttpEntity objectToHttpEntity(Object object) {
         try {
-            return new StringEntity(objectMapper.writeValueAsString(object), ContentType.APPLICATION_JSON.getCharset());
+            return new ByteArrayEntity(objectMapper.writeValueAsBytes(object), ContentType.APPLICATION_JSON);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException(e);
         }
     }
 
+    /**
+     * 发送时才把对象直接序列化到连接的输出流，不在内存中生成完整的请求体，适用于较大的请求（如带有全部帧结果的回调）<br/>
+     * 请求体长度未知，以分块传输编码发送；每次发送都重新序列化，可重复发送<br/>
+     * 只有阻塞式客户端通过writeTo()发送时才是流式的；异步客户端通过getContent()读取，会先完整写入内存，
+     * 此时应使用{@link #objectToHttpEntity(Object)}
+     *
+     * @param object 请求对象，发送前不应再被修改
+     * @return json请求体
+     */
+    public static HttpEntity objectToStreamingHttpEntity(Object object) {
+        EntityTemplate entity = new EntityTemplate(outputStream -> objectMapper.writeValue(outputStream, object));
+        entity.setContentType(ContentType.APPLICATION_JSON.toString());
+        return entity;
+    }
+
+    private static ObjectReader readerFor(Class<?> type, String rootName) {
+        ConcurrentHashMap<String, ObjectReader> readers = READER_CACHE.get(type);
+        if (readers == null) {
+            readers = READER_CACHE.computeIfAbsent(type, k -> new ConcurrentHashMap<>());
+        }
+        ObjectReader reader = readers.get(rootName);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(rootName, name -> NO_ROOT_NAME.equals(name)
+                    ? objectMapper.readerFor(type) : objectMapper.readerFor(type).withRootName(name));
+        }
+        return reader;
+    }
+
+    private static <T> T readEntity(HttpEntity entity, ObjectReader reader) throws IOException {
+        // json编码由jackson根据字节流自动识别（UTF-8/16/32）
+        try (InputStream content = entity.getContent()) {
+            return reader.readValue(content);
+        }
+    }
+
     private static String headersToString(final Header[] headers) {
         final StringBuilder builder = new StringBuilder("\n").append("[\n");
         for (final Header header : headers) {
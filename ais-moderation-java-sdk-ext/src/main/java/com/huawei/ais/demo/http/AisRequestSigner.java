@@ -0,0 +1,100 @@
+package com.huawei.ais.demo.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.BufferedHttpEntity;
+
+import com.cloud.sdk.DefaultRequest;
+import com.cloud.sdk.auth.credentials.BasicCredentials;
+import com.cloud.sdk.auth.signer.Signer;
+import com.cloud.sdk.auth.signer.SignerFactory;
+import com.cloud.sdk.http.HttpMethodName;
+import com.huawei.ais.common.AuthInfo;
+
+/**
+ * 使用AK/SK对发往AIS服务的请求签名，签名方式与{@link com.huawei.ais.sdk.AisAccess}一致<br/>
+ * 签名结果以请求头的形式写回到请求中，请求可交给任意http客户端发送
+ */
+public class AisRequestSigner {
+
+    private static final String SERVICE_NAME = "ais";
+
+    private final String region;
+    private final BasicCredentials credentials;
+
+    public AisRequestSigner(AuthInfo authInfo) {
+        this.region = authInfo.getRegion();
+        this.credentials = new BasicCredentials(authInfo.getAk(), authInfo.getSk());
+    }
+
+    /**
+     * 对请求签名，签名需要读取请求体，不可重复读取的请求体会先被缓存到内存中
+     *
+     * @param httpRequest 待签名的请求，签名头会被添加到此请求中
+     * @throws IOException 读取请求体失败
+     */
+    public void sign(HttpRequestBase httpRequest) throws IOException {
+        DefaultRequest<Object> request = new DefaultRequest<>(SERVICE_NAME);
+        request.setEndpoint(httpRequest.getURI());
+        request.setParameters(parseQueryParameters(httpRequest.getURI().getRawQuery()));
+        request.setHttpMethod(HttpMethodName.valueOf(httpRequest.getMethod()));
+
+        Map<String, String> headers = new HashMap<>();
+        for (Header header : httpRequest.getAllHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+        request.setHeaders(headers);
+
+        InputStream content = null;
+        if (httpRequest instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) httpRequest;
+            HttpEntity entity = entityRequest.getEntity();
+            if (entity != null) {
+                if (!entity.isRepeatable()) {
+                    entity = new BufferedHttpEntity(entity);
+                    entityRequest.setEntity(entity);
+                }
+                content = entity.getContent();
+                request.setContent(content);
+            }
+        }
+
+        try {
+            Signer signer = SignerFactory.getSigner(SERVICE_NAME, region);
+            signer.sign(request, credentials);
+        } finally {
+            if (content != null) {
+                content.close();
+            }
+        }
+
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (!"Content-Length".equalsIgnoreCase(header.getKey())) {
+                httpRequest.setHeader(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    private static Map<String, String> parseQueryParameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf('=');
+            if (index < 0) {
+                parameters.put(pair, "");
+            } else {
+                parameters.put(pair.substring(0, index), pair.substring(index + 1));
+            }
+        }
+        return parameters;
+    }
+}
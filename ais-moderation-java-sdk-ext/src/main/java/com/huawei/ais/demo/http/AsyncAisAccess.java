@@ -0,0 +1,171 @@
+package com.huawei.ais.demo.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.ssl.SSLContextBuilder;
+
+import com.huawei.ais.common.AuthInfo;
+
+/**
+ * 基于NIO的异步AIS服务访问客户端<p/>
+ * 请求使用与{@link com.huawei.ais.sdk.AisAccess}相同的AK/SK签名，由少量I/O线程组成的reactor发送，
+ * 调用方立即得到CompletableFuture，等待响应期间不占用任何业务线程<br/>
+ * 注意：future的回调默认运行在I/O线程上，耗时的处理应切换到业务线程池中执行
+ */
+public class AsyncAisAccess implements Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(AsyncAisAccess.class);
+
+    private final String endpoint;
+    private final AisRequestSigner signer;
+    private final CloseableHttpAsyncClient httpAsyncClient;
+
+    /**
+     * @param authInfo                 服务地址及AK/SK信息
+     * @param ioThreads                I/O线程数
+     * @param maxConnections           最大连接数
+     * @param connectionTimeout        连接超时时间，ms
+     * @param connectionRequestTimeout 从连接池获取连接的超时时间，ms
+     * @param socketTimeout            等待响应超时时间，ms
+     */
+    public AsyncAisAccess(AuthInfo authInfo, int ioThreads, int maxConnections, int connectionTimeout,
+                          int connectionRequestTimeout, int socketTimeout) {
+        this.endpoint = authInfo.getEndPoint();
+        this.signer = new AisRequestSigner(authInfo);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectionTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .setSocketTimeout(socketTimeout)
+                .build();
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setConnectTimeout(connectionTimeout)
+                .setSoTimeout(socketTimeout)
+                .build();
+        this.httpAsyncClient = HttpAsyncClients.custom()
+                .setDefaultIOReactorConfig(ioReactorConfig)
+                .setDefaultRequestConfig(requestConfig)
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                // 与AisAccess、HttpClientUtils保持一致，信任所有证书
+                .setSSLContext(trustAllSslContext())
+                .setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE)
+                .build();
+        this.httpAsyncClient.start();
+    }
+
+    /**
+     * 发送签名的GET请求
+     *
+     * @param uri 相对于服务endpoint的请求路径
+     * @return 响应future
+     */
+    public CompletableFuture<HttpResponse> get(String uri) {
+        return executeSigned(new HttpGet(endpoint + uri));
+    }
+
+    /**
+     * 发送签名的POST请求，请求体为json
+     *
+     * @param uri    相对于服务endpoint的请求路径
+     * @param entity 请求体
+     * @return 响应future
+     */
+    public CompletableFuture<HttpResponse> post(String uri, HttpEntity entity) {
+        HttpPost httpPost = new HttpPost(endpoint + uri);
+        httpPost.setHeader("Content-Type", ContentType.APPLICATION_JSON.toString());
+        httpPost.setEntity(entity);
+        return executeSigned(httpPost);
+    }
+
+    /**
+     * 发送不签名的POST请求，用于回调等非AIS服务的地址
+     *
+     * @param url     完整的请求地址
+     * @param headers 请求头
+     * @param entity  请求体
+     * @return 响应future
+     */
+    public CompletableFuture<HttpResponse> post(String url, Header[] headers, HttpEntity entity) {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setHeaders(headers);
+        httpPost.setEntity(entity);
+        return execute(httpPost);
+    }
+
+    /**
+     * 发送请求
+     *
+     * @param request 请求
+     * @return 响应future
+     */
+    public CompletableFuture<HttpResponse> execute(HttpRequestBase request) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        httpAsyncClient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<HttpResponse> executeSigned(HttpRequestBase request) {
+        try {
+            signer.sign(request);
+        } catch (IOException | RuntimeException e) {
+            CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        return execute(request);
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpAsyncClient.close();
+        } catch (IOException e) {
+            LOGGER.error("Close async http client failed.", e);
+        }
+    }
+
+    private static SSLContext trustAllSslContext() {
+        try {
+            return new SSLContextBuilder().loadTrustMaterial(null, (chain, authType) -> true).build();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
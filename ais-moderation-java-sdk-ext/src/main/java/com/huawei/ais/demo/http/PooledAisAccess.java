@@ -0,0 +1,35 @@
+package com.huawei.ais.demo.http;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import com.huawei.ais.common.AuthInfo;
+import com.huawei.ais.sdk.AisAccess;
+
+/**
+ * 通过{@link SharedHttpClient}发送请求的AisAccess<p/>
+ * AisAccess每次请求都通过getHttpClient()新建客户端，连接和TLS会话无法复用，这里改为返回共享的客户端；
+ * 共享客户端由创建方关闭，close()不再关闭它
+ */
+public class PooledAisAccess extends AisAccess {
+
+    private final SharedHttpClient sharedHttpClient;
+
+    /**
+     * @param authInfo         服务地址及AK/SK信息
+     * @param sharedHttpClient 共享连接池的http客户端，超时时间以其配置为准
+     */
+    public PooledAisAccess(AuthInfo authInfo, SharedHttpClient sharedHttpClient) {
+        super(authInfo);
+        this.sharedHttpClient = sharedHttpClient;
+    }
+
+    @Override
+    protected CloseableHttpClient getHttpClient() {
+        return sharedHttpClient.getHttpClient();
+    }
+
+    @Override
+    public void close() {
+        // 共享客户端由创建方关闭
+    }
+}
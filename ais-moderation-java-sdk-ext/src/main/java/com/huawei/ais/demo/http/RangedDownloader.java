@@ -0,0 +1,337 @@
+package com.huawei.ais.demo.http;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import com.huawei.ais.demo.moderation.CommonUtils;
+
+/**
+ * 大文件的分段并行下载器，所有下载共享一个下载线程池<p/>
+ * - 调用方打开视频源时带上{@link #getFirstRange()}，以第一个分段作为探测：源站返回206时，从Content-Range得到文件大小，
+ * 不超过一个分段的文件在这一次请求中就已下载完；源站不支持Range时返回200，由调用方按单个流下载<br/>
+ * - 其余部分按分段大小切分，由调用线程和至多connections-1个下载线程各占一个连接并行下载，
+ * 直接写入预先分配好大小的文件中的对应位置<br/>
+ * - 分段失败时从已写入的位置重新请求，重试耗尽后整个下载失败；每个分段响应的文件大小和ETag须与第一个分段一致，
+ * 下载过程中源站文件被修改时下载失败
+ */
+public class RangedDownloader implements Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(RangedDownloader.class);
+
+    private static final int MAX_RANGE_ATTEMPTS = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+)");
+
+    private final SharedHttpClient sharedHttpClient;
+    private final int connections;
+    private final long rangeSize;
+    private final ExecutorService workers;
+
+    /**
+     * @param sharedHttpClient 下载使用的连接池
+     * @param connections      单个文件同时使用的连接数上限
+     * @param rangeSize        分段大小，单位为字节
+     * @param threads          下载线程数，即所有下载额外占用的连接数上限
+     */
+    public RangedDownloader(SharedHttpClient sharedHttpClient, int connections, long rangeSize, int threads) {
+        if (connections < 2 || rangeSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("connections should be at least 2, rangeSize and threads positive");
+        }
+        this.sharedHttpClient = sharedHttpClient;
+        this.connections = connections;
+        this.rangeSize = rangeSize;
+        this.workers = Executors.newFixedThreadPool(threads,
+                CommonUtils.ThreadFactoryConstructor(true, "video-range-download-%d"));
+    }
+
+    /**
+     * @return 打开视频源时使用的Range请求头，请求第一个分段
+     */
+    public String getFirstRange() {
+        return "bytes=0-" + (rangeSize - 1);
+    }
+
+    /**
+     * @param response 视频源的响应
+     * @return 206响应为Content-Range中的文件大小，其他响应为Content-Length，未知时返回-1
+     */
+    public static long getTotalLength(HttpResponse response) {
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT) {
+            Matcher matcher = matchContentRange(response);
+            return matcher != null ? Long.parseLong(matcher.group(3)) : -1;
+        }
+        return response.getEntity() != null ? response.getEntity().getContentLength() : -1;
+    }
+
+    /**
+     * 下载到本地文件：第一个分段从已打开的响应中读取，其余分段并行下载，阻塞直到全部写入
+     *
+     * @param url        视频url
+     * @param firstRange 对第一个分段请求的206响应，在这里关闭
+     * @param destFile   本地文件，已存在时被覆盖
+     * @throws IOException 分段重试耗尽、源站文件被修改或等待时被中断
+     */
+    public void download(String url, CloseableHttpResponse firstRange, File destFile) throws IOException {
+        Matcher matcher = matchContentRange(firstRange);
+        if (matcher == null || Long.parseLong(matcher.group(1)) != 0) {
+            firstRange.close();
+            throw new IOException(String.format("Unexpected Content-Range of video[%s]: %s", url,
+                    headerValue(firstRange, "Content-Range")));
+        }
+        long firstEnd = Long.parseLong(matcher.group(2));
+        long totalLength = Long.parseLong(matcher.group(3));
+        File parent = destFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            firstRange.close();
+            throw new IOException("Create directory failed: " + parent.getAbsolutePath());
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(destFile, "rw")) {
+            file.setLength(totalLength);
+            DownloadSession session = new DownloadSession(url, headerValue(firstRange, "ETag"), totalLength,
+                    file.getChannel());
+            for (long start = firstEnd + 1; start < totalLength; start += rangeSize) {
+                session.pending.add(new Range(start, Math.min(start + rangeSize, totalLength) - 1));
+            }
+            int helpers = Math.min(connections - 1, session.pending.size());
+            if (helpers > 0) {
+                LOGGER.info(String.format("Download video[%s] in %d ranges with %d connections, %d bytes.", url,
+                        session.pending.size() + 1, helpers + 1, totalLength));
+            }
+            // 下载线程先开始下载后面的分段，当前线程读完第一个分段后也加入
+            for (int i = 0; i < helpers; i++) {
+                try {
+                    workers.execute(session::help);
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            try {
+                session.fetch(new Range(0, firstEnd), firstRange);
+                session.drain();
+            } catch (IOException e) {
+                session.fail(e);
+            }
+            // 关闭文件前等待下载线程结束，失败时抛出第一个错误
+            session.awaitHelpers();
+        } finally {
+            firstRange.close();
+        }
+    }
+
+    private static Matcher matchContentRange(HttpResponse response) {
+        String contentRange = headerValue(response, "Content-Range");
+        if (contentRange == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+        return matcher.matches() ? matcher : null;
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    @Override
+    public void close() {
+        CommonUtils.destroyExecutors(workers, "rangeDownloadExecutors");
+    }
+
+    /**
+     * 一个待下载的分段，position为下一个要写入的位置，重试时从这里继续
+     */
+    private static class Range {
+        private final long end;
+        private long position;
+        private int attempts;
+
+        Range(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * 一次下载的状态，调用线程和下载线程都从pending中取分段，任一分段失败后其他线程不再取新分段
+     */
+    private class DownloadSession {
+        private final String url;
+        private final String etag;
+        private final long totalLength;
+        private final FileChannel channel;
+        private final Queue<Range> pending = new ConcurrentLinkedQueue<>();
+
+        private volatile IOException failure;
+        // 以下状态由当前对象的锁保护
+        private int activeHelpers;
+        private boolean finished;
+
+        DownloadSession(String url, String etag, long totalLength, FileChannel channel) {
+            this.url = url;
+            this.etag = etag;
+            this.totalLength = totalLength;
+            this.channel = channel;
+        }
+
+        /**
+         * 下载线程执行的部分；调用线程已经结束等待时直接返回，不会再去打开连接
+         */
+        void help() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                activeHelpers++;
+            }
+            try {
+                drain();
+            } catch (IOException e) {
+                // 已记录在failure中，由调用线程抛出
+            } finally {
+                synchronized (this) {
+                    activeHelpers--;
+                    notifyAll();
+                }
+            }
+        }
+
+        void drain() throws IOException {
+            Range range;
+            while (failure == null && (range = pending.poll()) != null) {
+                fetch(range, null);
+            }
+        }
+
+        /**
+         * 等待已开始的下载线程结束，尚未开始的不再执行
+         *
+         * @throws IOException 任一分段失败
+         */
+        void awaitHelpers() throws IOException {
+            boolean interrupted = false;
+            synchronized (this) {
+                finished = true;
+                while (activeHelpers > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // 让下载线程尽快停下，之后再返回，避免它们继续写入已关闭的文件
+                        interrupted = true;
+                        fail(new InterruptedIOException("Interrupted while downloading " + url));
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * 下载一个分段，失败时从已写入的位置重试
+         *
+         * @param response 已打开的响应，为null时在这里请求
+         */
+        void fetch(Range range, CloseableHttpResponse response) throws IOException {
+            while (range.position <= range.end) {
+                try {
+                    if (response == null) {
+                        response = openRange(range);
+                    }
+                    copy(response, range);
+                } catch (ClosedChannelException e) {
+                    // 写入时线程被中断会关闭文件，所有分段都无法再写入，不再重试
+                    fail(e instanceof ClosedByInterruptException
+                            ? new InterruptedIOException("Interrupted while downloading " + url) : e);
+                    throw failure;
+                } catch (IOException | RuntimeException e) {
+                    range.attempts++;
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    if (range.attempts >= MAX_RANGE_ATTEMPTS) {
+                        fail(e instanceof IOException ? (IOException) e : new IOException(e));
+                        throw failure;
+                    }
+                    LOGGER.warn(String.format("Range %d-%d of video[%s] failed, retry[%d/%d].", range.position,
+                            range.end, url, range.attempts, MAX_RANGE_ATTEMPTS - 1), e);
+                } finally {
+                    if (response != null) {
+                        response.close();
+                        response = null;
+                    }
+                }
+            }
+        }
+
+        private CloseableHttpResponse openRange(Range range) throws IOException {
+            HttpGet httpGet = new HttpGet(url);
+            httpGet.setHeader("Range", "bytes=" + range.position + "-" + range.end);
+            CloseableHttpResponse response = sharedHttpClient.getStreamingHttpClient().execute(httpGet);
+            Matcher matcher = matchContentRange(response);
+            String responseEtag = headerValue(response, "ETag");
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT || matcher == null
+                    || Long.parseLong(matcher.group(1)) != range.position
+                    || Long.parseLong(matcher.group(3)) != totalLength
+                    || (etag != null && responseEtag != null && !etag.equals(responseEtag))) {
+                response.close();
+                throw new IOException(String.format("Unexpected response of range %d-%d, status:%d "
+                                + "Content-Range:%s ETag:%s, the video may have been modified.", range.position,
+                        range.end, response.getStatusLine().getStatusCode(),
+                        headerValue(response, "Content-Range"), responseEtag));
+            }
+            return response;
+        }
+
+        private void copy(CloseableHttpResponse response, Range range) throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            InputStream input = response.getEntity().getContent();
+            while (range.position <= range.end) {
+                if (failure != null) {
+                    throw failure;
+                }
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, range.end - range.position + 1));
+                if (read < 0) {
+                    throw new IOException(String.format("Range of video[%s] ended at %d, expected end %d.", url,
+                            range.position, range.end));
+                }
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    range.position += channel.write(byteBuffer, range.position);
+                }
+            }
+        }
+
+        synchronized void fail(IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.huawei.ais.demo.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
+
+/**
+ * 共享连接池的http客户端<p/>
+ * 引擎请求和回调使用同一个连接池，视频下载使用另一个连接池，keep-alive连接和TLS会话在同一个连接池的请求之间复用：
+ * <ul>
+ * <li>连接池按路由和总数限制连接数，空闲超时和超过存活时间的连接由后台线程回收</li>
+ * <li>同一个连接池的https连接使用同一个SSLContext，握手时可以恢复缓存的TLS会话</li>
+ * <li>域名解析结果在内存中缓存，不再每次建连都查询DNS</li>
+ * </ul>
+ * 引擎请求和回调与AisAccess、HttpClientUtils保持一致，信任所有证书；
+ * 视频地址由调用方传入，下载时按JDK默认的证书链和主机名校验，两类连接不能互相复用，因此分开两个连接池<p/>
+ * {@link #getHttpClient()}返回的客户端会把响应体读入内存后立即归还连接，适用于引擎请求和回调这类小报文；
+ * 带有全部帧结果的查询响应通过{@link #executeStreaming(HttpUriRequest)}流式读取；
+ * 视频下载使用{@link #getStreamingHttpClient()}；后两者都由调用方负责关闭响应
+ */
+public class SharedHttpClient implements Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(SharedHttpClient.class);
+
+    // 与JDK默认值一致，这里显式设置，避免被系统属性改小后失去会话复用
+    private static final int TLS_SESSION_CACHE_SIZE = 20480;
+    private static final int TLS_SESSION_TIMEOUT_SECONDS = 86400;
+
+    // 请求上下文中带有此属性时，响应体不读入内存
+    private static final String STREAM_RESPONSE = SharedHttpClient.class.getName() + ".streamResponse";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final PoolingHttpClientConnectionManager streamingConnectionManager;
+    private final IdleConnectionEvictor connectionEvictor;
+    private final IdleConnectionEvictor streamingConnectionEvictor;
+    private final CloseableHttpClient httpClient;
+    private final CloseableHttpClient streamingHttpClient;
+
+    /**
+     * @param maxTotal                 每个连接池的最大连接数
+     * @param maxPerRoute              每个连接池中每个路由（协议+主机+端口）的最大连接数
+     * @param connectionTimeout        连接超时时间，ms
+     * @param connectionRequestTimeout 从连接池获取连接的超时时间，ms
+     * @param socketTimeout            等待响应超时时间，ms
+     * @param idleTimeout              空闲连接的回收时间，ms
+     * @param connectionTtl            连接的最长存活时间，ms，小于等于0时不限制
+     * @param dnsCacheTtl              域名解析结果的缓存时间，ms，小于等于0时不缓存
+     */
+    public SharedHttpClient(int maxTotal, int maxPerRoute, int connectionTimeout, int connectionRequestTimeout,
+                            int socketTimeout, long idleTimeout, long connectionTtl, long dnsCacheTtl) {
+        DnsResolver dnsResolver = dnsCacheTtl > 0 ? new CachingDnsResolver(dnsCacheTtl)
+                : SystemDefaultDnsResolver.INSTANCE;
+        // 与AisAccess、HttpClientUtils保持一致，信任所有证书
+        this.connectionManager = createConnectionManager(
+                new SSLConnectionSocketFactory(trustAllSslContext(), NoopHostnameVerifier.INSTANCE),
+                maxTotal, maxPerRoute, connectionTtl, dnsResolver);
+        this.streamingConnectionManager = createConnectionManager(
+                new SSLConnectionSocketFactory(defaultSslContext(),
+                        SSLConnectionSocketFactory.getDefaultHostnameVerifier()),
+                maxTotal, maxPerRoute, connectionTtl, dnsResolver);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectionTimeout)
+                .setConnectionRequestTimeout(connectionRequestTimeout)
+                .setSocketTimeout(socketTimeout)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig)
+                // 读完响应体后连接立即归还连接池，调用方不关闭响应也不会占用连接
+                .addInterceptorLast((HttpResponseInterceptor) (response, context) -> {
+                    HttpEntity entity = response.getEntity();
+                    if (entity != null && entity.isStreaming() && context.getAttribute(STREAM_RESPONSE) == null) {
+                        response.setEntity(new BufferedHttpEntity(entity));
+                    }
+                })
+                .build();
+        this.streamingHttpClient = HttpClients.custom()
+                .setConnectionManager(streamingConnectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
+        this.connectionEvictor = new IdleConnectionEvictor(connectionManager, idleTimeout, TimeUnit.MILLISECONDS);
+        this.connectionEvictor.start();
+        this.streamingConnectionEvictor = new IdleConnectionEvictor(streamingConnectionManager, idleTimeout,
+                TimeUnit.MILLISECONDS);
+        this.streamingConnectionEvictor.start();
+    }
+
+    /**
+     * @return 响应体已读入内存的客户端，用于引擎请求和回调
+     */
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @return 流式读取响应体的客户端，用于视频下载，调用方必须关闭响应以归还连接
+     */
+    public CloseableHttpClient getStreamingHttpClient() {
+        return streamingHttpClient;
+    }
+
+    /**
+     * 使用引擎请求的连接池发送请求，响应体不读入内存，由调用方直接从连接中读取
+     *
+     * @param request 请求
+     * @return 响应，调用方读完响应体后必须关闭以归还连接
+     * @throws IOException 请求失败
+     */
+    public CloseableHttpResponse executeStreaming(HttpUriRequest request) throws IOException {
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(STREAM_RESPONSE, Boolean.TRUE);
+        return httpClient.execute(request, context);
+    }
+
+    /**
+     * 发送不签名的POST请求，用于回调等非AIS服务的地址
+     *
+     * @param url     完整的请求地址
+     * @param headers 请求头
+     * @param entity  请求体
+     * @return 响应，响应体已读入内存
+     * @throws IOException 请求失败
+     */
+    public HttpResponse post(String url, Header[] headers, HttpEntity entity) throws IOException {
+        HttpPost httpPost = new HttpPost(url);
+        httpPost.setHeaders(headers);
+        httpPost.setEntity(entity);
+        return httpClient.execute(httpPost);
+    }
+
+    /**
+     * @return 两个连接池合计的统计信息
+     */
+    public PoolStats getPoolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+        PoolStats streamingStats = streamingConnectionManager.getTotalStats();
+        return new PoolStats(stats.getLeased() + streamingStats.getLeased(),
+                stats.getPending() + streamingStats.getPending(),
+                stats.getAvailable() + streamingStats.getAvailable(),
+                stats.getMax() + streamingStats.getMax());
+    }
+
+    @Override
+    public void close() {
+        connectionEvictor.shutdown();
+        streamingConnectionEvictor.shutdown();
+        try {
+            httpClient.close();
+            streamingHttpClient.close();
+        } catch (IOException e) {
+            LOGGER.error("Close shared http client failed.", e);
+        }
+        connectionManager.shutdown();
+        streamingConnectionManager.shutdown();
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager(
+            SSLConnectionSocketFactory sslSocketFactory, int maxTotal, int maxPerRoute, long connectionTtl,
+            DnsResolver dnsResolver) {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(socketFactoryRegistry,
+                null, null, dnsResolver, connectionTtl, TimeUnit.MILLISECONDS);
+        manager.setMaxTotal(maxTotal);
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+        // 服务端可能已经关闭了空闲较久的连接，复用前先检查
+        manager.setValidateAfterInactivity(2000);
+        return manager;
+    }
+
+    private static SSLContext trustAllSslContext() {
+        try {
+            return withSessionCache(new SSLContextBuilder().loadTrustMaterial(null, (chain, authType) -> true)
+                    .build());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 使用JDK默认信任库的SSLContext
+     */
+    private static SSLContext defaultSslContext() {
+        return withSessionCache(SSLContexts.createDefault());
+    }
+
+    private static SSLContext withSessionCache(SSLContext sslContext) {
+        sslContext.getClientSessionContext().setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+        sslContext.getClientSessionContext().setSessionTimeout(TLS_SESSION_TIMEOUT_SECONDS);
+        return sslContext;
+    }
+
+    /**
+     * 在内存中缓存域名解析结果，过期后重新解析；解析失败时不缓存
+     */
+    private static class CachingDnsResolver implements DnsResolver {
+
+        private final long ttlInMillis;
+        private final ConcurrentHashMap<String, CachedAddresses> cache = new ConcurrentHashMap<>();
+
+        CachingDnsResolver(long ttlInMillis) {
+            this.ttlInMillis = ttlInMillis;
+        }
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            long now = System.currentTimeMillis();
+            CachedAddresses cached = cache.get(host);
+            if (cached != null && cached.expireTime > now) {
+                return cached.addresses.clone();
+            }
+            InetAddress[] addresses = SystemDefaultDnsResolver.INSTANCE.resolve(host);
+            cache.put(host, new CachedAddresses(addresses, now + ttlInMillis));
+            return addresses.clone();
+        }
+    }
+
+    private static class CachedAddresses {
+        private final InetAddress[] addresses;
+        private final long expireTime;
+
+        CachedAddresses(InetAddress[] addresses, long expireTime) {
+            this.addresses = addresses;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.huawei.ais.demo.moderation;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -64,4 +68,36 @@ public class CommonUtils {
             }
         };
     }
+
+    /**
+     * 包装执行CompletableFuture后续处理的线程池，线程池已满或已关闭时在当前线程执行<br/>
+     * CompletableFuture的*Async方法提交后续处理被拒绝时不会再执行该处理，依赖它的future也不会完成
+     *
+     * @param executor 执行后续处理的线程池
+     * @return 不会拒绝任务的Executor
+     */
+    public static Executor callerRunsOnRejection(Executor executor) {
+        return command -> {
+            try {
+                executor.execute(command);
+            } catch (RejectedExecutionException e) {
+                command.run();
+            }
+        };
+    }
+
+    /**
+     * 取出CompletableFuture异常链中被CompletionException/ExecutionException包装的原始异常
+     *
+     * @param throwable future返回的异常
+     * @return 原始异常
+     */
+    public static Throwable unwrapCompletionException(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
 }
@@ -12,15 +12,38 @@ public class Config {
     private String sk;
 
     private String obsBucketName;
+    private String obsEndpoint;
 
     private String moderationRegion;
     private String moderationEndpoint;
     private int moderationFormatType;
     private int queryInterval;
+    private int queryJitterPercent;
+    private boolean queryAdaptiveEnabled;
+    private int queryIntervalMin;
+    private int queryIntervalMax;
+    private int queryPoolSize;
     private int connectionTimeout;
     private int connectionRequestTimeout;
     private int socketTimeout;
 
+    private int httpPoolMaxTotal;
+    private int httpPoolMaxPerRoute;
+    private int httpPoolIdleTimeout;
+    private int httpPoolConnectionTtl;
+    private int httpDnsCacheTtl;
+    private boolean asyncTransportEnabled;
+    private int asyncIoThreads;
+    private int asyncMaxConnections;
+    private boolean coalesceEnabled;
+    private int admissionMaxJobs;
+    private int admissionQueueSize;
+    private String admissionMode;
+    private int admissionTimeout;
+    private boolean journalEnabled;
+    private String journalDir;
+    private int journalSegmentSizeInMB;
+
     private int submitPoolCoreSize;
     private int submitPoolMaxSize;
     private int submitPoolKeepAliveTime;
@@ -31,8 +54,47 @@ public class Config {
     private int callbackPoolKeepAliveTime;
     private int callbackPoolQueueSize;
 
+    private boolean virtualThreadsEnabled;
+    private int submitVirtualConcurrency;
+    private int callbackVirtualConcurrency;
+
     private int retryCallbackTimes;
     private int retryCallbackInterval;
+    private int retryCallbackIntervalMax;
+    private int retryCallbackJitterPercent;
+
+    private boolean callbackBatchEnabled;
+    private int callbackBatchMaxSize;
+    private long callbackBatchWindow;
+    private boolean callbackPassthroughEnabled;
+    private String callbackTimelineMode;
+
+    private boolean metricsJmxEnabled;
+    private int metricsPrometheusPort;
+    private String metricsPrometheusHost;
+
+    private boolean streamTransferEnabled;
+    private int streamPartSizeInMB;
+    private int streamBufferCount;
+    private int obsUploadThreads;
+    private int obsOrphanUploadMaxAgeHours;
+    private boolean obsUploadCheckpointEnabled;
+    private String spoolDir;
+    private int spoolQuotaInMB;
+    private int spoolWaitTimeout;
+    private int downloadConnections;
+    private int downloadRangeSizeInMB;
+    private int downloadThreads;
+
+    private boolean dedupEnabled;
+    private String dedupIndexFile;
+    private int dedupMaxEntries;
+    private int dedupTtlHours;
+
+    private boolean sourceCacheEnabled;
+    private String sourceCacheIndexFile;
+    private int sourceCacheMaxEntries;
+    private int sourceCacheTtlHours;
 
     private Config() {
         init("config.properties");
@@ -49,13 +111,36 @@ public class Config {
             setAk(propertiesConfig.getString("user.ak"));
             setSk(propertiesConfig.getString("user.sk"));
             setObsBucketName(propertiesConfig.getString("service.obs.bucket.name"));
+            setObsEndpoint(propertiesConfig.getString("service.obs.endpoint", ""));
 
             setModerationRegion(propertiesConfig.getString("service.moderation.region", "cn-north-1"));
             setModerationEndpoint(propertiesConfig.getString("service.moderation.endpint", "https://moderation.cn-north-1.myhuaweicloud.com"));
             setQueryInterval(propertiesConfig.getInt("service.moderation.query.interval", 30000));
+            setQueryJitterPercent(propertiesConfig.getInt("service.moderation.query.jitter.percent", 20));
+            setQueryAdaptiveEnabled(propertiesConfig.getBoolean("service.moderation.query.adaptive.enabled", true));
+            setQueryIntervalMin(propertiesConfig.getInt("service.moderation.query.interval.min", 2000));
+            setQueryIntervalMax(propertiesConfig.getInt("service.moderation.query.interval.max", 120000));
+            setQueryPoolSize(propertiesConfig.getInt("query.pool.size", 2 * availableProcessors));
             setConnectionTimeout(propertiesConfig.getInt("service.moderation.conn.timeout", 5000));
             setConnectionRequestTimeout(propertiesConfig.getInt("service.moderation.conn.request.timeout", 1000));
             setSocketTimeout(propertiesConfig.getInt("service.moderation.socket.timeout", 20000));
+            setHttpPoolMaxTotal(propertiesConfig.getInt("http.pool.max.total", 200));
+            setHttpPoolMaxPerRoute(propertiesConfig.getInt("http.pool.max.per.route", 50));
+            setHttpPoolIdleTimeout(propertiesConfig.getInt("http.pool.idle.timeout", 60));
+            setHttpPoolConnectionTtl(propertiesConfig.getInt("http.pool.connection.ttl", 300));
+            setHttpDnsCacheTtl(propertiesConfig.getInt("http.dns.cache.ttl", 60));
+            setAsyncTransportEnabled(propertiesConfig.getBoolean("service.moderation.async.enabled", false));
+            setAsyncIoThreads(propertiesConfig.getInt("service.moderation.async.io.threads",
+                    Math.min(4, availableProcessors)));
+            setAsyncMaxConnections(propertiesConfig.getInt("service.moderation.async.max.connections", 200));
+            setCoalesceEnabled(propertiesConfig.getBoolean("service.moderation.coalesce.enabled", true));
+            setAdmissionMaxJobs(propertiesConfig.getInt("service.moderation.admission.max.jobs", 1000));
+            setAdmissionQueueSize(propertiesConfig.getInt("service.moderation.admission.queue.size", 1000));
+            setAdmissionMode(propertiesConfig.getString("service.moderation.admission.mode", "block"));
+            setAdmissionTimeout(propertiesConfig.getInt("service.moderation.admission.timeout", 30000));
+            setJournalEnabled(propertiesConfig.getBoolean("service.moderation.journal.enabled", false));
+            setJournalDir(propertiesConfig.getString("service.moderation.journal.dir", "data/journal"));
+            setJournalSegmentSizeInMB(propertiesConfig.getInt("service.moderation.journal.segment.size.mb", 16));
 
             setSubmitPoolCoreSize(propertiesConfig.getInt("submit.pool.core.size", availableProcessors));
             setSubmitPoolMaxSize(propertiesConfig.getInt("submit.pool.max.size", 4 * availableProcessors));
@@ -67,8 +152,47 @@ public class Config {
             setCallbackPoolKeepAliveTime(propertiesConfig.getInt("callback.pool.keepalive.seconds", 60));
             setCallbackPoolQueueSize(propertiesConfig.getInt("callback.pool.queue.size", 1000));
 
+            setVirtualThreadsEnabled(propertiesConfig.getBoolean("execution.virtual.threads.enabled", false));
+            setSubmitVirtualConcurrency(propertiesConfig.getInt("submit.virtual.concurrency", 1000));
+            setCallbackVirtualConcurrency(propertiesConfig.getInt("callback.virtual.concurrency", 2000));
+
             setRetryCallbackTimes(propertiesConfig.getInt("callback.retry.times", 0));
             setRetryCallbackInterval(propertiesConfig.getInt("callback.retry.interval", 30));
+            setRetryCallbackIntervalMax(propertiesConfig.getInt("callback.retry.interval.max", 3600));
+            setRetryCallbackJitterPercent(propertiesConfig.getInt("callback.retry.jitter.percent", 20));
+            setCallbackBatchEnabled(propertiesConfig.getBoolean("callback.batch.enabled", false));
+            setCallbackBatchMaxSize(propertiesConfig.getInt("callback.batch.max.size", 100));
+            setCallbackBatchWindow(propertiesConfig.getLong("callback.batch.window.ms", 200));
+            setCallbackPassthroughEnabled(propertiesConfig.getBoolean("callback.passthrough.enabled", false));
+            setCallbackTimelineMode(propertiesConfig.getString("callback.timeline.mode", "none"));
+
+            setMetricsJmxEnabled(propertiesConfig.getBoolean("metrics.jmx.enabled", true));
+            setMetricsPrometheusPort(propertiesConfig.getInt("metrics.prometheus.port", 0));
+            setMetricsPrometheusHost(propertiesConfig.getString("metrics.prometheus.host", "127.0.0.1"));
+
+            setStreamTransferEnabled(propertiesConfig.getBoolean("video.transfer.stream.enabled", false));
+            setStreamPartSizeInMB(propertiesConfig.getInt("video.transfer.stream.part.size.mb", 5));
+            setStreamBufferCount(propertiesConfig.getInt("video.transfer.stream.buffer.count", 16));
+            setObsUploadThreads(propertiesConfig.getInt("service.obs.upload.threads", Math.max(5, availableProcessors)));
+            setObsOrphanUploadMaxAgeHours(propertiesConfig.getInt("service.obs.orphan.upload.max.age.hours", 24));
+            setObsUploadCheckpointEnabled(propertiesConfig.getBoolean("service.obs.upload.checkpoint.enabled", true));
+            setSpoolDir(propertiesConfig.getString("video.spool.dir", "data/spool"));
+            setSpoolQuotaInMB(propertiesConfig.getInt("video.spool.quota.mb", 10240));
+            setSpoolWaitTimeout(propertiesConfig.getInt("video.spool.wait.timeout", 600));
+            setDownloadConnections(propertiesConfig.getInt("video.download.connections", 4));
+            setDownloadRangeSizeInMB(propertiesConfig.getInt("video.download.range.size.mb", 8));
+            setDownloadThreads(propertiesConfig.getInt("video.download.threads", 16));
+
+            setDedupEnabled(propertiesConfig.getBoolean("video.dedup.enabled", false));
+            setDedupIndexFile(propertiesConfig.getString("video.dedup.index.file", "data/dedup-index.json"));
+            setDedupMaxEntries(propertiesConfig.getInt("video.dedup.max.entries", 10000));
+            setDedupTtlHours(propertiesConfig.getInt("video.dedup.ttl.hours", 72));
+
+            setSourceCacheEnabled(propertiesConfig.getBoolean("video.source.cache.enabled", false));
+            setSourceCacheIndexFile(propertiesConfig.getString("video.source.cache.index.file",
+                    "data/source-cache-index.json"));
+            setSourceCacheMaxEntries(propertiesConfig.getInt("video.source.cache.max.entries", 10000));
+            setSourceCacheTtlHours(propertiesConfig.getInt("video.source.cache.ttl.hours", 168));
 
         } catch (ConfigurationException e) {
             throw new RuntimeException("config.properties not found.", e);
@@ -101,6 +225,14 @@ public class Config {
         this.obsBucketName = obsBucketName;
     }
 
+    public String getObsEndpoint() {
+        return obsEndpoint;
+    }
+
+    private void setObsEndpoint(String obsEndpoint) {
+        this.obsEndpoint = obsEndpoint;
+    }
+
     public String getModerationRegion() {
         return moderationRegion;
     }
@@ -133,6 +265,46 @@ public class Config {
         this.queryInterval = queryInterval;
     }
 
+    public int getQueryJitterPercent() {
+        return queryJitterPercent;
+    }
+
+    private void setQueryJitterPercent(int queryJitterPercent) {
+        this.queryJitterPercent = queryJitterPercent;
+    }
+
+    public boolean isQueryAdaptiveEnabled() {
+        return queryAdaptiveEnabled;
+    }
+
+    private void setQueryAdaptiveEnabled(boolean queryAdaptiveEnabled) {
+        this.queryAdaptiveEnabled = queryAdaptiveEnabled;
+    }
+
+    public int getQueryIntervalMin() {
+        return queryIntervalMin;
+    }
+
+    private void setQueryIntervalMin(int queryIntervalMin) {
+        this.queryIntervalMin = queryIntervalMin;
+    }
+
+    public int getQueryIntervalMax() {
+        return queryIntervalMax;
+    }
+
+    private void setQueryIntervalMax(int queryIntervalMax) {
+        this.queryIntervalMax = queryIntervalMax;
+    }
+
+    public int getQueryPoolSize() {
+        return queryPoolSize;
+    }
+
+    private void setQueryPoolSize(int queryPoolSize) {
+        this.queryPoolSize = queryPoolSize;
+    }
+
     public int getConnectionTimeout() {
         return connectionTimeout;
     }
@@ -157,6 +329,134 @@ public class Config {
         this.socketTimeout = socketTimeout;
     }
 
+    public int getHttpPoolMaxTotal() {
+        return httpPoolMaxTotal;
+    }
+
+    private void setHttpPoolMaxTotal(int httpPoolMaxTotal) {
+        this.httpPoolMaxTotal = httpPoolMaxTotal;
+    }
+
+    public int getHttpPoolMaxPerRoute() {
+        return httpPoolMaxPerRoute;
+    }
+
+    private void setHttpPoolMaxPerRoute(int httpPoolMaxPerRoute) {
+        this.httpPoolMaxPerRoute = httpPoolMaxPerRoute;
+    }
+
+    public int getHttpPoolIdleTimeout() {
+        return httpPoolIdleTimeout;
+    }
+
+    private void setHttpPoolIdleTimeout(int httpPoolIdleTimeout) {
+        this.httpPoolIdleTimeout = httpPoolIdleTimeout;
+    }
+
+    public int getHttpPoolConnectionTtl() {
+        return httpPoolConnectionTtl;
+    }
+
+    private void setHttpPoolConnectionTtl(int httpPoolConnectionTtl) {
+        this.httpPoolConnectionTtl = httpPoolConnectionTtl;
+    }
+
+    public int getHttpDnsCacheTtl() {
+        return httpDnsCacheTtl;
+    }
+
+    private void setHttpDnsCacheTtl(int httpDnsCacheTtl) {
+        this.httpDnsCacheTtl = httpDnsCacheTtl;
+    }
+
+    public boolean isAsyncTransportEnabled() {
+        return asyncTransportEnabled;
+    }
+
+    private void setAsyncTransportEnabled(boolean asyncTransportEnabled) {
+        this.asyncTransportEnabled = asyncTransportEnabled;
+    }
+
+    public int getAsyncIoThreads() {
+        return asyncIoThreads;
+    }
+
+    private void setAsyncIoThreads(int asyncIoThreads) {
+        this.asyncIoThreads = asyncIoThreads;
+    }
+
+    public int getAsyncMaxConnections() {
+        return asyncMaxConnections;
+    }
+
+    private void setAsyncMaxConnections(int asyncMaxConnections) {
+        this.asyncMaxConnections = asyncMaxConnections;
+    }
+
+    public boolean isCoalesceEnabled() {
+        return coalesceEnabled;
+    }
+
+    private void setCoalesceEnabled(boolean coalesceEnabled) {
+        this.coalesceEnabled = coalesceEnabled;
+    }
+
+    public int getAdmissionMaxJobs() {
+        return admissionMaxJobs;
+    }
+
+    private void setAdmissionMaxJobs(int admissionMaxJobs) {
+        this.admissionMaxJobs = admissionMaxJobs;
+    }
+
+    public int getAdmissionQueueSize() {
+        return admissionQueueSize;
+    }
+
+    private void setAdmissionQueueSize(int admissionQueueSize) {
+        this.admissionQueueSize = admissionQueueSize;
+    }
+
+    public String getAdmissionMode() {
+        return admissionMode;
+    }
+
+    private void setAdmissionMode(String admissionMode) {
+        this.admissionMode = admissionMode;
+    }
+
+    public int getAdmissionTimeout() {
+        return admissionTimeout;
+    }
+
+    private void setAdmissionTimeout(int admissionTimeout) {
+        this.admissionTimeout = admissionTimeout;
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    private void setJournalEnabled(boolean journalEnabled) {
+        this.journalEnabled = journalEnabled;
+    }
+
+    public String getJournalDir() {
+        return journalDir;
+    }
+
+    private void setJournalDir(String journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    public int getJournalSegmentSizeInMB() {
+        return journalSegmentSizeInMB;
+    }
+
+    private void setJournalSegmentSizeInMB(int journalSegmentSizeInMB) {
+        this.journalSegmentSizeInMB = journalSegmentSizeInMB;
+    }
+
     public int getSubmitPoolCoreSize() {
         return submitPoolCoreSize;
     }
@@ -221,6 +521,30 @@ public class Config {
         this.callbackPoolQueueSize = callbackPoolQueueSize;
     }
 
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    private void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    public int getSubmitVirtualConcurrency() {
+        return submitVirtualConcurrency;
+    }
+
+    private void setSubmitVirtualConcurrency(int submitVirtualConcurrency) {
+        this.submitVirtualConcurrency = submitVirtualConcurrency;
+    }
+
+    public int getCallbackVirtualConcurrency() {
+        return callbackVirtualConcurrency;
+    }
+
+    private void setCallbackVirtualConcurrency(int callbackVirtualConcurrency) {
+        this.callbackVirtualConcurrency = callbackVirtualConcurrency;
+    }
+
     public int getRetryCallbackTimes() {
         return retryCallbackTimes;
     }
@@ -237,6 +561,246 @@ public class Config {
         this.retryCallbackInterval = retryCallbackInterval;
     }
 
+    public int getRetryCallbackIntervalMax() {
+        return retryCallbackIntervalMax;
+    }
+
+    private void setRetryCallbackIntervalMax(int retryCallbackIntervalMax) {
+        this.retryCallbackIntervalMax = retryCallbackIntervalMax;
+    }
+
+    public int getRetryCallbackJitterPercent() {
+        return retryCallbackJitterPercent;
+    }
+
+    private void setRetryCallbackJitterPercent(int retryCallbackJitterPercent) {
+        this.retryCallbackJitterPercent = retryCallbackJitterPercent;
+    }
+
+    public boolean isCallbackBatchEnabled() {
+        return callbackBatchEnabled;
+    }
+
+    private void setCallbackBatchEnabled(boolean callbackBatchEnabled) {
+        this.callbackBatchEnabled = callbackBatchEnabled;
+    }
+
+    public int getCallbackBatchMaxSize() {
+        return callbackBatchMaxSize;
+    }
+
+    private void setCallbackBatchMaxSize(int callbackBatchMaxSize) {
+        this.callbackBatchMaxSize = callbackBatchMaxSize;
+    }
+
+    public long getCallbackBatchWindow() {
+        return callbackBatchWindow;
+    }
+
+    private void setCallbackBatchWindow(long callbackBatchWindow) {
+        this.callbackBatchWindow = callbackBatchWindow;
+    }
+
+    public boolean isCallbackPassthroughEnabled() {
+        return callbackPassthroughEnabled;
+    }
+
+    private void setCallbackPassthroughEnabled(boolean callbackPassthroughEnabled) {
+        this.callbackPassthroughEnabled = callbackPassthroughEnabled;
+    }
+
+    public String getCallbackTimelineMode() {
+        return callbackTimelineMode;
+    }
+
+    private void setCallbackTimelineMode(String callbackTimelineMode) {
+        this.callbackTimelineMode = callbackTimelineMode;
+    }
+
+    public boolean isMetricsJmxEnabled() {
+        return metricsJmxEnabled;
+    }
+
+    private void setMetricsJmxEnabled(boolean metricsJmxEnabled) {
+        this.metricsJmxEnabled = metricsJmxEnabled;
+    }
+
+    public int getMetricsPrometheusPort() {
+        return metricsPrometheusPort;
+    }
+
+    private void setMetricsPrometheusPort(int metricsPrometheusPort) {
+        this.metricsPrometheusPort = metricsPrometheusPort;
+    }
+
+    public String getMetricsPrometheusHost() {
+        return metricsPrometheusHost;
+    }
+
+    private void setMetricsPrometheusHost(String metricsPrometheusHost) {
+        this.metricsPrometheusHost = metricsPrometheusHost;
+    }
+
+    public boolean isStreamTransferEnabled() {
+        return streamTransferEnabled;
+    }
+
+    private void setStreamTransferEnabled(boolean streamTransferEnabled) {
+        this.streamTransferEnabled = streamTransferEnabled;
+    }
+
+    public int getStreamPartSizeInMB() {
+        return streamPartSizeInMB;
+    }
+
+    private void setStreamPartSizeInMB(int streamPartSizeInMB) {
+        this.streamPartSizeInMB = streamPartSizeInMB;
+    }
+
+    public int getStreamBufferCount() {
+        return streamBufferCount;
+    }
+
+    private void setStreamBufferCount(int streamBufferCount) {
+        this.streamBufferCount = streamBufferCount;
+    }
+
+    public int getObsUploadThreads() {
+        return obsUploadThreads;
+    }
+
+    private void setObsUploadThreads(int obsUploadThreads) {
+        this.obsUploadThreads = obsUploadThreads;
+    }
+
+    public int getObsOrphanUploadMaxAgeHours() {
+        return obsOrphanUploadMaxAgeHours;
+    }
+
+    private void setObsOrphanUploadMaxAgeHours(int obsOrphanUploadMaxAgeHours) {
+        this.obsOrphanUploadMaxAgeHours = obsOrphanUploadMaxAgeHours;
+    }
+
+    public boolean isObsUploadCheckpointEnabled() {
+        return obsUploadCheckpointEnabled;
+    }
+
+    private void setObsUploadCheckpointEnabled(boolean obsUploadCheckpointEnabled) {
+        this.obsUploadCheckpointEnabled = obsUploadCheckpointEnabled;
+    }
+
+    public String getSpoolDir() {
+        return spoolDir;
+    }
+
+    private void setSpoolDir(String spoolDir) {
+        this.spoolDir = spoolDir;
+    }
+
+    public int getSpoolQuotaInMB() {
+        return spoolQuotaInMB;
+    }
+
+    private void setSpoolQuotaInMB(int spoolQuotaInMB) {
+        this.spoolQuotaInMB = spoolQuotaInMB;
+    }
+
+    public int getSpoolWaitTimeout() {
+        return spoolWaitTimeout;
+    }
+
+    private void setSpoolWaitTimeout(int spoolWaitTimeout) {
+        this.spoolWaitTimeout = spoolWaitTimeout;
+    }
+
+    public int getDownloadConnections() {
+        return downloadConnections;
+    }
+
+    private void setDownloadConnections(int downloadConnections) {
+        this.downloadConnections = downloadConnections;
+    }
+
+    public int getDownloadRangeSizeInMB() {
+        return downloadRangeSizeInMB;
+    }
+
+    private void setDownloadRangeSizeInMB(int downloadRangeSizeInMB) {
+        this.downloadRangeSizeInMB = downloadRangeSizeInMB;
+    }
+
+    public int getDownloadThreads() {
+        return downloadThreads;
+    }
+
+    private void setDownloadThreads(int downloadThreads) {
+        this.downloadThreads = downloadThreads;
+    }
+
+    public boolean isDedupEnabled() {
+        return dedupEnabled;
+    }
+
+    private void setDedupEnabled(boolean dedupEnabled) {
+        this.dedupEnabled = dedupEnabled;
+    }
+
+    public String getDedupIndexFile() {
+        return dedupIndexFile;
+    }
+
+    private void setDedupIndexFile(String dedupIndexFile) {
+        this.dedupIndexFile = dedupIndexFile;
+    }
+
+    public int getDedupMaxEntries() {
+        return dedupMaxEntries;
+    }
+
+    private void setDedupMaxEntries(int dedupMaxEntries) {
+        this.dedupMaxEntries = dedupMaxEntries;
+    }
+
+    public int getDedupTtlHours() {
+        return dedupTtlHours;
+    }
+
+    private void setDedupTtlHours(int dedupTtlHours) {
+        this.dedupTtlHours = dedupTtlHours;
+    }
+
+    public boolean isSourceCacheEnabled() {
+        return sourceCacheEnabled;
+    }
+
+    private void setSourceCacheEnabled(boolean sourceCacheEnabled) {
+        this.sourceCacheEnabled = sourceCacheEnabled;
+    }
+
+    public String getSourceCacheIndexFile() {
+        return sourceCacheIndexFile;
+    }
+
+    private void setSourceCacheIndexFile(String sourceCacheIndexFile) {
+        this.sourceCacheIndexFile = sourceCacheIndexFile;
+    }
+
+    public int getSourceCacheMaxEntries() {
+        return sourceCacheMaxEntries;
+    }
+
+    private void setSourceCacheMaxEntries(int sourceCacheMaxEntries) {
+        this.sourceCacheMaxEntries = sourceCacheMaxEntries;
+    }
+
+    public int getSourceCacheTtlHours() {
+        return sourceCacheTtlHours;
+    }
+
+    private void setSourceCacheTtlHours(int sourceCacheTtlHours) {
+        this.sourceCacheTtlHours = sourceCacheTtlHours;
+    }
+
     public static Config getInstance() {
         return SingletonConstructor.config;
     }
@@ -0,0 +1,208 @@
+package com.huawei.ais.demo.moderation;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 虚拟线程（JDK 21+）支持<p/>
+ * 源码级别为1.8，虚拟线程相关API均通过反射调用，运行在不支持虚拟线程的JVM上时{@link #isAvailable()}返回false，
+ * 调用方应回退到平台线程池
+ */
+public class VirtualThreads {
+
+    private static final Log LOGGER = LogFactory.getLog(VirtualThreads.class);
+
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Class<?> BUILDER_CLASS = findClass("java.lang.Thread$Builder");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(
+            java.util.concurrent.Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private static final boolean AVAILABLE = probe();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return 当前JVM是否支持虚拟线程
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * 创建虚拟线程工厂
+     *
+     * @param namePrefix 线程名称前缀，线程名称为前缀加序号
+     * @return 线程工厂
+     * @throws UnsupportedOperationException 当前JVM不支持虚拟线程
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        if (!AVAILABLE) {
+            throw new UnsupportedOperationException("virtual threads are not available in this JVM");
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = BUILDER_CLASS.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) BUILDER_CLASS.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("create virtual thread factory failed", e);
+        }
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的执行器，并发数由信号量而不是线程数限制<br/>
+     * 运行中和等待许可的任务总数超过 maxConcurrency + maxWaiting 时拒绝新任务，与平台线程池的AbortPolicy行为一致
+     *
+     * @param namePrefix     线程名称前缀
+     * @param maxConcurrency 同时运行的任务数上限
+     * @param maxWaiting     等待运行的任务数上限
+     * @return 执行器
+     * @throws UnsupportedOperationException 当前JVM不支持虚拟线程
+     */
+    public static ExecutorService newBoundedExecutor(String namePrefix, int maxConcurrency, int maxWaiting) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        ExecutorService delegate;
+        try {
+            delegate = (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("create virtual thread executor failed", e);
+        }
+        return new BoundedExecutor(delegate, maxConcurrency, maxWaiting);
+    }
+
+    /**
+     * @param executor {@link #newBoundedExecutor(String, int, int)}创建的执行器
+     * @return 正在运行的任务数，不是该方法创建的执行器时返回0
+     */
+    public static int getActiveCount(ExecutorService executor) {
+        return executor instanceof BoundedExecutor ? ((BoundedExecutor) executor).getActiveCount() : 0;
+    }
+
+    /**
+     * @param executor {@link #newBoundedExecutor(String, int, int)}创建的执行器
+     * @return 等待运行的任务数，不是该方法创建的执行器时返回0
+     */
+    public static int getWaitingCount(ExecutorService executor) {
+        return executor instanceof BoundedExecutor ? ((BoundedExecutor) executor).getWaitingCount() : 0;
+    }
+
+    private static boolean probe() {
+        if (OF_VIRTUAL == null || BUILDER_CLASS == null || NEW_THREAD_PER_TASK_EXECUTOR == null) {
+            return false;
+        }
+        try {
+            // JDK 19/20中虚拟线程为预览特性，未开启预览时调用会抛出异常
+            OF_VIRTUAL.invoke(null);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Virtual threads are not available.", e);
+            return false;
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Class<?> findClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 用信号量限制并发的执行器，许可在虚拟线程中获取，提交方不会阻塞
+     */
+    private static class BoundedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+        private final int maxConcurrency;
+        private final int maxQueued;
+        private final AtomicInteger queued = new AtomicInteger(0);
+
+        BoundedExecutor(ExecutorService delegate, int maxConcurrency, int maxWaiting) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+            this.maxConcurrency = maxConcurrency;
+            this.maxQueued = maxConcurrency + maxWaiting;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                throw new RejectedExecutionException("Too many tasks, limit:" + maxQueued);
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        queued.decrementAndGet();
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                        queued.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                queued.decrementAndGet();
+                throw e;
+            }
+        }
+
+        int getActiveCount() {
+            return maxConcurrency - permits.availablePermits();
+        }
+
+        int getWaitingCount() {
+            return Math.max(0, queued.get() - getActiveCount());
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
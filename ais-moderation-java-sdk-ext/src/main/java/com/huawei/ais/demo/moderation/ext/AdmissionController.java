@@ -0,0 +1,252 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 任务准入控制<p/>
+ * 任务在被接受前先取得准入凭证，凭证同时占用两部分容量：<br/>
+ * - 提交阶段容量：任务提交到引擎（或失败）后归还，不超过submitJobExecutors能容纳的任务数，保证已接受的任务不会被提交线程池拒绝<br/>
+ * - 在途容量：任务结束且所有回调都已执行过一次后归还，限制等待结果和等待回调的任务总数，保证已接受的任务结果不会因回调线程池已满而丢失<p/>
+ * 没有容量时按调用方选择的{@link AdmissionPolicy}阻塞、限时等待或异步排队，所有等待者按到达顺序获得容量；
+ * 过载时表现为接受任务变慢，而不是丢弃已接受的任务
+ */
+public class AdmissionController {
+
+    private static final Log LOGGER = LogFactory.getLog(AdmissionController.class);
+
+    private final int maxInFlightJobs;
+    private final int maxSubmittingJobs;
+    private final int maxQueuedJobs;
+
+    // 以下状态都由当前对象的锁保护
+    private final Deque<CompletableFuture<Ticket>> waiters = new ArrayDeque<>();
+    private int inFlightJobs;
+    private int submittingJobs;
+    private boolean shutdown;
+
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param maxInFlightJobs   在途任务数上限
+     * @param maxSubmittingJobs 提交阶段的任务数上限
+     * @param maxQueuedJobs     异步排队的任务数上限
+     */
+    AdmissionController(int maxInFlightJobs, int maxSubmittingJobs, int maxQueuedJobs) {
+        this.maxInFlightJobs = maxInFlightJobs;
+        this.maxSubmittingJobs = maxSubmittingJobs;
+        this.maxQueuedJobs = maxQueuedJobs;
+    }
+
+    /**
+     * 申请准入凭证
+     *
+     * @param policy 没有容量时的处理方式
+     * @return 取得凭证后完成的future；阻塞和限时等待方式下返回时已完成
+     * @throws RejectedExecutionException 等待超时、等待时被中断、准入队列已满或已关闭
+     */
+    CompletableFuture<Ticket> admit(AdmissionPolicy policy) {
+        CompletableFuture<Ticket> waiter;
+        synchronized (this) {
+            if (shutdown) {
+                throw reject("admission controller has been shut down");
+            }
+            if (waiters.isEmpty() && hasCapacity()) {
+                return CompletableFuture.completedFuture(grant());
+            }
+            if (policy.getMode() == AdmissionPolicy.Mode.ASYNC && waiters.size() >= maxQueuedJobs) {
+                throw reject("admission queue is full, limit:" + maxQueuedJobs);
+            }
+            waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+        }
+
+        switch (policy.getMode()) {
+            case BLOCKING:
+                return await(waiter, Long.MAX_VALUE);
+            case TIMED_WAIT:
+                return await(waiter, policy.getTimeoutNanos());
+            default:
+                return waiter;
+        }
+    }
+
+    /**
+     * @return 在途任务数
+     */
+    public synchronized int getInFlightJobs() {
+        return inFlightJobs;
+    }
+
+    /**
+     * @return 提交阶段的任务数
+     */
+    public synchronized int getSubmittingJobs() {
+        return submittingJobs;
+    }
+
+    /**
+     * @return 等待准入的任务数，包括阻塞等待的调用方和异步排队的任务
+     */
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    /**
+     * @return 已准入的任务总数
+     */
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    /**
+     * @return 被拒绝的任务总数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 关闭后不再准入新任务，排队中的任务以RejectedExecutionException失败
+     */
+    void shutdown() {
+        List<CompletableFuture<Ticket>> dropped;
+        synchronized (this) {
+            shutdown = true;
+            dropped = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        if (!dropped.isEmpty()) {
+            LOGGER.warn(String.format("%d queued jobs are rejected on shutdown.", dropped.size()));
+        }
+        for (CompletableFuture<Ticket> waiter : dropped) {
+            rejectedCount.incrementAndGet();
+            waiter.completeExceptionally(new RejectedExecutionException("admission controller has been shut down"));
+        }
+    }
+
+    private CompletableFuture<Ticket> await(CompletableFuture<Ticket> waiter, long timeoutNanos) {
+        try {
+            return CompletableFuture.completedFuture(timeoutNanos == Long.MAX_VALUE ? waiter.get()
+                    : waiter.get(timeoutNanos, TimeUnit.NANOSECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandon(waiter, "interrupted while waiting for admission");
+        } catch (TimeoutException e) {
+            return abandon(waiter, String.format("no capacity within %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+        } catch (ExecutionException e) {
+            throw (RejectedExecutionException) e.getCause();
+        }
+    }
+
+    /**
+     * 放弃等待；如果放弃前恰好已取得凭证，仍然使用该凭证
+     */
+    private CompletableFuture<Ticket> abandon(CompletableFuture<Ticket> waiter, String reason) {
+        synchronized (this) {
+            if (waiters.remove(waiter)) {
+                throw reject(reason);
+            }
+        }
+        return CompletableFuture.completedFuture(waiter.join());
+    }
+
+    private RejectedExecutionException reject(String reason) {
+        rejectedCount.incrementAndGet();
+        LOGGER.warn("Job rejected, " + reason);
+        return new RejectedExecutionException(reason);
+    }
+
+    private boolean hasCapacity() {
+        return inFlightJobs < maxInFlightJobs && submittingJobs < maxSubmittingJobs;
+    }
+
+    private Ticket grant() {
+        inFlightJobs++;
+        submittingJobs++;
+        admittedCount.incrementAndGet();
+        return new Ticket();
+    }
+
+    private void onSubmitStageLeft(Ticket ticket) {
+        synchronized (this) {
+            if (!ticket.submitting) {
+                return;
+            }
+            ticket.submitting = false;
+            submittingJobs--;
+        }
+        grantWaiters();
+    }
+
+    private void onReleased(Ticket ticket) {
+        synchronized (this) {
+            if (ticket.submitting) {
+                ticket.submitting = false;
+                submittingJobs--;
+            }
+            inFlightJobs--;
+        }
+        grantWaiters();
+    }
+
+    /**
+     * 把空出的容量按到达顺序交给等待者，在锁外完成future，避免在锁内执行等待者的后续处理
+     */
+    private void grantWaiters() {
+        List<CompletableFuture<Ticket>> granted = new ArrayList<>();
+        List<Ticket> tickets = new ArrayList<>();
+        synchronized (this) {
+            while (!waiters.isEmpty() && hasCapacity()) {
+                granted.add(waiters.poll());
+                tickets.add(grant());
+            }
+        }
+        for (int i = 0; i < granted.size(); i++) {
+            if (!granted.get(i).complete(tickets.get(i))) {
+                // 等待者已取消
+                tickets.get(i).release();
+            }
+        }
+    }
+
+    /**
+     * 准入凭证，以引用计数管理：申请者持有一个引用，任务和每个待执行的回调各持有一个引用，
+     * 引用全部释放后归还在途容量
+     */
+    class Ticket {
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private boolean submitting = true;
+
+        void retain() {
+            refs.incrementAndGet();
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                onReleased(this);
+            }
+        }
+
+        /**
+         * 任务已提交到引擎或已失败，归还提交阶段容量，可重复调用
+         */
+        void leaveSubmitStage() {
+            onSubmitStageLeft(this);
+        }
+    }
+}
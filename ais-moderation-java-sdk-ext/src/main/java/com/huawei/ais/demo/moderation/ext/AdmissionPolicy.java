@@ -0,0 +1,70 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提交任务时没有可用容量的处理方式<p/>
+ * - blocking()：阻塞调用线程直到有容量<br/>
+ * - timedWait()：最多等待指定时间，超时后抛出RejectedExecutionException<br/>
+ * - async()：立即返回，任务在准入队列中排队，有容量时再开始执行；准入队列满时抛出RejectedExecutionException
+ */
+public final class AdmissionPolicy {
+
+    enum Mode {
+        BLOCKING, TIMED_WAIT, ASYNC
+    }
+
+    private static final AdmissionPolicy BLOCKING = new AdmissionPolicy(Mode.BLOCKING, 0);
+    private static final AdmissionPolicy ASYNC = new AdmissionPolicy(Mode.ASYNC, 0);
+
+    private final Mode mode;
+    private final long timeoutNanos;
+
+    private AdmissionPolicy(Mode mode, long timeoutNanos) {
+        this.mode = mode;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public static AdmissionPolicy blocking() {
+        return BLOCKING;
+    }
+
+    public static AdmissionPolicy timedWait(long timeout, TimeUnit unit) {
+        return new AdmissionPolicy(Mode.TIMED_WAIT, unit.toNanos(timeout));
+    }
+
+    public static AdmissionPolicy async() {
+        return ASYNC;
+    }
+
+    /**
+     * @param mode          配置中的准入方式：block、timed或async
+     * @param timeoutMillis timed方式的等待时间，ms
+     */
+    static AdmissionPolicy of(String mode, long timeoutMillis) {
+        switch (mode.trim().toLowerCase()) {
+            case "block":
+                return blocking();
+            case "timed":
+                return timedWait(timeoutMillis, TimeUnit.MILLISECONDS);
+            case "async":
+                return async();
+            default:
+                throw new IllegalArgumentException("Unknown admission mode:" + mode);
+        }
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.TIMED_WAIT ? mode + "(" + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms)"
+                : mode.toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.http.AsyncAisAccess;
+
+/**
+ * 非阻塞传输层，请求交给{@link AsyncAisAccess}的I/O reactor发送，在途请求数不受线程数限制<br/>
+ * reactor发送请求体时通过getContent()读取，流式的请求体也会先被完整写入内存，因此回调直接序列化为字节数组，
+ * 只序列化一次并带有Content-Length；响应体同样由reactor完整读入内存后才交给调用方
+ */
+class AsyncModerationTransport implements ModerationTransport {
+
+    private final AsyncAisAccess asyncAisAccess;
+
+    AsyncModerationTransport(AsyncAisAccess asyncAisAccess) {
+        this.asyncAisAccess = asyncAisAccess;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> post(String uri, HttpEntity entity) {
+        return asyncAisAccess.post(uri, entity);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> get(String uri) {
+        return asyncAisAccess.get(uri);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> deliver(String callbackUrl, Header[] headers, Object body) {
+        return asyncAisAccess.post(callbackUrl, headers, HttpJsonDataUtils.objectToHttpEntity(body));
+    }
+
+    @Override
+    public void close() {
+        asyncAisAccess.close();
+    }
+}
@@ -0,0 +1,88 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import com.huawei.ais.common.AuthInfo;
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.http.AisRequestSigner;
+import com.huawei.ais.demo.http.SharedHttpClient;
+import com.huawei.ais.sdk.AisAccess;
+
+/**
+ * 阻塞式传输层，请求在调用线程中同步完成，返回的future已经结束<br/>
+ * 查询响应带有全部帧结果，不经过AisAccess（其客户端会把响应体读入内存），在这里签名后流式读取；
+ * 回调请求体在发送时直接序列化到连接
+ */
+class BlockingModerationTransport implements ModerationTransport {
+
+    private final AisAccess aisAccessClient;
+    private final String endpoint;
+    private final AisRequestSigner signer;
+    private final SharedHttpClient sharedHttpClient;
+
+    /**
+     * @param aisAccessClient  发送引擎请求的客户端
+     * @param authInfo         服务地址及AK/SK信息，用于查询请求的签名
+     * @param sharedHttpClient 发送查询和回调的客户端，与引擎请求共享连接池
+     */
+    BlockingModerationTransport(AisAccess aisAccessClient, AuthInfo authInfo, SharedHttpClient sharedHttpClient) {
+        this.aisAccessClient = aisAccessClient;
+        this.endpoint = authInfo.getEndPoint();
+        this.signer = new AisRequestSigner(authInfo);
+        this.sharedHttpClient = sharedHttpClient;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> post(String uri, HttpEntity entity) {
+        return toFuture(aisAccessClient.post(uri, entity), uri);
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> get(String uri) {
+        HttpGet httpGet = new HttpGet(endpoint + uri);
+        try {
+            signer.sign(httpGet);
+            return toFuture(sharedHttpClient.executeStreaming(httpGet), uri);
+        } catch (IOException e) {
+            CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> deliver(String callbackUrl, Header[] headers, Object body) {
+        try {
+            return toFuture(sharedHttpClient.post(callbackUrl, headers,
+                    HttpJsonDataUtils.objectToStreamingHttpEntity(body)), callbackUrl);
+        } catch (IOException e) {
+            CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    @Override
+    public void close() {
+        aisAccessClient.close();
+    }
+
+    /**
+     * AisAccess在请求异常时只打印异常并返回null，这里转换为失败的future
+     */
+    private static CompletableFuture<HttpResponse> toFuture(HttpResponse response, String target) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        if (response != null) {
+            future.complete(response);
+        } else {
+            future.completeExceptionally(new IOException("No response from " + target));
+        }
+        return future;
+    }
+}
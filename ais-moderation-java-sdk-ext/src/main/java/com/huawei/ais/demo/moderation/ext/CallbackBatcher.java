@@ -0,0 +1,218 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.moderation.CommonUtils;
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
+
+/**
+ * 按回调url合并回调<p/>
+ * 同一回调url的通知在callback.batch.window.ms内或攒够callback.batch.max.size条后，以json数组一次发送，
+ * 窗口期内只有一条通知时也以只含一项的数组发送，接收方只需处理一种格式<br/>
+ * 接收方可以在响应体中返回逐条确认：[{"job_id": "...", "success": true}, ...]，
+ * 未确认或确认失败的通知改为逐条单独回调（失败后按原有机制重试）；响应体不是数组时视为全部确认<br/>
+ * 整批发送失败时，所有通知都改为逐条单独回调
+ */
+class CallbackBatcher {
+
+    private static final Log LOGGER = LogFactory.getLog(CallbackBatcher.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ModerationTransport transport;
+    private final ExecutorService callbackExecutors;
+    // 批量回调响应的后续处理在回调线程池中执行，不占用异步http客户端的I/O线程
+    private final Executor completionExecutor;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final ScheduledExecutorService flushExecutor;
+
+    // 由当前对象的锁保护
+    private final Map<String, List<CallbackTask>> pendingBatches = new HashMap<>();
+
+    /**
+     * @param transport         发送回调的http通道
+     * @param callbackExecutors 发送批量回调和单独回调的线程池
+     * @param maxBatchSize      每批最多包含的通知数
+     * @param windowMillis      等待凑批的最长时间，ms
+     */
+    CallbackBatcher(ModerationTransport transport, ExecutorService callbackExecutors, int maxBatchSize,
+                    long windowMillis) {
+        this.transport = transport;
+        this.callbackExecutors = callbackExecutors;
+        this.completionExecutor = CommonUtils.callerRunsOnRejection(callbackExecutors);
+        this.maxBatchSize = maxBatchSize;
+        this.windowMillis = windowMillis;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-callback-batch-%d"));
+    }
+
+    /**
+     * 加入回调url对应的批次
+     */
+    void add(CallbackTask callbackTask) {
+        String callbackUrl = callbackTask.getCallbackUrl();
+        List<CallbackTask> fullBatch = null;
+        synchronized (this) {
+            List<CallbackTask> batch = pendingBatches.computeIfAbsent(callbackUrl, k -> new ArrayList<>());
+            batch.add(callbackTask);
+            if (batch.size() >= maxBatchSize) {
+                pendingBatches.remove(callbackUrl);
+                fullBatch = batch;
+            } else if (batch.size() == 1) {
+                try {
+                    flushExecutor.schedule(() -> flush(callbackUrl, batch), windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    pendingBatches.remove(callbackUrl);
+                    fullBatch = batch;
+                }
+            }
+        }
+        if (fullBatch != null) {
+            send(callbackUrl, fullBatch);
+        }
+    }
+
+    /**
+     * 立即发送所有未满的批次
+     */
+    void shutdown() {
+        flushExecutor.shutdownNow();
+        Map<String, List<CallbackTask>> remaining;
+        synchronized (this) {
+            remaining = new HashMap<>(pendingBatches);
+            pendingBatches.clear();
+        }
+        remaining.forEach(this::send);
+    }
+
+    private void flush(String callbackUrl, List<CallbackTask> batch) {
+        synchronized (this) {
+            // 已经因为攒满而发送过
+            if (pendingBatches.get(callbackUrl) != batch) {
+                return;
+            }
+            pendingBatches.remove(callbackUrl);
+        }
+        send(callbackUrl, batch);
+    }
+
+    private void send(String callbackUrl, List<CallbackTask> batch) {
+        try {
+            callbackExecutors.execute(() -> deliverBatch(callbackUrl, batch));
+        } catch (RejectedExecutionException e) {
+            LOGGER.error(String.format("Submit batch callback to %s rejected, will try later.", callbackUrl));
+            batch.forEach(CallbackTask::deferCallback);
+        }
+    }
+
+    private void deliverBatch(String callbackUrl, List<CallbackTask> batch) {
+        List<CallbackTask.Notification> notifications = new ArrayList<>(batch.size());
+        for (CallbackTask callbackTask : batch) {
+            notifications.add(callbackTask.toNotification());
+        }
+        Header[] headers = new Header[]{
+                new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString())};
+        long deliverStart = System.nanoTime();
+        try {
+            transport.deliver(callbackUrl, headers, notifications)
+                    .whenCompleteAsync((response, e) -> {
+                        ModerationMetrics.getInstance().recordSince(ModerationMetrics.Stage.CALLBACK, deliverStart);
+                        onBatchResponse(callbackUrl, batch, response, e);
+                    }, completionExecutor);
+        } catch (RuntimeException e) {
+            onBatchResponse(callbackUrl, batch, null, e);
+        }
+    }
+
+    private void onBatchResponse(String callbackUrl, List<CallbackTask> batch, HttpResponse response,
+                                 Throwable error) {
+        if (error != null || !HttpJsonDataUtils.isOKResponded(response)) {
+            LOGGER.error(String.format("Batch callback of %d notifications to %s failed, deliver them one by one.",
+                    batch.size(), callbackUrl), error == null ? null : CommonUtils.unwrapCompletionException(error));
+            batch.forEach(this::deliverSingly);
+            return;
+        }
+        Set<String> failedJobIds = parseFailedJobIds(response, batch);
+        int delivered = 0;
+        for (CallbackTask callbackTask : batch) {
+            if (failedJobIds.contains(callbackTask.getJobId())) {
+                deliverSingly(callbackTask);
+            } else {
+                callbackTask.onBatchDelivered();
+                delivered++;
+            }
+        }
+        LOGGER.info(String.format("Batch callback to %s done, %d/%d acknowledged.", callbackUrl, delivered,
+                batch.size()));
+    }
+
+    /**
+     * @return 接收方未确认或确认失败的jobId，响应体不是逐条确认的数组时返回空集合
+     */
+    private Set<String> parseFailedJobIds(HttpResponse response, List<CallbackTask> batch) {
+        Set<String> failedJobIds = new HashSet<>();
+        JsonNode acks;
+        try {
+            String body = response.getEntity() == null ? null : EntityUtils.toString(response.getEntity(), "UTF-8");
+            if (body == null || body.trim().isEmpty()) {
+                return failedJobIds;
+            }
+            acks = objectMapper.readTree(body);
+        } catch (IOException e) {
+            LOGGER.warn("Batch callback response is not json, treat all notifications as acknowledged.");
+            return failedJobIds;
+        }
+        if (!acks.isArray()) {
+            return failedJobIds;
+        }
+        Set<String> ackedJobIds = new HashSet<>();
+        for (JsonNode ack : acks) {
+            if (ack.path("success").asBoolean(false)) {
+                ackedJobIds.add(ack.path("job_id").asText());
+            }
+        }
+        for (CallbackTask callbackTask : batch) {
+            if (!ackedJobIds.contains(callbackTask.getJobId())) {
+                failedJobIds.add(callbackTask.getJobId());
+            }
+        }
+        return failedJobIds;
+    }
+
+    /**
+     * 改为单独回调，通知以单个对象发送，失败后按原有机制重试
+     */
+    private void deliverSingly(CallbackTask callbackTask) {
+        try {
+            callbackExecutors.execute(callbackTask);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error(String.format("Submit callback task for job[%s] rejected, will try later.",
+                    callbackTask.getJobId()));
+            CallbackTask.deferCallback(callbackTask);
+        }
+    }
+}
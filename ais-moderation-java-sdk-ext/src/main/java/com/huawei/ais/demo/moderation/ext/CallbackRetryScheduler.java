@@ -0,0 +1,146 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.huawei.ais.demo.moderation.Config;
+
+/**
+ * 失败回调的重试调度器<p/>
+ * 待重试的回调放在延迟队列中，由单个分发线程按到期时间取出交给callbackExecutors执行，入队出队都是O(log n)，
+ * 与待重试的回调数量无关<br/>
+ * 第n次重试前等待 callback.retry.interval * 2^(n-1) 秒，不超过callback.retry.interval.max，
+ * 再加上随机抖动，消费方恢复时大量积压的回调不会同时重试
+ */
+class CallbackRetryScheduler {
+
+    private static final Log LOGGER = LogFactory.getLog(CallbackRetryScheduler.class);
+
+    private static final Config CONFIG = Config.getInstance();
+
+    // 回调线程池已满时，稍后再次提交，不计入重试次数
+    private static final long REJECTED_DELAY_MILLIS = 1000;
+
+    private final DelayQueue<RetryEntry> retryQueue = new DelayQueue<>();
+    private final ExecutorService dispatcherExecutor;
+    private final ExecutorService callbackExecutors;
+
+    /**
+     * @param callbackExecutors 执行回调任务的线程池
+     * @param threadFactory     分发线程的线程工厂
+     */
+    CallbackRetryScheduler(ExecutorService callbackExecutors, ThreadFactory threadFactory) {
+        this.callbackExecutors = callbackExecutors;
+        this.dispatcherExecutor = Executors.newSingleThreadExecutor(threadFactory);
+        this.dispatcherExecutor.execute(new Dispatcher());
+    }
+
+    /**
+     * 按退避间隔安排一次重试
+     *
+     * @param callbackTask 已处于等待状态的回调任务
+     * @param retryTimes   即将进行的是第几次重试，从1开始
+     */
+    void scheduleRetry(CallbackTask callbackTask, int retryTimes) {
+        schedule(callbackTask, backoffDelay(retryTimes));
+    }
+
+    /**
+     * @return 等待重试的回调数
+     */
+    int size() {
+        return retryQueue.size();
+    }
+
+    void shutdown() {
+        dispatcherExecutor.shutdownNow();
+        if (!retryQueue.isEmpty()) {
+            LOGGER.warn(String.format("%d callbacks waiting for retry are dropped.", retryQueue.size()));
+            retryQueue.clear();
+        }
+    }
+
+    /**
+     * @return 第retryTimes次重试前的等待时间，ms
+     */
+    static long backoffDelay(int retryTimes) {
+        long interval = TimeUnit.SECONDS.toMillis(CONFIG.getRetryCallbackInterval());
+        long maxInterval = TimeUnit.SECONDS.toMillis(CONFIG.getRetryCallbackIntervalMax());
+        // 位移上限只为防止溢出，实际间隔很快就会达到上限
+        int shift = Math.max(0, Math.min(retryTimes - 1, 20));
+        long delay = Math.min(interval << shift, Math.max(interval, maxInterval));
+        long jitter = delay * CONFIG.getRetryCallbackJitterPercent() / 100;
+        return delay + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    /**
+     * 在指定时间后重试，不计算退避间隔
+     *
+     * @param callbackTask  已处于等待状态的回调任务
+     * @param delayInMillis 等待时间，ms
+     */
+    void schedule(CallbackTask callbackTask, long delayInMillis) {
+        retryQueue.offer(new RetryEntry(callbackTask,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayInMillis)));
+    }
+
+    private class Dispatcher implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                RetryEntry entry;
+                try {
+                    entry = retryQueue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                CallbackTask callbackTask = entry.callbackTask;
+                if (!callbackTask.startRetry()) {
+                    continue;
+                }
+                try {
+                    callbackExecutors.execute(callbackTask);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn(String.format("Submit retry callback task for job[%s] rejected, try later.",
+                            callbackTask.getJobId()));
+                    callbackTask.backToWaiting();
+                    schedule(callbackTask, REJECTED_DELAY_MILLIS);
+                }
+            }
+            LOGGER.info(String.format("Thread[%s] was interrupted, exit.", Thread.currentThread().getName()));
+        }
+    }
+
+    private static class RetryEntry implements Delayed {
+        private final CallbackTask callbackTask;
+        private final long dueTime;
+
+        RetryEntry(CallbackTask callbackTask, long dueTime) {
+            this.callbackTask = callbackTask;
+            this.dueTime = dueTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o instanceof RetryEntry) {
+                return Long.compare(dueTime, ((RetryEntry) o).dueTime);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+
+/**
+ * 一个任务结果需要回调的所有url<br/>
+ * 合并提交的重复请求在结果产生前可以不断追加回调url，结果交付时封闭，之后追加会失败<br/>
+ * 回调url为null表示调用方在进程内通过{@link ModerationJobFuture}获取结果，不需要回调
+ */
+class CallbackTargets {
+
+    private final List<String> callbackUrls = new ArrayList<>();
+    private boolean sealed;
+    private volatile AdmissionController.Ticket admissionTicket;
+    private JobJournal jobJournal;
+    private long journalId;
+
+    CallbackTargets(String callbackUrl) {
+        if (callbackUrl != null) {
+            callbackUrls.add(callbackUrl);
+        }
+    }
+
+    /**
+     * 追加回调url，为null或已在列表中时只检查结果是否已交付，同一url只回调一次
+     *
+     * @return 是否追加成功，结果已交付时返回false
+     */
+    synchronized boolean add(String callbackUrl) {
+        if (sealed) {
+            return false;
+        }
+        if (callbackUrl != null && !callbackUrls.contains(callbackUrl)) {
+            callbackUrls.add(callbackUrl);
+            if (jobJournal != null) {
+                jobJournal.callbackAdded(journalId, callbackUrl);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param admissionTicket 任务的准入凭证，交付结果时每个回调都会持有一个引用，直到回调执行过一次
+     */
+    void setAdmissionTicket(AdmissionController.Ticket admissionTicket) {
+        this.admissionTicket = admissionTicket;
+    }
+
+    AdmissionController.Ticket getAdmissionTicket() {
+        return admissionTicket;
+    }
+
+    /**
+     * 把任务连同当前的回调url记录到任务日志中，之后追加的回调url也会被记录
+     *
+     * @return 任务在日志中的ID
+     */
+    synchronized long attachJournal(JobJournal jobJournal, String videoUrl, JobMetaInfo jobMetaInfo) {
+        attachJournal(jobJournal, jobJournal.jobAccepted(videoUrl, jobMetaInfo, callbackUrls));
+        return journalId;
+    }
+
+    /**
+     * 之后追加的回调url都记录到任务日志中
+     *
+     * @param jobJournal 任务日志
+     * @param journalId  任务在日志中的ID
+     */
+    synchronized void attachJournal(JobJournal jobJournal, long journalId) {
+        this.jobJournal = jobJournal;
+        this.journalId = journalId;
+    }
+
+    /**
+     * 封闭并返回所有回调url，只有第一次调用返回完整列表，之后返回空列表
+     */
+    synchronized List<String> seal() {
+        if (sealed) {
+            return new ArrayList<>();
+        }
+        sealed = true;
+        return new ArrayList<>(callbackUrls);
+    }
+}
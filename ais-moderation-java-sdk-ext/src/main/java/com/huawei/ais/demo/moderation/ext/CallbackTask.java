@@ -1,16 +1,13 @@
 package com.huawei.ais.demo.moderation.ext;
 
 import java.io.IOException;
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.huawei.ais.demo.moderation.model.JobResult;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.Header;
@@ -23,137 +20,146 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.huawei.ais.demo.HttpJsonDataUtils;
 import com.huawei.ais.demo.moderation.CommonUtils;
 import com.huawei.ais.demo.moderation.Config;
-import com.huawei.ais.demo.moderation.model.JobStatus;
-import com.huawei.ais.sdk.AisAccess;
-import com.huawei.ais.sdk.util.HttpClientUtils;
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
 
+/**
+ * 将已结束任务的结果回调给调用方，回调失败后按配置重试，重试由{@link CallbackRetryScheduler}按指数退避调度
+ */
 class CallbackTask implements Runnable {
 
     private static final Log LOGGER = LogFactory.getLog(CallbackTask.class);
 
     private static final Config CONFIG = Config.getInstance();
 
-    private static final String GET_JOB_RESULT_URI_TEMPLATE = "/v1.0/moderation/video?job_id=%s";
-    private static final String JSON_ROOT = "result";
-    private static final long QUERY_JOB_RESULT_INTERVAL = CONFIG.getQueryInterval();
+    private static final ModerationMetrics METRICS = ModerationMetrics.getInstance();
 
-    //Map<任务，还需要重试的次数>
-    private static Map<CallbackTask, RetryRecord> callbackFailedTasks = new ConcurrentHashMap<>();
-    private static ScheduledExecutorService retryCallbackExecutor;
-    private static ExecutorService callbackExecutors;
+    // 回调任务的状态：执行中 -> 等待重试 -> 执行中 -> ... -> 结束，状态转换都通过CAS完成，同一任务不会被重复调度
+    private static final int RUNNING = 0;
+    private static final int WAITING = 1;
+    private static final int DONE = 2;
+
+    private static CallbackRetryScheduler retryScheduler;
+    // 回调响应的后续处理在回调线程池中执行，不占用异步http客户端的I/O线程
+    private static Executor completionExecutor;
+    private static JobJournal jobJournal;
 
     private String videoUrl;
     private String jobId;
     private String callbackUrl;
-    private AisAccess aisAccessClient;
-
-    CallbackTask(String videoUrl, String jobId, String callbackUrl, AisAccess aisAccessClient) {
+    private Object result;
+    private ModerationTransport transport;
+    // 首次回调结束（成功、转入重试或放弃）后释放，之后的重试不再占用准入容量
+    private AdmissionController.Ticket admissionTicket;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    // 已开始的执行次数，首次执行之后的都是重试
+    private final AtomicInteger attempts = new AtomicInteger(0);
+
+    /**
+     * @param admissionTicket 任务的准入凭证，可为null
+     */
+    CallbackTask(String videoUrl, String jobId, String callbackUrl, Object result, ModerationTransport transport,
+                 AdmissionController.Ticket admissionTicket) {
         this.videoUrl = videoUrl;
         this.jobId = jobId;
         this.callbackUrl = callbackUrl;
-        this.aisAccessClient = aisAccessClient;
+        this.result = result;
+        this.transport = transport;
+        if (admissionTicket != null) {
+            admissionTicket.retain();
+            this.admissionTicket = admissionTicket;
+        }
     }
 
     @Override
     public void run() {
 
-        int retryTimes = 0;
-        if (callbackFailedTasks.containsKey(this)) {
-            int retriedTimes = callbackFailedTasks.get(this).getRetriedTimes();
-            retryTimes = retriedTimes + 1;
+        int retryTimes = attempts.getAndIncrement();
+        if (retryTimes > 0) {
+            METRICS.increment(ModerationMetrics.Counter.CALLBACK_RETRIES);
             LOGGER.info(String.format("Retry[%d/%d] callback for job[%s]", retryTimes, CONFIG.getRetryCallbackTimes(), jobId));
         }
-        boolean callbackSuccess = false;
+        CompletableFuture<Boolean> callbackFuture;
+        long deliverStart = System.nanoTime();
         try {
-            Object result = queryJobResult(videoUrl, jobId);
-            callbackSuccess = callback(videoUrl, callbackUrl, jobId, result);
-        } catch (IOException e) {
+            callbackFuture = callback(videoUrl, callbackUrl, jobId, result);
+        } catch (RuntimeException e) {
             LOGGER.error("Callback error:", e);
+            onCallbackDone(false, retryTimes);
+            return;
         }
+        callbackFuture.whenCompleteAsync((callbackSuccess, e) -> {
+            METRICS.recordSince(ModerationMetrics.Stage.CALLBACK, deliverStart);
+            if (e != null) {
+                LOGGER.error("Callback error:", CommonUtils.unwrapCompletionException(e));
+            }
+            onCallbackDone(e == null && callbackSuccess, retryTimes);
+        }, completionExecutor);
+    }
 
+    private void onCallbackDone(boolean callbackSuccess, int retryTimes) {
+        releaseAdmission();
         if (callbackSuccess) {
-            callbackFailedTasks.remove(this);
+            state.set(DONE);
+            recordDone();
         } else {
             if (retryTimes >= CONFIG.getRetryCallbackTimes()) {
                 LOGGER.error(String.format("Retry[%d/%d] callback for job[%s], give up!", retryTimes,
                         CONFIG.getRetryCallbackTimes(), jobId));
-                callbackFailedTasks.remove(this);
-            } else {
+                METRICS.increment(ModerationMetrics.Counter.CALLBACK_GIVE_UPS);
+                state.set(DONE);
+                recordDone();
+            } else if (state.compareAndSet(RUNNING, WAITING)) {
                 LOGGER.error(String.format("Callback failed for job[%s], will try later.", jobId));
-                callbackFailedTasks.put(this, new RetryRecord(retryTimes));
+                retryScheduler.scheduleRetry(this, retryTimes + 1);
             }
         }
-
     }
 
-    private Object queryJobResult(String videoUrl, String jobId) throws IOException {
-
-        // 构建进行查询的请求链接，并进行轮询查询，由于是异步任务，必须多次进行轮询
-        // 直到结果状态为任务已处理结束
-        String url = String.format(GET_JOB_RESULT_URI_TEMPLATE, jobId);
-        while (!Thread.currentThread().isInterrupted()) {
-            HttpResponse getResponse = aisAccessClient.get(url);
-            if (!HttpJsonDataUtils.isOKResponded(getResponse)) {
-                LOGGER.error(String.format("Query job[%s] result failed, associated video_url:%s", jobId, videoUrl));
-                String responseStr = EntityUtils.toString(getResponse.getEntity(), "UTF-8");
-                LOGGER.info(responseStr);
-                return responseStr;
-            }
-            JobResult jobResult
-                    = HttpJsonDataUtils.getResponseObject(getResponse, JobResult.class, JSON_ROOT);
-            JobStatus jobStatus = jobResult.getStatus();
-
-            // 根据任务状态觉得继续轮询或者打印结果
-            if (jobStatus == JobStatus.CREATED || jobStatus == JobStatus.RUNNING) {
-                //如果任务还未处理完，等待一段时间，继续进行轮询
-                LOGGER.info(String.format("Job[%s] , waiting...", jobId));
+    private CompletableFuture<Boolean> callback(String videoUrl, String callbackUrl, String jobId, Object result) {
+        Header[] headers = new Header[]{
+                new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString())};
+        return transport.deliver(callbackUrl, headers, toNotification()).thenApply(response -> {
+            if (!HttpJsonDataUtils.isOKResponded(response)) {
+                LOGGER.error(String.format("Callback for job[%s] failed, associated video_url:%s", jobId, videoUrl));
+                LOGGER.debug("Request body:" + HttpJsonDataUtils.objectToJsonString(result));
                 try {
-                    Thread.sleep(QUERY_JOB_RESULT_INTERVAL);
-                } catch (InterruptedException e) {
-                    LOGGER.warn(String.format("Thread[%s] was interrupted, exit.", Thread.currentThread().getName()));
+                    LOGGER.error(EntityUtils.toString(response.getEntity(), "UTF-8"));
+                } catch (IOException e) {
+                    LOGGER.error("Read callback response failed.", e);
                 }
-            } else if (jobStatus == JobStatus.FAILED) {
-                // 如果处理失败，直接退出
-                LOGGER.error(String.format("Job[%s] has failed, associated video_url:%s",
-                        jobId, videoUrl));
-                return jobResult;
-            } else if (jobStatus == JobStatus.FINISH) {
-                // 任务处理成功
-                LOGGER.info(String.format("Job[%s] has finished.", jobId));
-                return jobResult;
+                return false;
             } else {
-                LOGGER.info("Should not be here!");
+                LOGGER.info(String.format("Callback for job[%s] done.", jobId));
+                return true;
             }
-        }
-        return null;
-    }
-
-    private boolean callback(String videoUrl, String callbackUrl, String jobId, Object result) throws IOException {
-        Header[] headers = new Header[]{
-                new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString())};
-        System.out.println(result.toString());
-        HttpResponse response = HttpClientUtils.post(callbackUrl, headers,
-                HttpJsonDataUtils.objectToHttpEntity(new Notification(jobId, result)), CONFIG.getConnectionTimeout(),
-                CONFIG.getConnectionRequestTimeout(), CONFIG.getSocketTimeout());
-
-        if (!HttpJsonDataUtils.isOKResponded(response)) {
-            LOGGER.error(String.format("Callback for job[%s] failed, associated video_url:%s", jobId, videoUrl));
-            LOGGER.debug("Request body:" + HttpJsonDataUtils.objectToJsonString(result));
-            LOGGER.error(EntityUtils.toString(response.getEntity(), "UTF-8"));
-            return false;
-        } else {
-            LOGGER.info(String.format("Callback for job[%s] done.", jobId));
-            return true;
-        }
+        });
     }
 
     public String getJobId() {
         return this.jobId;
     }
 
+    String getCallbackUrl() {
+        return this.callbackUrl;
+    }
+
+    /**
+     * @return 本任务要回调的通知，合并回调时作为数组中的一项发送
+     */
+    Notification toNotification() {
+        return new Notification(jobId, result);
+    }
+
+    /**
+     * 通知已随合并回调送达并被接收方确认
+     */
+    void onBatchDelivered() {
+        onCallbackDone(true, 0);
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(jobId);
+        return Objects.hash(jobId, callbackUrl);
     }
 
     @Override
@@ -165,75 +171,81 @@ class CallbackTask implements Runnable {
             return false;
         }
         CallbackTask that = (CallbackTask) o;
-        return Objects.equals(jobId, that.jobId);
+        return Objects.equals(jobId, that.jobId) && Objects.equals(callbackUrl, that.callbackUrl);
     }
 
-    protected static void initCallbackFailedTaskManager(ExecutorService callbackExecutors) {
-        CallbackTask.callbackExecutors = callbackExecutors;
-        retryCallbackExecutor = Executors.newSingleThreadScheduledExecutor(
-                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-retry-callback-%d"));
-
-        retryCallbackExecutor.scheduleAtFixedRate(
-                new FailedCallbackTasksScanner(),
-                CONFIG.getRetryCallbackInterval(),
-                CONFIG.getRetryCallbackInterval() / 3,
-                TimeUnit.SECONDS);
-    }
-
-    protected static void destroyCallbackFailedTaskManager() {
-        CommonUtils.destroyExecutors(retryCallbackExecutor, "retryCallbackExecutor");
-        callbackFailedTasks.clear();
-    }
-
-    static class FailedCallbackTasksScanner implements Runnable {
-        @Override
-        public void run() {
-            long nowInSeconds;
-            for (Map.Entry<CallbackTask, RetryRecord> entry : callbackFailedTasks.entrySet()) {
-                nowInSeconds = TimeUnit.SECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-                //只有没有处于没有正在重试且距上次重试间隔等于或超过设定门限状态的回调task才会被再次提交到回调任务池中
-                if (!entry.getValue().isRetrying()
-                        && nowInSeconds - entry.getValue().getLatestRetryTime() >= CONFIG.getRetryCallbackInterval()) {
-                    try {
-                        LOGGER.info(String.format("Submit retry callback task for job[%s].", entry.getKey().getJobId()));
-                        callbackExecutors.submit(entry.getKey());
-                        entry.getValue().setRetrying(true);
-                    } catch (RejectedExecutionException e) {
-                        LOGGER.error(String.format("Failed to submit retry callback task for job[%s] failed, try later.",
-                                entry.getKey().getJobId()), e);
-                    }
-                }
-            }
+    /**
+     * 回调任务无法提交到callbackExecutors时，交由失败重试机制稍后再次执行
+     *
+     * @param callbackTask 回调任务
+     */
+    static void deferCallback(CallbackTask callbackTask) {
+        METRICS.increment(ModerationMetrics.Counter.CALLBACK_REJECTED);
+        callbackTask.releaseAdmission();
+        if (callbackTask.state.compareAndSet(RUNNING, WAITING)) {
+            retryScheduler.scheduleRetry(callbackTask, 1);
         }
     }
 
+    /**
+     * 等待重试 -> 执行中
+     *
+     * @return 是否转换成功，任务已结束或正在执行时返回false
+     */
+    boolean startRetry() {
+        return state.compareAndSet(WAITING, RUNNING);
+    }
 
-    static class RetryRecord {
-        private int retriedTimes;
-        private long latestRetryTime;
-        private boolean isRetrying;
+    /**
+     * 执行中 -> 等待重试，重试任务未能提交到回调线程池时调用
+     */
+    void backToWaiting() {
+        state.compareAndSet(RUNNING, WAITING);
+    }
 
-        RetryRecord(int retriedTimes) {
-            this.retriedTimes = retriedTimes;
-            this.latestRetryTime = TimeUnit.SECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-            this.isRetrying = false;
+    /**
+     * 回调交付前记录到任务日志，进程重启后未完成的回调会被重新执行
+     */
+    void recordPending() {
+        if (jobJournal != null) {
+            jobJournal.callbackPending(jobId, videoUrl, callbackUrl, result);
         }
+    }
 
-        int getRetriedTimes() {
-            return retriedTimes;
+    private void recordDone() {
+        if (jobJournal != null) {
+            jobJournal.callbackDone(jobId, callbackUrl);
         }
+    }
 
-        long getLatestRetryTime() {
-            return latestRetryTime;
+    private synchronized void releaseAdmission() {
+        if (admissionTicket != null) {
+            admissionTicket.release();
+            admissionTicket = null;
         }
+    }
 
-        boolean isRetrying() {
-            return isRetrying;
-        }
+    /**
+     * @param callbackExecutors 执行回调任务的线程池
+     * @param threadFactory     重试分发线程的线程工厂，虚拟线程模式下为虚拟线程工厂
+     * @param jobJournal        记录回调状态的任务日志，未开启时为null
+     */
+    protected static void initCallbackFailedTaskManager(ExecutorService callbackExecutors,
+                                                        ThreadFactory threadFactory, JobJournal jobJournal) {
+        CallbackTask.jobJournal = jobJournal;
+        completionExecutor = CommonUtils.callerRunsOnRejection(callbackExecutors);
+        retryScheduler = new CallbackRetryScheduler(callbackExecutors, threadFactory);
+    }
 
-        void setRetrying(boolean retrying) {
-            isRetrying = retrying;
-        }
+    protected static void destroyCallbackFailedTaskManager() {
+        retryScheduler.shutdown();
+    }
+
+    /**
+     * @return 等待重试的回调数
+     */
+    static int getWaitingRetryCount() {
+        return retryScheduler.size();
     }
 
     static class Notification {
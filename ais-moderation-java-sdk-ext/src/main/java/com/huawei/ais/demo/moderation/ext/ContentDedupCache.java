@@ -0,0 +1,160 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.huawei.ais.demo.moderation.model.Category;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+import com.huawei.ais.demo.moderation.model.JobResult;
+
+/**
+ * 按视频内容的SHA-256去重的缓存<p/>
+ * 同一视频以不同url提交时，可复用已上传到OBS的文件，跳过上传；
+ * 若以相同的抽帧间隔和审核类别审核过，还可直接复用审核结果，跳过引擎调用<br/>
+ * 缓存条目数有上限，超出时淘汰最久未使用的条目，条目超过有效期后失效，索引持久化到本地文件，见{@link JsonLruIndex}
+ */
+class ContentDedupCache extends JsonLruIndex<ContentDedupCache.CacheEntry> {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * @param indexFile  索引持久化文件
+     * @param maxEntries 最大条目数
+     * @param ttlMillis  条目有效期，ms
+     */
+    ContentDedupCache(File indexFile, int maxEntries, long ttlMillis) {
+        super(indexFile, maxEntries, ttlMillis, new TypeReference<List<CacheEntry>>() {
+        }, "moderation-sdk-dedup-flush-%d");
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 将本地文件的内容计入摘要
+     */
+    static void updateDigest(MessageDigest digest, File file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = new FileInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * 审核结果的缓存key，抽帧间隔和审核类别都相同的结果才能复用
+     */
+    static String resultKey(JobMetaInfo jobMetaInfo) {
+        TreeSet<String> categories = new TreeSet<>();
+        for (Category category : jobMetaInfo.getCategories()) {
+            categories.add(category.name());
+        }
+        return jobMetaInfo.getFrameInterval() + ":" + String.join(",", categories);
+    }
+
+    /**
+     * @return 该内容已审核过的结果，没有时返回null
+     */
+    synchronized JobResult getResult(String contentHash, String resultKey) {
+        CacheEntry entry = getEntry(contentHash);
+        return entry == null ? null : entry.results.get(resultKey);
+    }
+
+    /**
+     * @return 该内容在OBS中的文件，形如{bucket, key}，没有时返回null
+     */
+    synchronized String[] getObject(String contentHash) {
+        CacheEntry entry = getEntry(contentHash);
+        if (entry == null || entry.bucketName == null) {
+            return null;
+        }
+        return new String[]{entry.bucketName, entry.objectKey};
+    }
+
+    synchronized void putObject(String contentHash, String bucketName, String objectKey) {
+        CacheEntry entry = getOrCreateEntry(contentHash);
+        entry.bucketName = bucketName;
+        entry.objectKey = objectKey;
+        markDirty();
+    }
+
+    synchronized void putResult(String contentHash, String resultKey, JobResult jobResult) {
+        getOrCreateEntry(contentHash).results.put(resultKey, jobResult);
+        markDirty();
+    }
+
+    /**
+     * OBS中的文件已不存在时调用，该内容下次需重新上传
+     */
+    synchronized void invalidateObject(String contentHash) {
+        CacheEntry entry = getEntry(contentHash);
+        if (entry != null) {
+            entry.bucketName = null;
+            entry.objectKey = null;
+            markDirty();
+        }
+    }
+
+    private CacheEntry getOrCreateEntry(String contentHash) {
+        CacheEntry entry = getEntry(contentHash);
+        if (entry == null) {
+            entry = new CacheEntry();
+            entry.contentHash = contentHash;
+            entry.createTime = System.currentTimeMillis();
+            putEntry(entry);
+        }
+        return entry;
+    }
+
+    static class CacheEntry implements JsonLruIndex.IndexEntry {
+        @JsonProperty("content_hash")
+        private String contentHash;
+
+        @JsonProperty("create_time")
+        private long createTime;
+
+        @JsonProperty("bucket_name")
+        private String bucketName;
+
+        @JsonProperty("object_key")
+        private String objectKey;
+
+        @JsonProperty("results")
+        private Map<String, JobResult> results = new HashMap<>();
+
+        @Override
+        public String indexKey() {
+            return contentHash;
+        }
+
+        @Override
+        public long indexCreateTime() {
+            return createTime;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.huawei.ais.demo.moderation.ext;
+
+/**
+ * 视频审核引擎耗时模型，用于预测任务的下一次查询时间<p/>
+ * 以 x = 文件大小(MB) / 抽帧间隔(s) 近似引擎需要处理的帧量，对已结束任务的引擎耗时 y(ms) 做带指数衰减的
+ * 最小二乘线性拟合 y = a + b * x，越新的样本权重越高；同时记录预测的平均相对误差<br/>
+ * 预测任务即将结束时按预测时间查询，超过预测时间仍未结束的任务从最小间隔开始指数退避
+ */
+class EngineLatencyModel {
+
+    private static final double DECAY = 0.95;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+    private static final double MAX_ERROR_RATIO = 0.5;
+    private static final int MIN_OBSERVATIONS = 3;
+
+    private final long fixedInterval;
+    private final long minInterval;
+    private final long maxInterval;
+
+    private double sumWeight;
+    private double sumX;
+    private double sumY;
+    private double sumXX;
+    private double sumXY;
+    private double errorRatio = MAX_ERROR_RATIO;
+    private long observations;
+
+    /**
+     * @param fixedInterval 样本不足时使用的固定查询间隔，ms
+     * @param minInterval   最小查询间隔，ms
+     * @param maxInterval   最大查询间隔，ms
+     */
+    EngineLatencyModel(long fixedInterval, long minInterval, long maxInterval) {
+        this.fixedInterval = fixedInterval;
+        this.minInterval = minInterval;
+        this.maxInterval = Math.max(minInterval, maxInterval);
+    }
+
+    /**
+     * 记录一个已结束任务的引擎耗时
+     *
+     * @param fileSize      视频文件大小，单位为字节，未知时不记录
+     * @param frameInterval 抽帧间隔，单位为秒
+     * @param runtime       引擎耗时(update_time - create_time)，ms
+     */
+    synchronized void observe(long fileSize, int frameInterval, long runtime) {
+        if (fileSize < 0 || runtime < 0) {
+            return;
+        }
+        if (observations >= MIN_OBSERVATIONS) {
+            double predicted = predict(fileSize, frameInterval);
+            if (predicted > 0) {
+                double error = Math.min(MAX_ERROR_RATIO, Math.abs(runtime - predicted) / predicted);
+                errorRatio = DECAY * errorRatio + (1 - DECAY) * error;
+            }
+        }
+
+        double x = workload(fileSize, frameInterval);
+        sumWeight = DECAY * sumWeight + 1;
+        sumX = DECAY * sumX + x;
+        sumY = DECAY * sumY + runtime;
+        sumXX = DECAY * sumXX + x * x;
+        sumXY = DECAY * sumXY + x * runtime;
+        observations++;
+    }
+
+    /**
+     * 预测任务的引擎耗时
+     *
+     * @param fileSize      视频文件大小，单位为字节，未知时为负数
+     * @param frameInterval 抽帧间隔，单位为秒
+     * @return 预测耗时，ms；样本不足时返回-1
+     */
+    synchronized long predictRuntime(long fileSize, int frameInterval) {
+        if (observations < MIN_OBSERVATIONS) {
+            return -1;
+        }
+        return Math.round(predict(fileSize, frameInterval));
+    }
+
+    /**
+     * 判断任务是否已超过预测的结束时间
+     *
+     * @param fileSize      视频文件大小，单位为字节，未知时为负数
+     * @param frameInterval 抽帧间隔，单位为秒
+     * @param elapsed       任务提交后已经过的时间，ms
+     * @return 已超过预测结束时间返回true，样本不足时返回false
+     */
+    boolean isOverdue(long fileSize, int frameInterval, long elapsed) {
+        long expectedDone = expectedDone(fileSize, frameInterval);
+        return expectedDone >= 0 && elapsed >= expectedDone;
+    }
+
+    /**
+     * 计算任务下一次查询前需要等待的时间
+     *
+     * @param fileSize      视频文件大小，单位为字节，未知时为负数
+     * @param frameInterval 抽帧间隔，单位为秒
+     * @param elapsed       任务提交后已经过的时间，ms
+     * @param overduePolls  超过预测结束时间后仍未结束的查询次数
+     * @return 等待时间，ms
+     */
+    long nextPollDelay(long fileSize, int frameInterval, long elapsed, int overduePolls) {
+        long expectedDone = expectedDone(fileSize, frameInterval);
+        if (expectedDone < 0) {
+            return fixedInterval;
+        }
+        long delay;
+        if (overduePolls == 0 && elapsed < expectedDone) {
+            delay = expectedDone - elapsed;
+        } else {
+            delay = minInterval << Math.min(Math.max(overduePolls - 1, 0), 20);
+        }
+        return Math.max(minInterval, Math.min(maxInterval, delay));
+    }
+
+    /**
+     * 预测耗时按误差打折，倾向于略早一点查询
+     */
+    private synchronized long expectedDone(long fileSize, int frameInterval) {
+        if (observations < MIN_OBSERVATIONS) {
+            return -1;
+        }
+        return Math.round(predict(fileSize, frameInterval) * (1 - errorRatio));
+    }
+
+    synchronized long getObservations() {
+        return observations;
+    }
+
+    private double predict(long fileSize, int frameInterval) {
+        double meanY = sumY / sumWeight;
+        if (fileSize < 0) {
+            return meanY;
+        }
+        double meanX = sumX / sumWeight;
+        double varX = sumXX / sumWeight - meanX * meanX;
+        double x = workload(fileSize, frameInterval);
+        if (varX <= 1e-9) {
+            // 样本的文件大小都相同时无法拟合斜率，按比例估算
+            return meanX > 0 ? meanY * x / meanX : meanY;
+        }
+        double slope = (sumXY / sumWeight - meanX * meanY) / varX;
+        if (slope < 0) {
+            return meanY;
+        }
+        double intercept = meanY - slope * meanX;
+        return Math.max(0, intercept + slope * x);
+    }
+
+    private static double workload(long fileSize, int frameInterval) {
+        if (fileSize < 0) {
+            return 0;
+        }
+        return fileSize / BYTES_PER_MB / Math.max(1, frameInterval);
+    }
+}
@@ -0,0 +1,80 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+
+/**
+ * 合并并发的相同提交（视频url、审核类别和抽帧间隔都相同）<p/>
+ * 相同的请求在前一个任务产生结果之前到达时，不再新建任务，只把回调url追加到在途任务上，
+ * 共用其各阶段和结果，任务结束后所有回调url都会收到结果
+ */
+class InFlightJobs {
+
+    private static final Log LOGGER = LogFactory.getLog(InFlightJobs.class);
+
+    private final ConcurrentMap<String, InFlightJob> inFlightJobs = new ConcurrentHashMap<>();
+
+    /**
+     * 加入在途的相同任务，没有时通过taskFactory新建并启动任务
+     *
+     * @param videoUrl    视频url
+     * @param jobMetaInfo 视频审核相关参数
+     * @param callbackUrl 回调url，可为null
+     * @param taskFactory 以回调目标新建并启动任务，返回任务
+     * @return 跟随在途任务的结果future，每次调用返回新的实例
+     */
+    ModerationJobFuture join(String videoUrl, JobMetaInfo jobMetaInfo, String callbackUrl,
+                                   Function<CallbackTargets, SubmitJobTask> taskFactory) {
+        String key = videoUrl + "|" + ContentDedupCache.resultKey(jobMetaInfo);
+        while (true) {
+            InFlightJob existing = inFlightJobs.get(key);
+            if (existing != null) {
+                if (existing.callbackTargets.add(callbackUrl)) {
+                    LOGGER.info(String.format("Duplicate submission of video[%s] joined the in-flight job.", videoUrl));
+                    return existing.jobFuture.mirror();
+                }
+                // 结果已交付，任务正在退出
+                inFlightJobs.remove(key, existing);
+                continue;
+            }
+
+            InFlightJob created = new InFlightJob(new CallbackTargets(callbackUrl));
+            if (inFlightJobs.putIfAbsent(key, created) != null) {
+                continue;
+            }
+            try {
+                SubmitJobTask submitJobTask = taskFactory.apply(created.callbackTargets);
+                submitJobTask.getJobFuture().follow(created.jobFuture);
+                submitJobTask.getJobFuture().whenComplete((jobResult, e) -> inFlightJobs.remove(key, created));
+            } catch (RuntimeException e) {
+                // 期间加入的重复提交也需要得到失败结果
+                inFlightJobs.remove(key, created);
+                created.jobFuture.fail(e);
+                throw e;
+            }
+            return created.jobFuture.mirror();
+        }
+    }
+
+    /**
+     * @return 在途任务数
+     */
+    int size() {
+        return inFlightJobs.size();
+    }
+
+    private static class InFlightJob {
+        private final CallbackTargets callbackTargets;
+        private final ModerationJobFuture jobFuture = new ModerationJobFuture();
+
+        InFlightJob(CallbackTargets callbackTargets) {
+            this.callbackTargets = callbackTargets;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.moderation.CommonUtils;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+
+/**
+ * 任务日志，记录每个任务的状态变化，进程重启后据此恢复轮询和回调<p/>
+ * 日志以追加方式写入内存映射的段文件，每条记录为：长度(4字节) + CRC32(4字节) + 类型(1字节) + json内容，
+ * 读取时遇到长度为0、不完整或校验失败的记录即认为到达段尾<br/>
+ * 当前段写满时进行压缩：把仍未结束的任务和仍未完成的回调写入新的段，再删除旧段；启动回放后也会压缩一次<br/>
+ * 映射内存的修改由后台线程每秒刷盘一次，进程崩溃不会丢失已写入的记录<p/>
+ * 记录的状态变化：<br/>
+ * - ACCEPTED：任务被接受，尚未提交到引擎<br/>
+ * - CALLBACK_ADDED：在途任务合并了新的回调url<br/>
+ * - SUBMITTED：任务已提交到引擎，得到jobId<br/>
+ * - FINISHED：任务结束，结果已交给回调<br/>
+ * - CALLBACK_PENDING：一个待执行的回调及其内容<br/>
+ * - CALLBACK_DONE：回调成功或已放弃重试
+ */
+class JobJournal {
+
+    private static final Log LOGGER = LogFactory.getLog(JobJournal.class);
+
+    private static final byte ACCEPTED = 1;
+    private static final byte CALLBACK_ADDED = 2;
+    private static final byte SUBMITTED = 3;
+    private static final byte FINISHED = 4;
+    private static final byte CALLBACK_PENDING = 5;
+    private static final byte CALLBACK_DONE = 6;
+
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final File directory;
+    private final int segmentSize;
+
+    // 以下状态都由当前对象的锁保护
+    private final Map<Long, JournalRecord> pendingJobs = new LinkedHashMap<>();
+    private final Map<String, JournalRecord> pendingCallbacks = new LinkedHashMap<>();
+    private long nextJournalId = 1;
+    private long segmentSeq;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segmentBuffer;
+    private boolean closed;
+
+    private final ScheduledExecutorService syncExecutor;
+
+    /**
+     * 回放目录中已有的日志，再压缩到一个新的段
+     *
+     * @param directory   日志目录
+     * @param segmentSize 段文件大小，单位为字节，单条记录超过时该段会相应加大
+     */
+    JobJournal(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Create directory failed:" + directory);
+        }
+        replay();
+        compact(0);
+        LOGGER.info(String.format("Job journal opened, pending jobs:%d, pending callbacks:%d",
+                pendingJobs.size(), pendingCallbacks.size()));
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(
+                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-journal-sync-%d"));
+        this.syncExecutor.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 分配给任务的日志ID，后续状态变化都以此ID记录
+     */
+    synchronized long jobAccepted(String videoUrl, JobMetaInfo jobMetaInfo, List<String> callbackUrls) {
+        JournalRecord record = new JournalRecord();
+        record.journalId = nextJournalId;
+        record.videoUrl = videoUrl;
+        // 提交时会把JobMetaInfo中的url改为OBS地址，这里保存接受时的副本，压缩时写入的仍是原始请求
+        record.jobMetaInfo = objectMapper.convertValue(jobMetaInfo, JobMetaInfo.class);
+        record.callbackUrls = new ArrayList<>(callbackUrls);
+        append(ACCEPTED, record);
+        return record.journalId;
+    }
+
+    synchronized void callbackAdded(long journalId, String callbackUrl) {
+        JournalRecord record = new JournalRecord();
+        record.journalId = journalId;
+        record.callbackUrl = callbackUrl;
+        append(CALLBACK_ADDED, record);
+    }
+
+    synchronized void jobSubmitted(long journalId, String jobId) {
+        JournalRecord record = new JournalRecord();
+        record.journalId = journalId;
+        record.jobId = jobId;
+        append(SUBMITTED, record);
+    }
+
+    synchronized void jobFinished(long journalId) {
+        JournalRecord record = new JournalRecord();
+        record.journalId = journalId;
+        append(FINISHED, record);
+    }
+
+    synchronized void callbackPending(String jobId, String videoUrl, String callbackUrl, Object result) {
+        JournalRecord record = new JournalRecord();
+        record.jobId = jobId;
+        record.videoUrl = videoUrl;
+        record.callbackUrl = callbackUrl;
+        record.result = objectMapper.valueToTree(result);
+        append(CALLBACK_PENDING, record);
+    }
+
+    synchronized void callbackDone(String jobId, String callbackUrl) {
+        JournalRecord record = new JournalRecord();
+        record.jobId = jobId;
+        record.callbackUrl = callbackUrl;
+        append(CALLBACK_DONE, record);
+    }
+
+    /**
+     * @return 尚未结束的任务，getJobId()为null的任务尚未提交到引擎
+     */
+    synchronized List<JournalRecord> getPendingJobs() {
+        return new ArrayList<>(pendingJobs.values());
+    }
+
+    /**
+     * @return 尚未完成的回调
+     */
+    synchronized List<JournalRecord> getPendingCallbacks() {
+        return new ArrayList<>(pendingCallbacks.values());
+    }
+
+    /**
+     * 刷盘并停止记录，之后的状态变化不再写入，下次启动时按关闭时的状态恢复
+     */
+    void close() {
+        syncExecutor.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            sync();
+            closeSegment();
+        }
+    }
+
+    private void append(byte type, JournalRecord record) {
+        if (closed) {
+            return;
+        }
+        apply(type, record);
+        try {
+            byte[] encoded = encode(type, record);
+            if (segmentBuffer.remaining() < encoded.length + 4) {
+                // 压缩后的新段已包含本条记录的效果
+                compact(encoded.length);
+                return;
+            }
+            segmentBuffer.put(encoded);
+        } catch (IOException e) {
+            LOGGER.error("Write job journal failed.", e);
+        }
+    }
+
+    private void apply(byte type, JournalRecord record) {
+        JournalRecord job;
+        switch (type) {
+            case ACCEPTED:
+                pendingJobs.put(record.journalId, record);
+                nextJournalId = Math.max(nextJournalId, record.journalId + 1);
+                break;
+            case CALLBACK_ADDED:
+                job = pendingJobs.get(record.journalId);
+                if (job != null && !job.callbackUrls.contains(record.callbackUrl)) {
+                    job.callbackUrls.add(record.callbackUrl);
+                }
+                break;
+            case SUBMITTED:
+                job = pendingJobs.get(record.journalId);
+                if (job != null) {
+                    job.jobId = record.jobId;
+                }
+                break;
+            case FINISHED:
+                pendingJobs.remove(record.journalId);
+                break;
+            case CALLBACK_PENDING:
+                pendingCallbacks.put(record.jobId + "|" + record.callbackUrl, record);
+                break;
+            case CALLBACK_DONE:
+                pendingCallbacks.remove(record.jobId + "|" + record.callbackUrl);
+                break;
+            default:
+                LOGGER.warn("Unknown job journal record type:" + type);
+        }
+    }
+
+    private byte[] encode(byte type, JournalRecord record) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(record);
+        CRC32 crc32 = new CRC32();
+        crc32.update(type);
+        crc32.update(payload);
+        byte[] encoded = new byte[RECORD_HEADER_SIZE + payload.length];
+        ByteBuffer.wrap(encoded)
+                .putInt(payload.length)
+                .putInt((int) crc32.getValue())
+                .put(type)
+                .put(payload);
+        return encoded;
+    }
+
+    private void replay() {
+        File[] segments = listSegments();
+        int records = 0;
+        for (File segment : segments) {
+            segmentSeq = Math.max(segmentSeq, parseSeq(segment));
+            try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                    int length = buffer.getInt();
+                    int checksum = buffer.getInt();
+                    byte type = buffer.get();
+                    if (length <= 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    buffer.get(payload);
+                    CRC32 crc32 = new CRC32();
+                    crc32.update(type);
+                    crc32.update(payload);
+                    if ((int) crc32.getValue() != checksum) {
+                        LOGGER.warn(String.format("Corrupted record in %s, ignore the rest of the segment.",
+                                segment.getName()));
+                        break;
+                    }
+                    apply(type, objectMapper.readValue(payload, JournalRecord.class));
+                    records++;
+                }
+            } catch (IOException e) {
+                LOGGER.error("Replay job journal segment failed:" + segment.getAbsolutePath(), e);
+            }
+        }
+        if (segments.length > 0) {
+            LOGGER.info(String.format("%d records replayed from %d journal segments.", records, segments.length));
+        }
+    }
+
+    /**
+     * 把当前状态写入新的段并删除旧段
+     *
+     * @param reserve 新段需要额外预留的空间
+     */
+    private void compact(int reserve) throws IOException {
+        List<byte[]> snapshot = new ArrayList<>();
+        long snapshotSize = 0;
+        for (JournalRecord job : pendingJobs.values()) {
+            byte[] encoded = encode(ACCEPTED, job);
+            snapshot.add(encoded);
+            snapshotSize += encoded.length;
+        }
+        for (JournalRecord callback : pendingCallbacks.values()) {
+            byte[] encoded = encode(CALLBACK_PENDING, callback);
+            snapshot.add(encoded);
+            snapshotSize += encoded.length;
+        }
+        long size = segmentSize;
+        // 压缩后至少留出一半空间，避免频繁压缩
+        while (size < 2 * (snapshotSize + reserve + 4)) {
+            size *= 2;
+        }
+
+        File segment = new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, segmentSeq + 1,
+                SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        for (byte[] encoded : snapshot) {
+            buffer.put(encoded);
+        }
+        buffer.force();
+
+        closeSegment();
+        segmentSeq++;
+        segmentChannel = channel;
+        segmentBuffer = buffer;
+        for (File old : listSegments()) {
+            if (parseSeq(old) < segmentSeq && !old.delete()) {
+                LOGGER.warn("Delete compacted journal segment failed:" + old.getAbsolutePath());
+            }
+        }
+        LOGGER.debug(String.format("Job journal compacted into %s, %d records.", segment.getName(),
+                snapshot.size()));
+    }
+
+    private synchronized void sync() {
+        if (segmentBuffer != null) {
+            segmentBuffer.force();
+        }
+    }
+
+    private void closeSegment() {
+        if (segmentChannel != null) {
+            try {
+                segmentChannel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Close journal segment failed.", e);
+            }
+            segmentChannel = null;
+            segmentBuffer = null;
+        }
+    }
+
+    private File[] listSegments() {
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments, Comparator.comparingLong(JobJournal::parseSeq));
+        return segments;
+    }
+
+    private static long parseSeq(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class JournalRecord {
+        @JsonProperty("journal_id")
+        private Long journalId;
+
+        @JsonProperty("video_url")
+        private String videoUrl;
+
+        @JsonProperty("job_meta_info")
+        private JobMetaInfo jobMetaInfo;
+
+        @JsonProperty("callback_urls")
+        private List<String> callbackUrls;
+
+        @JsonProperty("callback_url")
+        private String callbackUrl;
+
+        @JsonProperty("job_id")
+        private String jobId;
+
+        @JsonProperty("result")
+        private JsonNode result;
+
+        long getJournalId() {
+            return journalId;
+        }
+
+        String getVideoUrl() {
+            return videoUrl;
+        }
+
+        JobMetaInfo getJobMetaInfo() {
+            return jobMetaInfo;
+        }
+
+        List<String> getCallbackUrls() {
+            return callbackUrls;
+        }
+
+        String getCallbackUrl() {
+            return callbackUrl;
+        }
+
+        String getJobId() {
+            return jobId;
+        }
+
+        JsonNode getResult() {
+            return result;
+        }
+    }
+}
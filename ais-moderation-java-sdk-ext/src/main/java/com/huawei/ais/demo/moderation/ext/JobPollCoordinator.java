@@ -0,0 +1,401 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.util.EntityUtils;
+
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.moderation.CommonUtils;
+import com.huawei.ais.demo.moderation.Config;
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
+import com.huawei.ais.demo.moderation.model.JobResult;
+import com.huawei.ais.demo.moderation.model.JobStatus;
+
+/**
+ * 任务结果轮询调度器<p/>
+ * 所有已提交、尚未结束的任务都放在一个延迟队列中，由单个分发线程按到期时间取出，
+ * 交给固定大小的查询线程池查询任务状态，同时在途的查询数不超过query.pool.size；
+ * 未结束的任务加上随机抖动后重新入队，已结束的任务交给callbackExecutors执行回调<p/>
+ * 开启自适应查询间隔时，每个任务的下一次查询时间由{@link EngineLatencyModel}根据已结束任务的引擎耗时预测<p/>
+ * 查询请求失败、引擎限流（429）、请求超时（408）或服务端错误（5xx）时任务继续轮询，间隔按连续失败次数翻倍；
+ * 其他错误响应（如400、404）视为任务查询失败，错误响应原样回调
+ */
+class JobPollCoordinator {
+
+    private static final Log LOGGER = LogFactory.getLog(JobPollCoordinator.class);
+
+    private static final Config CONFIG = Config.getInstance();
+
+    private static final ModerationMetrics METRICS = ModerationMetrics.getInstance();
+
+    private static final String GET_JOB_RESULT_URI_TEMPLATE = "/v1.0/moderation/video?job_id=%s";
+    private static final String JSON_ROOT = "result";
+    // httpcore 4.4的HttpStatus中没有429
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final DelayQueue<PendingJob> pendingJobs = new DelayQueue<>();
+    private final Semaphore queryPermits;
+    private final ExecutorService dispatcherExecutor;
+    private final ExecutorService queryExecutors;
+
+    private final EngineLatencyModel latencyModel = new EngineLatencyModel(CONFIG.getQueryInterval(),
+            CONFIG.getQueryIntervalMin(), CONFIG.getQueryIntervalMax());
+
+    private final ModerationTransport transport;
+    private final ExecutorService callbackExecutors;
+    // 未开启合并回调时为null
+    private final CallbackBatcher callbackBatcher;
+    // 回调结果中是否附加时间线，以及附加时间线后是否保留逐帧结果
+    private final boolean timelineEnabled;
+    private final boolean timelineKeepFrames;
+
+    /**
+     * @param callbackBatcher 合并同一回调url的通知，为null时逐条回调
+     */
+    JobPollCoordinator(ModerationTransport transport, ExecutorService callbackExecutors,
+                       CallbackBatcher callbackBatcher) {
+        this.transport = transport;
+        this.callbackExecutors = callbackExecutors;
+        this.callbackBatcher = callbackBatcher;
+        switch (CONFIG.getCallbackTimelineMode().trim().toLowerCase()) {
+            case "none":
+                this.timelineEnabled = false;
+                this.timelineKeepFrames = true;
+                break;
+            case "append":
+                this.timelineEnabled = true;
+                this.timelineKeepFrames = true;
+                break;
+            case "replace":
+                this.timelineEnabled = true;
+                this.timelineKeepFrames = false;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown callback timeline mode:" + CONFIG.getCallbackTimelineMode());
+        }
+        this.queryPermits = new Semaphore(CONFIG.getQueryPoolSize());
+        this.queryExecutors = Executors.newFixedThreadPool(CONFIG.getQueryPoolSize(),
+                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-query-%d"));
+        this.dispatcherExecutor = Executors.newSingleThreadExecutor(
+                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-poll-dispatcher-%d"));
+        this.dispatcherExecutor.execute(new Dispatcher());
+    }
+
+    /**
+     * 登记一个已提交到引擎的任务，由调度器负责轮询其结果并在结束后触发回调
+     *
+     * @param videoUrl        任务关联的视频url
+     * @param jobId           引擎返回的任务ID
+     * @param callbackTargets 回调url，结果交付时封闭
+     * @param fileSize        视频文件大小，单位为字节，未知时为-1
+     * @param frameInterval   抽帧间隔，单位为秒
+     * @return 任务结束（成功或失败）后完成的future，查询失败或调度器关闭时异常完成
+     */
+    CompletableFuture<JobResult> track(String videoUrl, String jobId, CallbackTargets callbackTargets, long fileSize,
+                                       int frameInterval) {
+        PendingJob pendingJob = new PendingJob(videoUrl, jobId, callbackTargets, fileSize, frameInterval);
+        schedule(pendingJob, nextPollDelay(pendingJob));
+        LOGGER.info(String.format("Job[%s] is being tracked, pending jobs:%d", jobId, pendingJobs.size()));
+        return pendingJob.resultFuture;
+    }
+
+    /**
+     * 直接回调已知的任务结果，不经过轮询
+     *
+     * @param videoUrl        任务关联的视频url
+     * @param jobId           结果所属的任务ID
+     * @param callbackTargets 回调url，结果交付时封闭
+     * @param result          任务结果
+     */
+    void deliver(String videoUrl, String jobId, CallbackTargets callbackTargets, Object result) {
+        handOff(videoUrl, jobId, callbackTargets, result);
+    }
+
+    /**
+     * @return 等待轮询的任务数
+     */
+    int getPendingJobCount() {
+        return pendingJobs.size();
+    }
+
+    void shutdown() {
+        dispatcherExecutor.shutdownNow();
+        CommonUtils.destroyExecutors(queryExecutors, "queryExecutors");
+        if (!pendingJobs.isEmpty()) {
+            LOGGER.warn(String.format("%d pending jobs are dropped without callback.", pendingJobs.size()));
+            // DelayQueue的poll()和drainTo()只取到期的元素，这里需要取出全部
+            for (PendingJob pendingJob : pendingJobs.toArray(new PendingJob[0])) {
+                pendingJob.resultFuture.completeExceptionally(
+                        new IllegalStateException("job poll coordinator has been shut down"));
+            }
+            pendingJobs.clear();
+        }
+    }
+
+    private void schedule(PendingJob pendingJob, long intervalInMillis) {
+        long jitter = intervalInMillis * CONFIG.getQueryJitterPercent() / 100;
+        long delay = intervalInMillis + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        pendingJob.dueTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        pendingJobs.offer(pendingJob);
+    }
+
+    private long nextPollDelay(PendingJob pendingJob) {
+        if (!CONFIG.isQueryAdaptiveEnabled()) {
+            return CONFIG.getQueryInterval();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pendingJob.trackedAt);
+        if (latencyModel.isOverdue(pendingJob.fileSize, pendingJob.frameInterval, elapsed)) {
+            pendingJob.overduePolls++;
+        }
+        return latencyModel.nextPollDelay(pendingJob.fileSize, pendingJob.frameInterval, elapsed,
+                pendingJob.overduePolls);
+    }
+
+    private void observeRuntime(PendingJob pendingJob, JobResult jobResult) {
+        if (jobResult.getCreateTime() != null && jobResult.getUpdateTime() != null) {
+            long runtime = jobResult.getUpdateTime().getTime() - jobResult.getCreateTime().getTime();
+            METRICS.record(ModerationMetrics.Stage.ENGINE_RUNTIME, runtime);
+            latencyModel.observe(pendingJob.fileSize, pendingJob.frameInterval, runtime);
+        }
+    }
+
+    /**
+     * 发起一次查询，查询结果处理完后才释放查询许可
+     */
+    private void poll(PendingJob pendingJob) {
+        pendingJob.pollCount++;
+        try {
+            transport.get(String.format(GET_JOB_RESULT_URI_TEMPLATE, pendingJob.jobId))
+                    .whenCompleteAsync((response, e) -> {
+                        try {
+                            handleQueryResponse(pendingJob, response, e);
+                        } finally {
+                            queryPermits.release();
+                        }
+                    }, queryExecutors);
+        } catch (RuntimeException e) {
+            queryPermits.release();
+            LOGGER.error(String.format("Query job[%s] result error, try later.", pendingJob.jobId), e);
+            retryLater(pendingJob, null);
+        }
+    }
+
+    private void handleQueryResponse(PendingJob pendingJob, HttpResponse getResponse, Throwable error) {
+        String jobId = pendingJob.jobId;
+        if (error != null) {
+            LOGGER.error(String.format("Query job[%s] result failed, try later.", jobId),
+                    CommonUtils.unwrapCompletionException(error));
+            retryLater(pendingJob, null);
+            return;
+        }
+        try {
+            if (!HttpJsonDataUtils.isOKResponded(getResponse)) {
+                int statusCode = getResponse.getStatusLine().getStatusCode();
+                if (isTransientStatus(statusCode)) {
+                    // 限流或服务端暂时不可用，任务本身没有失败，稍后继续查询
+                    LOGGER.warn(String.format("Query job[%s] result got status %d, try later.", jobId, statusCode));
+                    retryLater(pendingJob, getResponse);
+                    return;
+                }
+                LOGGER.error(String.format("Query job[%s] result failed with status %d, associated video_url:%s",
+                        jobId, statusCode, pendingJob.videoUrl));
+                String responseStr = EntityUtils.toString(getResponse.getEntity(), "UTF-8");
+                LOGGER.info(responseStr);
+                handOff(pendingJob.videoUrl, jobId, pendingJob.callbackTargets, responseStr);
+                pendingJob.resultFuture.completeExceptionally(new IOException(responseStr));
+                return;
+            }
+            pendingJob.queryFailures = 0;
+            JobResult jobResult;
+            Object callbackPayload;
+            if (CONFIG.isCallbackPassthroughEnabled()) {
+                // 透传模式：只取出状态等标量字段，结果对象原样回调
+                RawJobResult rawJobResult = RawJobResult.parse(EntityUtils.toByteArray(getResponse.getEntity()),
+                        JSON_ROOT);
+                jobResult = rawJobResult.getSummary();
+                callbackPayload = rawJobResult;
+            } else {
+                jobResult = HttpJsonDataUtils.getResponseObject(getResponse, JobResult.class, JSON_ROOT);
+                callbackPayload = jobResult;
+            }
+            JobStatus jobStatus = jobResult.getStatus();
+
+            // 根据任务状态决定继续轮询或者回调结果
+            if (jobStatus == JobStatus.CREATED || jobStatus == JobStatus.RUNNING) {
+                long delay = nextPollDelay(pendingJob);
+                LOGGER.info(String.format("Job[%s] , waiting %d ms...", jobId, delay));
+                schedule(pendingJob, delay);
+            } else if (jobStatus == JobStatus.FAILED) {
+                LOGGER.error(String.format("Job[%s] has failed, associated video_url:%s", jobId, pendingJob.videoUrl));
+                METRICS.record(ModerationMetrics.Stage.POLL_COUNT, pendingJob.pollCount);
+                handOff(pendingJob.videoUrl, jobId, pendingJob.callbackTargets, callbackPayload);
+                pendingJob.resultFuture.complete(jobResult);
+            } else if (jobStatus == JobStatus.FINISH) {
+                LOGGER.info(String.format("Job[%s] has finished after %d queries.", jobId, pendingJob.pollCount));
+                METRICS.record(ModerationMetrics.Stage.POLL_COUNT, pendingJob.pollCount);
+                observeRuntime(pendingJob, jobResult);
+                handOff(pendingJob.videoUrl, jobId, pendingJob.callbackTargets, callbackPayload);
+                pendingJob.resultFuture.complete(jobResult);
+            } else {
+                // 未知状态无法判断任务是否还会结束，按查询失败处理，结果原样回调，避免future永远不完成
+                LOGGER.error(String.format("Job[%s] returned unknown status:%s, associated video_url:%s", jobId,
+                        jobStatus, pendingJob.videoUrl));
+                METRICS.record(ModerationMetrics.Stage.POLL_COUNT, pendingJob.pollCount);
+                handOff(pendingJob.videoUrl, jobId, pendingJob.callbackTargets, callbackPayload);
+                pendingJob.resultFuture.completeExceptionally(
+                        new IOException(String.format("Unknown status of job[%s]: %s", jobId, jobStatus)));
+            }
+        } catch (IOException e) {
+            LOGGER.error(String.format("Query job[%s] result error, try later.", jobId), e);
+            retryLater(pendingJob, null);
+        } finally {
+            // 阻塞模式下响应体直接从连接中解析，读完剩余内容后关闭响应才能归还连接
+            HttpClientUtils.closeQuietly(getResponse);
+        }
+    }
+
+    /**
+     * 查询失败后重新入队，间隔从query.interval开始按连续失败次数翻倍，不超过query.interval.max；
+     * 响应带有Retry-After时不早于其要求的时间
+     *
+     * @param response 限流或服务端错误的响应，请求本身失败时为null
+     */
+    private void retryLater(PendingJob pendingJob, HttpResponse response) {
+        METRICS.increment(ModerationMetrics.Counter.QUERY_RETRIES);
+        long maxInterval = Math.max(CONFIG.getQueryInterval(), CONFIG.getQueryIntervalMax());
+        int shift = Math.min(pendingJob.queryFailures++, 20);
+        long delay = Math.min((long) CONFIG.getQueryInterval() << shift, maxInterval);
+        if (response != null) {
+            delay = Math.max(delay, Math.min(retryAfterMillis(response), maxInterval));
+        }
+        schedule(pendingJob, delay);
+    }
+
+    static boolean isTransientStatus(int statusCode) {
+        return statusCode == HttpStatus.SC_REQUEST_TIMEOUT || statusCode == SC_TOO_MANY_REQUESTS
+                || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * @return Retry-After要求的等待时间，单位为毫秒，没有或无法解析时为0
+     */
+    static long retryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null || header.getValue() == null) {
+            return 0;
+        }
+        String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // 也可以是HTTP日期
+            Date date = DateUtils.parseDate(value);
+            return date == null ? 0 : Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    private void handOff(String videoUrl, String jobId, CallbackTargets callbackTargets, Object result) {
+        AdmissionController.Ticket admissionTicket = callbackTargets.getAdmissionTicket();
+        // 透传的结果没有解析帧结果，不生成时间线
+        if (timelineEnabled && result instanceof JobResult) {
+            result = ((JobResult) result).withTimeline(timelineKeepFrames);
+        }
+        for (String callbackUrl : callbackTargets.seal()) {
+            CallbackTask callbackTask = new CallbackTask(videoUrl, jobId, callbackUrl, result, transport,
+                    admissionTicket);
+            callbackTask.recordPending();
+            if (callbackBatcher != null) {
+                callbackBatcher.add(callbackTask);
+                continue;
+            }
+            try {
+                callbackExecutors.submit(callbackTask);
+            } catch (RejectedExecutionException e) {
+                LOGGER.error(String.format("Submit callback task for job[%s] rejected, will try later.", jobId));
+                CallbackTask.deferCallback(callbackTask);
+            }
+        }
+    }
+
+    private class Dispatcher implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    queryPermits.acquire();
+                    PendingJob pendingJob;
+                    try {
+                        pendingJob = pendingJobs.take();
+                    } catch (InterruptedException e) {
+                        queryPermits.release();
+                        throw e;
+                    }
+                    try {
+                        queryExecutors.execute(() -> poll(pendingJob));
+                    } catch (RejectedExecutionException e) {
+                        queryPermits.release();
+                        pendingJobs.offer(pendingJob);
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            LOGGER.info(String.format("Thread[%s] was interrupted, exit.", Thread.currentThread().getName()));
+        }
+    }
+
+    static class PendingJob implements Delayed {
+        private final String videoUrl;
+        private final String jobId;
+        private final CallbackTargets callbackTargets;
+        private final long fileSize;
+        private final int frameInterval;
+        private final long trackedAt = System.nanoTime();
+        private final CompletableFuture<JobResult> resultFuture = new CompletableFuture<>();
+        private volatile long dueTime;
+        private volatile int pollCount;
+        private volatile int overduePolls;
+        // 连续查询失败的次数，收到正常响应后清零
+        private volatile int queryFailures;
+
+        PendingJob(String videoUrl, String jobId, CallbackTargets callbackTargets, long fileSize, int frameInterval) {
+            this.videoUrl = videoUrl;
+            this.jobId = jobId;
+            this.callbackTargets = callbackTargets;
+            this.fileSize = fileSize;
+            this.frameInterval = frameInterval;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o instanceof PendingJob) {
+                return Long.compare(dueTime, ((PendingJob) o).dueTime);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.moderation.CommonUtils;
+
+/**
+ * 持久化到本地json文件的有界LRU索引<p/>
+ * 条目数超过上限时淘汰最久未使用的条目，条目创建后超过有效期即失效；
+ * 修改后由后台线程定期写入文件（先写临时文件再原子替换），启动时从文件恢复<br/>
+ * 子类的方法访问条目时需持有当前对象的锁
+ *
+ * @param <E> 条目类型，需可被jackson序列化
+ */
+abstract class JsonLruIndex<E extends JsonLruIndex.IndexEntry> {
+
+    private static final Log LOGGER = LogFactory.getLog(JsonLruIndex.class);
+
+    private static final long FLUSH_INTERVAL_SECONDS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final File indexFile;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, E> entries;
+    private final ScheduledExecutorService flushExecutor;
+    private volatile boolean dirty;
+
+    /**
+     * @param indexFile        索引持久化文件
+     * @param maxEntries       最大条目数
+     * @param ttlMillis        条目有效期，ms
+     * @param entryListType    条目列表的类型，用于反序列化
+     * @param threadNameFormat 持久化线程名称
+     */
+    JsonLruIndex(File indexFile, int maxEntries, long ttlMillis, TypeReference<List<E>> entryListType,
+                 String threadNameFormat) {
+        this.indexFile = indexFile;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, E>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, E> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        load(entryListType);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                CommonUtils.ThreadFactoryConstructor(true, threadNameFormat));
+        this.flushExecutor.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return 未过期的条目，没有时返回null
+     */
+    protected E getEntry(String key) {
+        E entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(key);
+            dirty = true;
+            return null;
+        }
+        return entry;
+    }
+
+    protected void putEntry(E entry) {
+        entries.put(entry.indexKey(), entry);
+        dirty = true;
+    }
+
+    protected void removeEntry(String key) {
+        if (entries.remove(key) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 条目内容被修改后调用，以便持久化
+     */
+    protected void markDirty() {
+        dirty = true;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    void close() {
+        flushExecutor.shutdownNow();
+        flush();
+    }
+
+    private boolean isExpired(E entry, long now) {
+        return now - entry.indexCreateTime() > ttlMillis;
+    }
+
+    private void load(TypeReference<List<E>> entryListType) {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try {
+            List<E> loaded = objectMapper.readValue(indexFile, entryListType);
+            long now = System.currentTimeMillis();
+            // 文件中按最久未使用到最近使用排列，依次放入即可恢复LRU顺序
+            for (E entry : loaded) {
+                if (!isExpired(entry, now)) {
+                    entries.put(entry.indexKey(), entry);
+                }
+            }
+            LOGGER.info(String.format("%d entries loaded from %s", entries.size(), indexFile.getAbsolutePath()));
+        } catch (IOException e) {
+            LOGGER.warn("Load index failed, start with an empty one:" + indexFile.getAbsolutePath(), e);
+        }
+    }
+
+    private void flush() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            File parent = indexFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Create directory failed:" + parent);
+            }
+            File tmpFile = new File(indexFile.getPath() + ".tmp");
+            synchronized (this) {
+                dirty = false;
+                objectMapper.writeValue(tmpFile, new ArrayList<>(entries.values()));
+            }
+            Files.move(tmpFile.toPath(), indexFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            LOGGER.error("Save index failed:" + indexFile.getAbsolutePath(), e);
+        }
+    }
+
+    interface IndexEntry {
+        /**
+         * @return 条目在索引中的key
+         */
+        String indexKey();
+
+        /**
+         * @return 条目创建时间，ms，用于判断是否过期
+         */
+        long indexCreateTime();
+    }
+}
@@ -0,0 +1,108 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import com.huawei.ais.demo.moderation.CommonUtils;
+import com.huawei.ais.demo.moderation.model.JobResult;
+
+/**
+ * 视频审核任务的结果future，任务结束（成功或失败）后以任务结果完成<p/>
+ * 同时提供任务各阶段的future，可在其上组合后续处理而不阻塞任何线程：<br/>
+ * - downloaded()：视频已下载到本地（流式传输时为已传输到OBS）<br/>
+ * - uploaded()：视频已在OBS中，值为提交给引擎的OBS地址<br/>
+ * - submitted()：任务已提交到引擎，值为云端任务的jobId<p/>
+ * 命中结果缓存时不经过下载、上传和提交，各阶段随结果一起完成，uploaded()的值为null；
+ * 任何阶段失败时，该阶段及之后的阶段都异常完成
+ */
+public class ModerationJobFuture extends CompletableFuture<JobResult> {
+
+    private final CompletableFuture<Void> downloaded = new CompletableFuture<>();
+    private final CompletableFuture<String> uploaded = new CompletableFuture<>();
+    private final CompletableFuture<String> submitted = new CompletableFuture<>();
+
+    ModerationJobFuture() {
+    }
+
+    /**
+     * @return 视频下载完成后完成的future
+     */
+    public CompletableFuture<Void> downloaded() {
+        return downloaded.thenApply(Function.identity());
+    }
+
+    /**
+     * @return 视频上传到OBS后以OBS地址完成的future
+     */
+    public CompletableFuture<String> uploaded() {
+        return uploaded.thenApply(Function.identity());
+    }
+
+    /**
+     * @return 任务提交到引擎后以jobId完成的future
+     */
+    public CompletableFuture<String> submitted() {
+        return submitted.thenApply(Function.identity());
+    }
+
+    void markDownloaded() {
+        downloaded.complete(null);
+    }
+
+    void markUploaded(String obsUrl) {
+        markDownloaded();
+        uploaded.complete(obsUrl);
+    }
+
+    void markSubmitted(String jobId) {
+        markUploaded(null);
+        submitted.complete(jobId);
+    }
+
+    /**
+     * 以缓存的结果完成所有阶段
+     */
+    void completeCached(JobResult jobResult) {
+        markSubmitted(jobResult.getId());
+        complete(jobResult);
+    }
+
+    /**
+     * 未完成的阶段和结果都以异常完成
+     */
+    void fail(Throwable error) {
+        downloaded.completeExceptionally(error);
+        uploaded.completeExceptionally(error);
+        submitted.completeExceptionally(error);
+        completeExceptionally(error);
+    }
+
+    /**
+     * @return 跟随当前任务各阶段完成的新future，调用方取消或完成它不会影响当前任务
+     */
+    ModerationJobFuture mirror() {
+        ModerationJobFuture mirror = new ModerationJobFuture();
+        follow(mirror);
+        return mirror;
+    }
+
+    /**
+     * 当前任务的各阶段完成时，以相同的值完成target的对应阶段
+     */
+    void follow(ModerationJobFuture target) {
+        downloaded.thenRun(target::markDownloaded);
+        // 后一阶段完成时前一阶段一定已完成，先补齐前一阶段，避免回调执行顺序交错时以null完成
+        uploaded.thenAccept(obsUrl -> target.markUploaded(obsUrl));
+        submitted.thenAccept(jobId -> {
+            target.markUploaded(uploaded.getNow(null));
+            target.submitted.complete(jobId);
+        });
+        whenComplete((jobResult, e) -> {
+            if (e != null) {
+                target.fail(CommonUtils.unwrapCompletionException(e));
+            } else {
+                target.complete(jobResult);
+            }
+        });
+    }
+}
@@ -1,8 +1,15 @@
 package com.huawei.ais.demo.moderation.ext;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -12,15 +19,25 @@ import org.apache.commons.logging.LogFactory;
 
 import com.huawei.ais.common.AuthInfo;
 import com.huawei.ais.common.ProxyHostInfo;
+import com.huawei.ais.demo.http.AsyncAisAccess;
+import com.huawei.ais.demo.http.PooledAisAccess;
+import com.huawei.ais.demo.http.RangedDownloader;
+import com.huawei.ais.demo.http.SharedHttpClient;
 import com.huawei.ais.demo.moderation.CommonUtils;
 import com.huawei.ais.demo.moderation.Config;
+import com.huawei.ais.demo.moderation.VirtualThreads;
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
+import com.huawei.ais.demo.moderation.metrics.PrometheusExporter;
 import com.huawei.ais.demo.obs.SimpleObsClient;
-import com.huawei.ais.sdk.AisAccess;
 
 /**
  * 视频审核服务调用工具类，管理两个线程池<p/>
  * - submitJobExecutors：来执行“下载视频-上传OBS-提交OBS地址给云端引擎”任务<br/>
- * - callbackExecutors：用来执行查询“任务结果-回调”任务<p/>
+ * - callbackExecutors：用来执行“回调”任务<p/>
+ * 已提交任务的结果由JobPollCoordinator统一轮询，任务结束后再交给callbackExecutors回调<br/>
+ * 开启execution.virtual.threads.enabled且JVM支持时，两个线程池换成以信号量限制并发的虚拟线程执行器<br/>
+ * 任务先经AdmissionController准入，两个阶段都有容量时才被接受，已接受的任务不会被线程池拒绝<br/>
+ * 各阶段耗时、拒绝和重试次数、线程池状态记录在{@link ModerationMetrics}中，可通过JMX或Prometheus端点查看<p/>
  * 如果在产品中使用AsrServiceUtils，注意在合适的位置调用destroy()方法来销毁线程池
  */
 public class ModerationServiceUtils {
@@ -29,11 +46,26 @@ public class ModerationServiceUtils {
 
     private static final Config CONFIG = Config.getInstance();
 
-    private AisAccess aisAccessClient;
+    private static final ModerationMetrics METRICS = ModerationMetrics.getInstance();
+
+    private ModerationTransport transport;
+    // 引擎请求、视频下载和回调共享的连接池
+    private SharedHttpClient sharedHttpClient;
     private SimpleObsClient simpleObsClient;
 
     private ExecutorService submitJobExecutors = null;
     private ExecutorService callbackExecutors = null;
+    private JobPollCoordinator jobPollCoordinator = null;
+    private CallbackBatcher callbackBatcher = null;
+    private ContentDedupCache dedupCache = null;
+    private SourceUrlCache sourceCache = null;
+    private VideoSpool videoSpool = null;
+    private RangedDownloader rangedDownloader = null;
+    private InFlightJobs inFlightJobs = null;
+    private AdmissionController admissionController = null;
+    private AdmissionPolicy defaultAdmissionPolicy = null;
+    private JobJournal jobJournal = null;
+    private PrometheusExporter prometheusExporter = null;
 
     private ModerationServiceUtils() {
         init();
@@ -45,20 +77,236 @@ public class ModerationServiceUtils {
      * @param videoUrl    视频审核的文件的url
      * @param callbackUrl 审核结束后的回调url
      * @param jobMetaInfo 视频审核相关参数
-     * @return 视频提交到视频审核引起的任务句柄，任务提交成功后可通过句柄取到云端识别任务的jobId
+     * @return 视频提交到视频审核引起的任务句柄，任务提交成功后可通过句柄取到云端识别任务的jobId，
+     * 引擎未返回jobId时为null；与在途任务合并时，返回的是在途任务的句柄
      */
     public Future<String> callAsrService(String videoUrl, String callbackUrl, JobMetaInfo jobMetaInfo) {
-        return submitJobExecutors.submit(
-                new SubmitJobTask(videoUrl,jobMetaInfo, callbackUrl, aisAccessClient, simpleObsClient, callbackExecutors));
+        return submit(videoUrl, jobMetaInfo, callbackUrl).submitted().exceptionally(e -> {
+            // 保持原有行为：引擎未返回jobId时句柄取到null，其他失败仍抛出异常
+            if (CommonUtils.unwrapCompletionException(e) instanceof SubmitJobTask.NoJobIdException) {
+                return null;
+            }
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        });
+    }
+
+    /**
+     * 提交视频审核任务，在进程内获取结果，不需要回调
+     *
+     * @param videoUrl    视频审核的文件的url
+     * @param jobMetaInfo 视频审核相关参数
+     * @return 任务结束后以任务结果完成的future，可通过其downloaded()、uploaded()、submitted()组合各阶段的处理
+     */
+    public ModerationJobFuture submit(String videoUrl, JobMetaInfo jobMetaInfo) {
+        return submit(videoUrl, jobMetaInfo, null);
+    }
+
+    /**
+     * 提交视频审核任务，没有容量时按配置的默认方式处理
+     *
+     * @param videoUrl    视频审核的文件的url
+     * @param jobMetaInfo 视频审核相关参数
+     * @param callbackUrl 审核结束后的回调url，为null时不回调
+     * @return 任务结束后以任务结果完成的future，可通过其downloaded()、uploaded()、submitted()组合各阶段的处理；
+     * 与在途任务合并时，跟随在途任务完成
+     */
+    public ModerationJobFuture submit(String videoUrl, JobMetaInfo jobMetaInfo, String callbackUrl) {
+        return submit(videoUrl, jobMetaInfo, callbackUrl, defaultAdmissionPolicy);
+    }
+
+    /**
+     * 提交视频审核任务
+     *
+     * @param videoUrl        视频审核的文件的url
+     * @param jobMetaInfo     视频审核相关参数
+     * @param callbackUrl     审核结束后的回调url，为null时不回调
+     * @param admissionPolicy 没有容量时的处理方式
+     * @return 任务结束后以任务结果完成的future，可通过其downloaded()、uploaded()、submitted()组合各阶段的处理；
+     * 与在途任务合并时，跟随在途任务完成
+     * @throws java.util.concurrent.RejectedExecutionException 等待准入超时、被中断或准入队列已满
+     */
+    public ModerationJobFuture submit(String videoUrl, JobMetaInfo jobMetaInfo, String callbackUrl,
+                                      AdmissionPolicy admissionPolicy) {
+        CompletableFuture<AdmissionController.Ticket> admission = admissionController.admit(admissionPolicy);
+        if (admission.isDone()) {
+            return startJob(videoUrl, jobMetaInfo, callbackUrl, admission.join());
+        }
+
+        // 异步排队，取得准入后再开始执行
+        ModerationJobFuture queuedJob = new ModerationJobFuture();
+        admission.whenComplete((ticket, e) -> {
+            if (e != null) {
+                queuedJob.fail(CommonUtils.unwrapCompletionException(e));
+            } else if (queuedJob.isDone()) {
+                // 排队期间被调用方取消
+                ticket.release();
+            } else {
+                try {
+                    startJob(videoUrl, jobMetaInfo, callbackUrl, ticket).follow(queuedJob);
+                } catch (RuntimeException ex) {
+                    queuedJob.fail(ex);
+                }
+            }
+        });
+        return queuedJob;
+    }
+
+    /**
+     * @return 准入控制器，可用于观察在途任务数、排队深度和拒绝次数
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    private ModerationJobFuture startJob(String videoUrl, JobMetaInfo jobMetaInfo, String callbackUrl,
+                                         AdmissionController.Ticket ticket) {
+        try {
+            if (inFlightJobs == null) {
+                return startSubmitJobTask(videoUrl, jobMetaInfo, new CallbackTargets(callbackUrl), ticket)
+                        .getJobFuture().mirror();
+            }
+            // 与在途任务合并时，凭证不会被任务持有，下面释放后即归还
+            return inFlightJobs.join(videoUrl, jobMetaInfo, callbackUrl,
+                    callbackTargets -> startSubmitJobTask(videoUrl, jobMetaInfo, callbackTargets, ticket));
+        } finally {
+            ticket.release();
+        }
+    }
+
+    /**
+     * @param ticket 准入凭证，从任务日志恢复的任务为null
+     */
+    private SubmitJobTask startSubmitJobTask(String videoUrl, JobMetaInfo jobMetaInfo,
+                                             CallbackTargets callbackTargets, AdmissionController.Ticket ticket) {
+        SubmitJobTask submitJobTask = new SubmitJobTask(videoUrl, jobMetaInfo, callbackTargets, transport,
+                simpleObsClient, sharedHttpClient, jobPollCoordinator, dedupCache, sourceCache, videoSpool,
+                rangedDownloader, submitJobExecutors);
+        ModerationJobFuture jobFuture = submitJobTask.getJobFuture();
+        if (ticket != null) {
+            callbackTargets.setAdmissionTicket(ticket);
+            ticket.retain();
+            jobFuture.submitted().whenComplete((jobId, e) -> ticket.leaveSubmitStage());
+            jobFuture.whenComplete((jobResult, e) -> ticket.release());
+        }
+        if (jobJournal != null) {
+            long journalId = callbackTargets.attachJournal(jobJournal, videoUrl, jobMetaInfo);
+            jobFuture.submitted().thenAccept(jobId -> {
+                if (jobId != null) {
+                    jobJournal.jobSubmitted(journalId, jobId);
+                }
+            });
+            jobFuture.whenComplete((jobResult, e) -> jobJournal.jobFinished(journalId));
+        }
+        try {
+            submitJobExecutors.execute(submitJobTask);
+        } catch (RejectedExecutionException e) {
+            METRICS.increment(ModerationMetrics.Counter.SUBMIT_REJECTED);
+            jobFuture.fail(e);
+            throw e;
+        }
+        return submitJobTask;
     }
 
     /**
      * 销毁ModerationServiceUtils控制的资源
      */
     public void destroy() {
+        if (prometheusExporter != null) {
+            prometheusExporter.close();
+        }
+        if (CONFIG.isMetricsJmxEnabled()) {
+            METRICS.unregisterMBeans();
+        }
+        METRICS.clearRegistrations();
+        admissionController.shutdown();
+        // 先停止记录，关闭过程中被中断的任务和回调保持未完成状态，下次启动时恢复
+        if (jobJournal != null) {
+            jobJournal.close();
+        }
+        jobPollCoordinator.shutdown();
+        if (callbackBatcher != null) {
+            callbackBatcher.shutdown();
+        }
         CallbackTask.destroyCallbackFailedTaskManager();
         CommonUtils.destroyExecutors(submitJobExecutors, "submitJobExecutors");
         CommonUtils.destroyExecutors(callbackExecutors, "callbackExecutors");
+        if (dedupCache != null) {
+            dedupCache.close();
+        }
+        if (sourceCache != null) {
+            sourceCache.close();
+        }
+        if (rangedDownloader != null) {
+            rangedDownloader.close();
+        }
+        simpleObsClient.close();
+        transport.close();
+        sharedHttpClient.close();
+    }
+
+    /**
+     * 恢复任务日志中上次未完成的任务和回调：已提交到引擎的任务按jobId继续轮询，不会重复调用引擎；
+     * 尚未提交的任务重新执行（上传断点和源url缓存仍然有效），没有回调url的直接丢弃；未完成的回调重新执行
+     */
+    private void recoverFromJournal() {
+        int resumed = 0;
+        int resubmitted = 0;
+        for (JobJournal.JournalRecord job : jobJournal.getPendingJobs()) {
+            CallbackTargets callbackTargets = new CallbackTargets(null);
+            for (String callbackUrl : job.getCallbackUrls()) {
+                callbackTargets.add(callbackUrl);
+            }
+            if (job.getJobId() != null) {
+                long journalId = job.getJournalId();
+                callbackTargets.attachJournal(jobJournal, journalId);
+                jobPollCoordinator.track(job.getVideoUrl(), job.getJobId(), callbackTargets, -1,
+                        job.getJobMetaInfo().getFrameInterval())
+                        .whenComplete((jobResult, e) -> jobJournal.jobFinished(journalId));
+                resumed++;
+            } else if (!job.getCallbackUrls().isEmpty()) {
+                jobJournal.jobFinished(job.getJournalId());
+                try {
+                    startSubmitJobTask(job.getVideoUrl(), job.getJobMetaInfo(), callbackTargets, null);
+                    resubmitted++;
+                } catch (RejectedExecutionException e) {
+                    LOGGER.error(String.format("Resubmit video[%s] from journal rejected, dropped.",
+                            job.getVideoUrl()));
+                }
+            } else {
+                LOGGER.warn(String.format("Video[%s] has no callback url, drop it from journal.",
+                        job.getVideoUrl()));
+                jobJournal.jobFinished(job.getJournalId());
+            }
+        }
+        int callbacks = 0;
+        for (JobJournal.JournalRecord callback : jobJournal.getPendingCallbacks()) {
+            CallbackTask callbackTask = new CallbackTask(callback.getVideoUrl(), callback.getJobId(),
+                    callback.getCallbackUrl(), callback.getResult(), transport, null);
+            try {
+                callbackExecutors.submit(callbackTask);
+            } catch (RejectedExecutionException e) {
+                CallbackTask.deferCallback(callbackTask);
+            }
+            callbacks++;
+        }
+        LOGGER.info(String.format("Recovered from journal: %d jobs resumed polling, %d jobs resubmitted, "
+                + "%d callbacks redelivered.", resumed, resubmitted, callbacks));
+    }
+
+    /**
+     * @return 任务日志中将被重新提交的视频url，这些任务可以从上次的上传断点继续上传
+     */
+    private List<String> getResumableVideoUrls() {
+        List<String> videoUrls = new ArrayList<>();
+        if (jobJournal == null || !CONFIG.isObsUploadCheckpointEnabled()) {
+            return videoUrls;
+        }
+        for (JobJournal.JournalRecord job : jobJournal.getPendingJobs()) {
+            if (job.getJobId() == null && !job.getCallbackUrls().isEmpty()) {
+                videoUrls.add(job.getVideoUrl());
+            }
+        }
+        return videoUrls;
     }
 
     private void init() {
@@ -66,42 +314,186 @@ public class ModerationServiceUtils {
         AuthInfo authInfo = new AuthInfo(CONFIG.getModerationEndpoint(), CONFIG.getModerationRegion(), CONFIG.getAk(), CONFIG.getSk());
         ProxyHostInfo proxyHostInfo = new ProxyHostInfo("proxycn2.xxx.com", 8080, "", "");
 
-        aisAccessClient = new AisAccess(authInfo, CONFIG.getConnectionTimeout(), CONFIG.getConnectionRequestTimeout(),
-                CONFIG.getSocketTimeout());
-        simpleObsClient = new SimpleObsClient(authInfo);
+        sharedHttpClient = new SharedHttpClient(CONFIG.getHttpPoolMaxTotal(), CONFIG.getHttpPoolMaxPerRoute(),
+                CONFIG.getConnectionTimeout(), CONFIG.getConnectionRequestTimeout(), CONFIG.getSocketTimeout(),
+                TimeUnit.SECONDS.toMillis(CONFIG.getHttpPoolIdleTimeout()),
+                TimeUnit.SECONDS.toMillis(CONFIG.getHttpPoolConnectionTtl()),
+                TimeUnit.SECONDS.toMillis(CONFIG.getHttpDnsCacheTtl()));
+        if (CONFIG.isAsyncTransportEnabled()) {
+            transport = new AsyncModerationTransport(new AsyncAisAccess(authInfo, CONFIG.getAsyncIoThreads(),
+                    CONFIG.getAsyncMaxConnections(), CONFIG.getConnectionTimeout(),
+                    CONFIG.getConnectionRequestTimeout(), CONFIG.getSocketTimeout()));
+        } else {
+            transport = new BlockingModerationTransport(new PooledAisAccess(authInfo, sharedHttpClient), authInfo,
+                    sharedHttpClient);
+        }
+        simpleObsClient = new SimpleObsClient(authInfo, CONFIG.getObsEndpoint());
+        simpleObsClient.initMultipartUpload(CONFIG.getObsUploadThreads(), CONFIG.isObsUploadCheckpointEnabled());
+        if (CONFIG.isStreamTransferEnabled()) {
+            simpleObsClient.initStreamUpload(CONFIG.getStreamPartSizeInMB(), CONFIG.getStreamBufferCount());
+        }
 
         //aisAccessClient = new AisAccessWithProxy(asrAuthInfo, proxyHostInfo, CONFIG.getConnectionTimeout(),
         //        CONFIG.getConnectionRequestTimeout(), CONFIG.getSocketTimeout());
         //simpleObsClient = new SimpleObsClient(asrAuthInfo, proxyHostInfo);
 
 
-        //初始submitJobExecutors
-        submitJobExecutors = new ThreadPoolExecutor(
-                CONFIG.getSubmitPoolCoreSize(),
-                CONFIG.getSubmitPoolMaxSize(),
-                CONFIG.getSubmitPoolKeepAliveTime(),
-                TimeUnit.SECONDS,
-                new ArrayBlockingQueue<>(CONFIG.getSubmitPoolQueueSize()),
-                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-submit-job-%d"),
-                new ThreadPoolExecutor.AbortPolicy());
-
-        //初始callbackExecutors
-        callbackExecutors = new ThreadPoolExecutor(
-                CONFIG.getCallbackPoolCoreSize(),
-                CONFIG.getCallbackPoolMaxSize(),
-                CONFIG.getCallbackPoolKeepAliveTime(),
-                TimeUnit.SECONDS,
-                new ArrayBlockingQueue<>(CONFIG.getCallbackPoolQueueSize()),
-                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-callback-%d"),
-                new ThreadPoolExecutor.AbortPolicy());
-
-        CallbackTask.initCallbackFailedTaskManager(callbackExecutors);
+        if (CONFIG.isJournalEnabled()) {
+            try {
+                jobJournal = new JobJournal(new File(CONFIG.getJournalDir()),
+                        CONFIG.getJournalSegmentSizeInMB() * 1024 * 1024);
+            } catch (IOException e) {
+                LOGGER.error("Open job journal failed, jobs will not survive restarts.", e);
+            }
+        }
+
+        boolean useVirtualThreads = CONFIG.isVirtualThreadsEnabled() && VirtualThreads.isAvailable();
+        if (CONFIG.isVirtualThreadsEnabled() && !useVirtualThreads) {
+            LOGGER.warn("Virtual threads are not available in this JVM, fall back to platform thread pools.");
+        }
+
+        // 提交请求在任务线程中完成时，任务在线程退出前就离开了提交阶段，准入控制随即放入下一个任务；
+        // 排队上限多留出与并发数相同的余量，保证已准入的任务不会被线程池拒绝
+        int submitConcurrency = useVirtualThreads ? CONFIG.getSubmitVirtualConcurrency()
+                : CONFIG.getSubmitPoolMaxSize();
+        if (useVirtualThreads) {
+            //虚拟线程模式：每个任务一个虚拟线程，并发数由信号量限制
+            submitJobExecutors = VirtualThreads.newBoundedExecutor("moderation-sdk-submit-job-",
+                    CONFIG.getSubmitVirtualConcurrency(), CONFIG.getSubmitPoolQueueSize() + submitConcurrency);
+            callbackExecutors = VirtualThreads.newBoundedExecutor("moderation-sdk-callback-",
+                    CONFIG.getCallbackVirtualConcurrency(), CONFIG.getCallbackPoolQueueSize());
+            CallbackTask.initCallbackFailedTaskManager(callbackExecutors,
+                    VirtualThreads.newThreadFactory("moderation-sdk-retry-callback-"), jobJournal);
+            LOGGER.info(String.format("Virtual threads enabled, submit concurrency:%d, callback concurrency:%d",
+                    CONFIG.getSubmitVirtualConcurrency(), CONFIG.getCallbackVirtualConcurrency()));
+        } else {
+            //初始submitJobExecutors
+            submitJobExecutors = new ThreadPoolExecutor(
+                    CONFIG.getSubmitPoolCoreSize(),
+                    CONFIG.getSubmitPoolMaxSize(),
+                    CONFIG.getSubmitPoolKeepAliveTime(),
+                    TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(CONFIG.getSubmitPoolQueueSize() + submitConcurrency),
+                    CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-submit-job-%d"),
+                    new ThreadPoolExecutor.AbortPolicy());
+
+            //初始callbackExecutors
+            callbackExecutors = new ThreadPoolExecutor(
+                    CONFIG.getCallbackPoolCoreSize(),
+                    CONFIG.getCallbackPoolMaxSize(),
+                    CONFIG.getCallbackPoolKeepAliveTime(),
+                    TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(CONFIG.getCallbackPoolQueueSize()),
+                    CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-callback-%d"),
+                    new ThreadPoolExecutor.AbortPolicy());
+
+            CallbackTask.initCallbackFailedTaskManager(callbackExecutors,
+                    CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-retry-callback-%d"), jobJournal);
+        }
+        int submitCapacity = submitConcurrency + CONFIG.getSubmitPoolQueueSize();
+        admissionController = new AdmissionController(CONFIG.getAdmissionMaxJobs(), submitCapacity,
+                CONFIG.getAdmissionQueueSize());
+        defaultAdmissionPolicy = AdmissionPolicy.of(CONFIG.getAdmissionMode(), CONFIG.getAdmissionTimeout());
+        if (CONFIG.isCallbackBatchEnabled()) {
+            callbackBatcher = new CallbackBatcher(transport, callbackExecutors, CONFIG.getCallbackBatchMaxSize(),
+                    CONFIG.getCallbackBatchWindow());
+        }
+        jobPollCoordinator = new JobPollCoordinator(transport, callbackExecutors, callbackBatcher);
+        if (CONFIG.isDedupEnabled()) {
+            dedupCache = new ContentDedupCache(new File(CONFIG.getDedupIndexFile()), CONFIG.getDedupMaxEntries(),
+                    TimeUnit.HOURS.toMillis(CONFIG.getDedupTtlHours()));
+        }
+        if (CONFIG.isCoalesceEnabled()) {
+            inFlightJobs = new InFlightJobs();
+        }
+        if (CONFIG.isSourceCacheEnabled()) {
+            sourceCache = new SourceUrlCache(new File(CONFIG.getSourceCacheIndexFile()),
+                    CONFIG.getSourceCacheMaxEntries(), TimeUnit.HOURS.toMillis(CONFIG.getSourceCacheTtlHours()));
+        }
+        //上传失败保留的暂存文件最多保留到OBS清理未完成分段上传的时限，删除前中止其分段上传
+        videoSpool = new VideoSpool(new File(CONFIG.getSpoolDir()), CONFIG.getSpoolQuotaInMB() * 1024L * 1024L,
+                TimeUnit.SECONDS.toMillis(CONFIG.getSpoolWaitTimeout()),
+                TimeUnit.HOURS.toMillis(CONFIG.getObsOrphanUploadMaxAgeHours()),
+                file -> simpleObsClient.discardUploadCheckpoint(file.getPath()));
+        if (CONFIG.getDownloadConnections() > 1) {
+            rangedDownloader = new RangedDownloader(sharedHttpClient, CONFIG.getDownloadConnections(),
+                    CONFIG.getDownloadRangeSizeInMB() * 1024L * 1024L, CONFIG.getDownloadThreads());
+        }
+        //清理上次异常退出时遗留的暂存文件，将重新提交的任务保留上传断点
+        videoSpool.collectOrphans(getResumableVideoUrls(),
+                TimeUnit.HOURS.toMillis(CONFIG.getObsOrphanUploadMaxAgeHours()));
         //创建obs桶
         simpleObsClient.createBucket(CONFIG.getObsBucketName());
+        //清理上次异常退出时遗留的未完成分段上传
+        if (CONFIG.getObsOrphanUploadMaxAgeHours() > 0) {
+            simpleObsClient.abortOrphanedUploads(CONFIG.getObsBucketName(),
+                    TimeUnit.HOURS.toMillis(CONFIG.getObsOrphanUploadMaxAgeHours()));
+        }
+        if (jobJournal != null) {
+            recoverFromJournal();
+        }
+        initMetrics();
 
         LOGGER.info("ModerationServiceUtils init successfully.");
     }
 
+    /**
+     * 注册线程池、准入控制、回调重试、轮询和连接池的状态量，按配置开启JMX和Prometheus端点
+     */
+    private void initMetrics() {
+        registerExecutorGauges("submit_pool", submitJobExecutors);
+        registerExecutorGauges("callback_pool", callbackExecutors);
+        METRICS.registerGauge("callback_waiting_retry", "Callbacks waiting for retry.",
+                CallbackTask::getWaitingRetryCount);
+        METRICS.registerGauge("poll_pending_jobs", "Submitted jobs waiting for the next result query.",
+                jobPollCoordinator::getPendingJobCount);
+        METRICS.registerGauge("admission_in_flight_jobs", "Admitted jobs that have not finished.",
+                admissionController::getInFlightJobs);
+        METRICS.registerGauge("admission_queue_depth", "Jobs waiting for admission.",
+                admissionController::getQueueDepth);
+        METRICS.registerCounter("admission_admitted_total", "Jobs admitted.", admissionController::getAdmittedCount);
+        METRICS.registerCounter("admission_rejected_total", "Jobs rejected by admission control.",
+                admissionController::getRejectedCount);
+        METRICS.registerGauge("spool_reserved_bytes", "Bytes reserved by videos in the local spool.",
+                videoSpool::getReservedBytes);
+        METRICS.registerGauge("spool_waiting", "Downloads waiting for spool space.", videoSpool::getWaitingCount);
+        METRICS.registerCounter("spool_waits_total", "Downloads that had to wait for spool space.",
+                videoSpool::getWaitCount);
+        METRICS.registerGauge("http_pool_leased", "Leased connections of the shared http pool.",
+                () -> sharedHttpClient.getPoolStats().getLeased());
+        METRICS.registerGauge("http_pool_available", "Idle connections of the shared http pool.",
+                () -> sharedHttpClient.getPoolStats().getAvailable());
+        METRICS.registerGauge("http_pool_pending", "Requests waiting for a connection of the shared http pool.",
+                () -> sharedHttpClient.getPoolStats().getPending());
+
+        if (CONFIG.isMetricsJmxEnabled()) {
+            METRICS.registerMBeans();
+        }
+        if (CONFIG.getMetricsPrometheusPort() > 0) {
+            try {
+                prometheusExporter = new PrometheusExporter(CONFIG.getMetricsPrometheusHost(),
+                        CONFIG.getMetricsPrometheusPort(), METRICS);
+            } catch (IOException e) {
+                LOGGER.error("Start prometheus exporter failed, metrics are only available over JMX.", e);
+            }
+        }
+    }
+
+    private static void registerExecutorGauges(String name, ExecutorService executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor threadPool = (ThreadPoolExecutor) executor;
+            METRICS.registerGauge(name + "_active", "Threads running tasks in " + name + ".",
+                    threadPool::getActiveCount);
+            METRICS.registerGauge(name + "_queued", "Tasks queued in " + name + ".",
+                    () -> threadPool.getQueue().size());
+        } else {
+            METRICS.registerGauge(name + "_active", "Virtual threads running tasks in " + name + ".",
+                    () -> VirtualThreads.getActiveCount(executor));
+            METRICS.registerGauge(name + "_queued", "Tasks waiting for a permit in " + name + ".",
+                    () -> VirtualThreads.getWaitingCount(executor));
+        }
+    }
+
     /**
      * 获取ModerationServiceUtils实例（单例）
      *
@@ -0,0 +1,42 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+
+/**
+ * 任务提交、结果查询和回调所使用的网络传输层，所有请求均以future的形式返回响应
+ */
+interface ModerationTransport {
+
+    /**
+     * 向视频审核服务发送签名的POST请求
+     *
+     * @param uri    请求路径
+     * @param entity 请求体
+     * @return 响应future
+     */
+    CompletableFuture<HttpResponse> post(String uri, HttpEntity entity);
+
+    /**
+     * 向视频审核服务发送签名的GET请求
+     *
+     * @param uri 请求路径
+     * @return 响应future，响应体可能仍在连接中，处理完后应通过HttpClientUtils.closeQuietly关闭响应
+     */
+    CompletableFuture<HttpResponse> get(String uri);
+
+    /**
+     * 向回调地址投递结果
+     *
+     * @param callbackUrl 回调url
+     * @param headers     请求头
+     * @param body        请求对象，以json发送，由传输层决定流式写出还是先序列化到内存，发送前不应再被修改
+     * @return 响应future
+     */
+    CompletableFuture<HttpResponse> deliver(String callbackUrl, Header[] headers, Object body);
+
+    void close();
+}
@@ -0,0 +1,212 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.huawei.ais.demo.moderation.model.JobResult;
+import com.huawei.ais.demo.moderation.model.JobStatus;
+
+/**
+ * 透传模式下的任务结果<p/>
+ * 查询响应只用流式解析器扫描一遍：记录结果对象在响应中的字节范围，并取出状态、时间等标量字段组成摘要；
+ * 帧结果等数组和对象直接跳过，不构建对象图<br/>
+ * 序列化时原样写出结果对象的字节，回调信封、合并回调和任务日志都不需要重新序列化帧结果
+ */
+class RawJobResult implements JsonSerializable {
+
+    // 摘要只取已知字段，引擎新增的标量字段照常透传
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final JobResult summary;
+
+    private RawJobResult(byte[] buffer, int offset, int length, JobResult summary) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.summary = summary;
+    }
+
+    /**
+     * @param body     查询响应体，UTF-8编码
+     * @param rootName 结果对象所在的字段名
+     * @return 透传结果
+     * @throws IOException 响应不是json或不包含结果对象
+     */
+    static RawJobResult parse(byte[] body, String rootName) throws IOException {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Job result response is not a json object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (rootName.equals(fieldName) && token == JsonToken.START_OBJECT) {
+                    return parseResult(parser, body);
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException(String.format("Field '%s' is not found in job result response.", rootName));
+    }
+
+    private static RawJobResult parseResult(JsonParser parser, byte[] body) throws IOException {
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        ObjectNode summaryNode = OBJECT_MAPPER.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token.isScalarValue()) {
+                summaryNode.set(fieldName, OBJECT_MAPPER.readTree(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        return new RawJobResult(body, start, end - start,
+                OBJECT_MAPPER.treeToValue(summaryNode, JobResult.class));
+    }
+
+    /**
+     * @return 只包含标量字段的结果摘要，帧结果为空
+     */
+    JobResult getSummary() {
+        return summary;
+    }
+
+    JobStatus getStatus() {
+        return summary.getStatus();
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(new RawUtf8(buffer, offset, length));
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RawJobResult{job_id=%s, status=%s, bytes=%d}", summary.getId(),
+                summary.getStatus(), length);
+    }
+
+    /**
+     * 以原始UTF-8字节写出的json片段，UTF-8输出时直接复制字节，其他输出时才解码为字符串
+     */
+    private static class RawUtf8 implements SerializableString {
+        private final byte[] buffer;
+        private final int offset;
+        private final int length;
+        private SerializedString decoded;
+
+        RawUtf8(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private SerializedString decoded() {
+            if (decoded == null) {
+                decoded = new SerializedString(new String(buffer, offset, length, StandardCharsets.UTF_8));
+            }
+            return decoded;
+        }
+
+        @Override
+        public String getValue() {
+            return decoded().getValue();
+        }
+
+        @Override
+        public int charLength() {
+            return decoded().charLength();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return decoded().asQuotedChars();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, offset, bytes, 0, length);
+            return bytes;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return decoded().asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] out, int position) {
+            return decoded().appendQuotedUTF8(out, position);
+        }
+
+        @Override
+        public int appendQuoted(char[] out, int position) {
+            return decoded().appendQuoted(out, position);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] out, int position) {
+            if (position + length > out.length) {
+                return -1;
+            }
+            System.arraycopy(buffer, offset, out, position, length);
+            return length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] out, int position) {
+            return decoded().appendUnquoted(out, position);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return decoded().writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(buffer, offset, length);
+            return length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer out) throws IOException {
+            return decoded().putQuotedUTF8(out);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer out) throws IOException {
+            if (length > out.remaining()) {
+                return -1;
+            }
+            out.put(buffer, offset, length);
+            return length;
+        }
+    }
+}
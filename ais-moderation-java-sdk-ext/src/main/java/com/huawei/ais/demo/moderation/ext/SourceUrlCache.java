@@ -0,0 +1,124 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.File;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * 视频源url的缓存，记录每个url上次获取时的ETag、Last-Modified以及视频的本地和OBS位置<br/>
+ * 同一url再次提交时以条件请求（If-None-Match / If-Modified-Since）校验，源站返回304时跳过下载和上传<br/>
+ * 条目数有上限，超出时淘汰最久未使用的条目，见{@link JsonLruIndex}
+ */
+class SourceUrlCache extends JsonLruIndex<SourceUrlCache.SourceEntry> {
+
+    /**
+     * @param indexFile  索引持久化文件
+     * @param maxEntries 最大条目数
+     * @param ttlMillis  条目有效期，ms
+     */
+    SourceUrlCache(File indexFile, int maxEntries, long ttlMillis) {
+        super(indexFile, maxEntries, ttlMillis, new TypeReference<List<SourceEntry>>() {
+        }, "moderation-sdk-source-cache-flush-%d");
+    }
+
+    /**
+     * @return url上次获取的记录，没有时返回null
+     */
+    synchronized SourceEntry get(String videoUrl) {
+        return getEntry(videoUrl);
+    }
+
+    /**
+     * 记录一次完整的获取，源站没有返回任何校验信息时不记录
+     *
+     * @param videoUrl     视频url
+     * @param etag         响应头中的ETag
+     * @param lastModified 响应头中的Last-Modified，ms，没有时为0
+     * @param localPath    视频的本地文件位置，流式传输时为null
+     * @param bucketName   视频在OBS中的桶
+     * @param objectKey    视频在OBS中的key
+     * @param contentHash  视频内容的SHA-256，未开启去重时为null
+     */
+    synchronized void put(String videoUrl, String etag, long lastModified, String localPath, String bucketName,
+                          String objectKey, String contentHash) {
+        if (etag == null && lastModified <= 0) {
+            return;
+        }
+        SourceEntry entry = new SourceEntry();
+        entry.videoUrl = videoUrl;
+        entry.createTime = System.currentTimeMillis();
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.localPath = localPath;
+        entry.bucketName = bucketName;
+        entry.objectKey = objectKey;
+        entry.contentHash = contentHash;
+        putEntry(entry);
+    }
+
+    synchronized void invalidate(String videoUrl) {
+        removeEntry(videoUrl);
+    }
+
+    static class SourceEntry implements JsonLruIndex.IndexEntry {
+        @JsonProperty("video_url")
+        private String videoUrl;
+
+        @JsonProperty("create_time")
+        private long createTime;
+
+        @JsonProperty("etag")
+        private String etag;
+
+        @JsonProperty("last_modified")
+        private long lastModified;
+
+        @JsonProperty("local_path")
+        private String localPath;
+
+        @JsonProperty("bucket_name")
+        private String bucketName;
+
+        @JsonProperty("object_key")
+        private String objectKey;
+
+        @JsonProperty("content_hash")
+        private String contentHash;
+
+        String getEtag() {
+            return etag;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getLocalPath() {
+            return localPath;
+        }
+
+        String getBucketName() {
+            return bucketName;
+        }
+
+        String getObjectKey() {
+            return objectKey;
+        }
+
+        String getContentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public String indexKey() {
+            return videoUrl;
+        }
+
+        @Override
+        public long indexCreateTime() {
+            return createTime;
+        }
+    }
+}
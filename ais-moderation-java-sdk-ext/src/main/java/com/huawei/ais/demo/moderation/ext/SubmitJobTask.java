@@ -2,28 +2,48 @@ package com.huawei.ais.demo.moderation.ext;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
 import java.net.URLDecoder;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.RejectedExecutionException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+import com.huawei.ais.demo.moderation.model.JobResult;
+import com.huawei.ais.demo.moderation.model.JobStatus;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.util.EntityUtils;
 
 import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.http.RangedDownloader;
+import com.huawei.ais.demo.http.SharedHttpClient;
+import com.huawei.ais.demo.moderation.CommonUtils;
 import com.huawei.ais.demo.moderation.Config;
-import com.huawei.ais.demo.moderation.model.SubmitReq;
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
 import com.huawei.ais.demo.moderation.model.SubmitSuccessRes;
 import com.huawei.ais.demo.obs.ObsFileHandle;
 import com.huawei.ais.demo.obs.SimpleObsClient;
-import com.huawei.ais.sdk.AisAccess;
 
-class SubmitJobTask implements Callable<String> {
+/**
+ * 执行“下载视频-上传OBS-提交OBS地址给云端引擎”任务<br/>
+ * 提交请求发出后即释放当前线程，各阶段的进度和最终结果通过getJobFuture()返回的future获取<br/>
+ * 开启内容去重时，下载过程中同时计算视频的SHA-256，相同内容复用已上传的OBS文件和已有的审核结果<br/>
+ * 开启源url缓存时，重复提交的url先发送条件请求，源站返回304时跳过下载和上传<br/>
+ * 非流式传输时视频下载到暂存目录中任务独占的子目录，暂存空间不足时等待，上传结束后即删除；
+ * 源站支持Range时大文件由RangedDownloader分段并行下载
+ */
+class SubmitJobTask implements Runnable {
 
     private static final Log LOGGER = LogFactory.getLog(SubmitJobTask.class);
 
@@ -32,62 +52,430 @@ class SubmitJobTask implements Callable<String> {
 
     private static final Config CONFIG = Config.getInstance();
 
+    private static final ModerationMetrics METRICS = ModerationMetrics.getInstance();
+
     private String videoUrl;
-    private String callbackUrl;
-    private AisAccess aisAccessClient;
+    private CallbackTargets callbackTargets;
+    private ModerationTransport transport;
     private SimpleObsClient simpleObsClient;
-    private ExecutorService callbackExecutors;
+    private SharedHttpClient sharedHttpClient;
+    private JobPollCoordinator jobPollCoordinator;
     private JobMetaInfo jobMetaInfo;
+    private ContentDedupCache dedupCache;
+    private SourceUrlCache sourceCache;
+    private VideoSpool videoSpool;
+    private RangedDownloader rangedDownloader;
+    // 提交响应的后续处理在提交线程池中执行，不占用异步http客户端的I/O线程
+    private Executor completionExecutor;
+
+    // 视频内容的SHA-256，未开启去重时为null
+    private String contentHash;
+
+    private final ModerationJobFuture jobFuture = new ModerationJobFuture();
 
-    SubmitJobTask(String videoUrl,JobMetaInfo jobMetaInfo, String callbackUrl, AisAccess aisAccessClient, SimpleObsClient simpleObsClient,
-                  ExecutorService callbackExecutors) {
+    // 任务创建（进入提交线程池）的时间，用于统计排队时间
+    private final long createdAt = System.nanoTime();
+    // 最近一次打开视频源的时间，下载耗时从这里开始计算
+    private long sourceOpenedAt;
+
+    SubmitJobTask(String videoUrl,JobMetaInfo jobMetaInfo, CallbackTargets callbackTargets, ModerationTransport transport, SimpleObsClient simpleObsClient,
+                  SharedHttpClient sharedHttpClient, JobPollCoordinator jobPollCoordinator, ContentDedupCache dedupCache,
+                  SourceUrlCache sourceCache, VideoSpool videoSpool, RangedDownloader rangedDownloader,
+                  Executor submitJobExecutors) {
         this.videoUrl = videoUrl;
         this.jobMetaInfo = jobMetaInfo;
-        this.callbackUrl = callbackUrl;
-        this.aisAccessClient = aisAccessClient;
+        this.callbackTargets = callbackTargets;
+        this.transport = transport;
         this.simpleObsClient = simpleObsClient;
-        this.callbackExecutors = callbackExecutors;
+        this.sharedHttpClient = sharedHttpClient;
+        this.jobPollCoordinator = jobPollCoordinator;
+        this.dedupCache = dedupCache;
+        this.sourceCache = sourceCache;
+        this.videoSpool = videoSpool;
+        this.rangedDownloader = rangedDownloader;
+        this.completionExecutor = CommonUtils.callerRunsOnRejection(submitJobExecutors);
+    }
+
+    /**
+     * @return 任务结束后以任务结果完成的future，下载、上传或提交失败时异常完成
+     */
+    ModerationJobFuture getJobFuture() {
+        return jobFuture;
     }
 
     @Override
-    public String call() throws IOException {
-        String filePath = downloadVideo(videoUrl);
-        ObsFileHandle obsFileHandle = simpleObsClient.uploadFile(CONFIG.getObsBucketName(), filePath);
-        String jobId = null;
+    public void run() {
+        METRICS.recordSince(ModerationMetrics.Stage.QUEUE_WAIT, createdAt);
+        ObsFileHandle obsFileHandle;
+        String obsUrl;
         try {
-            jobId = submitJobToModertionService(videoUrl,jobMetaInfo, obsFileHandle.generateSharedDownloadUrl());
-            if (jobId != null) {
-                LOGGER.info(String.format("Create callback task for job[%s].", jobId));
-                callbackExecutors.submit(new CallbackTask(videoUrl, jobId, callbackUrl, aisAccessClient));
-                return jobId;
+            obsFileHandle = transferVideo();
+            if (obsFileHandle == null) {
+                return;
+            }
+            obsUrl = obsFileHandle.generateSharedDownloadUrl();
+        } catch (IOException | RuntimeException e) {
+            jobFuture.fail(e);
+            return;
+        }
+        jobFuture.markUploaded(obsUrl);
+
+        String hash = contentHash;
+        long fileSize = obsFileHandle.getSize();
+        submitJobToModertionService(videoUrl, jobMetaInfo, obsUrl).whenCompleteAsync((jobId, e) -> {
+            if (e != null) {
+                LOGGER.error(String.format("Submit job to moderation service failed for video[%s].", videoUrl), e);
+                jobFuture.fail(CommonUtils.unwrapCompletionException(e));
+            } else if (jobId == null) {
+                LOGGER.error(String.format("Submit job to moderation service failed for video[%s].", videoUrl));
+                jobFuture.fail(new NoJobIdException(videoUrl));
+            } else {
+                jobFuture.markSubmitted(jobId);
+                jobPollCoordinator.track(videoUrl, jobId, callbackTargets, fileSize, jobMetaInfo.getFrameInterval())
+                        .whenComplete((jobResult, error) -> {
+                            if (error != null) {
+                                jobFuture.fail(error);
+                                return;
+                            }
+                            // 透传模式下的结果只是摘要，不能作为去重缓存的结果
+                            if (hash != null && jobResult.getStatus() == JobStatus.FINISH
+                                    && !CONFIG.isCallbackPassthroughEnabled()) {
+                                dedupCache.putResult(hash, ContentDedupCache.resultKey(jobMetaInfo), jobResult);
+                            }
+                            jobFuture.complete(jobResult);
+                        });
+            }
+        }, completionExecutor);
+    }
+
+    /**
+     * 将视频转存到OBS，能复用的缓存都会被复用
+     *
+     * @return 视频在OBS中的文件句柄；命中结果缓存并已直接回调时返回null
+     */
+    private ObsFileHandle transferVideo() throws IOException {
+        // 源站确认视频未修改时，连同上次的上传结果一起复用
+        CloseableHttpResponse connection = null;
+        SourceUrlCache.SourceEntry cachedSource = sourceCache != null ? sourceCache.get(videoUrl) : null;
+        if (cachedSource != null) {
+            connection = openSource(cachedSource);
+            if (isNotModified(connection)) {
+                jobFuture.markDownloaded();
+                contentHash = cachedSource.getContentHash();
+                if (contentHash != null && deliverCachedResult(contentHash)) {
+                    return null;
+                }
+                ObsFileHandle obsFileHandle = reuseCachedSource(cachedSource);
+                if (obsFileHandle != null) {
+                    return obsFileHandle;
+                }
+                sourceCache.invalidate(videoUrl);
+                connection = null;
+            }
+        }
+
+        MessageDigest digest = dedupCache != null ? ContentDedupCache.newDigest() : null;
+        ObsFileHandle obsFileHandle;
+        if (CONFIG.isStreamTransferEnabled()) {
+            // 流式传输时内容摘要在上传结束后才能得到，命中缓存只能跳过引擎调用
+            if (connection == null) {
+                connection = openSource(null);
             }
-        } catch (RejectedExecutionException e1) {
-            LOGGER.error(String.format("Submit callback task failed. job_id=%s video_url=%s.", jobId, videoUrl));
+            obsFileHandle = streamVideoToObs(connection, digest);
+            jobFuture.markDownloaded();
+            if (digest != null) {
+                contentHash = ContentDedupCache.toHex(digest.digest());
+            }
+        } else {
+            try (VideoSpool.Entry spoolEntry = videoSpool.open(videoUrl, resolveFileName(videoUrl))) {
+                File destFile = spoolEntry.getFile();
+                if (simpleObsClient.hasUploadCheckpoint(destFile.getPath())) {
+                    // 上次上传失败留下了断点，本地文件是完整的，无需重新下载
+                    LOGGER.info("Resume uploading the local file, skip download. local:" + destFile.getAbsolutePath());
+                    spoolEntry.resize(destFile.length());
+                    if (digest != null) {
+                        ContentDedupCache.updateDigest(digest, destFile);
+                    }
+                    if (connection != null) {
+                        connection.close();
+                        connection = null;
+                    }
+                } else {
+                    connection = reserveSpoolSpace(spoolEntry, connection);
+                    downloadVideo(connection, destFile, digest);
+                    spoolEntry.resize(destFile.length());
+                }
+                jobFuture.markDownloaded();
+                obsFileHandle = null;
+                if (digest != null) {
+                    contentHash = ContentDedupCache.toHex(digest.digest());
+                    if (deliverCachedResult(contentHash)) {
+                        return null;
+                    }
+                    obsFileHandle = locateCachedObject(contentHash);
+                }
+                if (obsFileHandle == null) {
+                    obsFileHandle = uploadSpooledVideo(spoolEntry, destFile);
+                }
+            }
+        }
+
+        if (sourceCache != null && connection != null) {
+            // 暂存文件上传后即删除，不再记录本地副本
+            sourceCache.put(videoUrl, headerValue(connection, "ETag"), lastModified(connection), null,
+                    obsFileHandle.getBucketName(), obsFileHandle.getObjectKey(), contentHash);
+        }
+        if (CONFIG.isStreamTransferEnabled() && contentHash != null && deliverCachedResult(contentHash)) {
+            return null;
+        }
+        return obsFileHandle;
+    }
+
+    /**
+     * 通过共享连接池打开视频源，有上次的获取记录时发送条件请求；会分段下载时只请求第一个分段
+     *
+     * @return 源站的响应，状态码为2xx或304，调用方负责关闭
+     */
+    private CloseableHttpResponse openSource(SourceUrlCache.SourceEntry cachedSource) throws IOException {
+        HttpGet httpGet = new HttpGet(videoUrl);
+        if (rangedDownloader != null && !CONFIG.isStreamTransferEnabled()) {
+            httpGet.setHeader("Range", rangedDownloader.getFirstRange());
+        }
+        if (cachedSource != null) {
+            if (cachedSource.getEtag() != null) {
+                httpGet.setHeader("If-None-Match", cachedSource.getEtag());
+            }
+            if (cachedSource.getLastModified() > 0) {
+                httpGet.setHeader("If-Modified-Since", DateUtils.formatDate(new Date(cachedSource.getLastModified())));
+            }
+        }
+        sourceOpenedAt = System.nanoTime();
+        CloseableHttpResponse response = sharedHttpClient.getStreamingHttpClient().execute(httpGet);
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode / 100 != 2 && statusCode != HttpStatus.SC_NOT_MODIFIED) {
+            response.close();
+            throw new IOException(String.format("Open video[%s] failed, status:%d", videoUrl, statusCode));
+        }
+        return response;
+    }
+
+    /**
+     * 按视频大小预占暂存空间；需要等待时先关闭视频源，取得额度后重新打开，等待期间不占用源站连接
+     *
+     * @param connection 已打开的视频源，为null时在这里打开
+     * @return 可以开始下载的视频源
+     */
+    private CloseableHttpResponse reserveSpoolSpace(VideoSpool.Entry spoolEntry, CloseableHttpResponse connection)
+            throws IOException {
+        if (connection == null) {
+            connection = openSource(null);
+        }
+        long contentLength = Math.max(RangedDownloader.getTotalLength(connection), 0);
+        if (spoolEntry.tryReserve(contentLength)) {
+            return connection;
+        }
+        connection.close();
+        LOGGER.info(String.format("Spool is full, video[%s] waits for %d bytes.", videoUrl, contentLength));
+        spoolEntry.reserve(contentLength);
+        return openSource(null);
+    }
+
+    private static boolean isNotModified(CloseableHttpResponse response) throws IOException {
+        if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            response.close();
+            return true;
+        }
+        return false;
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * @return Last-Modified的毫秒值，没有或无法解析时返回0
+     */
+    private static long lastModified(HttpResponse response) {
+        String value = headerValue(response, "Last-Modified");
+        Date date = value != null ? DateUtils.parseDate(value) : null;
+        return date != null ? date.getTime() : 0;
+    }
+
+    /**
+     * 复用未修改视频上次的转存结果：OBS中的文件仍在时直接使用，否则重新上传保留的本地文件
+     *
+     * @return OBS文件句柄，上次的结果都已不可用时返回null
+     */
+    private ObsFileHandle reuseCachedSource(SourceUrlCache.SourceEntry cachedSource) throws IOException {
+        try {
+            ObsFileHandle obsFileHandle = simpleObsClient.locateFile(cachedSource.getBucketName(),
+                    cachedSource.getObjectKey());
+            LOGGER.info(String.format("Video[%s] is not modified, skip download and upload.", videoUrl));
+            return obsFileHandle;
+        } catch (RuntimeException e) {
+            LOGGER.warn(String.format("Cached obs object %s is gone.", cachedSource.getObjectKey()));
+        }
+        String localPath = cachedSource.getLocalPath();
+        if (localPath != null && new File(localPath).isFile()) {
+            LOGGER.info(String.format("Video[%s] is not modified, upload the local copy again.", videoUrl));
+            return uploadVideo(localPath, contentHash != null ? contentHash : VideoSpool.baseName(videoUrl));
         }
-        LOGGER.error(String.format("Submit job to moderation service failed for video[%s].", videoUrl));
         return null;
     }
 
-    private String downloadVideo(String videoUrl) throws IOException {
-        LOGGER.info("Begin to download video file... url:" + videoUrl);
+    /**
+     * 相同内容以相同参数审核过时，直接回调缓存的结果
+     *
+     * @return 是否命中缓存
+     */
+    private boolean deliverCachedResult(String contentHash) {
+        if (dedupCache == null) {
+            return false;
+        }
+        JobResult cachedResult = dedupCache.getResult(contentHash, ContentDedupCache.resultKey(jobMetaInfo));
+        if (cachedResult == null) {
+            return false;
+        }
+        LOGGER.info(String.format("Video[%s] has been moderated as job[%s], deliver the cached result.",
+                videoUrl, cachedResult.getId()));
+        jobPollCoordinator.deliver(videoUrl, cachedResult.getId(), callbackTargets, cachedResult);
+        jobFuture.completeCached(cachedResult);
+        return true;
+    }
+
+    /**
+     * @return 相同内容已上传过且OBS中的文件仍然存在时返回其句柄，否则返回null
+     */
+    private ObsFileHandle locateCachedObject(String contentHash) {
+        String[] cachedObject = dedupCache.getObject(contentHash);
+        if (cachedObject == null) {
+            return null;
+        }
         try {
-            URL url = new URL(videoUrl);
-            String urlDecoded = URLDecoder.decode(videoUrl, "UTF-8");
-            String fileName = urlDecoded.substring(urlDecoded.lastIndexOf("/") + 1);
-            File destFile = new File("data/" + fileName);
-            FileUtils.copyURLToFile(url, destFile);
+            ObsFileHandle obsFileHandle = simpleObsClient.locateFile(cachedObject[0], cachedObject[1]);
+            LOGGER.info(String.format("Video[%s] has been uploaded as %s, skip upload.", videoUrl, cachedObject[1]));
+            return obsFileHandle;
+        } catch (RuntimeException e) {
+            LOGGER.warn(String.format("Cached obs object %s is gone, upload again.", cachedObject[1]));
+            dedupCache.invalidateObject(contentHash);
+            return null;
+        }
+    }
+
+    /**
+     * 上传暂存文件，开启去重时以内容摘要作为目录，否则以暂存子目录名作为目录；
+     * 上传失败但留下了断点时保留暂存子目录，同一url再次提交时从断点继续上传
+     */
+    private ObsFileHandle uploadSpooledVideo(VideoSpool.Entry spoolEntry, File destFile) throws IOException {
+        try {
+            return uploadVideo(destFile.getAbsolutePath(), contentHash != null ? contentHash : spoolEntry.getName());
+        } catch (IOException | RuntimeException e) {
+            if (simpleObsClient.hasUploadCheckpoint(destFile.getPath())) {
+                LOGGER.warn("Upload failed, keep the local file for resuming. local:" + destFile.getAbsolutePath());
+                spoolEntry.retain();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 上传到OBS的指定目录下，不同内容或不同url的同名文件不会互相覆盖
+     *
+     * @param folderName OBS中的目录：内容摘要或暂存子目录名
+     */
+    private ObsFileHandle uploadVideo(String filePath, String folderName) throws IOException {
+        long uploadStart = System.nanoTime();
+        ObsFileHandle obsFileHandle = simpleObsClient.uploadFile(CONFIG.getObsBucketName(), folderName + "/",
+                filePath);
+        METRICS.recordSince(ModerationMetrics.Stage.OBS_UPLOAD, uploadStart);
+        if (contentHash != null) {
+            dedupCache.putObject(contentHash, obsFileHandle.getBucketName(), obsFileHandle.getObjectKey());
+        }
+        return obsFileHandle;
+    }
+
+    /**
+     * @param connection 已打开的视频源
+     * @param destFile   本地文件
+     * @param digest     下载过程中同时计算的摘要，可为null
+     */
+    private void downloadVideo(CloseableHttpResponse connection, File destFile, MessageDigest digest)
+            throws IOException {
+        LOGGER.info("Begin to download video file... url:" + videoUrl);
+        // 只关闭响应：正常读完时连接已归还连接池，中途失败时直接断开连接，不会读完剩余内容
+        try (CloseableHttpResponse response = connection) {
+            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT) {
+                // 各分段并行写入文件，摘要只能在下载完成后计算
+                rangedDownloader.download(videoUrl, response, destFile);
+                if (digest != null) {
+                    ContentDedupCache.updateDigest(digest, destFile);
+                }
+            } else {
+                InputStream input = digestIfNeeded(response.getEntity().getContent(), digest);
+                FileUtils.copyToFile(input, destFile);
+            }
+            METRICS.recordSince(ModerationMetrics.Stage.DOWNLOAD, sourceOpenedAt);
             LOGGER.info("Download done! local:" + destFile.getAbsolutePath());
-            return destFile.getAbsolutePath();
         } catch (IOException e) {
             LOGGER.error("Download video failed. video_url:" + videoUrl, e);
             throw e;
         }
     }
 
-    private String submitJobToModertionService(String videoUrl,JobMetaInfo jobMetaInfo, String obsUrl) throws IOException {
+    private ObsFileHandle streamVideoToObs(CloseableHttpResponse connection, MessageDigest digest)
+            throws IOException {
+        LOGGER.info("Begin to stream video file to obs... url:" + videoUrl);
+        try (CloseableHttpResponse response = connection) {
+            InputStream input = digestIfNeeded(response.getEntity().getContent(), digest);
+            // 与暂存文件一样以url摘要作为目录，不同url的同名文件不会互相覆盖
+            ObsFileHandle obsFileHandle = simpleObsClient.uploadStream(CONFIG.getObsBucketName(),
+                    VideoSpool.baseName(videoUrl) + "/" + resolveFileName(videoUrl), input);
+            // 下载和上传在同一次传输中完成，整体计入上传耗时
+            METRICS.recordSince(ModerationMetrics.Stage.OBS_UPLOAD, sourceOpenedAt);
+            return obsFileHandle;
+        } catch (IOException e) {
+            LOGGER.error("Stream video to obs failed. video_url:" + videoUrl, e);
+            throw e;
+        }
+    }
+
+    private static InputStream digestIfNeeded(InputStream input, MessageDigest digest) {
+        return digest != null ? new DigestInputStream(input, digest) : input;
+    }
+
+    private static String resolveFileName(String videoUrl) throws IOException {
+        String urlDecoded = URLDecoder.decode(videoUrl, "UTF-8");
+        return urlDecoded.substring(urlDecoded.lastIndexOf("/") + 1);
+    }
+
+    private CompletableFuture<String> submitJobToModertionService(String videoUrl, JobMetaInfo jobMetaInfo, String obsUrl) {
         jobMetaInfo.setUrl(obsUrl);
 
-        HttpResponse response = aisAccessClient.post(SUBMIT_JOB_URI, HttpJsonDataUtils.objectToHttpEntity(jobMetaInfo));
+        long submitStart = System.nanoTime();
+        return transport.post(SUBMIT_JOB_URI, HttpJsonDataUtils.objectToHttpEntity(jobMetaInfo))
+                .whenComplete((response, e) -> METRICS.recordSince(ModerationMetrics.Stage.SUBMIT, submitStart))
+                .thenApply(response -> {
+                    try {
+                        return parseJobId(response, videoUrl, obsUrl);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * 引擎的提交响应中没有jobId
+     */
+    static class NoJobIdException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        NoJobIdException(String videoUrl) {
+            super("Submit job failed, no job_id returned for video " + videoUrl);
+        }
+    }
+
+    private String parseJobId(HttpResponse response, String videoUrl, String obsUrl) throws IOException {
         if (!HttpJsonDataUtils.isOKResponded(response)) {
             LOGGER.error(String.format("Submit the job failed, video_url:%s obs_url:%s", videoUrl, obsUrl));
             LOGGER.debug("Request body:" + HttpJsonDataUtils.objectToPrettyJsonString(jobMetaInfo));
@@ -0,0 +1,460 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * 下载视频的本地暂存目录<p/>
+ * 每个任务在暂存目录下独占一个子目录，文件名保持url中的文件名，子目录名同时作为OBS中对象的目录，
+ * 相同文件名或相同url的并发任务使用不同的子目录，本地和OBS中都不会互相覆盖；子目录名由url的摘要得到，
+ * 进程重启后重新提交的任务仍落在同一子目录，可以从上次的上传断点继续上传<br/>
+ * 暂存文件占用的空间有上限：下载前按视频大小预占额度，额度不足时按到达顺序等待，
+ * 任务结束后删除子目录并归还额度；单个视频超过上限时，等其他暂存文件都删除后单独下载<br/>
+ * 上传失败但留下了断点的子目录会被保留，仍占用额度，同一url再次提交时接管该子目录并从断点继续上传；
+ * 其他任务额度不足或保留超过时限时，先通过放弃回调中止断点中的分段上传，再删除子目录<br/>
+ * 启动时由{@link #collectOrphans(Collection, long)}清理上次进程遗留的子目录
+ */
+class VideoSpool {
+
+    private static final Log LOGGER = LogFactory.getLog(VideoSpool.class);
+
+    // 子目录名取url摘要的前16个十六进制字符
+    private static final int NAME_LENGTH = 16;
+
+    private final File directory;
+    private final long quotaBytes;
+    private final long waitTimeoutNanos;
+    private final long retainMillis;
+    private final Consumer<File> discardHook;
+
+    // 以下状态都由当前对象的锁保护
+    // 使用中和正在删除的子目录
+    private final Set<String> activeNames = new HashSet<>();
+    // 保留的子目录，按保留的先后排列
+    private final LinkedHashMap<String, RetainedEntry> retainedEntries = new LinkedHashMap<>();
+    private final Deque<Object> waiters = new ArrayDeque<>();
+    private long reservedBytes;
+    private long waitCount;
+
+    /**
+     * @param directory     暂存目录
+     * @param quotaBytes    暂存文件占用空间的上限，0表示不限制
+     * @param waitTimeoutMs 等待额度的最长时间，ms
+     * @param retainMillis  上传失败的子目录的最长保留时间，ms，0表示只在额度不足时删除
+     * @param discardHook   删除保留的子目录前以其中的暂存文件调用，用于中止断点中的分段上传
+     */
+    VideoSpool(File directory, long quotaBytes, long waitTimeoutMs, long retainMillis, Consumer<File> discardHook) {
+        this.directory = directory;
+        this.quotaBytes = quotaBytes;
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        this.retainMillis = retainMillis;
+        this.discardHook = discardHook;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.warn("Create spool directory failed: " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 删除上次进程遗留的子目录，删除前通过放弃回调中止其中断点记录的分段上传；
+     * 待重新提交的视频在断点仍有效期内时保留其子目录<br/>
+     * 需在开始执行任务前调用
+     *
+     * @param resumableVideoUrls 将从任务日志重新提交的视频url
+     * @param maxAgeMillis       保留的子目录的最长闲置时间，超过后分段已被清理，断点不再有效；0表示不限制
+     * @return 删除的子目录数
+     */
+    int collectOrphans(Collection<String> resumableVideoUrls, long maxAgeMillis) {
+        Set<String> resumableNames = new HashSet<>();
+        for (String videoUrl : resumableVideoUrls) {
+            resumableNames.add(baseName(videoUrl));
+        }
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (File entry : entries) {
+            if (resumableNames.contains(entry.getName())
+                    && (maxAgeMillis <= 0 || now - entry.lastModified() < maxAgeMillis)) {
+                continue;
+            }
+            synchronized (this) {
+                if (activeNames.contains(entry.getName())) {
+                    continue;
+                }
+            }
+            File[] files = entry.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    abortUpload(file);
+                }
+            }
+            FileUtils.deleteQuietly(entry);
+            removed++;
+        }
+        if (removed > 0) {
+            LOGGER.info(String.format("Removed %d orphaned spool entries from %s.", removed,
+                    directory.getAbsolutePath()));
+        }
+        return removed;
+    }
+
+    /**
+     * 为任务分配一个独占的子目录；同一url有保留的子目录时接管它及其占用的额度，否则不占用额度
+     *
+     * @param videoUrl 视频url
+     * @param fileName 暂存文件名
+     * @return 暂存文件，用完后必须关闭
+     */
+    Entry open(String videoUrl, String fileName) {
+        String base = baseName(videoUrl);
+        String name = base;
+        Entry entry;
+        List<RetainedEntry> expired;
+        synchronized (this) {
+            expired = evictExpired();
+            for (int i = 1; activeNames.contains(name); i++) {
+                name = base + "-" + i;
+            }
+            activeNames.add(name);
+            RetainedEntry retained = retainedEntries.remove(name);
+            entry = new Entry(name, fileName);
+            if (retained != null) {
+                entry.reserved = retained.reserved;
+            }
+        }
+        discard(expired);
+        return entry;
+    }
+
+    /**
+     * @return url对应的子目录名，不考虑相同url的并发任务所加的后缀
+     */
+    static String baseName(String videoUrl) {
+        byte[] digest = ContentDedupCache.newDigest().digest(videoUrl.getBytes(StandardCharsets.UTF_8));
+        return ContentDedupCache.toHex(digest).substring(0, NAME_LENGTH);
+    }
+
+    private boolean fits(long bytes) {
+        return fits(reservedBytes, bytes);
+    }
+
+    private boolean fits(long reserved, long bytes) {
+        return quotaBytes <= 0 || reserved == 0 || reserved + bytes <= quotaBytes;
+    }
+
+    /**
+     * 额度不足、且删除保留的子目录后足够时，按保留的先后取出保留的子目录并归还其额度；
+     * 需持有当前对象的锁，取出的子目录由调用方在锁外删除
+     */
+    private List<RetainedEntry> evictFor(long bytes) {
+        List<RetainedEntry> evicted = new ArrayList<>();
+        if (fits(bytes)) {
+            return evicted;
+        }
+        long remaining = reservedBytes;
+        int count = 0;
+        for (RetainedEntry retained : retainedEntries.values()) {
+            remaining -= retained.reserved;
+            count++;
+            if (fits(remaining, bytes)) {
+                break;
+            }
+        }
+        if (!fits(remaining, bytes)) {
+            // 还需要等待使用中的子目录归还额度，保留的子目录暂不删除
+            return evicted;
+        }
+        Iterator<RetainedEntry> iterator = retainedEntries.values().iterator();
+        for (int i = 0; i < count; i++) {
+            RetainedEntry retained = iterator.next();
+            iterator.remove();
+            evicted.add(evict(retained));
+        }
+        return evicted;
+    }
+
+    /**
+     * 取出超过保留时限的子目录，需持有当前对象的锁
+     */
+    private List<RetainedEntry> evictExpired() {
+        List<RetainedEntry> evicted = new ArrayList<>();
+        if (retainMillis <= 0) {
+            return evicted;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<RetainedEntry> iterator = retainedEntries.values().iterator();
+        while (iterator.hasNext()) {
+            RetainedEntry retained = iterator.next();
+            if (now - retained.retainedAt < retainMillis) {
+                break;
+            }
+            iterator.remove();
+            evicted.add(evict(retained));
+        }
+        return evicted;
+    }
+
+    private RetainedEntry evict(RetainedEntry retained) {
+        reservedBytes -= retained.reserved;
+        // 删除完成前不分配给其他任务
+        activeNames.add(retained.name);
+        notifyAll();
+        return retained;
+    }
+
+    /**
+     * 中止保留的子目录中的上传并删除子目录，不持有当前对象的锁时调用
+     */
+    private void discard(List<RetainedEntry> evicted) {
+        for (RetainedEntry retained : evicted) {
+            LOGGER.info("Discard retained spool entry: " + retained.file.getParentFile().getAbsolutePath());
+            abortUpload(retained.file);
+            File entryDirectory = retained.file.getParentFile();
+            if (entryDirectory.exists() && !FileUtils.deleteQuietly(entryDirectory)) {
+                LOGGER.warn("Delete spool entry failed: " + entryDirectory.getAbsolutePath());
+            }
+            synchronized (this) {
+                activeNames.remove(retained.name);
+            }
+        }
+    }
+
+    private void abortUpload(File file) {
+        try {
+            discardHook.accept(file);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Abort upload of spool file failed: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return 已预占的字节数
+     */
+    synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return 正在等待额度的任务数
+     */
+    synchronized int getWaitingCount() {
+        return waiters.size();
+    }
+
+    /**
+     * @return 因额度不足而等待过的次数
+     */
+    synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return 上传失败后保留的子目录数
+     */
+    synchronized int getRetainedCount() {
+        return retainedEntries.size();
+    }
+
+    /**
+     * 一个任务独占的暂存子目录及其预占的额度
+     */
+    class Entry implements Closeable {
+
+        private final String name;
+        private final File file;
+        // 由VideoSpool的锁保护
+        private long reserved;
+        private boolean closed;
+        private boolean retain;
+
+        private Entry(String name, String fileName) {
+            this.name = name;
+            this.file = new File(new File(directory, name), fileName);
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        /**
+         * @return 子目录名，相同url的并发任务各不相同，用作OBS中对象的目录
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * 关闭时保留子目录及其额度，用于上传失败但留下了断点的情况
+         */
+        void retain() {
+            synchronized (VideoSpool.this) {
+                retain = true;
+            }
+        }
+
+        /**
+         * 不等待地预占额度，有其他任务在等待时也不预占，保证按到达顺序分配
+         *
+         * @param bytes 预计写入的字节数，未知时传0
+         * @return 是否预占成功
+         */
+        boolean tryReserve(long bytes) {
+            List<RetainedEntry> evicted;
+            boolean granted;
+            synchronized (VideoSpool.this) {
+                if (!waiters.isEmpty()) {
+                    return false;
+                }
+                evicted = evictFor(bytes);
+                granted = fits(bytes);
+                if (granted) {
+                    grant(bytes);
+                }
+            }
+            discard(evicted);
+            return granted;
+        }
+
+        /**
+         * 预占额度，额度不足时按到达顺序等待
+         *
+         * @param bytes 预计写入的字节数，未知时传0
+         * @throws InterruptedIOException 等待时线程被中断
+         * @throws IOException            等待超时
+         */
+        void reserve(long bytes) throws IOException {
+            Object waiter = new Object();
+            long deadline = System.nanoTime() + waitTimeoutNanos;
+            List<RetainedEntry> evicted = new ArrayList<>();
+            try {
+                reserve(bytes, waiter, deadline, evicted);
+            } finally {
+                discard(evicted);
+            }
+        }
+
+        private void reserve(long bytes, Object waiter, long deadline, List<RetainedEntry> evicted)
+                throws IOException {
+            synchronized (VideoSpool.this) {
+                waiters.addLast(waiter);
+                boolean waited = false;
+                try {
+                    while (waiters.peekFirst() != waiter || !fits(bytes)) {
+                        if (waiters.peekFirst() == waiter) {
+                            // 轮到自己时先删除保留的子目录腾出额度，删除在释放锁后进行
+                            evicted.addAll(evictFor(bytes));
+                            if (fits(bytes)) {
+                                break;
+                            }
+                        }
+                        if (!waited) {
+                            waited = true;
+                            waitCount++;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new IOException(String.format("Timed out waiting for %d bytes of spool space, "
+                                    + "reserved:%d quota:%d", bytes, reservedBytes, quotaBytes));
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(VideoSpool.this, remaining);
+                    }
+                    grant(bytes);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for spool space");
+                } finally {
+                    waiters.remove(waiter);
+                    // 队首变化后，下一个等待者可能已经能够预占
+                    VideoSpool.this.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * 按文件的实际大小调整预占的额度，不会等待：文件已经写入磁盘，超出预占的部分只能暂时超过上限
+         *
+         * @param bytes 文件的实际字节数
+         */
+        void resize(long bytes) {
+            synchronized (VideoSpool.this) {
+                if (closed) {
+                    return;
+                }
+                reservedBytes += bytes - reserved;
+                reserved = bytes;
+                VideoSpool.this.notifyAll();
+            }
+        }
+
+        private void grant(long bytes) {
+            reservedBytes += bytes;
+            reserved += bytes;
+        }
+
+        /**
+         * 删除子目录及其中的文件（包括上传断点），归还额度；调用过{@link #retain()}时保留子目录和额度
+         */
+        @Override
+        public void close() {
+            synchronized (VideoSpool.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (retain) {
+                    activeNames.remove(name);
+                    retainedEntries.put(name, new RetainedEntry(name, file, reserved));
+                    reserved = 0;
+                    VideoSpool.this.notifyAll();
+                    return;
+                }
+            }
+            File entryDirectory = file.getParentFile();
+            if (entryDirectory.exists() && !FileUtils.deleteQuietly(entryDirectory)) {
+                LOGGER.warn("Delete spool entry failed: " + entryDirectory.getAbsolutePath());
+            }
+            synchronized (VideoSpool.this) {
+                reservedBytes -= reserved;
+                reserved = 0;
+                activeNames.remove(name);
+                VideoSpool.this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 上传失败后保留的子目录
+     */
+    private static final class RetainedEntry {
+        private final String name;
+        private final File file;
+        private final long reserved;
+        private final long retainedAt = System.currentTimeMillis();
+
+        RetainedEntry(String name, File file, long reserved) {
+            this.name = name;
+            this.file = file;
+            this.reserved = reserved;
+        }
+    }
+}
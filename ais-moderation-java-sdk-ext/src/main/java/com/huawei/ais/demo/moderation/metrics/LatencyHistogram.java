@@ -0,0 +1,137 @@
+package com.huawei.ais.demo.moderation.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶边界的直方图<p/>
+ * 每个桶是一个LongAdder，记录时只做一次二分查找和一次无竞争的累加，不加锁也不分配对象；
+ * 分位数取所在桶的上界，精度由桶边界决定
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private final long[] upperBounds;
+    // 最后一个桶对应+Inf
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param upperBounds 各桶的上界（含），递增排列
+     */
+    public LatencyHistogram(long[] upperBounds) {
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("upperBounds should be strictly increasing");
+            }
+        }
+        this.upperBounds = upperBounds.clone();
+        this.buckets = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value 观测值，负数按0记录
+     */
+    public void record(long value) {
+        long observed = Math.max(0, value);
+        buckets[bucketIndex(observed)].increment();
+        sum.add(observed);
+        max.accumulate(observed);
+    }
+
+    private int bucketIndex(long value) {
+        int low = 0;
+        int high = upperBounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (upperBounds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 各桶的上界，不含+Inf
+     */
+    public long[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+
+    /**
+     * @return 各桶的累计计数（小于等于对应上界的观测数），最后一个元素为+Inf桶即总数
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public long getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP90() {
+        return percentile(0.9);
+    }
+
+    @Override
+    public long getP99() {
+        return percentile(0.99);
+    }
+
+    /**
+     * @param quantile (0, 1]之间的分位
+     * @return 分位数所在桶的上界，落在+Inf桶时返回最大值，没有观测时返回0
+     */
+    public long percentile(double quantile) {
+        long[] counts = getCumulativeCounts();
+        long total = counts[counts.length - 1];
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        for (int i = 0; i < upperBounds.length; i++) {
+            if (counts[i] >= rank) {
+                return Math.min(upperBounds[i], getMax());
+            }
+        }
+        return getMax();
+    }
+}
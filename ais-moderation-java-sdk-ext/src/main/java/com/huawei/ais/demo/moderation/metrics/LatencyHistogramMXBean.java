@@ -0,0 +1,21 @@
+package com.huawei.ais.demo.moderation.metrics;
+
+/**
+ * 直方图的JMX视图，分位数按桶上界估算
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    long getSum();
+
+    double getMean();
+
+    long getMax();
+
+    long getP50();
+
+    long getP90();
+
+    long getP99();
+}
@@ -0,0 +1,306 @@
+package com.huawei.ais.demo.moderation.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * SDK内置的运行指标（单例）<p/>
+ * - 直方图：下载、上传OBS、提交引擎、排队等待、引擎执行、回调各阶段的耗时（ms），以及每个任务的查询次数<br/>
+ * - 计数器：线程池拒绝、回调重试、放弃回调、查询重试等事件的累计次数<br/>
+ * - 状态量：线程池活跃线程和排队任务数、等待重试的回调数等，由持有对象的组件以回调函数注册，读取时才计算<p/>
+ * 记录只涉及LongAdder累加，可以在任务执行路径上直接调用；指标可通过JMX（{@link #registerMBeans()}）
+ * 或Prometheus文本格式（{@link #writePrometheus(Appendable)}、{@link PrometheusExporter}）读取
+ */
+public class ModerationMetrics implements ModerationMetricsMXBean {
+
+    private static final Log LOGGER = LogFactory.getLog(ModerationMetrics.class);
+
+    private static final String JMX_DOMAIN = "com.huawei.ais.demo.moderation";
+    private static final String PROMETHEUS_PREFIX = "moderation_";
+
+    // 1-2-5序列，从1ms到1小时
+    private static final long[] LATENCY_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000,
+            20000, 50000, 100000, 200000, 500000, 1000000, 2000000, 3600000};
+    private static final long[] COUNT_BOUNDS = {1, 2, 3, 5, 10, 20, 50, 100, 200, 500};
+
+    /**
+     * 直方图
+     */
+    public enum Stage {
+        DOWNLOAD("download_duration_ms", "Time to download a video from its source url.", LATENCY_BOUNDS),
+        OBS_UPLOAD("obs_upload_duration_ms",
+                "Time to upload a video to OBS, including the download in stream transfer mode.", LATENCY_BOUNDS),
+        SUBMIT("submit_duration_ms", "Time of the submit request to the moderation engine.", LATENCY_BOUNDS),
+        QUEUE_WAIT("queue_wait_duration_ms", "Time a job waited in the submit pool before it started.",
+                LATENCY_BOUNDS),
+        ENGINE_RUNTIME("engine_runtime_ms", "Engine runtime of finished jobs, update_time minus create_time.",
+                LATENCY_BOUNDS),
+        POLL_COUNT("job_polls", "Number of result queries per finished or failed job.", COUNT_BOUNDS),
+        CALLBACK("callback_duration_ms", "Time of each callback delivery request, single or batched.",
+                LATENCY_BOUNDS);
+
+        private final String metricName;
+        private final String help;
+        private final long[] bounds;
+
+        Stage(String metricName, String help, long[] bounds) {
+            this.metricName = metricName;
+            this.help = help;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * 由SDK内部累加的计数器
+     */
+    public enum Counter {
+        SUBMIT_REJECTED("submit_rejected_total", "Jobs rejected by the submit pool."),
+        CALLBACK_REJECTED("callback_rejected_total",
+                "Callbacks rejected by the callback pool and deferred to the retry scheduler."),
+        CALLBACK_RETRIES("callback_retries_total", "Callback retry attempts."),
+        CALLBACK_GIVE_UPS("callback_give_ups_total", "Callbacks given up after all retries failed."),
+        QUERY_RETRIES("query_retries_total", "Result queries that failed and were rescheduled.");
+
+        private final String metricName;
+        private final String help;
+
+        Counter(String metricName, String help) {
+            this.metricName = metricName;
+            this.help = help;
+        }
+    }
+
+    private final EnumMap<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final EnumMap<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    // 外部组件注册的计数器和状态量，按名称排序输出
+    private final Map<String, Metric> externalCounters = new ConcurrentSkipListMap<>();
+    private final Map<String, Metric> gauges = new ConcurrentSkipListMap<>();
+
+    private ModerationMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram(stage.bounds));
+        }
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+    }
+
+    public static ModerationMetrics getInstance() {
+        return SingletonConstructor.metrics;
+    }
+
+    /**
+     * @param stage 阶段
+     * @param value 耗时（ms）或次数
+     */
+    public void record(Stage stage, long value) {
+        histograms.get(stage).record(value);
+    }
+
+    /**
+     * 记录从startNanos到现在经过的毫秒数
+     *
+     * @param stage      阶段
+     * @param startNanos 开始时的System.nanoTime()
+     */
+    public void recordSince(Stage stage, long startNanos) {
+        histograms.get(stage).record((System.nanoTime() - startNanos) / 1000000);
+    }
+
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    public long getCount(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     * 注册由其他组件维护的累计值，例如准入控制器的拒绝次数，同名的会被替换
+     *
+     * @param name     指标名称，不含前缀，以_total结尾
+     * @param help     说明
+     * @param supplier 读取时调用
+     */
+    public void registerCounter(String name, String help, LongSupplier supplier) {
+        externalCounters.put(name, new Metric(help, supplier));
+    }
+
+    /**
+     * 注册状态量，同名的会被替换
+     *
+     * @param name     指标名称，不含前缀
+     * @param help     说明
+     * @param supplier 读取时调用，应当是无锁或持锁很短的操作
+     */
+    public void registerGauge(String name, String help, LongSupplier supplier) {
+        gauges.put(name, new Metric(help, supplier));
+    }
+
+    /**
+     * 移除外部注册的计数器和状态量，持有它们的组件销毁时调用，避免引用已销毁的对象
+     */
+    public void clearRegistrations() {
+        externalCounters.clear();
+        gauges.clear();
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<Counter, LongAdder> entry : counters.entrySet()) {
+            values.put(entry.getKey().metricName, entry.getValue().sum());
+        }
+        for (Map.Entry<String, Metric> entry : externalCounters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().read());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Metric> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().read());
+        }
+        return values;
+    }
+
+    /**
+     * 以Prometheus文本格式（0.0.4）输出所有指标
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            String name = PROMETHEUS_PREFIX + entry.getKey().metricName;
+            writeHeader(out, name, entry.getKey().help, "histogram");
+            LatencyHistogram histogram = entry.getValue();
+            long[] upperBounds = histogram.getUpperBounds();
+            long[] counts = histogram.getCumulativeCounts();
+            for (int i = 0; i < upperBounds.length; i++) {
+                out.append(name).append("_bucket{le=\"").append(Long.toString(upperBounds[i])).append("\"} ")
+                        .append(Long.toString(counts[i])).append('\n');
+            }
+            long count = counts[counts.length - 1];
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(Long.toString(count)).append('\n');
+            out.append(name).append("_sum ").append(Long.toString(histogram.getSum())).append('\n');
+            out.append(name).append("_count ").append(Long.toString(count)).append('\n');
+        }
+        for (Map.Entry<Counter, LongAdder> entry : counters.entrySet()) {
+            writeSample(out, entry.getKey().metricName, entry.getKey().help, "counter", entry.getValue().sum());
+        }
+        for (Map.Entry<String, Metric> entry : externalCounters.entrySet()) {
+            writeSample(out, entry.getKey(), entry.getValue().help, "counter", entry.getValue().read());
+        }
+        for (Map.Entry<String, Metric> entry : gauges.entrySet()) {
+            writeSample(out, entry.getKey(), entry.getValue().help, "gauge", entry.getValue().read());
+        }
+    }
+
+    /**
+     * @return Prometheus文本格式的所有指标
+     */
+    public String toPrometheusText() {
+        StringBuilder builder = new StringBuilder(8192);
+        try {
+            writePrometheus(builder);
+        } catch (IOException e) {
+            // StringBuilder不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    private static void writeHeader(Appendable out, String name, String help, String type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(Appendable out, String metricName, String help, String type, long value)
+            throws IOException {
+        String name = PROMETHEUS_PREFIX + metricName;
+        writeHeader(out, name, help, type);
+        out.append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    /**
+     * 在平台MBeanServer中注册指标，已注册的先注销
+     */
+    public synchronized void registerMBeans() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(mBeanServer, new ObjectName(JMX_DOMAIN + ":type=Metrics"), this);
+            for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+                register(mBeanServer, histogramObjectName(entry.getKey()), entry.getValue());
+            }
+        } catch (JMException e) {
+            LOGGER.error("Register metrics MBeans failed.", e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            unregister(mBeanServer, new ObjectName(JMX_DOMAIN + ":type=Metrics"));
+            for (Stage stage : Stage.values()) {
+                unregister(mBeanServer, histogramObjectName(stage));
+            }
+        } catch (JMException e) {
+            LOGGER.error("Unregister metrics MBeans failed.", e);
+        }
+    }
+
+    private static ObjectName histogramObjectName(Stage stage) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=Histogram,name=" + stage.metricName);
+    }
+
+    private static void register(MBeanServer mBeanServer, ObjectName name, Object mBean) throws JMException {
+        unregister(mBeanServer, name);
+        mBeanServer.registerMBean(mBean, name);
+    }
+
+    private static void unregister(MBeanServer mBeanServer, ObjectName name) throws JMException {
+        if (mBeanServer.isRegistered(name)) {
+            mBeanServer.unregisterMBean(name);
+        }
+    }
+
+    private static class Metric {
+        private final String help;
+        private final LongSupplier supplier;
+
+        Metric(String help, LongSupplier supplier) {
+            this.help = help;
+            this.supplier = supplier;
+        }
+
+        long read() {
+            try {
+                return supplier.getAsLong();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Read metric failed.", e);
+                return -1;
+            }
+        }
+    }
+
+    static class SingletonConstructor {
+        static ModerationMetrics metrics = new ModerationMetrics();
+    }
+}
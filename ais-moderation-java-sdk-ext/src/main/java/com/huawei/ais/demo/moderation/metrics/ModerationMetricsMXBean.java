@@ -0,0 +1,19 @@
+package com.huawei.ais.demo.moderation.metrics;
+
+import java.util.Map;
+
+/**
+ * 计数器和状态量的JMX视图，各阶段的直方图单独注册
+ */
+public interface ModerationMetricsMXBean {
+
+    /**
+     * @return 计数器名称 -> 自启动以来的累计值
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return 状态量名称 -> 当前值
+     */
+    Map<String, Long> getGauges();
+}
@@ -0,0 +1,76 @@
+package com.huawei.ais.demo.moderation.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.huawei.ais.demo.moderation.CommonUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 以Prometheus文本格式提供指标的http端点，GET /metrics 返回{@link ModerationMetrics}中的所有指标<br/>
+ * 使用JDK自带的HttpServer，单线程处理请求，不引入额外依赖
+ */
+public class PrometheusExporter implements Closeable {
+
+    private static final Log LOGGER = LogFactory.getLog(PrometheusExporter.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    /**
+     * @param host    监听地址
+     * @param port    监听端口
+     * @param metrics 输出的指标
+     * @throws IOException 端口无法监听
+     */
+    public PrometheusExporter(String host, int port, ModerationMetrics metrics) throws IOException {
+        this.httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.executor = Executors.newSingleThreadExecutor(
+                CommonUtils.ThreadFactoryConstructor(true, "moderation-sdk-metrics-%d"));
+        this.httpServer.setExecutor(executor);
+        this.httpServer.createContext("/metrics", exchange -> handle(exchange, metrics));
+        this.httpServer.start();
+        LOGGER.info(String.format("Prometheus exporter listening on %s:%d/metrics", host, getPort()));
+    }
+
+    /**
+     * @return 实际监听的端口，构造时传入0时由系统分配
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private static void handle(HttpExchange exchange, ModerationMetrics metrics) throws IOException {
+        try {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -1,8 +1,9 @@
 package com.huawei.ais.demo.moderation.model;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -19,10 +20,22 @@ public class FrameResult {
 	private Suggestion frameSuggestion;
 
 	@JsonProperty("suspect_categories")
-	private Set<Category> suspectCategories = new HashSet<>();
+	private EnumSet<Category> suspectCategories = EnumSet.noneOf(Category.class);
 
 	@JsonProperty("detail")
-	private Map<Category, Object> categoryResults = new HashMap<>();
+	private EnumMap<Category, Object> categoryResults = new EnumMap<>(Category.class);
+
+	public FrameResult() {
+	}
+
+	FrameResult(int frameBegin, int frameEnd, Suggestion frameSuggestion, EnumSet<Category> suspectCategories,
+				EnumMap<Category, Object> categoryResults) {
+		this.frameBegin = frameBegin;
+		this.frameEnd = frameEnd;
+		this.frameSuggestion = frameSuggestion;
+		this.suspectCategories = suspectCategories;
+		this.categoryResults = categoryResults;
+	}
 
 	public int getFrameBegin() {
 		return frameBegin;
@@ -40,4 +53,54 @@ public class FrameResult {
 		return suspectCategories;
 	}
 
+	public Map<Category, Object> getCategoryResults() {
+		return categoryResults;
+	}
+
+	/**
+	 * 按内容比较，可疑类别和详情为null时等同于空集合
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof FrameResult)) {
+			return false;
+		}
+		FrameResult that = (FrameResult) o;
+		return frameBegin == that.frameBegin && frameEnd == that.frameEnd
+				&& frameSuggestion == that.frameSuggestion
+				&& categoriesEquals(suspectCategories, that.suspectCategories)
+				&& detailEquals(categoryResults, that.categoryResults);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode(frameBegin, frameEnd, frameSuggestion,
+				suspectCategories == null ? 0 : suspectCategories.hashCode(),
+				categoryResults == null ? 0 : categoryResults.hashCode());
+	}
+
+	/**
+	 * FrameResults按列计算散列值时也使用此方法，两者必须一致
+	 */
+	static int hashCode(int frameBegin, int frameEnd, Suggestion frameSuggestion, int categoriesHash,
+						int detailHash) {
+		int hash = frameBegin;
+		hash = 31 * hash + frameEnd;
+		hash = 31 * hash + Objects.hashCode(frameSuggestion);
+		hash = 31 * hash + categoriesHash;
+		hash = 31 * hash + detailHash;
+		return hash;
+	}
+
+	static boolean detailEquals(Map<Category, Object> a, Map<Category, Object> b) {
+		return a == null || a.isEmpty() ? b == null || b.isEmpty() : a.equals(b);
+	}
+
+	private static boolean categoriesEquals(Set<Category> a, Set<Category> b) {
+		return a == null || a.isEmpty() ? b == null || b.isEmpty() : a.equals(b);
+	}
+
 }
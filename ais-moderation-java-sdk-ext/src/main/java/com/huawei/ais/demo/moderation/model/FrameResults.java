@@ -0,0 +1,531 @@
+package com.huawei.ais.demo.moderation.model;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * 按列存储的帧结果<p/>
+ * 每帧的起止时间存为int数组，建议存为byte数组（枚举序号），可疑类别存为位掩码，没有详情的帧不占用详情对象；
+ * 顺序遍历各列时内存连续，不需要为每帧创建对象<br/>
+ * 作为List使用时，get(i)按需创建对应的{@link FrameResult}，json格式与逐帧的FrameResult列表一致；
+ * 支持List的全部修改操作，get(i)返回的是副本，修改它不会影响列表中的内容<br/>
+ * equals和hashCode遵循List的约定，与内容相同的其他FrameResult列表相等
+ */
+@JsonSerialize(using = FrameResults.Serializer.class)
+@JsonDeserialize(using = FrameResults.Deserializer.class)
+public final class FrameResults extends AbstractList<FrameResult> implements RandomAccess {
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final Suggestion[] SUGGESTIONS = Suggestion.values();
+    private static final String[] CATEGORY_NAMES = jsonNames(Category.class);
+    private static final String[] SUGGESTION_NAMES = jsonNames(Suggestion.class);
+    private static final Map<String, Category> CATEGORY_BY_NAME = byName(CATEGORIES, CATEGORY_NAMES);
+    private static final Map<String, Suggestion> SUGGESTION_BY_NAME = byName(SUGGESTIONS, SUGGESTION_NAMES);
+
+    // 没有建议时suggestions中的值
+    private static final byte NO_SUGGESTION = -1;
+
+    private int size;
+    private int[] frameBegins = new int[0];
+    private int[] frameEnds = new int[0];
+    private byte[] suggestions = new byte[0];
+    // 第n位表示序号为n的类别，Category不超过8个
+    private byte[] categoryMasks = new byte[0];
+    // 没有详情的帧为null
+    private EnumMap<Category, Object>[] categoryResults = newDetailArray(0);
+
+    public FrameResults() {
+    }
+
+    /**
+     * 追加一帧
+     *
+     * @param frameBegin         起始时间
+     * @param frameEnd           结束时间
+     * @param suggestion         建议，可为null
+     * @param suspectCategories  可疑类别，可为null
+     * @param categoryResults    各类别的详情，可为null
+     */
+    public void add(int frameBegin, int frameEnd, Suggestion suggestion, EnumSet<Category> suspectCategories,
+                    EnumMap<Category, Object> categoryResults) {
+        append(frameBegin, frameEnd, suggestionOrdinal(suggestion), categoryMask(suspectCategories),
+                categoryResults == null || categoryResults.isEmpty() ? null : categoryResults);
+    }
+
+    @Override
+    public void add(int index, FrameResult frameResult) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity();
+        int moved = size - index;
+        System.arraycopy(frameBegins, index, frameBegins, index + 1, moved);
+        System.arraycopy(frameEnds, index, frameEnds, index + 1, moved);
+        System.arraycopy(suggestions, index, suggestions, index + 1, moved);
+        System.arraycopy(categoryMasks, index, categoryMasks, index + 1, moved);
+        System.arraycopy(categoryResults, index, categoryResults, index + 1, moved);
+        size++;
+        modCount++;
+        store(index, frameResult);
+    }
+
+    @Override
+    public FrameResult set(int index, FrameResult frameResult) {
+        FrameResult previous = get(index);
+        store(index, frameResult);
+        return previous;
+    }
+
+    @Override
+    public FrameResult remove(int index) {
+        FrameResult previous = get(index);
+        int moved = size - index - 1;
+        System.arraycopy(frameBegins, index + 1, frameBegins, index, moved);
+        System.arraycopy(frameEnds, index + 1, frameEnds, index, moved);
+        System.arraycopy(suggestions, index + 1, suggestions, index, moved);
+        System.arraycopy(categoryMasks, index + 1, categoryMasks, index, moved);
+        System.arraycopy(categoryResults, index + 1, categoryResults, index, moved);
+        size--;
+        categoryResults[size] = null;
+        modCount++;
+        return previous;
+    }
+
+    private void append(int frameBegin, int frameEnd, byte suggestion, byte categoryMask,
+                        EnumMap<Category, Object> detail) {
+        ensureCapacity();
+        frameBegins[size] = frameBegin;
+        frameEnds[size] = frameEnd;
+        suggestions[size] = suggestion;
+        categoryMasks[size] = categoryMask;
+        categoryResults[size] = detail;
+        size++;
+        modCount++;
+    }
+
+    private void ensureCapacity() {
+        if (size == frameBegins.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            frameBegins = Arrays.copyOf(frameBegins, capacity);
+            frameEnds = Arrays.copyOf(frameEnds, capacity);
+            suggestions = Arrays.copyOf(suggestions, capacity);
+            categoryMasks = Arrays.copyOf(categoryMasks, capacity);
+            categoryResults = Arrays.copyOf(categoryResults, capacity);
+        }
+    }
+
+    /**
+     * 把一帧的内容写入第index帧的位置，可疑类别和详情都会被复制
+     */
+    private void store(int index, FrameResult frameResult) {
+        frameBegins[index] = frameResult.getFrameBegin();
+        frameEnds[index] = frameResult.getFrameEnd();
+        suggestions[index] = suggestionOrdinal(frameResult.getFrameSuggestion());
+        categoryMasks[index] = categoryMask(frameResult.getSuspectCategories());
+        Map<Category, Object> detail = frameResult.getCategoryResults();
+        if (detail == null || detail.isEmpty()) {
+            categoryResults[index] = null;
+        } else {
+            EnumMap<Category, Object> copy = new EnumMap<>(Category.class);
+            copy.putAll(detail);
+            categoryResults[index] = copy;
+        }
+    }
+
+    private static byte suggestionOrdinal(Suggestion suggestion) {
+        return suggestion == null ? NO_SUGGESTION : (byte) suggestion.ordinal();
+    }
+
+    private static byte categoryMask(Collection<Category> categories) {
+        byte mask = 0;
+        if (categories != null) {
+            for (Category category : categories) {
+                mask |= 1 << category.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public FrameResult get(int index) {
+        checkIndex(index);
+        EnumMap<Category, Object> detail = categoryResults[index];
+        return new FrameResult(frameBegins[index], frameEnds[index], getFrameSuggestion(index),
+                getSuspectCategories(index), detail == null ? new EnumMap<>(Category.class) : new EnumMap<>(detail));
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(categoryResults, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    public int getFrameBegin(int index) {
+        checkIndex(index);
+        return frameBegins[index];
+    }
+
+    public int getFrameEnd(int index) {
+        checkIndex(index);
+        return frameEnds[index];
+    }
+
+    /**
+     * @return 第index帧的建议，没有时返回null
+     */
+    public Suggestion getFrameSuggestion(int index) {
+        checkIndex(index);
+        byte suggestion = suggestions[index];
+        return suggestion == NO_SUGGESTION ? null : SUGGESTIONS[suggestion];
+    }
+
+    public boolean isSuspect(int index, Category category) {
+        checkIndex(index);
+        return (categoryMasks[index] & (1 << category.ordinal())) != 0;
+    }
+
+    public EnumSet<Category> getSuspectCategories(int index) {
+        checkIndex(index);
+        EnumSet<Category> categories = EnumSet.noneOf(Category.class);
+        int mask = categoryMasks[index];
+        for (int ordinal = 0; mask != 0; ordinal++, mask >>>= 1) {
+            if ((mask & 1) != 0) {
+                categories.add(CATEGORIES[ordinal]);
+            }
+        }
+        return categories;
+    }
+
+    /**
+     * @return 第index帧某个类别的详情，没有时返回null
+     */
+    public Object getCategoryResult(int index, Category category) {
+        checkIndex(index);
+        EnumMap<Category, Object> detail = categoryResults[index];
+        return detail == null ? null : detail.get(category);
+    }
+
+    /**
+     * 按类别合并帧结果：同一类别下相邻或重叠、且建议相同的帧合并为一段，记录段内详情中confidence的最大值
+     *
+     * @return 各类别的时间线，按开始时间排列，没有可疑帧的类别不出现
+     */
+    public EnumMap<Category, List<TimelineSegment>> toTimeline() {
+        int[] order = orderByFrameBegin();
+        EnumMap<Category, List<TimelineSegment>> timeline = new EnumMap<>(Category.class);
+        for (Category category : CATEGORIES) {
+            int bit = 1 << category.ordinal();
+            List<TimelineSegment> segments = null;
+            TimelineSegment current = null;
+            for (int n = 0; n < size; n++) {
+                int i = order == null ? n : order[n];
+                if ((categoryMasks[i] & bit) == 0) {
+                    continue;
+                }
+                double confidence = maxConfidence(categoryResults[i] == null ? null
+                        : categoryResults[i].get(category));
+                Suggestion suggestion = getFrameSuggestion(i);
+                if (current != null && frameBegins[i] <= current.getEnd() && current.getSuggestion() == suggestion) {
+                    current.extend(frameEnds[i], confidence);
+                } else {
+                    current = new TimelineSegment(frameBegins[i], frameEnds[i], suggestion, confidence);
+                    if (segments == null) {
+                        segments = new ArrayList<>();
+                        timeline.put(category, segments);
+                    }
+                    segments.add(current);
+                }
+            }
+        }
+        return timeline;
+    }
+
+    /**
+     * @return 帧已按开始时间排列时返回null，否则返回排序后的下标
+     */
+    private int[] orderByFrameBegin() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = frameBegins[i - 1] <= frameBegins[i];
+        }
+        if (sorted) {
+            return null;
+        }
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, (a, b) -> Integer.compare(frameBegins[a], frameBegins[b]));
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    /**
+     * 详情是引擎返回的通用json值，取其中（包括数组元素中）confidence字段的最大值
+     *
+     * @return 没有confidence时返回NaN
+     */
+    private static double maxConfidence(Object detail) {
+        double max = Double.NaN;
+        if (detail instanceof Map) {
+            Object confidence = ((Map<?, ?>) detail).get("confidence");
+            if (confidence instanceof Number) {
+                max = ((Number) confidence).doubleValue();
+            }
+        } else if (detail instanceof Collection) {
+            for (Object item : (Collection<?>) detail) {
+                double confidence = maxConfidence(item);
+                if (!Double.isNaN(confidence) && (Double.isNaN(max) || confidence > max)) {
+                    max = confidence;
+                }
+            }
+        }
+        return max;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * 与另一个FrameResults比较时直接比较各列，与其他List比较时按List的约定逐帧比较
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FrameResults)) {
+            return super.equals(o);
+        }
+        FrameResults that = (FrameResults) o;
+        if (size != that.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (frameBegins[i] != that.frameBegins[i] || frameEnds[i] != that.frameEnds[i]
+                    || suggestions[i] != that.suggestions[i] || categoryMasks[i] != that.categoryMasks[i]
+                    || !FrameResult.detailEquals(categoryResults[i], that.categoryResults[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与List.hashCode()的定义一致，逐帧的散列值与{@link FrameResult#hashCode()}相同，但不为每帧创建对象
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size; i++) {
+            EnumMap<Category, Object> detail = categoryResults[i];
+            hash = 31 * hash + FrameResult.hashCode(frameBegins[i], frameEnds[i], getFrameSuggestion(i),
+                    categoryHashCode(categoryMasks[i]), detail == null ? 0 : detail.hashCode());
+        }
+        return hash;
+    }
+
+    /**
+     * @return 与对应的EnumSet的hashCode()相同，即各元素散列值之和
+     */
+    private static int categoryHashCode(int mask) {
+        int hash = 0;
+        for (int ordinal = 0; mask != 0; ordinal++, mask >>>= 1) {
+            if ((mask & 1) != 0) {
+                hash += CATEGORIES[ordinal].hashCode();
+            }
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EnumMap<Category, Object>[] newDetailArray(int length) {
+        return new EnumMap[length];
+    }
+
+    /**
+     * @return 按序号排列的枚举json名，取自@JsonProperty，没有注解时为枚举名
+     */
+    private static <E extends Enum<E>> String[] jsonNames(Class<E> enumType) {
+        E[] constants = enumType.getEnumConstants();
+        String[] names = new String[constants.length];
+        for (E constant : constants) {
+            JsonProperty property;
+            try {
+                property = enumType.getField(constant.name()).getAnnotation(JsonProperty.class);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+            names[constant.ordinal()] = property != null ? property.value() : constant.name();
+        }
+        return names;
+    }
+
+    private static <E extends Enum<E>> Map<String, E> byName(E[] constants, String[] names) {
+        Map<String, E> map = new HashMap<>();
+        for (E constant : constants) {
+            map.put(names[constant.ordinal()], constant);
+        }
+        return map;
+    }
+
+    static class Deserializer extends StdDeserializer<FrameResults> {
+
+        private static final long serialVersionUID = 1L;
+
+        Deserializer() {
+            super(FrameResults.class);
+        }
+
+        @Override
+        public FrameResults deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                return (FrameResults) ctxt.handleUnexpectedToken(FrameResults.class, p);
+            }
+            FrameResults frameResults = new FrameResults();
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    return (FrameResults) ctxt.handleUnexpectedToken(FrameResults.class, p);
+                }
+                readFrame(p, ctxt, frameResults);
+            }
+            return frameResults;
+        }
+
+        private static void readFrame(JsonParser p, DeserializationContext ctxt, FrameResults frameResults)
+                throws IOException {
+            int frameBegin = 0;
+            int frameEnd = 0;
+            byte suggestion = NO_SUGGESTION;
+            byte categoryMask = 0;
+            EnumMap<Category, Object> detail = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = p.getCurrentName();
+                JsonToken token = p.nextToken();
+                switch (fieldName) {
+                    case "frame_begin":
+                        frameBegin = p.getValueAsInt();
+                        break;
+                    case "frame_end":
+                        frameEnd = p.getValueAsInt();
+                        break;
+                    case "frame_suggestion":
+                        if (token != JsonToken.VALUE_NULL) {
+                            suggestion = (byte) lookup(SUGGESTION_BY_NAME, p.getText(), Suggestion.class, ctxt)
+                                    .ordinal();
+                        }
+                        break;
+                    case "suspect_categories":
+                        while (token == JsonToken.START_ARRAY && p.nextToken() != JsonToken.END_ARRAY) {
+                            categoryMask |= 1 << lookup(CATEGORY_BY_NAME, p.getText(), Category.class, ctxt)
+                                    .ordinal();
+                        }
+                        break;
+                    case "detail":
+                        while (token == JsonToken.START_OBJECT && p.nextToken() == JsonToken.FIELD_NAME) {
+                            Category category = lookup(CATEGORY_BY_NAME, p.getCurrentName(), Category.class,
+                                    ctxt);
+                            p.nextToken();
+                            if (detail == null) {
+                                detail = new EnumMap<>(Category.class);
+                            }
+                            detail.put(category, ctxt.readValue(p, Object.class));
+                        }
+                        break;
+                    default:
+                        ctxt.handleUnknownProperty(p, null, FrameResult.class, fieldName);
+                        break;
+                }
+            }
+            frameResults.append(frameBegin, frameEnd, suggestion, categoryMask, detail);
+        }
+
+        private static <E extends Enum<E>> E lookup(Map<String, E> byName, String name, Class<E> enumType,
+                                                    DeserializationContext ctxt) throws IOException {
+            E value = byName.get(name);
+            if (value == null) {
+                throw ctxt.weirdStringException(name, enumType, "not one of the values accepted for Enum class");
+            }
+            return value;
+        }
+    }
+
+    static class Serializer extends StdSerializer<FrameResults> {
+
+        private static final long serialVersionUID = 1L;
+
+        Serializer() {
+            super(FrameResults.class);
+        }
+
+        @Override
+        public void serialize(FrameResults frameResults, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            int size = frameResults.size;
+            gen.writeStartArray(size);
+            for (int i = 0; i < size; i++) {
+                gen.writeStartObject();
+                gen.writeNumberField("frame_begin", frameResults.frameBegins[i]);
+                gen.writeNumberField("frame_end", frameResults.frameEnds[i]);
+                byte suggestion = frameResults.suggestions[i];
+                if (suggestion == NO_SUGGESTION) {
+                    gen.writeNullField("frame_suggestion");
+                } else {
+                    gen.writeStringField("frame_suggestion", SUGGESTION_NAMES[suggestion]);
+                }
+                gen.writeArrayFieldStart("suspect_categories");
+                int mask = frameResults.categoryMasks[i];
+                for (int ordinal = 0; mask != 0; ordinal++, mask >>>= 1) {
+                    if ((mask & 1) != 0) {
+                        gen.writeString(CATEGORY_NAMES[ordinal]);
+                    }
+                }
+                gen.writeEndArray();
+                gen.writeObjectFieldStart("detail");
+                EnumMap<Category, Object> detail = frameResults.categoryResults[i];
+                if (detail != null) {
+                    for (Map.Entry<Category, Object> entry : detail.entrySet()) {
+                        provider.defaultSerializeField(CATEGORY_NAMES[entry.getKey().ordinal()], entry.getValue(),
+                                gen);
+                    }
+                }
+                gen.writeEndObject();
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.huawei.ais.demo.moderation.model;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class JobResult {
@@ -27,14 +29,38 @@ public class JobResult {
     protected Suggestion suggestion;
 
     @JsonProperty("frames")
-    protected List<FrameResult> frameResults = new LinkedList<>();
+    protected FrameResults frameResults = new FrameResults();
 
     @JsonProperty("cause")
     protected String cause;
 
+    // 按类别合并的时间线，只在回调时按配置生成
+    @JsonProperty("timeline")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    protected EnumMap<Category, List<TimelineSegment>> timeline;
+
     protected JobResult() {
     }
 
+    /**
+     * 生成带有时间线的副本，当前对象不变
+     *
+     * @param keepFrames 副本中是否保留逐帧结果
+     * @return 带有按类别合并的时间线的副本
+     */
+    public JobResult withTimeline(boolean keepFrames) {
+        JobResult copy = new JobResult();
+        copy.id = id;
+        copy.status = status;
+        copy.createTime = createTime;
+        copy.updateTime = updateTime;
+        copy.suggestion = suggestion;
+        copy.cause = cause;
+        copy.timeline = frameResults != null ? frameResults.toTimeline() : new EnumMap<>(Category.class);
+        copy.frameResults = keepFrames ? frameResults : new FrameResults();
+        return copy;
+    }
+
     public String getId() {
         return id;
     }
@@ -43,18 +69,44 @@ public class JobResult {
         return status;
     }
 
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public Date getUpdateTime() {
+        return updateTime;
+    }
+
     public Suggestion getSuggestion() {
         return suggestion;
     }
 
+    /**
+     * @return 各帧的结果，可以修改；列表按列存储，get(i)返回的FrameResult是副本，修改帧内容应使用set(i, frameResult)
+     */
     public List<FrameResult> getFrameResults() {
         return frameResults;
     }
 
+    /**
+     * @return 按列存储的帧结果，可按下标直接读取各列，不需要为每帧创建对象
+     */
+    @JsonIgnore
+    public FrameResults getFrameColumns() {
+        return frameResults;
+    }
+
     public String getCause() {
         return cause;
     }
 
+    /**
+     * @return 各类别的时间线，未生成时返回null
+     */
+    public EnumMap<Category, List<TimelineSegment>> getTimeline() {
+        return timeline;
+    }
+
 
     @Override
     public int hashCode() {
@@ -0,0 +1,100 @@
+package com.huawei.ais.demo.moderation.model;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 时间线中的一段：某个类别在[begin, end]内连续被判定为可疑，且各帧的建议相同
+ */
+public class TimelineSegment {
+
+    @JsonProperty("begin")
+    private int begin;
+
+    @JsonProperty("end")
+    private int end;
+
+    @JsonProperty("suggestion")
+    private Suggestion suggestion;
+
+    @JsonProperty("frame_count")
+    private int frameCount;
+
+    // 各帧详情中confidence的最大值，详情中没有confidence时为null
+    @JsonProperty("max_confidence")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double maxConfidence;
+
+    protected TimelineSegment() {
+    }
+
+    TimelineSegment(int begin, int end, Suggestion suggestion, double confidence) {
+        this.begin = begin;
+        this.end = end;
+        this.suggestion = suggestion;
+        this.frameCount = 1;
+        this.maxConfidence = Double.isNaN(confidence) ? null : confidence;
+    }
+
+    /**
+     * 合并一帧
+     */
+    void extend(int frameEnd, double confidence) {
+        end = Math.max(end, frameEnd);
+        frameCount++;
+        if (!Double.isNaN(confidence) && (maxConfidence == null || confidence > maxConfidence)) {
+            maxConfidence = confidence;
+        }
+    }
+
+    public int getBegin() {
+        return begin;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public Suggestion getSuggestion() {
+        return suggestion;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public Double getMaxConfidence() {
+        return maxConfidence;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(begin, end, suggestion, frameCount, maxConfidence);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TimelineSegment)) {
+            return false;
+        }
+        TimelineSegment that = (TimelineSegment) o;
+        return begin == that.begin && end == that.end && frameCount == that.frameCount
+                && suggestion == that.suggestion && Objects.equals(maxConfidence, that.maxConfidence);
+    }
+
+    @Override
+    public String toString() {
+        return "TimelineSegment{" +
+                "begin=" + begin +
+                ", end=" + end +
+                ", suggestion=" + suggestion +
+                ", frameCount=" + frameCount +
+                ", maxConfidence=" + maxConfidence +
+                '}';
+    }
+}
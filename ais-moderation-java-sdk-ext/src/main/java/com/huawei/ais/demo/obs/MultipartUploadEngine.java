@@ -0,0 +1,641 @@
+package com.huawei.ais.demo.obs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.huawei.ais.demo.moderation.CommonUtils;
+import com.obs.services.ObsClient;
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.AbortMultipartUploadRequest;
+import com.obs.services.model.CompleteMultipartUploadRequest;
+import com.obs.services.model.InitiateMultipartUploadRequest;
+import com.obs.services.model.ListMultipartUploadsRequest;
+import com.obs.services.model.ListPartsRequest;
+import com.obs.services.model.ListPartsResult;
+import com.obs.services.model.Multipart;
+import com.obs.services.model.MultipartUpload;
+import com.obs.services.model.MultipartUploadListing;
+import com.obs.services.model.PartEtag;
+import com.obs.services.model.UploadPartRequest;
+import com.obs.services.model.UploadPartResult;
+
+/**
+ * 分段上传引擎，由SimpleObsClient持有，可被多个上传同时复用<p/>
+ * - 所有上传共享一个固定大小的上传线程池，线程按轮转的方式从各个上传中取分段，大文件不会饿死其他上传<br/>
+ * - 每个上传有独立的分段状态，上传之间互不影响<br/>
+ * - 分段大小根据文件大小和实测的单连接上传速率计算<br/>
+ * - 分段失败后按指数退避延迟重试，重试耗尽后中止整个上传并清理OBS中的分段；上传本地文件时可指定断点文件，失败后保留已上传的分段用于续传
+ */
+public class MultipartUploadEngine {
+
+    private static final Log LOGGER = LogFactory.getLog(MultipartUploadEngine.class);
+
+    private static final long MB = 1024 * 1024L;
+    private static final long MIN_PART_SIZE = 5 * MB;
+    private static final long MAX_PART_SIZE = 512 * MB;
+    private static final int MAX_PART_COUNT = 10000;
+    private static final int MAX_PART_ATTEMPTS = 3;
+    // 第n次重试前等待 retryDelayMillis * 2^(n-1)，再加上至多一半的随机抖动，网络抖动时不会在瞬间耗尽重试次数
+    private static final long PART_RETRY_DELAY_MILLIS = 1000;
+    // 期望单个分段的上传耗时，分段过小请求开销占比高，过大则重试代价高
+    private static final double TARGET_PART_SECONDS = 8.0;
+    private static final double THROUGHPUT_ALPHA = 0.2;
+
+    private final ObsClient obsClient;
+    private final int threads;
+    private final long retryDelayMillis;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retryExecutor;
+    private final BlockingQueue<UploadSession> readySessions = new LinkedBlockingQueue<>();
+    private final Set<String> activeUploadIds = ConcurrentHashMap.newKeySet();
+
+    // 单连接上传速率的指数加权平均值，单位为字节/秒，尚无样本时为0
+    private volatile double partThroughput;
+
+    public MultipartUploadEngine(ObsClient obsClient, int threads) {
+        this(obsClient, threads, PART_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * @param retryDelayMillis 分段第一次重试前的等待时间，ms
+     */
+    MultipartUploadEngine(ObsClient obsClient, int threads, long retryDelayMillis) {
+        this.obsClient = obsClient;
+        this.threads = threads;
+        this.retryDelayMillis = retryDelayMillis;
+        this.workers = Executors.newFixedThreadPool(threads,
+                CommonUtils.ThreadFactoryConstructor(true, "obs-multipart-upload-%d"));
+        for (int i = 0; i < threads; i++) {
+            workers.execute(new Worker());
+        }
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(
+                CommonUtils.ThreadFactoryConstructor(true, "obs-part-retry-%d"));
+    }
+
+    /**
+     * 以分段的形式上传本地文件，阻塞直到上传完成
+     *
+     * @param bucketName 桶名称
+     * @param objectKey  文件在OBS中的key
+     * @param file       本地文件
+     * @throws IOException 上传失败，此时OBS中已上传的分段已被清理
+     */
+    public void uploadFile(String bucketName, String objectKey, File file) throws IOException {
+        uploadFile(bucketName, objectKey, file, null);
+    }
+
+    /**
+     * 以分段的形式上传本地文件，阻塞直到上传完成，并在断点文件中记录进度<br/>
+     * 断点文件存在且与本地文件匹配时，与OBS中已上传的分段核对后只上传缺失的分段；
+     * 上传失败时保留OBS中已上传的分段和断点文件，以便下次续传，上传成功后删除断点文件
+     *
+     * @param bucketName     桶名称
+     * @param objectKey      文件在OBS中的key
+     * @param file           本地文件
+     * @param checkpointFile 断点文件，为null时不记录断点
+     * @throws IOException 上传失败
+     */
+    public void uploadFile(String bucketName, String objectKey, File file, File checkpointFile) throws IOException {
+        long fileLength = file.length();
+        UploadCheckpoint checkpoint = null;
+        if (checkpointFile != null && checkpointFile.exists()) {
+            checkpoint = resumeCheckpoint(checkpointFile, bucketName, objectKey, file);
+        }
+
+        UploadSession session;
+        long partSize;
+        if (checkpoint != null) {
+            partSize = checkpoint.getPartSize();
+            activeUploadIds.add(checkpoint.getUploadId());
+            session = new UploadSession(bucketName, objectKey, checkpoint.getUploadId());
+            session.enableCheckpoint(checkpoint, checkpointFile);
+        } else {
+            partSize = choosePartSize(fileLength);
+            session = openSession(bucketName, objectKey);
+            if (checkpointFile != null) {
+                session.enableCheckpoint(new UploadCheckpoint(bucketName, objectKey, session.uploadId, file, partSize),
+                        checkpointFile);
+            }
+        }
+
+        int partCount = (int) ((fileLength + partSize - 1) / partSize);
+        int resumedParts = session.completedParts.size();
+        LOGGER.info(String.format("Multipart upload of [%s]: %d bytes, %d parts of %d bytes, %d parts resumed",
+                objectKey, fileLength, partCount, partSize, resumedParts));
+
+        for (int i = 0; i < partCount; i++) {
+            if (session.completedParts.containsKey(i + 1)) {
+                continue;
+            }
+            long offset = i * partSize;
+            long currPartSize = (i + 1 == partCount) ? fileLength - offset : partSize;
+            session.addPart(Part.ofFile(i + 1, file, offset, currPartSize));
+        }
+        session.seal();
+        session.awaitAndComplete();
+    }
+
+    /**
+     * 读取断点并与OBS中的分段核对，断点不可用时清理掉并返回null
+     */
+    private UploadCheckpoint resumeCheckpoint(File checkpointFile, String bucketName, String objectKey, File file) {
+        UploadCheckpoint checkpoint;
+        try {
+            checkpoint = UploadCheckpoint.load(checkpointFile);
+        } catch (IOException e) {
+            LOGGER.warn("Unreadable upload checkpoint discarded:" + checkpointFile.getAbsolutePath(), e);
+            deleteCheckpoint(checkpointFile);
+            return null;
+        }
+        if (!checkpoint.matches(bucketName, objectKey, file)) {
+            LOGGER.warn(String.format("Upload checkpoint of [%s] does not match the local file, start over.",
+                    objectKey));
+            abortQuietly(checkpoint.getBucketName(), checkpoint.getObjectKey(), checkpoint.getUploadId());
+            deleteCheckpoint(checkpointFile);
+            return null;
+        }
+
+        try {
+            checkpoint.reconcile(listUploadedParts(checkpoint));
+        } catch (ObsException e) {
+            // 上传已被中止或已过期
+            LOGGER.warn(String.format("Upload[%s] in checkpoint is no longer available, start over.",
+                    checkpoint.getUploadId()), e);
+            deleteCheckpoint(checkpointFile);
+            return null;
+        }
+        LOGGER.info(String.format("Resume multipart upload of [%s], upload_id=%s", objectKey,
+                checkpoint.getUploadId()));
+        return checkpoint;
+    }
+
+    /**
+     * 列出OBS中该上传已完成的分段，大小与预期不符的分段（如上传中断）视为未完成
+     *
+     * @return partNumber -> ETag
+     */
+    private Map<Integer, String> listUploadedParts(UploadCheckpoint checkpoint) throws ObsException {
+        long partSize = checkpoint.getPartSize();
+        long fileLength = checkpoint.getFileLength();
+        Map<Integer, String> uploadedParts = new TreeMap<>();
+        ListPartsRequest request = new ListPartsRequest(checkpoint.getBucketName(), checkpoint.getObjectKey(),
+                checkpoint.getUploadId());
+        while (true) {
+            ListPartsResult result = obsClient.listParts(request);
+            for (Multipart part : result.getMultipartList()) {
+                long offset = (part.getPartNumber() - 1) * partSize;
+                long expectedSize = Math.min(partSize, fileLength - offset);
+                if (part.getSize() != null && part.getSize() == expectedSize) {
+                    uploadedParts.put(part.getPartNumber(), part.getEtag());
+                }
+            }
+            if (!result.isTruncated()) {
+                return uploadedParts;
+            }
+            request.setPartNumberMarker(Integer.valueOf(result.getNextPartNumberMarker()));
+        }
+    }
+
+    private void abortQuietly(String bucketName, String objectKey, String uploadId) {
+        try {
+            obsClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+        } catch (ObsException e) {
+            LOGGER.debug(String.format("Abort multipart upload[%s] failed.", uploadId), e);
+        }
+    }
+
+    /**
+     * 放弃续传：中止断点中记录的分段上传并删除断点文件，避免OBS中遗留已上传的分段
+     *
+     * @param checkpointFile 断点文件
+     */
+    public void abortCheckpointedUpload(File checkpointFile) {
+        if (!checkpointFile.exists()) {
+            return;
+        }
+        try {
+            UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+            abortQuietly(checkpoint.getBucketName(), checkpoint.getObjectKey(), checkpoint.getUploadId());
+            LOGGER.info(String.format("Multipart upload of [%s] in checkpoint aborted, upload_id=%s",
+                    checkpoint.getObjectKey(), checkpoint.getUploadId()));
+        } catch (IOException e) {
+            LOGGER.warn("Unreadable upload checkpoint discarded:" + checkpointFile.getAbsolutePath(), e);
+        }
+        deleteCheckpoint(checkpointFile);
+    }
+
+    private static void deleteCheckpoint(File checkpointFile) {
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            LOGGER.warn("Delete upload checkpoint failed:" + checkpointFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 开启一个新的分段上传，分段可以在上传过程中陆续添加
+     *
+     * @param bucketName 桶名称
+     * @param objectKey  文件在OBS中的key
+     * @return 上传会话
+     * @throws IOException 初始化分段上传失败
+     */
+    UploadSession openSession(String bucketName, String objectKey) throws IOException {
+        String uploadId;
+        try {
+            uploadId = obsClient.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, objectKey))
+                    .getUploadId();
+        } catch (ObsException e) {
+            throw new IOException("Initiate multipart upload failed for " + objectKey, e);
+        }
+        LOGGER.info(String.format("Multipart upload of [%s] started, upload_id=%s", objectKey, uploadId));
+        activeUploadIds.add(uploadId);
+        return new UploadSession(bucketName, objectKey, uploadId);
+    }
+
+    /**
+     * 根据文件大小和实测上传速率选择分段大小
+     *
+     * @param fileLength 文件大小，单位为字节
+     * @return 分段大小，单位为字节，为MB的整数倍
+     */
+    long choosePartSize(long fileLength) {
+        long partSize = partThroughput > 0 ? (long) (partThroughput * TARGET_PART_SECONDS) : MIN_PART_SIZE;
+        // 至少切出与线程数相同的分段，保证单个文件也能用满上传线程
+        partSize = Math.min(partSize, (fileLength + threads - 1) / threads);
+        partSize = Math.max(MIN_PART_SIZE, Math.min(MAX_PART_SIZE, partSize));
+        // 分段数不能超过OBS的上限
+        partSize = Math.max(partSize, (fileLength + MAX_PART_COUNT - 1) / MAX_PART_COUNT);
+        return (partSize + MB - 1) / MB * MB;
+    }
+
+    /**
+     * 中止桶中超过指定时长仍未完成、且不属于当前进程的分段上传，清理异常退出遗留的分段
+     *
+     * @param bucketName 桶名称
+     * @param maxAge     未完成上传的最长保留时间，ms
+     * @return 中止的上传数
+     */
+    public int abortOrphanedUploads(String bucketName, long maxAge) {
+        long threshold = System.currentTimeMillis() - maxAge;
+        int aborted = 0;
+        ListMultipartUploadsRequest request = new ListMultipartUploadsRequest(bucketName);
+        while (true) {
+            MultipartUploadListing listing = obsClient.listMultipartUploads(request);
+            for (MultipartUpload upload : listing.getMultipartTaskList()) {
+                Date initiatedDate = upload.getInitiatedDate();
+                if (activeUploadIds.contains(upload.getUploadId())
+                        || initiatedDate == null || initiatedDate.getTime() > threshold) {
+                    continue;
+                }
+                try {
+                    obsClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName,
+                            upload.getObjectKey(), upload.getUploadId()));
+                    aborted++;
+                } catch (ObsException e) {
+                    LOGGER.error(String.format("Abort orphaned upload[%s] failed.", upload.getUploadId()), e);
+                }
+            }
+            if (!listing.isTruncated()) {
+                break;
+            }
+            request.setKeyMarker(listing.getNextKeyMarker());
+            request.setUploadIdMarker(listing.getNextUploadIdMarker());
+        }
+        if (aborted > 0) {
+            LOGGER.info(String.format("%d orphaned multipart uploads in bucket[%s] aborted.", aborted, bucketName));
+        }
+        return aborted;
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        retryExecutor.shutdownNow();
+    }
+
+    private void recordThroughput(long bytes, long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        double sample = bytes * 1e9 / nanos;
+        double current = partThroughput;
+        partThroughput = current <= 0 ? sample : (1 - THROUGHPUT_ALPHA) * current + THROUGHPUT_ALPHA * sample;
+    }
+
+    private void uploadPart(UploadSession session, Part part) {
+        if (session.isFailed()) {
+            part.release();
+            return;
+        }
+        try {
+            UploadPartRequest uploadPartRequest = new UploadPartRequest();
+            uploadPartRequest.setBucketName(session.bucketName);
+            uploadPartRequest.setObjectKey(session.objectKey);
+            uploadPartRequest.setUploadId(session.uploadId);
+            uploadPartRequest.setPartNumber(part.partNumber);
+            uploadPartRequest.setPartSize(part.size);
+            if (part.file != null) {
+                uploadPartRequest.setFile(part.file);
+                uploadPartRequest.setOffset(part.offset);
+            } else {
+                uploadPartRequest.setInput(new ByteArrayInputStream(part.buffer, 0, (int) part.size));
+            }
+
+            long start = System.nanoTime();
+            UploadPartResult uploadPartResult = obsClient.uploadPart(uploadPartRequest);
+            recordThroughput(part.size, System.nanoTime() - start);
+            part.release();
+            session.partDone(new PartEtag(uploadPartResult.getEtag(), uploadPartResult.getPartNumber()));
+        } catch (RuntimeException e) {
+            part.attempts++;
+            if (part.attempts < MAX_PART_ATTEMPTS && !session.isFailed()) {
+                long delay = retryDelay(part.attempts);
+                LOGGER.warn(String.format("Part#%d of [%s] failed, retry[%d/%d] in %d ms.", part.partNumber,
+                        session.objectKey, part.attempts, MAX_PART_ATTEMPTS - 1, delay), e);
+                scheduleRetry(session, part, delay);
+            } else {
+                part.release();
+                session.fail(e);
+            }
+        }
+    }
+
+    /**
+     * @return 第retryTimes次重试前的等待时间，ms
+     */
+    private long retryDelay(int retryTimes) {
+        long delay = retryDelayMillis << Math.max(0, Math.min(retryTimes - 1, 10));
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * 延迟后把分段放回会话的待上传队列，等待期间分段仍计入未完成的分段，会话失败时分段在放回时被释放
+     */
+    private void scheduleRetry(UploadSession session, Part part, long delay) {
+        try {
+            retryExecutor.schedule(() -> session.requeue(part), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 引擎已关闭
+            part.release();
+            session.fail(e);
+        }
+    }
+
+    /**
+     * 上传线程，轮流从有待上传分段的会话中各取一个分段上传
+     */
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                UploadSession session;
+                try {
+                    session = readySessions.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                Part part = session.pendingParts.poll();
+                session.reschedule();
+                if (part != null) {
+                    uploadPart(session, part);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个分段上传的状态
+     */
+    class UploadSession {
+        private final String bucketName;
+        private final String objectKey;
+        private final String uploadId;
+
+        private final Queue<Part> pendingParts = new ConcurrentLinkedQueue<>();
+        private final Map<Integer, PartEtag> completedParts = new ConcurrentSkipListMap<>();
+        private final AtomicInteger outstandingParts = new AtomicInteger(0);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final CompletableFuture<Void> allPartsDone = new CompletableFuture<>();
+        private volatile boolean sealed;
+
+        private UploadCheckpoint checkpoint;
+        private File checkpointFile;
+
+        private UploadSession(String bucketName, String objectKey, String uploadId) {
+            this.bucketName = bucketName;
+            this.objectKey = objectKey;
+            this.uploadId = uploadId;
+        }
+
+        String getUploadId() {
+            return uploadId;
+        }
+
+        /**
+         * 在断点文件中记录进度，断点中已完成的分段不再上传，需在添加分段之前调用
+         */
+        private void enableCheckpoint(UploadCheckpoint checkpoint, File checkpointFile) throws IOException {
+            this.checkpoint = checkpoint;
+            this.checkpointFile = checkpointFile;
+            for (Map.Entry<Integer, String> part : checkpoint.getCompletedParts().entrySet()) {
+                completedParts.put(part.getKey(), new PartEtag(part.getValue(), part.getKey()));
+            }
+            checkpoint.save(checkpointFile);
+        }
+
+        /**
+         * 添加待上传的分段
+         */
+        void addPart(Part part) {
+            outstandingParts.incrementAndGet();
+            requeue(part);
+        }
+
+        /**
+         * 所有分段都已添加
+         */
+        void seal() {
+            sealed = true;
+            if (outstandingParts.get() == 0) {
+                allPartsDone.complete(null);
+            }
+        }
+
+        boolean isFailed() {
+            return allPartsDone.isCompletedExceptionally();
+        }
+
+        /**
+         * 等待所有分段上传结束并合并分段；任一分段最终失败时中止上传
+         *
+         * @throws IOException 上传失败
+         */
+        void awaitAndComplete() throws IOException {
+            try {
+                allPartsDone.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release(e);
+                throw new InterruptedIOException("Interrupted while waiting for parts of " + objectKey);
+            } catch (ExecutionException e) {
+                release(e.getCause());
+                throw new IOException("Upload part failed for " + objectKey, e.getCause());
+            }
+
+            try {
+                List<PartEtag> partEtags = new ArrayList<>(completedParts.values());
+                obsClient.completeMultipartUpload(
+                        new CompleteMultipartUploadRequest(bucketName, objectKey, uploadId, partEtags));
+                LOGGER.info(String.format("Multipart upload of [%s] done, %d parts.", objectKey, partEtags.size()));
+            } catch (ObsException e) {
+                abort(e);
+                throw new IOException("Complete multipart upload failed for " + objectKey, e);
+            } finally {
+                activeUploadIds.remove(uploadId);
+                if (checkpointFile != null) {
+                    deleteCheckpoint(checkpointFile);
+                }
+            }
+        }
+
+        /**
+         * 分段上传失败后的清理，有断点时保留已上传的分段供续传，否则中止上传
+         */
+        private void release(Throwable cause) {
+            if (checkpoint == null) {
+                abort(cause);
+                return;
+            }
+            fail(cause);
+            activeUploadIds.remove(uploadId);
+            LOGGER.warn(String.format("Multipart upload of [%s] failed with %d parts done, kept for resuming.",
+                    objectKey, completedParts.size()));
+        }
+
+        /**
+         * 中止上传，尚未上传的分段会被丢弃
+         *
+         * @param cause 中止原因
+         */
+        void abort(Throwable cause) {
+            fail(cause);
+            activeUploadIds.remove(uploadId);
+            try {
+                obsClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+                LOGGER.warn(String.format("Multipart upload of [%s] aborted, upload_id=%s", objectKey, uploadId));
+            } catch (ObsException e) {
+                LOGGER.error(String.format("Abort multipart upload[%s] failed.", uploadId), e);
+            }
+        }
+
+        private void fail(Throwable cause) {
+            allPartsDone.completeExceptionally(cause);
+            Part part;
+            while ((part = pendingParts.poll()) != null) {
+                part.release();
+            }
+        }
+
+        private void requeue(Part part) {
+            if (isFailed()) {
+                part.release();
+                return;
+            }
+            pendingParts.offer(part);
+            if (scheduled.compareAndSet(false, true)) {
+                readySessions.offer(this);
+            }
+        }
+
+        /**
+         * 会话被上传线程取出后调用，仍有待上传分段时放回队尾，实现会话间的轮转
+         */
+        private void reschedule() {
+            if (!pendingParts.isEmpty()) {
+                readySessions.offer(this);
+                return;
+            }
+            scheduled.set(false);
+            if (!pendingParts.isEmpty() && scheduled.compareAndSet(false, true)) {
+                readySessions.offer(this);
+            }
+        }
+
+        private void partDone(PartEtag partEtag) {
+            completedParts.put(partEtag.getPartNumber(), partEtag);
+            if (checkpoint != null) {
+                checkpoint.addCompletedPart(partEtag.getPartNumber(), partEtag.geteTag());
+                try {
+                    checkpoint.save(checkpointFile);
+                } catch (IOException e) {
+                    LOGGER.warn("Save upload checkpoint failed:" + checkpointFile.getAbsolutePath(), e);
+                }
+            }
+            if (outstandingParts.decrementAndGet() == 0 && sealed) {
+                allPartsDone.complete(null);
+            }
+        }
+    }
+
+    /**
+     * 待上传的分段，数据来自本地文件的一段或内存缓冲区
+     */
+    static class Part {
+        private final int partNumber;
+        private final long size;
+        private final File file;
+        private final long offset;
+        private final byte[] buffer;
+        private final PartBufferPool bufferPool;
+        private int attempts;
+
+        private Part(int partNumber, long size, File file, long offset, byte[] buffer, PartBufferPool bufferPool) {
+            this.partNumber = partNumber;
+            this.size = size;
+            this.file = file;
+            this.offset = offset;
+            this.buffer = buffer;
+            this.bufferPool = bufferPool;
+        }
+
+        static Part ofFile(int partNumber, File file, long offset, long size) {
+            return new Part(partNumber, size, file, offset, null, null);
+        }
+
+        static Part ofBuffer(int partNumber, byte[] buffer, int length, PartBufferPool bufferPool) {
+            return new Part(partNumber, length, null, 0, buffer, bufferPool);
+        }
+
+        private void release() {
+            if (bufferPool != null) {
+                bufferPool.release(buffer);
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class ObsFileHandle {
     private String bucketName = "";
     private String objectKey = "";
     private SimpleObsClient obsClientTool = null;
+    private long size = -1;
 
     private boolean isDeleted = false;
 
@@ -18,6 +19,28 @@ public class ObsFileHandle {
         this.obsClientTool = obsClientTool;
     }
 
+    protected ObsFileHandle(String bucketName, String objectKey, long size, SimpleObsClient obsClientTool) {
+        this(bucketName, objectKey, obsClientTool);
+        this.size = size;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    /**
+     * 获取文件大小
+     *
+     * @return 文件大小，单位为字节，未知时返回-1
+     */
+    public long getSize() {
+        return size;
+    }
+
     /**
      * 获取OBS文件的临时授权下载链接，默认有效期为300秒
      *
@@ -0,0 +1,78 @@
+package com.huawei.ais.demo.obs;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分段上传使用的内存缓冲池，缓冲区大小固定且总数有上限<br/>
+ * 缓冲区按需创建，用完归还后复用；池中缓冲区全部被占用时，申请方阻塞直到有分段上传完成，以此限制内存占用
+ */
+public class PartBufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final AtomicInteger allocated = new AtomicInteger(0);
+
+    /**
+     * @param bufferSize 单个缓冲区大小，单位为字节
+     * @param maxBuffers 缓冲区数量上限
+     */
+    public PartBufferPool(int bufferSize, int maxBuffers) {
+        if (bufferSize <= 0 || maxBuffers <= 0) {
+            throw new IllegalArgumentException("bufferSize and maxBuffers should be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * 申请一个缓冲区，池已耗尽时阻塞等待
+     *
+     * @return 缓冲区
+     * @throws InterruptedIOException 等待时线程被中断
+     */
+    public byte[] acquire() throws InterruptedIOException {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        while (true) {
+            int current = allocated.get();
+            if (current >= maxBuffers) {
+                break;
+            }
+            if (allocated.compareAndSet(current, current + 1)) {
+                return new byte[bufferSize];
+            }
+        }
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free part buffer");
+        }
+    }
+
+    /**
+     * 归还缓冲区
+     *
+     * @param buffer 通过acquire()获取的缓冲区
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxBuffers() {
+        return maxBuffers;
+    }
+}
@@ -2,6 +2,8 @@ package com.huawei.ais.demo.obs;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,9 +29,19 @@ public class SimpleObsClient {
     private static final int CONN_TIMEOUT_DEFAULT = 10000; //ms
     private static final int SOCKET_TIMEOUT_DEFAULT = 30000; //ms
 
+    private static final int STREAM_PART_SIZE_IN_MB_DEFAULT = 5;
+    private static final int STREAM_BUFFER_COUNT_DEFAULT = 16;
+    private static final int MULTIPART_UPLOAD_THREADS_DEFAULT = 5;
+    private static final String CHECKPOINT_FILE_SUFFIX = ".obsckpt";
+
     private ObsClient obsClient;
     private String region;
 
+    private int multipartUploadThreads = MULTIPART_UPLOAD_THREADS_DEFAULT;
+    private boolean uploadCheckpointEnabled = false;
+    private MultipartUploadEngine multipartUploadEngine;
+    private PartBufferPool streamBufferPool;
+
     /**
      * 使用ClientContextUtils中配置的AK/SK创建简易OBS客户端，请确保对应的用户已开通OBS服务
      */
@@ -37,6 +49,16 @@ public class SimpleObsClient {
         this(authInfo.getAk(), authInfo.getSk(), authInfo.getRegion());
     }
 
+    /**
+     * 使用ClientContextUtils中配置的AK/SK创建简易OBS客户端，连接指定的OBS服务地址
+     *
+     * @param endPoint OBS服务地址，格式为http(s)://host[:port]，为空时使用所在region的公有云地址
+     */
+    public SimpleObsClient(AuthInfo authInfo, String endPoint) {
+        this(authInfo.getAk(), authInfo.getSk(), authInfo.getRegion(), endPoint, CONN_TIMEOUT_DEFAULT,
+                SOCKET_TIMEOUT_DEFAULT, null);
+    }
+
     /**
      * 使用ClientContextUtils中配置的AK/SK创建简易OBS客户端，请确保对应的用户已开通OBS服务<br/>
      * 并给客户端配置代理
@@ -94,13 +116,33 @@ public class SimpleObsClient {
      * @param proxyHostInfo
      */
     public SimpleObsClient(String ak, String sk, String region, int connTimeout, int socketTimeout, ProxyHostInfo proxyHostInfo) {
+        this(ak, sk, region, null, connTimeout, socketTimeout, proxyHostInfo);
+    }
+
+    /**
+     * 使用自定义的AK/SK创建简易OBS客户端，连接指定的OBS服务地址<br/>
+     * 同时指定此客户端连接服务端的连接超时和等待响应超时时间<br/>
+     * 并给客户端配置代理
+     *
+     * @param ak
+     * @param sk
+     * @param endPoint      OBS服务地址，格式为http(s)://host[:port]，以路径方式访问桶；为空时使用所在region的公有云地址
+     * @param connTimeout   连接超时时间，ms
+     * @param socketTimeout 等待响应超时时间，ms
+     * @param proxyHostInfo 代理，可为null
+     */
+    public SimpleObsClient(String ak, String sk, String region, String endPoint, int connTimeout, int socketTimeout,
+                           ProxyHostInfo proxyHostInfo) {
         this.region = region;
-        String endPoint = "obs." + region + ".myhwclouds.com";
         ObsConfiguration config = new ObsConfiguration();
         config.setSocketTimeout(connTimeout);
         config.setConnectionTimeout(socketTimeout);
-        config.setEndPoint(endPoint);
-        config.setHttpsOnly(true);
+        if (endPoint == null || endPoint.isEmpty()) {
+            config.setEndPoint("obs." + region + ".myhwclouds.com");
+            config.setHttpsOnly(true);
+        } else {
+            applyEndPoint(config, endPoint);
+        }
         if (proxyHostInfo != null) {
             config.setHttpProxy(proxyHostInfo.getHostName(), proxyHostInfo.getPort(), proxyHostInfo.getUserName(),
                     proxyHostInfo.getPassword(), "");
@@ -108,6 +150,29 @@ public class SimpleObsClient {
         obsClient = new ObsClient(ak, sk, config);
     }
 
+    /**
+     * 自定义地址一般没有桶的泛域名解析，改为以路径方式访问桶：{endPoint}/{bucket}/{key}
+     */
+    // OBS SDK 2.1.22中路径方式访问桶只能通过已废弃的setDisableDnsBucket开启，没有替代接口
+    @SuppressWarnings("deprecation")
+    private static void applyEndPoint(ObsConfiguration config, String endPoint) {
+        URI uri = URI.create(endPoint.contains("://") ? endPoint : "https://" + endPoint);
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Invalid obs endpoint: " + endPoint);
+        }
+        boolean https = !"http".equalsIgnoreCase(uri.getScheme());
+        config.setEndPoint(uri.getHost());
+        config.setHttpsOnly(https);
+        if (uri.getPort() > 0) {
+            if (https) {
+                config.setEndpointHttpsPort(uri.getPort());
+            } else {
+                config.setEndpointHttpPort(uri.getPort());
+            }
+        }
+        config.setDisableDnsBucket(true);
+    }
+
     /**
      * 创建桶
      *
@@ -136,8 +201,9 @@ public class SimpleObsClient {
      * @param bucketName 桶名称
      * @param filePath   本地文件位置
      * @return OBS文件句柄
+     * @throws IOException 分段上传失败
      */
-    public ObsFileHandle uploadFile(String bucketName, String filePath) {
+    public ObsFileHandle uploadFile(String bucketName, String filePath) throws IOException {
         return uploadFile(bucketName, "", filePath);
     }
 
@@ -148,19 +214,117 @@ public class SimpleObsClient {
      * @param folderName 文件夹名称
      * @param filePath   本地文件位置
      * @return OBS文件句柄
+     * @throws IOException 分段上传失败
      */
-    public ObsFileHandle uploadFile(String bucketName, String folderName, String filePath) {
+    public ObsFileHandle uploadFile(String bucketName, String folderName, String filePath) throws IOException {
         File file = new File(filePath);
         String objectKey = folderName + file.getName();
         LOGGER.info("Begin to upload file:" + file.getAbsolutePath());
         if (file.length() > LARGE_FILE_THRESHOLD) {
-            ConcurrentUploadChannel channel = new ConcurrentUploadChannel(obsClient, bucketName, objectKey, file);
-            channel.upload();
+            File checkpointFile = uploadCheckpointEnabled ? getCheckpointFile(filePath) : null;
+            getMultipartUploadEngine().uploadFile(bucketName, objectKey, file, checkpointFile);
         } else {
             obsClient.putObject(bucketName, objectKey, file);
         }
         LOGGER.info("Upload done! file:" + file.getAbsolutePath());
-        return new ObsFileHandle(bucketName, objectKey, this);
+        return new ObsFileHandle(bucketName, objectKey, file.length(), this);
+    }
+
+    /**
+     * 配置分段上传线程数，需在第一次上传大文件或流之前调用<br/>
+     * 此客户端上的所有分段上传共享这些线程
+     *
+     * @param uploadThreads     分段上传线程数
+     * @param checkpointEnabled 上传本地大文件时是否在文件旁记录断点，失败后再次上传同一文件时只上传缺失的分段
+     */
+    public synchronized void initMultipartUpload(int uploadThreads, boolean checkpointEnabled) {
+        if (multipartUploadEngine != null) {
+            throw new IllegalStateException("multipart upload has been initialized already!");
+        }
+        multipartUploadThreads = uploadThreads;
+        uploadCheckpointEnabled = checkpointEnabled;
+    }
+
+    /**
+     * 本地文件是否有未完成的上传断点，有断点说明该文件曾完整写入并开始上传
+     *
+     * @param filePath 本地文件位置
+     * @return 是否存在断点
+     */
+    public boolean hasUploadCheckpoint(String filePath) {
+        return uploadCheckpointEnabled && getCheckpointFile(filePath).exists() && new File(filePath).exists();
+    }
+
+    /**
+     * 放弃本地文件的上传断点：先中止断点中记录的分段上传，再删除断点
+     *
+     * @param filePath 本地文件位置
+     */
+    public void discardUploadCheckpoint(String filePath) {
+        File checkpointFile = getCheckpointFile(filePath);
+        if (checkpointFile.exists()) {
+            getMultipartUploadEngine().abortCheckpointedUpload(checkpointFile);
+        }
+    }
+
+    private static File getCheckpointFile(String filePath) {
+        return new File(filePath + CHECKPOINT_FILE_SUFFIX);
+    }
+
+    /**
+     * 配置流式上传使用的分段大小和内存缓冲区数量，需在第一次调用uploadStream()之前调用<br/>
+     * 流式上传占用的内存上限为 partSizeInMB * bufferCount
+     *
+     * @param partSizeInMB 分段大小，单位为MB
+     * @param bufferCount  内存缓冲区数量上限
+     */
+    public synchronized void initStreamUpload(int partSizeInMB, int bufferCount) {
+        if (streamBufferPool != null) {
+            throw new IllegalStateException("stream upload has been initialized already!");
+        }
+        streamBufferPool = new PartBufferPool(partSizeInMB * 1024 * 1024, bufferCount);
+    }
+
+    /**
+     * 将输入流直接上传到OBS中，{bucket}/objectKey<br/>
+     * 数据在内存中切分为分段，边读边上传，不经过本地磁盘；调用方负责关闭输入流
+     *
+     * @param bucketName 桶名称
+     * @param objectKey  文件在OBS中的key
+     * @param input      数据输入流
+     * @return OBS文件句柄
+     * @throws IOException 读取输入流失败或上传失败
+     */
+    public ObsFileHandle uploadStream(String bucketName, String objectKey, InputStream input) throws IOException {
+        synchronized (this) {
+            if (streamBufferPool == null) {
+                initStreamUpload(STREAM_PART_SIZE_IN_MB_DEFAULT, STREAM_BUFFER_COUNT_DEFAULT);
+            }
+        }
+        LOGGER.info("Begin to upload stream to:" + objectKey);
+        StreamUploadChannel channel = new StreamUploadChannel(getMultipartUploadEngine(), obsClient, bucketName,
+                objectKey, input, streamBufferPool);
+        long size = channel.upload();
+        LOGGER.info(String.format("Upload done! object:%s size:%d", objectKey, size));
+        return new ObsFileHandle(bucketName, objectKey, size, this);
+    }
+
+    /**
+     * 中止桶中超过指定时长仍未完成的分段上传，清理进程异常退出后遗留在OBS中的分段
+     *
+     * @param bucketName 桶名称
+     * @param maxAge     未完成上传的最长保留时间，ms
+     * @return 中止的上传数
+     */
+    public int abortOrphanedUploads(String bucketName, long maxAge) {
+        return getMultipartUploadEngine().abortOrphanedUploads(bucketName, maxAge);
+    }
+
+    private synchronized MultipartUploadEngine getMultipartUploadEngine() {
+        if (multipartUploadEngine == null) {
+            multipartUploadEngine = new MultipartUploadEngine(obsClient, multipartUploadThreads);
+        }
+        return multipartUploadEngine;
     }
 
     /**
@@ -173,7 +337,8 @@ public class SimpleObsClient {
     public ObsFileHandle locateFile(String bucketName, String key) {
         ObjectMetadata objectMetadata = obsClient.getObjectMetadata(bucketName, key);
         if (objectMetadata != null) {
-            return new ObsFileHandle(bucketName, key, this);
+            Long contentLength = objectMetadata.getContentLength();
+            return new ObsFileHandle(bucketName, key, contentLength != null ? contentLength : -1, this);
         } else {
             throw new IllegalArgumentException(key + " is not found in " + bucketName);
         }
@@ -198,6 +363,11 @@ public class SimpleObsClient {
      * 销毁OBS客户端
      */
     public void close() {
+        synchronized (this) {
+            if (multipartUploadEngine != null) {
+                multipartUploadEngine.shutdown();
+            }
+        }
         if (obsClient != null) {
             try {
                 obsClient.close();
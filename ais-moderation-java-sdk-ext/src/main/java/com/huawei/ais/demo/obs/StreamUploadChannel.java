@@ -0,0 +1,123 @@
+package com.huawei.ais.demo.obs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.obs.services.ObsClient;
+import com.obs.services.model.ObjectMetadata;
+
+/**
+ * 将输入流边读边以分段的形式上传到OBS，不落本地磁盘<br/>
+ * 流中的数据按缓冲区大小切分为分段，读满一段即交给{@link MultipartUploadEngine}上传，读取与上传并行进行；
+ * 缓冲区来自有界的{@link PartBufferPool}，上传跟不上读取时读取方会阻塞等待
+ */
+public class StreamUploadChannel {
+
+    private static final int MAX_PART_COUNT = 10000;
+
+    private final MultipartUploadEngine uploadEngine;
+    private final ObsClient obsClient;
+    private final String bucketName;
+    private final String objectKey;
+    private final InputStream input;
+    private final PartBufferPool bufferPool;
+
+    public StreamUploadChannel(MultipartUploadEngine uploadEngine, ObsClient obsClient, String bucketName,
+                               String objectKey, InputStream input, PartBufferPool bufferPool) {
+        this.uploadEngine = uploadEngine;
+        this.obsClient = obsClient;
+        this.bucketName = bucketName;
+        this.objectKey = objectKey;
+        this.input = input;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * 读取整个输入流并上传，数据不足一个分段时直接使用普通上传
+     *
+     * @return 上传的总字节数
+     * @throws IOException 读取输入流失败或分段上传失败
+     */
+    public long upload() throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        int length;
+        try {
+            length = readFully(input, buffer);
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+
+        if (length < buffer.length) {
+            try {
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength((long) length);
+                obsClient.putObject(bucketName, objectKey, new ByteArrayInputStream(buffer, 0, length), metadata);
+                return length;
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }
+
+        MultipartUploadEngine.UploadSession session;
+        try {
+            session = uploadEngine.openSession(bucketName, objectKey);
+        } catch (IOException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+
+        long totalBytes = 0;
+        try {
+            int partNumber = 1;
+            while (true) {
+                if (partNumber > MAX_PART_COUNT) {
+                    bufferPool.release(buffer);
+                    throw new IOException("Total parts count should not exceed " + MAX_PART_COUNT);
+                }
+                // 缓冲区由上传线程在分段结束后归还
+                session.addPart(MultipartUploadEngine.Part.ofBuffer(partNumber, buffer, length, bufferPool));
+                totalBytes += length;
+                if (length < buffer.length || session.isFailed()) {
+                    break;
+                }
+
+                buffer = bufferPool.acquire();
+                try {
+                    length = readFully(input, buffer);
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+                if (length == 0) {
+                    bufferPool.release(buffer);
+                    break;
+                }
+                partNumber++;
+            }
+        } catch (IOException | RuntimeException e) {
+            session.abort(e);
+            throw e;
+        }
+
+        session.seal();
+        session.awaitAndComplete();
+        return totalBytes;
+    }
+
+    /**
+     * 尽量读满缓冲区，只有到达流末尾时返回值才会小于缓冲区长度
+     */
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = input.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,112 @@
+package com.huawei.ais.demo.obs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 分段上传断点，记录uploadId和已完成分段的ETag，以json格式保存在本地文件中<br/>
+ * 上传失败或进程重启后，可据此只上传缺失的分段
+ */
+class UploadCheckpoint {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @JsonProperty("bucket_name")
+    private String bucketName;
+
+    @JsonProperty("object_key")
+    private String objectKey;
+
+    @JsonProperty("upload_id")
+    private String uploadId;
+
+    @JsonProperty("file_length")
+    private long fileLength;
+
+    @JsonProperty("file_last_modified")
+    private long fileLastModified;
+
+    @JsonProperty("part_size")
+    private long partSize;
+
+    @JsonProperty("completed_parts")
+    private Map<Integer, String> completedParts = new TreeMap<>();
+
+    UploadCheckpoint() {
+    }
+
+    UploadCheckpoint(String bucketName, String objectKey, String uploadId, File file, long partSize) {
+        this.bucketName = bucketName;
+        this.objectKey = objectKey;
+        this.uploadId = uploadId;
+        this.fileLength = file.length();
+        this.fileLastModified = file.lastModified();
+        this.partSize = partSize;
+    }
+
+    static UploadCheckpoint load(File checkpointFile) throws IOException {
+        return OBJECT_MAPPER.readValue(checkpointFile, UploadCheckpoint.class);
+    }
+
+    /**
+     * 先写临时文件再原子替换，进程在写入过程中退出也不会留下损坏的断点
+     */
+    synchronized void save(File checkpointFile) throws IOException {
+        File tmpFile = new File(checkpointFile.getPath() + ".tmp");
+        OBJECT_MAPPER.writeValue(tmpFile, this);
+        Files.move(tmpFile.toPath(), checkpointFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return 断点是否属于该文件的这次上传，本地文件被修改过时断点失效
+     */
+    boolean matches(String bucketName, String objectKey, File file) {
+        return this.bucketName.equals(bucketName) && this.objectKey.equals(objectKey)
+                && fileLength == file.length() && fileLastModified == file.lastModified();
+    }
+
+    synchronized void addCompletedPart(int partNumber, String etag) {
+        completedParts.put(partNumber, etag);
+    }
+
+    /**
+     * 以OBS中实际已上传的分段为准重置已完成分段
+     *
+     * @param uploadedParts OBS中大小正确的分段，partNumber -> ETag
+     */
+    synchronized void reconcile(Map<Integer, String> uploadedParts) {
+        completedParts = new TreeMap<>(uploadedParts);
+    }
+
+    synchronized Map<Integer, String> getCompletedParts() {
+        return new TreeMap<>(completedParts);
+    }
+
+    String getBucketName() {
+        return bucketName;
+    }
+
+    String getObjectKey() {
+        return objectKey;
+    }
+
+    String getUploadId() {
+        return uploadId;
+    }
+
+    long getFileLength() {
+        return fileLength;
+    }
+
+    long getPartSize() {
+        return partSize;
+    }
+}
@@ -0,0 +1,402 @@
+package com.huawei.ais.demo.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RangedDownloaderTest {
+
+    private static final int RANGE_SIZE = 1000;
+    // 阻塞的分段先写出的字节数
+    private static final int HELD_BYTES = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RangeHandler handler;
+    private HttpServer server;
+    private SharedHttpClient sharedHttpClient;
+    private RangedDownloader downloader;
+    private String url;
+    private File destFile;
+
+    @Before
+    public void setUp() throws IOException {
+        startServer(4 * RANGE_SIZE + 500);
+        sharedHttpClient = new SharedHttpClient(10, 10, 5000, 5000, 10000, 60000, 0, 0);
+        downloader = new RangedDownloader(sharedHttpClient, 3, RANGE_SIZE, 2);
+        destFile = new File(folder.getRoot(), "spool/video.mp4");
+    }
+
+    private void startServer(int contentLength) throws IOException {
+        if (server != null) {
+            server.shutdown(1, TimeUnit.SECONDS);
+        }
+        byte[] content = new byte[contentLength];
+        new Random(contentLength).nextBytes(content);
+        handler = new RangeHandler(content);
+        server = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getLoopbackAddress())
+                .setListenerPort(0)
+                .registerHandler("*", handler)
+                .create();
+        server.start();
+        url = "http://" + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort() + "/video.mp4";
+    }
+
+    @After
+    public void tearDown() {
+        downloader.close();
+        sharedHttpClient.close();
+        server.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void downloadsAllRanges() throws IOException {
+        CloseableHttpResponse firstRange = openFirstRange();
+        assertEquals(HttpStatus.SC_PARTIAL_CONTENT, firstRange.getStatusLine().getStatusCode());
+        assertEquals(handler.content.length, RangedDownloader.getTotalLength(firstRange));
+
+        downloader.download(url, firstRange, destFile);
+
+        assertArrayEquals(handler.content, Files.readAllBytes(destFile.toPath()));
+        assertEquals(5, handler.getRequestedRanges().size());
+    }
+
+    @Test
+    public void droppedRangeResumesFromWrittenPosition() throws IOException {
+        // 第一个分段和中间的一个分段各断开一次
+        handler.dropOnce(0, 300);
+        handler.dropOnce(2 * RANGE_SIZE, 300);
+
+        downloader.download(url, openFirstRange(), destFile);
+
+        assertArrayEquals(handler.content, Files.readAllBytes(destFile.toPath()));
+        List<String> ranges = handler.getRequestedRanges();
+        assertTrue(ranges.toString(), ranges.contains("bytes=300-999"));
+        assertTrue(ranges.toString(), ranges.contains("bytes=2300-2999"));
+        assertEquals(7, ranges.size());
+    }
+
+    @Test
+    public void etagChangeBetweenRangesFailsDownload() throws IOException {
+        CloseableHttpResponse firstRange = openFirstRange();
+        handler.etag = "\"v2\"";
+
+        try {
+            downloader.download(url, firstRange, destFile);
+            fail("modified video should not be downloaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("ETag:\"v2\""));
+        }
+    }
+
+    @Test
+    public void serverIgnoringRangeIsLeftToCaller() throws IOException {
+        handler.ignoreRange = true;
+        try (CloseableHttpResponse response = openFirstRange()) {
+            // 调用方按200的Content-Length单流下载
+            assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            assertEquals(handler.content.length, RangedDownloader.getTotalLength(response));
+            try {
+                downloader.download(url, response, destFile);
+                fail("200 response has no Content-Range");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Unexpected Content-Range"));
+            }
+        }
+    }
+
+    @Test
+    public void serverIgnoringRangeForLaterRangesFailsDownload() throws IOException {
+        CloseableHttpResponse firstRange = openFirstRange();
+        handler.ignoreRange = true;
+
+        try {
+            downloader.download(url, firstRange, destFile);
+            fail("200 response should not be written as a range");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("status:200"));
+        }
+    }
+
+    @Test
+    public void closedDownloaderDownloadsOnCallerThread() throws IOException {
+        downloader.close();
+
+        downloader.download(url, openFirstRange(), destFile);
+
+        assertArrayEquals(handler.content, Files.readAllBytes(destFile.toPath()));
+        assertEquals(5, handler.getRequestedRanges().size());
+    }
+
+    @Test
+    public void interruptWaitsForHelpersAndStopsThem() throws Exception {
+        // 只有两个分段：第一个由调用线程读取，第二个由唯一的下载线程下载
+        startServer(2 * RANGE_SIZE);
+        // 下载线程请求第二个分段后才写完第一个分段，保证调用线程读完第一个分段后在等待下载线程
+        CountDownLatch helperStarted = handler.arrival(RANGE_SIZE);
+        CountDownLatch helperRelease = new CountDownLatch(1);
+        handler.holdUntil(0, helperStarted);
+        handler.holdUntil(RANGE_SIZE, helperRelease);
+
+        CloseableHttpResponse firstRange = openFirstRange();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicReference<Boolean> interruptedAfter = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            try {
+                downloader.download(url, firstRange, destFile);
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+            interruptedAfter.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+
+        assertTrue(helperStarted.await(10, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!isAwaitingHelpers(caller) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(isAwaitingHelpers(caller));
+        caller.interrupt();
+        // 下载线程可能在中断后才读到已写出的部分而自行停下；否则仍阻塞在第二个分段上，调用线程等它停下
+        caller.join(200);
+        if (caller.isAlive()) {
+            assertTrue(isHelperFetching());
+        }
+
+        helperRelease.countDown();
+        caller.join(10000);
+        assertFalse(caller.isAlive());
+        assertFalse("caller returned before the helper stopped", isHelperFetching());
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedIOException);
+        assertTrue(interruptedAfter.get());
+        assertEquals("helper does not retry after the failure", 2, handler.getRequestedRanges().size());
+    }
+
+    @Test
+    public void interruptDuringWriteStopsWithoutRetrying() throws Exception {
+        CloseableHttpResponse firstRange = openFirstRange();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicReference<Boolean> interruptedAfter = new AtomicReference<>();
+        Thread caller = new Thread(() -> {
+            // 带着中断标记写入文件时抛出ClosedByInterruptException并关闭文件
+            Thread.currentThread().interrupt();
+            try {
+                downloader.download(url, firstRange, destFile);
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+            interruptedAfter.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+        caller.join(10000);
+
+        assertFalse(caller.isAlive());
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedIOException);
+        assertTrue(interruptedAfter.get());
+        // 文件关闭后各分段都不再从已写入的位置重试
+        for (String range : handler.getRequestedRanges()) {
+            long start = Long.parseLong(range.substring("bytes=".length(), range.indexOf('-')));
+            assertEquals(range, 0, start % RANGE_SIZE);
+        }
+    }
+
+    /**
+     * 日志等处的锁也会使线程处于WAITING，还需确认是在等待下载线程
+     */
+    private static boolean isAwaitingHelpers(Thread caller) {
+        if (caller.getState() != Thread.State.WAITING) {
+            return false;
+        }
+        for (StackTraceElement element : caller.getStackTrace()) {
+            if (element.getMethodName().equals("awaitHelpers")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHelperFetching() {
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            if (!entry.getKey().getName().startsWith("video-range-download-")) {
+                continue;
+            }
+            for (StackTraceElement element : entry.getValue()) {
+                if (element.getMethodName().equals("fetch")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private CloseableHttpResponse openFirstRange() throws IOException {
+        HttpGet httpGet = new HttpGet(url);
+        httpGet.setHeader("Range", downloader.getFirstRange());
+        return sharedHttpClient.getStreamingHttpClient().execute(httpGet);
+    }
+
+    /**
+     * 支持单个区间Range请求的视频源，可以让指定分段中途断开或阻塞
+     */
+    private static class RangeHandler implements HttpRequestHandler {
+
+        private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+        private final byte[] content;
+        private final List<String> requestedRanges = Collections.synchronizedList(new ArrayList<>());
+        // 分段起始位置 -> 断开前写出的字节数，只断开一次
+        private final Map<Long, Integer> drops = new ConcurrentHashMap<>();
+        private final Map<Long, CountDownLatch> arrivals = new ConcurrentHashMap<>();
+        private final Map<Long, CountDownLatch> releases = new ConcurrentHashMap<>();
+        private final Set<Long> held = ConcurrentHashMap.newKeySet();
+
+        private volatile String etag = "\"v1\"";
+        private volatile boolean ignoreRange;
+
+        RangeHandler(byte[] content) {
+            this.content = content;
+        }
+
+        void dropOnce(long start, int bytes) {
+            drops.put(start, bytes);
+        }
+
+        /**
+         * @return 指定分段的请求到达时计数归零
+         */
+        CountDownLatch arrival(long start) {
+            return arrivals.computeIfAbsent(start, key -> new CountDownLatch(1));
+        }
+
+        /**
+         * 指定分段写出{@link #HELD_BYTES}字节后阻塞，直到release计数归零，只阻塞一次
+         */
+        void holdUntil(long start, CountDownLatch release) {
+            releases.put(start, release);
+        }
+
+        List<String> getRequestedRanges() {
+            return new ArrayList<>(requestedRanges);
+        }
+
+        @Override
+        public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+            response.setHeader("ETag", etag);
+            Header range = request.getFirstHeader("Range");
+            Matcher matcher = range != null ? RANGE.matcher(range.getValue()) : null;
+            if (ignoreRange || matcher == null || !matcher.matches()) {
+                response.setStatusCode(HttpStatus.SC_OK);
+                response.setEntity(new ByteArrayEntity(content));
+                return;
+            }
+            requestedRanges.add(range.getValue());
+            long start = Long.parseLong(matcher.group(1));
+            long end = Math.min(Long.parseLong(matcher.group(2)), content.length - 1);
+            response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            response.setEntity(new RangeEntity(start, end));
+            CountDownLatch arrival = arrivals.get(start);
+            if (arrival != null) {
+                arrival.countDown();
+            }
+        }
+
+        private class RangeEntity extends AbstractHttpEntity {
+            private final int start;
+            private final int length;
+
+            RangeEntity(long start, long end) {
+                this.start = (int) start;
+                this.length = (int) (end - start + 1);
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return false;
+            }
+
+            @Override
+            public long getContentLength() {
+                return length;
+            }
+
+            @Override
+            public InputStream getContent() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                Integer dropAfter = drops.remove((long) start);
+                if (dropAfter != null) {
+                    output.write(content, start, dropAfter);
+                    output.flush();
+                    // 异常使服务端直接关闭连接，客户端读到不完整的响应体
+                    throw new IOException("Connection dropped at " + (start + dropAfter));
+                }
+                CountDownLatch release = held.add((long) start) ? releases.get((long) start) : null;
+                int written = 0;
+                if (release != null) {
+                    written = HELD_BYTES;
+                    output.write(content, start, written);
+                    output.flush();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                output.write(content, start + written, length - written);
+                output.flush();
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return true;
+            }
+        }
+    }
+}
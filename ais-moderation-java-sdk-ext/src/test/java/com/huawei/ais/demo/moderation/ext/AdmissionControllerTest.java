@@ -0,0 +1,224 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class AdmissionControllerTest {
+
+    @Test
+    public void asyncWaitersAreGrantedInArrivalOrder() {
+        AdmissionController controller = new AdmissionController(2, 10, 2);
+        AdmissionController.Ticket first = admitNow(controller);
+        admitNow(controller);
+        assertEquals(2, controller.getInFlightJobs());
+
+        CompletableFuture<AdmissionController.Ticket> third = controller.admit(AdmissionPolicy.async());
+        CompletableFuture<AdmissionController.Ticket> fourth = controller.admit(AdmissionPolicy.async());
+        assertFalse(third.isDone());
+        assertEquals(2, controller.getQueueDepth());
+        try {
+            controller.admit(AdmissionPolicy.async());
+            fail("admission queue is full");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(1, controller.getRejectedCount());
+
+        first.release();
+        assertTrue(third.isDone());
+        assertFalse(fourth.isDone());
+        assertEquals(2, controller.getInFlightJobs());
+
+        third.join().release();
+        assertTrue(fourth.isDone());
+        assertEquals(0, controller.getQueueDepth());
+        assertEquals(4, controller.getAdmittedCount());
+    }
+
+    @Test
+    public void blockingWaitersAreGrantedInArrivalOrder() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(1, 10, 10);
+        AdmissionController.Ticket holder = admitNow(controller);
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        List<AdmissionController.Ticket> tickets = Collections.synchronizedList(new ArrayList<>());
+
+        Thread firstWaiter = startBlockingWaiter(controller, "first", granted, tickets);
+        awaitQueueDepth(controller, 1);
+        Thread secondWaiter = startBlockingWaiter(controller, "second", granted, tickets);
+        awaitQueueDepth(controller, 2);
+
+        holder.release();
+        firstWaiter.join(1000);
+        assertEquals(Collections.singletonList("first"), granted);
+        assertTrue(secondWaiter.isAlive());
+
+        tickets.get(0).release();
+        secondWaiter.join(1000);
+        assertEquals(2, granted.size());
+        assertEquals("second", granted.get(1));
+    }
+
+    @Test
+    public void timedWaitIsRejectedAfterTimeout() {
+        AdmissionController controller = new AdmissionController(1, 10, 10);
+        admitNow(controller);
+
+        long start = System.nanoTime();
+        try {
+            controller.admit(AdmissionPolicy.timedWait(50, TimeUnit.MILLISECONDS));
+            fail("no capacity within timeout");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 49);
+        assertEquals(0, controller.getQueueDepth());
+        assertEquals(1, controller.getRejectedCount());
+    }
+
+    @Test
+    public void interruptedBlockingWaitIsRejected() throws InterruptedException {
+        AdmissionController controller = new AdmissionController(1, 10, 10);
+        admitNow(controller);
+        AtomicReference<Throwable> result = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                controller.admit(AdmissionPolicy.blocking());
+            } catch (RuntimeException e) {
+                result.set(e);
+            }
+        });
+        waiter.start();
+        awaitQueueDepth(controller, 1);
+
+        waiter.interrupt();
+        waiter.join(1000);
+        assertTrue(result.get() instanceof RejectedExecutionException);
+        assertEquals(0, controller.getQueueDepth());
+    }
+
+    @Test
+    public void leavingSubmitStageAdmitsNextJob() {
+        AdmissionController controller = new AdmissionController(10, 1, 10);
+        AdmissionController.Ticket first = admitNow(controller);
+        CompletableFuture<AdmissionController.Ticket> second = controller.admit(AdmissionPolicy.async());
+        assertFalse(second.isDone());
+
+        first.leaveSubmitStage();
+        // 可重复调用
+        first.leaveSubmitStage();
+        assertTrue(second.isDone());
+        assertEquals(2, controller.getInFlightJobs());
+        assertEquals(1, controller.getSubmittingJobs());
+    }
+
+    @Test
+    public void capacityIsReturnedAfterJobAndAllCallbacks() throws Exception {
+        AdmissionController controller = new AdmissionController(10, 10, 10);
+        StubModerationTransport transport = new StubModerationTransport();
+        // 第一个回调任务被回调线程池拒绝，由失败重试机制稍后执行
+        RejectingExecutor callbackExecutors = new RejectingExecutor(1);
+        CallbackTask.initCallbackFailedTaskManager(callbackExecutors, Executors.defaultThreadFactory(), null);
+        JobPollCoordinator coordinator = new JobPollCoordinator(transport, callbackExecutors, null);
+        try {
+            // 与ModerationServiceUtils.startSubmitJobTask相同：申请者、任务各持有一个引用
+            AdmissionController.Ticket ticket = admitNow(controller);
+            CallbackTargets callbackTargets = new CallbackTargets("http://a/notification");
+            callbackTargets.add("http://b/notification");
+            callbackTargets.setAdmissionTicket(ticket);
+            ticket.retain();
+            ticket.release();
+            ticket.leaveSubmitStage();
+            assertEquals(0, controller.getSubmittingJobs());
+
+            coordinator.deliver("http://host/video.mp4", "job-1", callbackTargets, "result");
+            // 任务结束，两个回调仍各持有一个引用
+            ticket.release();
+
+            // 被拒绝的回调转入重试时即释放引用，另一个回调执行后释放
+            awaitInFlightJobs(controller, 0);
+            assertEquals(1, transport.getDeliveries().size());
+            assertEquals(1, CallbackTask.getWaitingRetryCount());
+
+            // 重试不再占用准入容量
+            assertEquals(2, transport.awaitDeliveries(2, 5000).size());
+            assertEquals(0, controller.getInFlightJobs());
+            assertEquals(0, controller.getSubmittingJobs());
+        } finally {
+            coordinator.shutdown();
+            CallbackTask.destroyCallbackFailedTaskManager();
+            callbackExecutors.shutdownNow();
+        }
+    }
+
+    private static AdmissionController.Ticket admitNow(AdmissionController controller) {
+        CompletableFuture<AdmissionController.Ticket> admission = controller.admit(AdmissionPolicy.async());
+        assertTrue(admission.isDone());
+        AdmissionController.Ticket ticket = admission.join();
+        assertNotNull(ticket);
+        return ticket;
+    }
+
+    private static Thread startBlockingWaiter(AdmissionController controller, String name, List<String> granted,
+                                              List<AdmissionController.Ticket> tickets) {
+        Thread waiter = new Thread(() -> {
+            AdmissionController.Ticket ticket = controller.admit(AdmissionPolicy.blocking()).join();
+            tickets.add(ticket);
+            granted.add(name);
+        });
+        waiter.start();
+        return waiter;
+    }
+
+    private static void awaitQueueDepth(AdmissionController controller, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (controller.getQueueDepth() != depth && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, controller.getQueueDepth());
+    }
+
+    private static void awaitInFlightJobs(AdmissionController controller, int jobs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (controller.getInFlightJobs() != jobs && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(jobs, controller.getInFlightJobs());
+    }
+
+    /**
+     * 拒绝前几次提交的线程池
+     */
+    private static class RejectingExecutor extends ThreadPoolExecutor {
+        private final AtomicInteger rejections;
+
+        RejectingExecutor(int rejections) {
+            super(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+            this.rejections = new AtomicInteger(rejections);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejections.getAndDecrement() > 0) {
+                throw new RejectedExecutionException("callback pool is full");
+            }
+            super.execute(command);
+        }
+    }
+}
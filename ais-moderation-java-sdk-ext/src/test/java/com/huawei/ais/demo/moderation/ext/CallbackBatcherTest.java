@@ -0,0 +1,143 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static com.huawei.ais.demo.moderation.ext.StubModerationTransport.response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CallbackBatcherTest {
+
+    private static final String CALLBACK_URL = "http://a/notification";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private StubModerationTransport transport;
+    private ExecutorService callbackExecutors;
+    private CallbackBatcher batcher;
+
+    @Before
+    public void setUp() {
+        transport = new StubModerationTransport();
+        callbackExecutors = Executors.newSingleThreadExecutor();
+        CallbackTask.initCallbackFailedTaskManager(callbackExecutors, Executors.defaultThreadFactory(), null);
+        // 攒够3条立即发送，不足3条时等待20ms
+        batcher = new CallbackBatcher(transport, callbackExecutors, 3, 20);
+    }
+
+    @After
+    public void tearDown() {
+        batcher.shutdown();
+        CallbackTask.destroyCallbackFailedTaskManager();
+        callbackExecutors.shutdownNow();
+    }
+
+    @Test
+    public void singleNotificationIsSentAsArray() throws Exception {
+        batcher.add(newTask("job-1"));
+
+        JsonNode body = onlyDelivery();
+        assertTrue(body.isArray());
+        assertEquals(1, body.size());
+        assertEquals("job-1", body.get(0).path("job_id").asText());
+    }
+
+    @Test
+    public void nonArrayResponseAcknowledgesAll() throws Exception {
+        transport.onDeliver(response(HttpStatus.SC_OK, "{\"received\":3}"));
+        addAll("job-1", "job-2", "job-3");
+
+        JsonNode body = onlyDelivery();
+        assertEquals(Arrays.asList("job-1", "job-2", "job-3"), jobIds(body));
+    }
+
+    @Test
+    public void unacknowledgedNotificationsAreDeliveredSingly() throws Exception {
+        // job-2确认失败，job-3没有success字段
+        transport.onDeliver(response(HttpStatus.SC_OK, "[{\"job_id\":\"job-1\",\"success\":true},"
+                + "{\"job_id\":\"job-2\",\"success\":false},{\"job_id\":\"job-3\"}]"));
+        addAll("job-1", "job-2", "job-3");
+
+        List<StubModerationTransport.Delivery> deliveries = transport.awaitDeliveries(3, 5000);
+        Thread.sleep(100);
+        assertEquals(3, transport.getDeliveries().size());
+        assertEquals(Arrays.asList("job-2", "job-3"), singlyDeliveredJobIds(deliveries.subList(1, 3)));
+    }
+
+    @Test
+    public void failedBatchFansOutToSingleCallbacks() throws Exception {
+        transport.onDeliver(response(HttpStatus.SC_BAD_GATEWAY, "bad gateway"));
+        addAll("job-1", "job-2", "job-3");
+
+        List<StubModerationTransport.Delivery> deliveries = transport.awaitDeliveries(4, 5000);
+        assertEquals(4, deliveries.size());
+        assertTrue(objectMapper.readTree(deliveries.get(0).getBody()).isArray());
+        assertEquals(Arrays.asList("job-1", "job-2", "job-3"), singlyDeliveredJobIds(deliveries.subList(1, 4)));
+    }
+
+    @Test
+    public void batchRequestErrorFansOutToSingleCallbacks() throws Exception {
+        transport.onDeliverFailure(new IOException("connection refused"));
+        addAll("job-1", "job-2");
+
+        List<StubModerationTransport.Delivery> deliveries = transport.awaitDeliveries(3, 5000);
+        assertEquals(3, deliveries.size());
+        assertEquals(Arrays.asList("job-1", "job-2"), singlyDeliveredJobIds(deliveries.subList(1, 3)));
+    }
+
+    private void addAll(String... jobIds) {
+        for (String jobId : jobIds) {
+            batcher.add(newTask(jobId));
+        }
+    }
+
+    private CallbackTask newTask(String jobId) {
+        return new CallbackTask("http://host/" + jobId + ".mp4", jobId, CALLBACK_URL, "result-" + jobId, transport,
+                null);
+    }
+
+    /**
+     * 等待第一次回调，并确认之后没有再回调
+     */
+    private JsonNode onlyDelivery() throws Exception {
+        List<StubModerationTransport.Delivery> deliveries = transport.awaitDeliveries(1, 5000);
+        Thread.sleep(100);
+        assertEquals(1, transport.getDeliveries().size());
+        assertEquals(CALLBACK_URL, deliveries.get(0).getCallbackUrl());
+        return objectMapper.readTree(deliveries.get(0).getBody());
+    }
+
+    private List<String> singlyDeliveredJobIds(List<StubModerationTransport.Delivery> deliveries)
+            throws IOException {
+        List<String> jobIds = new ArrayList<>();
+        for (StubModerationTransport.Delivery delivery : deliveries) {
+            JsonNode body = objectMapper.readTree(delivery.getBody());
+            assertTrue("single callback is an object", body.isObject());
+            jobIds.add(body.path("job_id").asText());
+        }
+        Collections.sort(jobIds);
+        return jobIds;
+    }
+
+    private static List<String> jobIds(JsonNode notifications) {
+        List<String> jobIds = new ArrayList<>();
+        for (JsonNode notification : notifications) {
+            jobIds.add(notification.path("job_id").asText());
+        }
+        return jobIds;
+    }
+}
@@ -0,0 +1,201 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpStatus;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * 测试配置中callback.retry.interval=1s，callback.retry.interval.max=8s，抖动20%
+ */
+public class CallbackRetrySchedulerTest {
+
+    private CallbackRetryScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void backoffDoublesUntilCapped() {
+        assertDelayBetween(1, 1000, 1200);
+        assertDelayBetween(2, 2000, 2400);
+        assertDelayBetween(3, 4000, 4800);
+        assertDelayBetween(4, 8000, 9600);
+        assertDelayBetween(5, 8000, 9600);
+        // 位移有上限，不会溢出
+        assertDelayBetween(100, 8000, 9600);
+    }
+
+    @Test
+    public void jitterIsSpreadWithinBounds() {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long delay = CallbackRetryScheduler.backoffDelay(1);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue(min >= 1000 && max <= 1200);
+        assertTrue("jitter should spread retries, got " + min + "~" + max, max - min > 100);
+    }
+
+    @Test
+    public void waitingTaskIsDispatchedOnce() throws InterruptedException {
+        RecordingExecutor callbackExecutors = new RecordingExecutor(0);
+        scheduler = newScheduler(callbackExecutors);
+        CallbackTask task = newTask("job-1");
+        // 新建的任务处于执行中，不能被重试分发
+        assertFalse(task.startRetry());
+
+        task.backToWaiting();
+        scheduler.schedule(task, 0);
+        scheduler.schedule(task, 0);
+
+        callbackExecutors.awaitExecuted(1);
+        Thread.sleep(100);
+        assertEquals(1, callbackExecutors.getExecuted().size());
+        assertSame(task, callbackExecutors.getExecuted().get(0));
+        assertEquals(0, scheduler.size());
+        // 已在执行中
+        assertFalse(task.startRetry());
+    }
+
+    @Test
+    public void rejectedRetryIsRequeued() throws InterruptedException {
+        RecordingExecutor callbackExecutors = new RecordingExecutor(1);
+        scheduler = newScheduler(callbackExecutors);
+        CallbackTask task = newTask("job-1");
+        task.backToWaiting();
+
+        long start = System.nanoTime();
+        scheduler.schedule(task, 0);
+
+        callbackExecutors.awaitExecuted(1);
+        assertEquals(1, callbackExecutors.getExecuted().size());
+        assertEquals(1, callbackExecutors.getRejections());
+        // 被拒绝后等待1s再次提交
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 999);
+        assertEquals(0, scheduler.size());
+        assertFalse(task.startRetry());
+    }
+
+    @Test
+    public void failedCallbackIsScheduledForRetryOnce() throws InterruptedException {
+        StubModerationTransport transport = new StubModerationTransport()
+                .onDeliver(StubModerationTransport.response(HttpStatus.SC_SERVICE_UNAVAILABLE, "busy"));
+        RecordingExecutor callbackExecutors = new RecordingExecutor(0);
+        CallbackTask.initCallbackFailedTaskManager(callbackExecutors, Executors.defaultThreadFactory(), null);
+        try {
+            CallbackTask task = new CallbackTask("http://host/video.mp4", "job-1", "http://a/notification", "result",
+                    transport, null);
+            task.run();
+            // 回调响应的后续处理也提交到回调线程池
+            callbackExecutors.awaitExecuted(1);
+            callbackExecutors.getExecuted().get(0).run();
+
+            assertEquals(1, CallbackTask.getWaitingRetryCount());
+            // 已在等待重试的任务再次被拒绝时不会重复入队
+            CallbackTask.deferCallback(task);
+            assertEquals(1, CallbackTask.getWaitingRetryCount());
+            // 到期后只有一次分发能把任务转为执行中
+            assertTrue(task.startRetry());
+            assertFalse(task.startRetry());
+        } finally {
+            CallbackTask.destroyCallbackFailedTaskManager();
+        }
+    }
+
+    private static void assertDelayBetween(int retryTimes, long min, long max) {
+        for (int i = 0; i < 100; i++) {
+            long delay = CallbackRetryScheduler.backoffDelay(retryTimes);
+            assertTrue(String.format("retry %d waits %d ms", retryTimes, delay), delay >= min && delay <= max);
+        }
+    }
+
+    private static CallbackRetryScheduler newScheduler(RecordingExecutor callbackExecutors) {
+        return new CallbackRetryScheduler(callbackExecutors, Executors.defaultThreadFactory());
+    }
+
+    private static CallbackTask newTask(String jobId) {
+        return new CallbackTask("http://host/video.mp4", jobId, "http://a/notification", "result", null, null);
+    }
+
+    /**
+     * 只记录提交的任务，不执行；可拒绝前几次提交
+     */
+    private static class RecordingExecutor extends AbstractExecutorService {
+        private final List<Runnable> executed = new ArrayList<>();
+        private final AtomicInteger rejectionsLeft;
+        private final AtomicInteger rejections = new AtomicInteger();
+
+        RecordingExecutor(int rejections) {
+            this.rejectionsLeft = new AtomicInteger(rejections);
+        }
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            if (rejectionsLeft.getAndDecrement() > 0) {
+                rejections.incrementAndGet();
+                throw new RejectedExecutionException("callback pool is full");
+            }
+            executed.add(command);
+            notifyAll();
+        }
+
+        synchronized void awaitExecuted(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            long remaining;
+            while (executed.size() < count && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
+        synchronized List<Runnable> getExecuted() {
+            return new ArrayList<>(executed);
+        }
+
+        int getRejections() {
+            return rejections.get();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
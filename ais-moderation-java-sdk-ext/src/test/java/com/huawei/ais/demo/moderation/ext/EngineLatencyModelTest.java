@@ -0,0 +1,48 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EngineLatencyModelTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void fallsBackToFixedIntervalWithoutObservations() {
+        EngineLatencyModel model = new EngineLatencyModel(30000, 2000, 120000);
+        assertEquals(30000, model.nextPollDelay(100 * MB, 5, 0, 0));
+        assertFalse(model.isOverdue(100 * MB, 5, 1000000));
+    }
+
+    @Test
+    public void predictsRuntimeProportionalToWorkload() {
+        EngineLatencyModel model = new EngineLatencyModel(30000, 2000, 600000);
+        //耗时 = 1s + 每帧量MB 1s
+        for (int i = 0; i < 20; i++) {
+            long size = (10 + i * 10) * MB;
+            model.observe(size, 5, 1000 + size / MB / 5 * 1000);
+        }
+        long predicted = model.predictRuntime(500 * MB, 5);
+        assertTrue("predicted=" + predicted, Math.abs(predicted - 101000) < 1000);
+        //高抽帧间隔意味着更少的帧，耗时更短
+        assertTrue(model.predictRuntime(500 * MB, 10) < predicted);
+    }
+
+    @Test
+    public void pollsNearPredictedEndThenBacksOff() {
+        EngineLatencyModel model = new EngineLatencyModel(30000, 2000, 120000);
+        for (int i = 0; i < 20; i++) {
+            model.observe(50 * MB, 5, 60000);
+        }
+        long firstDelay = model.nextPollDelay(50 * MB, 5, 0, 0);
+        assertTrue("firstDelay=" + firstDelay, firstDelay > 30000 && firstDelay <= 60000);
+
+        assertTrue(model.isOverdue(50 * MB, 5, 60000));
+        assertEquals(2000, model.nextPollDelay(50 * MB, 5, 60000, 1));
+        assertEquals(4000, model.nextPollDelay(50 * MB, 5, 62000, 2));
+        assertEquals(120000, model.nextPollDelay(50 * MB, 5, 600000, 30));
+    }
+}
@@ -0,0 +1,146 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.moderation.model.Category;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+import com.huawei.ais.demo.moderation.model.JobResult;
+
+public class InFlightJobsTest {
+
+    private static final String VIDEO_URL = "http://host/video.mp4";
+    private static final String CALLBACK_A = "http://a/notification";
+    private static final String CALLBACK_B = "http://b/notification";
+
+    private final InFlightJobs inFlightJobs = new InFlightJobs();
+    private final JobMetaInfo jobMetaInfo = newJobMetaInfo();
+
+    // taskFactory新建的任务及其回调目标
+    private final List<SubmitJobTask> tasks = new ArrayList<>();
+    private final List<CallbackTargets> targets = new ArrayList<>();
+
+    @Test
+    public void joinBeforeSealSharesTheJob() throws Exception {
+        ModerationJobFuture first = join(CALLBACK_A);
+        ModerationJobFuture second = join(CALLBACK_B);
+        ModerationJobFuture duplicate = join(CALLBACK_A);
+
+        assertEquals(1, tasks.size());
+        assertEquals(1, inFlightJobs.size());
+        assertNotSame(first, second);
+        // 同一url只回调一次
+        assertEquals(Arrays.asList(CALLBACK_A, CALLBACK_B), targets.get(0).seal());
+
+        ModerationJobFuture jobFuture = tasks.get(0).getJobFuture();
+        jobFuture.markSubmitted("job-1");
+        assertEquals("job-1", second.submitted().get(1, TimeUnit.SECONDS));
+        assertEquals("job-1", duplicate.submitted().get(1, TimeUnit.SECONDS));
+
+        JobResult jobResult = newJobResult();
+        jobFuture.complete(jobResult);
+        assertSame(jobResult, first.get(1, TimeUnit.SECONDS));
+        assertSame(jobResult, second.get(1, TimeUnit.SECONDS));
+        assertEquals(0, inFlightJobs.size());
+    }
+
+    @Test
+    public void joinAfterSealCreatesNewJob() throws Exception {
+        ModerationJobFuture first = join(CALLBACK_A);
+        // 结果已交付，任务还未结束
+        assertEquals(Collections.singletonList(CALLBACK_A), targets.get(0).seal());
+
+        ModerationJobFuture second = join(CALLBACK_B);
+
+        assertEquals(2, tasks.size());
+        assertEquals(1, inFlightJobs.size());
+        assertEquals(Collections.singletonList(CALLBACK_B), targets.get(1).seal());
+
+        // 旧任务结束不影响新任务
+        tasks.get(0).getJobFuture().complete(newJobResult());
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertEquals(1, inFlightJobs.size());
+    }
+
+    @Test
+    public void factoryFailureIsPropagatedToJoiners() throws Exception {
+        IllegalStateException failure = new IllegalStateException("submit rejected");
+        List<ModerationJobFuture> joined = new ArrayList<>();
+        try {
+            inFlightJobs.join(VIDEO_URL, jobMetaInfo, CALLBACK_A, callbackTargets -> {
+                // 新建任务期间到达的重复提交加入了尚未启动的任务
+                joined.add(join(CALLBACK_B));
+                throw failure;
+            });
+            fail("join should rethrow the factory failure");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+
+        assertEquals(1, joined.size());
+        assertTrue(tasks.isEmpty());
+        assertEquals(0, inFlightJobs.size());
+        assertFailedWith(failure, joined.get(0));
+        try {
+            joined.get(0).submitted().get(1, TimeUnit.SECONDS);
+            fail("submitted stage should fail");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+
+        // 失败的任务不再被合并
+        join(CALLBACK_A);
+        assertEquals(1, tasks.size());
+    }
+
+    private ModerationJobFuture join(String callbackUrl) {
+        return inFlightJobs.join(VIDEO_URL, jobMetaInfo, callbackUrl, callbackTargets -> {
+            // 任务不会运行，测试直接完成它的future
+            SubmitJobTask task = new SubmitJobTask(VIDEO_URL, jobMetaInfo, callbackTargets, null, null, null, null,
+                    null, null, null, null, Runnable::run);
+            tasks.add(task);
+            targets.add(callbackTargets);
+            return task;
+        });
+    }
+
+    private static void assertFailedWith(Throwable expected, ModerationJobFuture jobFuture)
+            throws InterruptedException {
+        try {
+            jobFuture.get(1, TimeUnit.SECONDS);
+            fail("job should fail");
+        } catch (ExecutionException e) {
+            assertSame(expected, e.getCause());
+        } catch (TimeoutException e) {
+            fail("job is not completed");
+        }
+    }
+
+    private static JobMetaInfo newJobMetaInfo() {
+        JobMetaInfo jobMetaInfo = new JobMetaInfo();
+        jobMetaInfo.setFrameInterval(5);
+        jobMetaInfo.addCategory(Category.PORN);
+        return jobMetaInfo;
+    }
+
+    private static JobResult newJobResult() throws IOException {
+        return new ObjectMapper().readValue("{\"job_id\":\"job-1\",\"status\":\"finish\"}", JobResult.class);
+    }
+}
@@ -0,0 +1,259 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.huawei.ais.demo.moderation.model.Category;
+import com.huawei.ais.demo.moderation.model.JobMetaInfo;
+
+public class JobJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    // 长度(4字节) + CRC32(4字节) + 类型(1字节)
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replayRestoresPendingJobsAndCallbacks() throws IOException {
+        File directory = folder.newFolder("journal");
+        JobJournal journal = new JobJournal(directory, SEGMENT_SIZE);
+        long first = journal.jobAccepted("http://host/a.mp4", jobMetaInfo("http://host/a.mp4"),
+                Collections.singletonList("http://callback/1"));
+        long second = journal.jobAccepted("http://host/b.mp4", jobMetaInfo("http://host/b.mp4"),
+                Collections.singletonList("http://callback/1"));
+        long third = journal.jobAccepted("http://host/c.mp4", jobMetaInfo("http://host/c.mp4"),
+                Collections.emptyList());
+        journal.callbackAdded(first, "http://callback/2");
+        journal.jobSubmitted(first, "job-a");
+        journal.jobSubmitted(second, "job-b");
+        journal.jobFinished(second);
+        journal.callbackPending("job-b", "http://host/b.mp4", "http://callback/1", result("job-b"));
+        journal.callbackPending("job-x", "http://host/x.mp4", "http://callback/1", result("job-x"));
+        journal.callbackDone("job-x", "http://callback/1");
+        journal.close();
+
+        JobJournal reopened = new JobJournal(directory, SEGMENT_SIZE);
+        List<JobJournal.JournalRecord> jobs = reopened.getPendingJobs();
+        assertEquals(2, jobs.size());
+        JobJournal.JournalRecord job = jobs.get(0);
+        assertEquals(first, job.getJournalId());
+        assertEquals("http://host/a.mp4", job.getVideoUrl());
+        assertEquals("http://host/a.mp4", job.getJobMetaInfo().getUrl());
+        assertEquals(10, job.getJobMetaInfo().getFrameInterval());
+        assertEquals(Collections.singleton(Category.POLITICS), job.getJobMetaInfo().getCategories());
+        assertEquals(Arrays.asList("http://callback/1", "http://callback/2"), job.getCallbackUrls());
+        assertEquals("job-a", job.getJobId());
+        assertEquals(third, jobs.get(1).getJournalId());
+        assertNull("not submitted yet", jobs.get(1).getJobId());
+
+        List<JobJournal.JournalRecord> callbacks = reopened.getPendingCallbacks();
+        assertEquals(1, callbacks.size());
+        assertEquals("job-b", callbacks.get(0).getJobId());
+        assertEquals("http://callback/1", callbacks.get(0).getCallbackUrl());
+        assertEquals("job-b", callbacks.get(0).getResult().get("id").asText());
+
+        // 新的日志ID不会与恢复的任务重复
+        assertTrue(reopened.jobAccepted("http://host/d.mp4", jobMetaInfo("http://host/d.mp4"),
+                Collections.emptyList()) > third);
+        reopened.close();
+    }
+
+    @Test
+    public void corruptedTailRecordIsIgnored() throws IOException {
+        File directory = folder.newFolder("journal");
+        JobJournal journal = new JobJournal(directory, SEGMENT_SIZE);
+        long first = journal.jobAccepted("http://host/a.mp4", jobMetaInfo("http://host/a.mp4"),
+                Collections.singletonList("http://callback/1"));
+        long second = journal.jobAccepted("http://host/b.mp4", jobMetaInfo("http://host/b.mp4"),
+                Collections.singletonList("http://callback/1"));
+        journal.jobFinished(first);
+        journal.close();
+
+        // 最后一条记录（FINISHED）写了一半：内容的最后一个字节还未写入
+        File segment = onlySegment(directory);
+        List<Integer> offsets = recordOffsets(segment);
+        assertEquals(3, offsets.size());
+        int lastOffset = offsets.get(2);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(lastOffset);
+            int length = file.readInt();
+            file.seek(lastOffset + RECORD_HEADER_SIZE + length - 1);
+            file.write(0);
+        }
+
+        JobJournal reopened = new JobJournal(directory, SEGMENT_SIZE);
+        assertEquals(Arrays.asList(first, second), journalIds(reopened.getPendingJobs()));
+        // 回放后写入新的段，之后追加的记录不受损坏的记录影响
+        reopened.jobFinished(second);
+        reopened.close();
+
+        JobJournal again = new JobJournal(directory, SEGMENT_SIZE);
+        assertEquals(Collections.singletonList(first), journalIds(again.getPendingJobs()));
+        again.close();
+    }
+
+    @Test
+    public void truncatedTailRecordIsIgnored() throws IOException {
+        File directory = folder.newFolder("journal");
+        JobJournal journal = new JobJournal(directory, SEGMENT_SIZE);
+        long first = journal.jobAccepted("http://host/a.mp4", jobMetaInfo("http://host/a.mp4"),
+                Collections.singletonList("http://callback/1"));
+        journal.jobSubmitted(first, "job-a");
+        journal.close();
+
+        // 段文件在最后一条记录（SUBMITTED）中间被截断
+        File segment = onlySegment(directory);
+        List<Integer> offsets = recordOffsets(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(offsets.get(1) + RECORD_HEADER_SIZE + 3);
+        }
+
+        JobJournal reopened = new JobJournal(directory, SEGMENT_SIZE);
+        List<JobJournal.JournalRecord> jobs = reopened.getPendingJobs();
+        assertEquals(Collections.singletonList(first), journalIds(jobs));
+        assertNull(jobs.get(0).getJobId());
+        reopened.close();
+    }
+
+    @Test
+    public void compactionKeepsOnlyPendingStateAndOriginalRequest() throws IOException {
+        File directory = folder.newFolder("journal");
+        // 很小的段，写入过程中会多次压缩
+        JobJournal journal = new JobJournal(directory, 1024);
+        JobMetaInfo keptMetaInfo = jobMetaInfo("http://host/kept.mp4");
+        long kept = journal.jobAccepted("http://host/kept.mp4", keptMetaInfo,
+                Collections.singletonList("http://callback/1"));
+        // 提交时url被改为OBS地址，日志中应保留接受时的请求
+        keptMetaInfo.setUrl("https://bucket.obs/kept.mp4");
+        journal.jobSubmitted(kept, "job-kept");
+        for (int i = 0; i < 200; i++) {
+            String videoUrl = "http://host/" + i + ".mp4";
+            long journalId = journal.jobAccepted(videoUrl, jobMetaInfo(videoUrl),
+                    Collections.singletonList("http://callback/1"));
+            journal.jobSubmitted(journalId, "job-" + i);
+            journal.jobFinished(journalId);
+            journal.callbackPending("job-" + i, videoUrl, "http://callback/1", result("job-" + i));
+            if (i != 150) {
+                journal.callbackDone("job-" + i, "http://callback/1");
+            }
+        }
+        journal.close();
+        assertEquals("compacted segments are deleted", 1, segments(directory).size());
+
+        JobJournal reopened = new JobJournal(directory, 1024);
+        List<JobJournal.JournalRecord> jobs = reopened.getPendingJobs();
+        assertEquals(Collections.singletonList(kept), journalIds(jobs));
+        assertEquals("job-kept", jobs.get(0).getJobId());
+        assertEquals("http://host/kept.mp4", jobs.get(0).getJobMetaInfo().getUrl());
+        List<JobJournal.JournalRecord> callbacks = reopened.getPendingCallbacks();
+        assertEquals(1, callbacks.size());
+        assertEquals("job-150", callbacks.get(0).getJobId());
+        reopened.close();
+    }
+
+    @Test
+    public void replayAfterCrashBetweenCompactionAndDeletingOldSegment() throws IOException {
+        File directory = folder.newFolder("journal");
+        JobJournal journal = new JobJournal(directory, SEGMENT_SIZE);
+        long first = journal.jobAccepted("http://host/a.mp4", jobMetaInfo("http://host/a.mp4"),
+                Collections.singletonList("http://callback/1"));
+        long second = journal.jobAccepted("http://host/b.mp4", jobMetaInfo("http://host/b.mp4"),
+                Collections.singletonList("http://callback/1"));
+        journal.jobFinished(second);
+        journal.close();
+        File oldSegment = onlySegment(directory);
+        byte[] oldContent = Files.readAllBytes(oldSegment.toPath());
+
+        // 启动时压缩到新段并删除旧段，之后继续写入
+        JobJournal reopened = new JobJournal(directory, SEGMENT_SIZE);
+        long third = reopened.jobAccepted("http://host/c.mp4", jobMetaInfo("http://host/c.mp4"),
+                Collections.singletonList("http://callback/1"));
+        reopened.jobSubmitted(first, "job-a");
+        reopened.jobFinished(first);
+        reopened.close();
+        assertFalse(oldSegment.exists());
+
+        // 模拟新段已写好、旧段尚未删除时进程退出
+        Files.write(oldSegment.toPath(), oldContent);
+        assertEquals(2, segments(directory).size());
+
+        JobJournal recovered = new JobJournal(directory, SEGMENT_SIZE);
+        assertEquals(Collections.singletonList(third), journalIds(recovered.getPendingJobs()));
+        recovered.close();
+        assertEquals("both old segments are deleted", 1, segments(directory).size());
+    }
+
+    private static JobMetaInfo jobMetaInfo(String url) {
+        JobMetaInfo jobMetaInfo = new JobMetaInfo();
+        jobMetaInfo.setUrl(url);
+        jobMetaInfo.setFrameInterval(10);
+        jobMetaInfo.addCategory(Category.POLITICS);
+        return jobMetaInfo;
+    }
+
+    private static Map<String, Object> result(String jobId) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", jobId);
+        result.put("status", "finish");
+        return result;
+    }
+
+    private static List<Long> journalIds(List<JobJournal.JournalRecord> records) {
+        List<Long> ids = new ArrayList<>();
+        for (JobJournal.JournalRecord record : records) {
+            ids.add(record.getJournalId());
+        }
+        return ids;
+    }
+
+    private static List<File> segments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        List<File> segments = new ArrayList<>(Arrays.asList(files != null ? files : new File[0]));
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static File onlySegment(File directory) {
+        List<File> segments = segments(directory);
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    /**
+     * @return 段中每条记录的起始位置，到长度为0的位置为止
+     */
+    private static List<Integer> recordOffsets(File segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment.toPath()));
+        List<Integer> offsets = new ArrayList<>();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int offset = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0) {
+                break;
+            }
+            offsets.add(offset);
+            buffer.position(offset + RECORD_HEADER_SIZE + length);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,158 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static com.huawei.ais.demo.moderation.ext.StubModerationTransport.jobResponse;
+import static com.huawei.ais.demo.moderation.ext.StubModerationTransport.response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.huawei.ais.demo.moderation.metrics.ModerationMetrics;
+import com.huawei.ais.demo.moderation.model.JobResult;
+import com.huawei.ais.demo.moderation.model.JobStatus;
+
+/**
+ * 测试配置中query.interval=50ms，query.interval.max=200ms，不加抖动
+ */
+public class JobPollCoordinatorTest {
+
+    private static final String VIDEO_URL = "http://host/video.mp4";
+    private static final String CALLBACK_URL = "http://127.0.0.1:8080/result/notification";
+    private static final String JOB_ID = "job-1";
+
+    private static final ModerationMetrics METRICS = ModerationMetrics.getInstance();
+
+    private StubModerationTransport transport;
+    private ExecutorService callbackExecutors;
+    private JobPollCoordinator coordinator;
+
+    @Before
+    public void setUp() {
+        transport = new StubModerationTransport();
+        callbackExecutors = Executors.newSingleThreadExecutor();
+        CallbackTask.initCallbackFailedTaskManager(callbackExecutors, Executors.defaultThreadFactory(), null);
+        coordinator = new JobPollCoordinator(transport, callbackExecutors, null);
+    }
+
+    @After
+    public void tearDown() {
+        coordinator.shutdown();
+        CallbackTask.destroyCallbackFailedTaskManager();
+        callbackExecutors.shutdownNow();
+    }
+
+    @Test
+    public void transientStatusesAreRetriedWithBackoff() throws Exception {
+        HttpResponse throttled = response(429, "{\"error_code\":\"APIG.0308\"}");
+        throttled.setHeader(HttpHeaders.RETRY_AFTER, "0");
+        transport.onGet(response(HttpStatus.SC_SERVICE_UNAVAILABLE, "busy"), throttled,
+                response(HttpStatus.SC_REQUEST_TIMEOUT, ""), jobResponse(JOB_ID, "finish"));
+        long retries = METRICS.getCount(ModerationMetrics.Counter.QUERY_RETRIES);
+
+        JobResult jobResult = track().get(5, TimeUnit.SECONDS);
+
+        assertEquals(JobStatus.FINISH, jobResult.getStatus());
+        assertEquals(3, METRICS.getCount(ModerationMetrics.Counter.QUERY_RETRIES) - retries);
+        // 连续失败后间隔依次为50、100、200（达到上限）
+        List<Long> getTimes = transport.getGetTimes();
+        assertEquals(4, getTimes.size());
+        assertGapAtLeast(getTimes, 1, 50);
+        assertGapAtLeast(getTimes, 2, 100);
+        assertGapAtLeast(getTimes, 3, 200);
+
+        List<StubModerationTransport.Delivery> deliveries = transport.awaitDeliveries(1, 5000);
+        assertEquals(1, deliveries.size());
+        assertTrue(deliveries.get(0).getBody().contains("\"status\":\"finish\""));
+    }
+
+    @Test
+    public void failedRequestIsRetried() throws Exception {
+        long retries = METRICS.getCount(ModerationMetrics.Counter.QUERY_RETRIES);
+        transport.onGetFailure(new IOException("connection reset"))
+                .onGet(jobResponse(JOB_ID, "running"), jobResponse(JOB_ID, "failed"));
+
+        JobResult jobResult = track().get(5, TimeUnit.SECONDS);
+
+        assertEquals(JobStatus.FAILED, jobResult.getStatus());
+        assertEquals(1, METRICS.getCount(ModerationMetrics.Counter.QUERY_RETRIES) - retries);
+        assertEquals(3, transport.getGetTimes().size());
+        assertEquals(1, transport.awaitDeliveries(1, 5000).size());
+    }
+
+    @Test
+    public void definitiveErrorFailsJobAndCallsBackResponse() throws Exception {
+        transport.onGet(response(HttpStatus.SC_NOT_FOUND, "{\"error_code\":\"AIS.0030\"}"),
+                jobResponse(JOB_ID, "finish"));
+
+        CompletableFuture<JobResult> resultFuture = track();
+        try {
+            resultFuture.get(5, TimeUnit.SECONDS);
+            fail("query should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        List<StubModerationTransport.Delivery> deliveries = transport.awaitDeliveries(1, 5000);
+        assertEquals(1, deliveries.size());
+        assertEquals(CALLBACK_URL, deliveries.get(0).getCallbackUrl());
+        assertTrue(deliveries.get(0).getBody().contains("AIS.0030"));
+        // 不再继续查询
+        Thread.sleep(200);
+        assertEquals(1, transport.getGetTimes().size());
+    }
+
+    @Test
+    public void transientStatusClassification() {
+        assertTrue(JobPollCoordinator.isTransientStatus(HttpStatus.SC_REQUEST_TIMEOUT));
+        assertTrue(JobPollCoordinator.isTransientStatus(429));
+        assertTrue(JobPollCoordinator.isTransientStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+        assertTrue(JobPollCoordinator.isTransientStatus(HttpStatus.SC_GATEWAY_TIMEOUT));
+        assertFalse(JobPollCoordinator.isTransientStatus(HttpStatus.SC_BAD_REQUEST));
+        assertFalse(JobPollCoordinator.isTransientStatus(HttpStatus.SC_UNAUTHORIZED));
+        assertFalse(JobPollCoordinator.isTransientStatus(HttpStatus.SC_NOT_FOUND));
+    }
+
+    @Test
+    public void retryAfterInSecondsOrHttpDate() {
+        HttpResponse response = response(429, "");
+        assertEquals(0, JobPollCoordinator.retryAfterMillis(response));
+        response.setHeader(HttpHeaders.RETRY_AFTER, "3");
+        assertEquals(3000, JobPollCoordinator.retryAfterMillis(response));
+        response.setHeader(HttpHeaders.RETRY_AFTER, "soon");
+        assertEquals(0, JobPollCoordinator.retryAfterMillis(response));
+
+        response.setHeader(HttpHeaders.RETRY_AFTER,
+                DateUtils.formatDate(new Date(System.currentTimeMillis() + 60000)));
+        long delay = JobPollCoordinator.retryAfterMillis(response);
+        // HTTP日期精确到秒
+        assertTrue(String.valueOf(delay), delay > 58000 && delay <= 60000);
+        response.setHeader(HttpHeaders.RETRY_AFTER, DateUtils.formatDate(new Date(0)));
+        assertEquals(0, JobPollCoordinator.retryAfterMillis(response));
+    }
+
+    private CompletableFuture<JobResult> track() {
+        return coordinator.track(VIDEO_URL, JOB_ID, new CallbackTargets(CALLBACK_URL), -1, 5);
+    }
+
+    private static void assertGapAtLeast(List<Long> times, int index, long millis) {
+        long gap = TimeUnit.NANOSECONDS.toMillis(times.get(index) - times.get(index - 1));
+        assertTrue(String.format("gap before query %d is %d ms", index, gap), gap >= millis - 1);
+    }
+}
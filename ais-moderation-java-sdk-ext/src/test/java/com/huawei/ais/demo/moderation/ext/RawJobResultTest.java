@@ -0,0 +1,114 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.huawei.ais.demo.HttpJsonDataUtils;
+import com.huawei.ais.demo.moderation.model.JobResult;
+import com.huawei.ais.demo.moderation.model.JobStatus;
+
+public class RawJobResultTest {
+
+    // 非ASCII文本、嵌套的帧结果，以及result之后的字段
+    private static final String BODY = "{\"request_id\":\"r-1\","
+            + "\"result\":{\"job_id\":\"job-1\",\"status\":\"finish\",\"create_time\":1600000000000,"
+            + "\"frame_results\":[{\"frame_time\":5,\"frame_result\":{\"suggestion\":\"block\","
+            + "\"category_suggestions\":{\"porn\":\"block\"},\"detail\":{\"porn\":[{\"label\":\"色情\","
+            + "\"confidence\":0.98,\"face_detail\":{\"name\":\"张三 🙂\"}}]}}},"
+            + "{\"frame_time\":10,\"frame_result\":{\"suggestion\":\"pass\",\"detail\":{}}}],"
+            + "\"suggestion\":\"block\",\"note\":\"引号\\\"与\\\\转义\"},"
+            + "\"trailer\":{\"result\":\"ignored\",\"items\":[1,2,3]}}";
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void summaryContainsScalarFields() throws IOException {
+        RawJobResult raw = parse(BODY);
+
+        JobResult summary = raw.getSummary();
+        assertEquals("job-1", summary.getId());
+        assertEquals(JobStatus.FINISH, summary.getStatus());
+        assertEquals(JobStatus.FINISH, raw.getStatus());
+    }
+
+    @Test
+    public void notificationKeepsResultBytes() throws IOException {
+        RawJobResult raw = parse(BODY);
+        JsonNode expected = objectMapper.readTree(BODY).get("result");
+        CallbackTask.Notification notification = new CallbackTask.Notification("job-1", raw);
+
+        JsonNode fromString = objectMapper.readTree(HttpJsonDataUtils.objectToJsonString(notification));
+        assertEquals("job-1", fromString.path("job_id").asText());
+        assertEquals(expected, fromString.get("moderation_result"));
+
+        HttpEntity entity = HttpJsonDataUtils.objectToStreamingHttpEntity(notification);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        JsonNode fromStream = objectMapper.readTree(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(expected, fromStream.get("moderation_result"));
+    }
+
+    @Test
+    public void journalKeepsResultTree() throws IOException {
+        RawJobResult raw = parse(BODY);
+        File directory = folder.newFolder("journal");
+        JobJournal journal = new JobJournal(directory, SEGMENT_SIZE);
+        journal.callbackPending("job-1", "http://host/video.mp4", "http://a/notification", raw);
+        journal.close();
+
+        JobJournal reopened = new JobJournal(directory, SEGMENT_SIZE);
+        try {
+            List<JobJournal.JournalRecord> callbacks = reopened.getPendingCallbacks();
+            assertEquals(1, callbacks.size());
+            assertEquals(objectMapper.readTree(BODY).get("result"), callbacks.get(0).getResult());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void missingRootIsRejected() {
+        assertParseFails("{\"request_id\":\"r-1\",\"other\":{\"result\":{}}}", "not found");
+        // 同名字段不是对象
+        assertParseFails("{\"result\":\"finish\"}", "not found");
+        assertParseFails("{}", "not found");
+    }
+
+    @Test
+    public void nonObjectResponseIsRejected() {
+        assertParseFails("[{\"result\":{}}]", "not a json object");
+        assertParseFails("\"result\"", "not a json object");
+    }
+
+    private static RawJobResult parse(String body) throws IOException {
+        return RawJobResult.parse(body.getBytes(StandardCharsets.UTF_8), "result");
+    }
+
+    private static void assertParseFails(String body, String message) {
+        try {
+            parse(body);
+            fail("parse should fail: " + body);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
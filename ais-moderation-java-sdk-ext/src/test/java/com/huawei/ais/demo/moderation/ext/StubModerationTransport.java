@@ -0,0 +1,148 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.huawei.ais.demo.HttpJsonDataUtils;
+
+/**
+ * 测试用的传输层：查询和回调按预设的顺序返回响应，并记录收到的请求<br/>
+ * 预设的查询响应用完后查询不再完成；预设的回调响应用完后回调返回200
+ */
+class StubModerationTransport implements ModerationTransport {
+
+    // 以下状态都由当前对象的锁保护
+    private final Deque<CompletableFuture<HttpResponse>> getResponses = new ArrayDeque<>();
+    private final Deque<CompletableFuture<HttpResponse>> deliverResponses = new ArrayDeque<>();
+    private final List<Long> getTimes = new ArrayList<>();
+    private final List<Delivery> deliveries = new ArrayList<>();
+
+    synchronized StubModerationTransport onGet(HttpResponse... responses) {
+        for (HttpResponse response : responses) {
+            getResponses.add(CompletableFuture.completedFuture(response));
+        }
+        return this;
+    }
+
+    synchronized StubModerationTransport onGetFailure(Throwable error) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        getResponses.add(future);
+        return this;
+    }
+
+    synchronized StubModerationTransport onDeliver(HttpResponse... responses) {
+        for (HttpResponse response : responses) {
+            deliverResponses.add(CompletableFuture.completedFuture(response));
+        }
+        return this;
+    }
+
+    synchronized StubModerationTransport onDeliverFailure(Throwable error) {
+        CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        deliverResponses.add(future);
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> post(String uri, HttpEntity entity) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized CompletableFuture<HttpResponse> get(String uri) {
+        getTimes.add(System.nanoTime());
+        CompletableFuture<HttpResponse> response = getResponses.poll();
+        return response == null ? new CompletableFuture<>() : response;
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> deliver(String callbackUrl, Header[] headers, Object body) {
+        // 与真实传输层一样在发送时序列化，之后对body的修改不影响已记录的内容
+        String json = HttpJsonDataUtils.objectToJsonString(body);
+        synchronized (this) {
+            deliveries.add(new Delivery(callbackUrl, json));
+            notifyAll();
+            CompletableFuture<HttpResponse> response = deliverResponses.poll();
+            return response == null ? CompletableFuture.completedFuture(response(HttpStatus.SC_OK, "")) : response;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return 每次查询的发起时间，System.nanoTime()
+     */
+    synchronized List<Long> getGetTimes() {
+        return new ArrayList<>(getTimes);
+    }
+
+    synchronized List<Delivery> getDeliveries() {
+        return new ArrayList<>(deliveries);
+    }
+
+    /**
+     * 等待收到至少count次回调
+     *
+     * @return 已收到的回调，超时后返回已收到的部分
+     */
+    synchronized List<Delivery> awaitDeliveries(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (deliveries.size() < count && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return new ArrayList<>(deliveries);
+    }
+
+    static HttpResponse response(int statusCode, String body) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+        response.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return response;
+    }
+
+    /**
+     * @return 查询任务结果的正常响应
+     */
+    static HttpResponse jobResponse(String jobId, String status) {
+        return response(HttpStatus.SC_OK,
+                String.format("{\"result\":{\"job_id\":\"%s\",\"status\":\"%s\"}}", jobId, status));
+    }
+
+    static class Delivery {
+        private final String callbackUrl;
+        private final String body;
+
+        Delivery(String callbackUrl, String body) {
+            this.callbackUrl = callbackUrl;
+            this.body = body;
+        }
+
+        String getCallbackUrl() {
+            return callbackUrl;
+        }
+
+        /**
+         * @return 回调请求体的json
+         */
+        String getBody() {
+            return body;
+        }
+    }
+}
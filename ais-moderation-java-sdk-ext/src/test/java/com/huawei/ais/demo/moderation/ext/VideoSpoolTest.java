@@ -0,0 +1,148 @@
+package com.huawei.ais.demo.moderation.ext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VideoSpoolTest {
+
+    private static final String VIDEO_URL = "http://host/a/video.mp4";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // 放弃回调收到的暂存文件
+    private final List<File> discarded = new ArrayList<>();
+
+    @Test
+    public void closeDeletesEntryAndReleasesQuota() throws IOException {
+        VideoSpool spool = new VideoSpool(folder.newFolder("spool"), 100, 1000, 0, discarded::add);
+        File file;
+        try (VideoSpool.Entry entry = spool.open(VIDEO_URL, "video.mp4")) {
+            assertTrue(entry.tryReserve(60));
+            file = write(entry, 60);
+        }
+        assertFalse(file.getParentFile().exists());
+        assertEquals(0, spool.getReservedBytes());
+        assertTrue(discarded.isEmpty());
+    }
+
+    @Test
+    public void sameUrlGetsDistinctNamesWhileActive() throws IOException {
+        VideoSpool spool = new VideoSpool(folder.newFolder("spool"), 0, 1000, 0, discarded::add);
+        try (VideoSpool.Entry first = spool.open(VIDEO_URL, "video.mp4");
+             VideoSpool.Entry second = spool.open(VIDEO_URL, "video.mp4");
+             VideoSpool.Entry other = spool.open("http://host/b/video.mp4", "video.mp4")) {
+            assertEquals(VideoSpool.baseName(VIDEO_URL), first.getName());
+            assertNotEquals(first.getName(), second.getName());
+            assertNotEquals(first.getName(), other.getName());
+            assertNotEquals(first.getFile(), second.getFile());
+        }
+    }
+
+    @Test
+    public void retainedEntryIsReusedBySameUrl() throws IOException {
+        VideoSpool spool = new VideoSpool(folder.newFolder("spool"), 100, 1000, 0, discarded::add);
+        File file;
+        try (VideoSpool.Entry entry = spool.open(VIDEO_URL, "video.mp4")) {
+            assertTrue(entry.tryReserve(60));
+            file = write(entry, 60);
+            entry.retain();
+        }
+        assertTrue(file.exists());
+        assertEquals(1, spool.getRetainedCount());
+        assertEquals("retained entry keeps its quota", 60, spool.getReservedBytes());
+
+        try (VideoSpool.Entry entry = spool.open(VIDEO_URL, "video.mp4")) {
+            assertEquals(file, entry.getFile());
+            assertTrue(entry.getFile().exists());
+            assertEquals(0, spool.getRetainedCount());
+            entry.resize(60);
+            assertEquals(60, spool.getReservedBytes());
+        }
+        assertFalse(file.exists());
+        assertEquals(0, spool.getReservedBytes());
+        assertTrue("reused entry is not discarded", discarded.isEmpty());
+    }
+
+    @Test
+    public void retainedEntryIsDiscardedWhenQuotaIsNeeded() throws IOException {
+        VideoSpool spool = new VideoSpool(folder.newFolder("spool"), 100, 1000, 0, discarded::add);
+        File first = retain(spool, "http://host/1.mp4", 40);
+        File second = retain(spool, "http://host/2.mp4", 40);
+        assertEquals(80, spool.getReservedBytes());
+
+        try (VideoSpool.Entry entry = spool.open("http://host/3.mp4", "3.mp4")) {
+            // 只需删除最早保留的一个
+            assertTrue(entry.tryReserve(50));
+            assertEquals(Collections.singletonList(first), discarded);
+            assertFalse(first.getParentFile().exists());
+            assertTrue(second.exists());
+            assertEquals(90, spool.getReservedBytes());
+
+            try (VideoSpool.Entry waiting = spool.open("http://host/4.mp4", "4.mp4")) {
+                // 删除保留的子目录也不够时不删除，等待使用中的任务归还额度
+                assertFalse(waiting.tryReserve(80));
+                assertTrue(second.exists());
+                assertEquals(1, spool.getRetainedCount());
+            }
+        }
+    }
+
+    @Test
+    public void expiredRetainedEntryIsDiscardedOnOpen() throws IOException, InterruptedException {
+        VideoSpool spool = new VideoSpool(folder.newFolder("spool"), 100, 1000, 50, discarded::add);
+        File file = retain(spool, VIDEO_URL, 40);
+        Thread.sleep(100);
+
+        try (VideoSpool.Entry entry = spool.open("http://host/other.mp4", "other.mp4")) {
+            assertEquals(Collections.singletonList(file), discarded);
+            assertFalse(file.getParentFile().exists());
+            assertEquals(0, spool.getRetainedCount());
+            assertEquals(0, spool.getReservedBytes());
+        }
+    }
+
+    @Test
+    public void collectOrphansKeepsResumableEntries() throws IOException {
+        File directory = folder.newFolder("spool");
+        File resumable = new File(new File(directory, VideoSpool.baseName(VIDEO_URL)), "video.mp4");
+        File orphan = new File(new File(directory, VideoSpool.baseName("http://host/gone.mp4")), "gone.mp4");
+        FileUtils.writeStringToFile(resumable, "resumable", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(orphan, "orphan", StandardCharsets.UTF_8);
+
+        VideoSpool spool = new VideoSpool(directory, 0, 1000, 0, discarded::add);
+        assertEquals(1, spool.collectOrphans(Collections.singletonList(VIDEO_URL), 0));
+        assertTrue(resumable.exists());
+        assertFalse(orphan.getParentFile().exists());
+        assertEquals(Collections.singletonList(orphan), discarded);
+    }
+
+    private File retain(VideoSpool spool, String videoUrl, int bytes) throws IOException {
+        try (VideoSpool.Entry entry = spool.open(videoUrl, "video.mp4")) {
+            assertTrue(entry.tryReserve(bytes));
+            File file = write(entry, bytes);
+            entry.retain();
+            return file;
+        }
+    }
+
+    private static File write(VideoSpool.Entry entry, int bytes) throws IOException {
+        File file = entry.getFile();
+        FileUtils.writeByteArrayToFile(file, new byte[bytes]);
+        return file;
+    }
+}
@@ -0,0 +1,262 @@
+package com.huawei.ais.demo.moderation.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+
+public class FrameResultsTest {
+
+    // 引擎返回的逐帧结果，包括未知字段、为null的建议、没有详情和带有数组详情的帧
+    private static final String FRAMES_JSON = "["
+            + "{\"frame_begin\":0,\"frame_end\":5,\"frame_suggestion\":\"block\","
+            + "\"suspect_categories\":[\"politics\",\"porn\"],"
+            + "\"detail\":{\"politics\":[{\"label\":\"a\",\"confidence\":0.91},{\"label\":\"b\",\"confidence\":0.5}],"
+            + "\"porn\":{\"label\":\"sexy\",\"confidence\":0.7}},"
+            + "\"frame_url\":\"https://example.com/0.jpg\",\"extra\":{\"nested\":[1,{\"x\":null}]}},"
+            + "{\"frame_begin\":5,\"frame_end\":10,\"frame_suggestion\":null,\"suspect_categories\":[],\"detail\":{}},"
+            + "{\"frame_end\":15,\"frame_begin\":10,\"unknown\":[[]],\"suspect_categories\":[\"terrorism\"],"
+            + "\"detail\":{\"terrorism\":[]},\"frame_suggestion\":\"review\"}"
+            + "]";
+
+    private final ObjectMapper lenientMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Test
+    public void deserializesLikeFrameResultList() throws IOException {
+        List<FrameResult> expected = lenientMapper.readValue(FRAMES_JSON, new TypeReference<List<FrameResult>>() {
+        });
+        FrameResults frameResults = lenientMapper.readValue(FRAMES_JSON, FrameResults.class);
+
+        assertEquals(3, frameResults.size());
+        assertEquals(expected, frameResults);
+        assertEquals(frameResults, expected);
+        assertEquals(expected.hashCode(), frameResults.hashCode());
+
+        assertNull(frameResults.getFrameSuggestion(1));
+        assertTrue(frameResults.getSuspectCategories(1).isEmpty());
+        assertNull(frameResults.getCategoryResult(1, Category.POLITICS));
+        assertEquals(Suggestion.REVIEW, frameResults.getFrameSuggestion(2));
+        assertEquals(10, frameResults.getFrameBegin(2));
+        assertEquals(EnumSet.of(Category.POLITICS, Category.PORN), frameResults.getSuspectCategories(0));
+        Map<?, ?> porn = (Map<?, ?>) frameResults.getCategoryResult(0, Category.PORN);
+        assertEquals(0.7, porn.get("confidence"));
+        assertEquals(2, ((List<?>) frameResults.getCategoryResult(0, Category.POLITICS)).size());
+    }
+
+    @Test
+    public void serializesLikeFrameResultList() throws IOException {
+        List<FrameResult> expected = lenientMapper.readValue(FRAMES_JSON, new TypeReference<List<FrameResult>>() {
+        });
+        FrameResults frameResults = lenientMapper.readValue(FRAMES_JSON, FrameResults.class);
+
+        JsonNode expectedJson = lenientMapper.valueToTree(expected);
+        JsonNode json = lenientMapper.valueToTree(frameResults);
+        assertEquals(expectedJson, json);
+        assertEquals(frameResults, lenientMapper.readValue(lenientMapper.writeValueAsBytes(frameResults),
+                FrameResults.class));
+    }
+
+    @Test
+    public void unknownFieldFailsWhenMapperRequiresIt() throws IOException {
+        try {
+            new ObjectMapper().readValue(FRAMES_JSON, FrameResults.class);
+            fail("unknown field should be rejected");
+        } catch (UnrecognizedPropertyException e) {
+            assertEquals("frame_url", e.getPropertyName());
+        }
+    }
+
+    @Test
+    public void modificationsMatchLinkedList() throws IOException {
+        List<FrameResult> expected = new LinkedList<>(lenientMapper.readValue(FRAMES_JSON,
+                new TypeReference<List<FrameResult>>() {
+                }));
+        FrameResults frameResults = lenientMapper.readValue(FRAMES_JSON, FrameResults.class);
+        FrameResult extra = frame(20, 25, Suggestion.PASS, Category.PORN);
+
+        assertEquals(expected.set(1, extra), frameResults.set(1, extra));
+        assertEquals(expected, frameResults);
+        assertEquals(expected.remove(0), frameResults.remove(0));
+        assertEquals(expected, frameResults);
+        expected.add(1, frame(30, 35, null));
+        frameResults.add(1, frame(30, 35, null));
+        expected.add(0, extra);
+        frameResults.add(0, extra);
+        assertEquals(expected, frameResults);
+        expected.removeIf(frameResult -> frameResult.getFrameBegin() == 20);
+        frameResults.removeIf(frameResult -> frameResult.getFrameBegin() == 20);
+        assertEquals(expected, frameResults);
+        assertEquals(new ArrayList<>(expected).hashCode(), frameResults.hashCode());
+
+        // get返回副本，修改它不影响列表
+        frameResults.get(0).getSuspectCategories().add(Category.TERRORISM);
+        assertEquals(expected, frameResults);
+
+        frameResults.clear();
+        assertTrue(frameResults.isEmpty());
+        assertNotEquals(expected, frameResults);
+    }
+
+    @Test
+    public void equalsComparesColumns() {
+        FrameResults first = new FrameResults();
+        FrameResults second = new FrameResults();
+        first.add(frame(0, 5, Suggestion.BLOCK, Category.POLITICS));
+        second.add(0, 5, Suggestion.BLOCK, EnumSet.of(Category.POLITICS), new EnumMap<>(Category.class));
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+
+        second.add(frame(5, 10, null));
+        assertNotEquals(first, second);
+        assertEquals(Arrays.asList(first.get(0), frame(5, 10, null)), second);
+    }
+
+    @Test
+    public void timelineOrdersFramesByBegin() {
+        FrameResults frameResults = new FrameResults();
+        frameResults.add(frame(20, 25, Suggestion.BLOCK, Category.POLITICS));
+        frameResults.add(frame(10, 15, Suggestion.BLOCK, Category.PORN));
+        frameResults.add(frame(0, 5, Suggestion.BLOCK, Category.PORN, Category.POLITICS));
+        frameResults.add(frame(5, 10, Suggestion.BLOCK, Category.PORN));
+
+        EnumMap<Category, List<TimelineSegment>> timeline = frameResults.toTimeline();
+
+        assertEquals(EnumSet.of(Category.POLITICS, Category.PORN), timeline.keySet());
+        List<TimelineSegment> porn = timeline.get(Category.PORN);
+        assertEquals(1, porn.size());
+        assertSegment(porn.get(0), 0, 15, Suggestion.BLOCK, 3, null);
+        List<TimelineSegment> politics = timeline.get(Category.POLITICS);
+        assertEquals(2, politics.size());
+        assertSegment(politics.get(0), 0, 5, Suggestion.BLOCK, 1, null);
+        assertSegment(politics.get(1), 20, 25, Suggestion.BLOCK, 1, null);
+        // 排序不改变列表本身
+        assertEquals(20, frameResults.getFrameBegin(0));
+    }
+
+    @Test
+    public void timelineSplitsOnSuggestionChange() {
+        FrameResults frameResults = new FrameResults();
+        frameResults.add(frame(0, 5, Suggestion.BLOCK, Category.PORN));
+        frameResults.add(frame(5, 10, Suggestion.REVIEW, Category.PORN));
+        frameResults.add(frame(10, 15, Suggestion.REVIEW, Category.PORN));
+        frameResults.add(frame(15, 20, Suggestion.BLOCK, Category.PORN));
+
+        List<TimelineSegment> porn = frameResults.toTimeline().get(Category.PORN);
+
+        assertEquals(3, porn.size());
+        assertSegment(porn.get(0), 0, 5, Suggestion.BLOCK, 1, null);
+        assertSegment(porn.get(1), 5, 15, Suggestion.REVIEW, 2, null);
+        assertSegment(porn.get(2), 15, 20, Suggestion.BLOCK, 1, null);
+    }
+
+    @Test
+    public void timelineMergesTouchingAndOverlappingFrames() {
+        FrameResults frameResults = new FrameResults();
+        // 首尾相接
+        frameResults.add(frame(0, 5, Suggestion.BLOCK, Category.PORN));
+        frameResults.add(frame(5, 10, Suggestion.BLOCK, Category.PORN));
+        // 有间隔
+        frameResults.add(frame(12, 20, Suggestion.BLOCK, Category.PORN));
+        // 被上一帧包含，不缩短段的结束时间
+        frameResults.add(frame(15, 18, Suggestion.BLOCK, Category.PORN));
+        // 与上一段重叠
+        frameResults.add(frame(19, 24, Suggestion.BLOCK, Category.PORN));
+        // 不可疑的帧不影响合并
+        frameResults.add(frame(24, 30, Suggestion.BLOCK, Category.TERRORISM));
+
+        List<TimelineSegment> porn = frameResults.toTimeline().get(Category.PORN);
+
+        assertEquals(2, porn.size());
+        assertSegment(porn.get(0), 0, 10, Suggestion.BLOCK, 2, null);
+        assertSegment(porn.get(1), 12, 24, Suggestion.BLOCK, 3, null);
+    }
+
+    @Test
+    public void timelineTakesMaxConfidenceFromNestedDetail() throws IOException {
+        FrameResults frameResults = lenientMapper.readValue("["
+                + "{\"frame_begin\":0,\"frame_end\":5,\"frame_suggestion\":\"block\","
+                + "\"suspect_categories\":[\"porn\",\"politics\"],\"detail\":{"
+                + "\"porn\":[{\"confidence\":0.3},[{\"confidence\":0.8},{\"label\":\"x\"}],\"text\",0.99],"
+                + "\"politics\":[{\"label\":\"a\"}]}},"
+                + "{\"frame_begin\":5,\"frame_end\":10,\"frame_suggestion\":\"block\","
+                + "\"suspect_categories\":[\"porn\"],\"detail\":{\"porn\":{\"confidence\":0.5}}},"
+                + "{\"frame_begin\":10,\"frame_end\":15,\"frame_suggestion\":\"block\","
+                + "\"suspect_categories\":[\"porn\"],\"detail\":{}}"
+                + "]", FrameResults.class);
+
+        EnumMap<Category, List<TimelineSegment>> timeline = frameResults.toTimeline();
+
+        assertSegment(timeline.get(Category.PORN).get(0), 0, 15, Suggestion.BLOCK, 3, 0.8);
+        // 详情中没有confidence
+        assertSegment(timeline.get(Category.POLITICS).get(0), 0, 5, Suggestion.BLOCK, 1, null);
+        JsonNode json = lenientMapper.valueToTree(timeline);
+        assertEquals(0.8, json.path("porn").get(0).path("max_confidence").asDouble(), 0);
+        assertTrue(json.path("politics").get(0).has("frame_count"));
+        assertFalse(json.path("politics").get(0).has("max_confidence"));
+    }
+
+    @Test
+    public void jobResultWithTimelineDropsFrames() throws IOException {
+        JobResult jobResult = lenientMapper.readValue("{\"job_id\":\"job-1\",\"status\":\"finish\","
+                + "\"suggestion\":\"block\",\"frames\":" + FRAMES_JSON + "}", JobResult.class);
+
+        JobResult withoutFrames = jobResult.withTimeline(false);
+
+        JsonNode json = lenientMapper.valueToTree(withoutFrames);
+        assertEquals("job-1", json.path("job_id").asText());
+        assertTrue(json.path("frames").isArray());
+        assertEquals(0, json.path("frames").size());
+        assertEquals(Arrays.asList("politics", "terrorism", "porn"), fieldNames(json.path("timeline")));
+        assertEquals(0.91, json.path("timeline").path("politics").get(0).path("max_confidence").asDouble(), 0);
+        assertEquals("review", json.path("timeline").path("terrorism").get(0).path("suggestion").asText());
+
+        // 原对象不变，保留帧时与原对象的帧相同
+        assertNull(jobResult.getTimeline());
+        assertEquals(3, jobResult.getFrameResults().size());
+        JobResult withFrames = jobResult.withTimeline(true);
+        assertEquals(jobResult.getFrameResults(), withFrames.getFrameResults());
+        assertEquals(withoutFrames.getTimeline(), withFrames.getTimeline());
+        assertTrue(lenientMapper.valueToTree(jobResult).path("timeline").isMissingNode());
+    }
+
+    private static void assertSegment(TimelineSegment segment, int begin, int end, Suggestion suggestion,
+                                      int frameCount, Double maxConfidence) {
+        assertEquals(begin, segment.getBegin());
+        assertEquals(end, segment.getEnd());
+        assertEquals(suggestion, segment.getSuggestion());
+        assertEquals(frameCount, segment.getFrameCount());
+        assertEquals(maxConfidence, segment.getMaxConfidence());
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private static FrameResult frame(int begin, int end, Suggestion suggestion, Category... categories) {
+        EnumSet<Category> suspectCategories = EnumSet.noneOf(Category.class);
+        suspectCategories.addAll(Arrays.asList(categories));
+        return new FrameResult(begin, end, suggestion, suspectCategories, new EnumMap<>(Category.class));
+    }
+}
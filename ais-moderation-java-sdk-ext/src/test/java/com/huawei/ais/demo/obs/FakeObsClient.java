@@ -0,0 +1,214 @@
+package com.huawei.ais.demo.obs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.obs.services.ObsClient;
+import com.obs.services.exception.ObsException;
+import com.obs.services.model.AbortMultipartUploadRequest;
+import com.obs.services.model.CompleteMultipartUploadRequest;
+import com.obs.services.model.CompleteMultipartUploadResult;
+import com.obs.services.model.HeaderResponse;
+import com.obs.services.model.InitiateMultipartUploadRequest;
+import com.obs.services.model.InitiateMultipartUploadResult;
+import com.obs.services.model.ListPartsRequest;
+import com.obs.services.model.ListPartsResult;
+import com.obs.services.model.Multipart;
+import com.obs.services.model.PartEtag;
+import com.obs.services.model.UploadPartRequest;
+import com.obs.services.model.UploadPartResult;
+
+/**
+ * 在内存中保存分段内容的OBS桩，只实现分段上传相关的接口<br/>
+ * 可以让指定分段上传失败、截短已上传的分段，并记录每次上传的分段号和中止过的上传
+ */
+class FakeObsClient extends ObsClient {
+
+    // listParts每页返回的分段数，便于覆盖分页
+    private static final int PARTS_PER_PAGE = 2;
+
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Set<Integer> failingParts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final List<Integer> uploadedPartNumbers = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> abortedUploads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    FakeObsClient() {
+        super("ak", "sk", "http://127.0.0.1:1");
+    }
+
+    /**
+     * 该分段号的上传请求一直失败，直到调用{@link #clearFailures()}
+     */
+    void failPart(int partNumber) {
+        failingParts.add(partNumber);
+    }
+
+    void clearFailures() {
+        failingParts.clear();
+    }
+
+    /**
+     * 把已上传的分段截短，模拟上传中断留下的不完整分段
+     */
+    void truncatePart(String uploadId, int partNumber, int length) {
+        Map<Integer, byte[]> parts = uploads.get(uploadId);
+        byte[] data = parts.get(partNumber);
+        byte[] truncated = new byte[length];
+        System.arraycopy(data, 0, truncated, 0, length);
+        parts.put(partNumber, truncated);
+    }
+
+    void removePart(String uploadId, int partNumber) {
+        uploads.get(uploadId).remove(partNumber);
+    }
+
+    /**
+     * @return 上传成功的分段号，按上传顺序，同一分段上传多次时出现多次
+     */
+    List<Integer> getUploadedPartNumbers() {
+        synchronized (uploadedPartNumbers) {
+            return new ArrayList<>(uploadedPartNumbers);
+        }
+    }
+
+    void resetUploadedPartNumbers() {
+        uploadedPartNumbers.clear();
+    }
+
+    Set<String> getAbortedUploads() {
+        return new HashSet<>(abortedUploads);
+    }
+
+    Set<String> getActiveUploads() {
+        return new HashSet<>(uploads.keySet());
+    }
+
+    byte[] getObject(String objectKey) {
+        return objects.get(objectKey);
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request)
+            throws ObsException {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentHashMap<>());
+        return new InitiateMultipartUploadResult(request.getBucketName(), request.getObjectKey(), uploadId, null);
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) throws ObsException {
+        Map<Integer, byte[]> parts = getUpload(request.getUploadId());
+        if (failingParts.contains(request.getPartNumber())) {
+            throw new ObsException("injected failure of part " + request.getPartNumber());
+        }
+        byte[] data = new byte[request.getPartSize().intValue()];
+        try {
+            if (request.getFile() != null) {
+                try (RandomAccessFile file = new RandomAccessFile(request.getFile(), "r")) {
+                    file.seek(request.getOffset());
+                    file.readFully(data);
+                }
+            } else {
+                readFully(request.getInput(), data);
+            }
+        } catch (IOException e) {
+            throw new ObsException("read part failed", e);
+        }
+        parts.put(request.getPartNumber(), data);
+        uploadedPartNumbers.add(request.getPartNumber());
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setEtag(etag(request.getPartNumber(), data));
+        return result;
+    }
+
+    @Override
+    public ListPartsResult listParts(ListPartsRequest request) throws ObsException {
+        Map<Integer, byte[]> parts = new TreeMap<>(getUpload(request.getUploadId()));
+        int marker = request.getPartNumberMarker() != null ? request.getPartNumberMarker() : 0;
+        List<Multipart> page = new ArrayList<>();
+        boolean truncated = false;
+        for (Map.Entry<Integer, byte[]> part : parts.entrySet()) {
+            if (part.getKey() <= marker) {
+                continue;
+            }
+            if (page.size() == PARTS_PER_PAGE) {
+                truncated = true;
+                break;
+            }
+            page.add(new Multipart(part.getKey(), null, etag(part.getKey(), part.getValue()),
+                    (long) part.getValue().length));
+        }
+        ListPartsResult result = new ListPartsResult();
+        result.setMultipartList(page);
+        result.setTruncated(truncated);
+        if (truncated) {
+            result.setNextPartNumberMarker(String.valueOf(page.get(page.size() - 1).getPartNumber()));
+        }
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request)
+            throws ObsException {
+        Map<Integer, byte[]> parts = getUpload(request.getUploadId());
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        int lastPartNumber = 0;
+        for (PartEtag partEtag : request.getPartEtag()) {
+            byte[] data = parts.get(partEtag.getPartNumber());
+            if (partEtag.getPartNumber() <= lastPartNumber || data == null
+                    || !etag(partEtag.getPartNumber(), data).equals(partEtag.geteTag())) {
+                throw new ObsException("InvalidPart " + partEtag.getPartNumber());
+            }
+            lastPartNumber = partEtag.getPartNumber();
+            object.write(data, 0, data.length);
+        }
+        uploads.remove(request.getUploadId());
+        objects.put(request.getObjectKey(), object.toByteArray());
+        return new CompleteMultipartUploadResult();
+    }
+
+    @Override
+    public HeaderResponse abortMultipartUpload(AbortMultipartUploadRequest request) throws ObsException {
+        getUpload(request.getUploadId());
+        uploads.remove(request.getUploadId());
+        abortedUploads.add(request.getUploadId());
+        return new HeaderResponse();
+    }
+
+    private Map<Integer, byte[]> getUpload(String uploadId) {
+        Map<Integer, byte[]> parts = uploads.get(uploadId);
+        if (parts == null) {
+            throw new ObsException("NoSuchUpload " + uploadId);
+        }
+        return parts;
+    }
+
+    private static String etag(int partNumber, byte[] data) {
+        return partNumber + "-" + data.length + "-" + Arrays.hashCode(data);
+    }
+
+    private static void readFully(InputStream input, byte[] data) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            int read = input.read(data, offset, data.length - offset);
+            if (read < 0) {
+                throw new IOException("unexpected end of part");
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.huawei.ais.demo.obs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.obs.services.model.AbortMultipartUploadRequest;
+
+public class MultipartUploadEngineTest {
+
+    private static final int MB = 1024 * 1024;
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "video.mp4";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeObsClient obsClient;
+    private MultipartUploadEngine engine;
+    private File file;
+    private File checkpointFile;
+
+    @Before
+    public void setUp() throws IOException {
+        obsClient = new FakeObsClient();
+        // 单个上传线程按顺序上传分段，失败的分段4重试时分段1~3已上传完
+        engine = new MultipartUploadEngine(obsClient, 1, 1);
+        // 4个分段：5MB、5MB、5MB、3MB+
+        file = writeFile("video.mp4", 18 * MB + 123, 1);
+        checkpointFile = new File(file.getPath() + ".obsckpt");
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void checkpointRoundTripAndMatches() throws IOException {
+        UploadCheckpoint checkpoint = new UploadCheckpoint(BUCKET, KEY, "upload-1", file, 5 * MB);
+        checkpoint.addCompletedPart(2, "etag-2");
+        checkpoint.addCompletedPart(1, "etag-1");
+        checkpoint.save(checkpointFile);
+
+        UploadCheckpoint loaded = UploadCheckpoint.load(checkpointFile);
+        assertEquals("upload-1", loaded.getUploadId());
+        assertEquals(file.length(), loaded.getFileLength());
+        assertEquals(5 * MB, loaded.getPartSize());
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(loaded.getCompletedParts().keySet()));
+        assertEquals("etag-2", loaded.getCompletedParts().get(2));
+        assertFalse(new File(checkpointFile.getPath() + ".tmp").exists());
+
+        assertTrue(loaded.matches(BUCKET, KEY, file));
+        assertFalse(loaded.matches("other-bucket", KEY, file));
+        assertFalse(loaded.matches(BUCKET, "other.mp4", file));
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+        assertFalse("modified file must not match", loaded.matches(BUCKET, KEY, file));
+
+        TreeMap<Integer, String> uploaded = new TreeMap<>();
+        uploaded.put(2, "etag-2");
+        uploaded.put(3, "etag-3");
+        loaded.reconcile(uploaded);
+        assertEquals(uploaded, loaded.getCompletedParts());
+    }
+
+    @Test
+    public void failedUploadKeepsPartsAndCheckpoint() throws IOException {
+        obsClient.failPart(4);
+        uploadExpectingFailure();
+
+        assertTrue(checkpointFile.exists());
+        UploadCheckpoint checkpoint = UploadCheckpoint.load(checkpointFile);
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(checkpoint.getCompletedParts().keySet()));
+        assertTrue(obsClient.getAbortedUploads().isEmpty());
+        assertEquals(Collections.singleton(checkpoint.getUploadId()), obsClient.getActiveUploads());
+    }
+
+    @Test
+    public void resumeUploadsOnlyShortAndMissingParts() throws IOException {
+        obsClient.failPart(4);
+        uploadExpectingFailure();
+        String uploadId = UploadCheckpoint.load(checkpointFile).getUploadId();
+
+        // 断点中记录为已完成，但OBS中分段2不完整、分段3不存在
+        obsClient.truncatePart(uploadId, 2, MB);
+        obsClient.removePart(uploadId, 3);
+        obsClient.clearFailures();
+        obsClient.resetUploadedPartNumbers();
+
+        engine.uploadFile(BUCKET, KEY, file, checkpointFile);
+
+        assertEquals(Arrays.asList(2, 3, 4), sorted(obsClient.getUploadedPartNumbers()));
+        assertArrayEquals(Files.readAllBytes(file.toPath()), obsClient.getObject(KEY));
+        assertFalse("checkpoint is deleted after success", checkpointFile.exists());
+        assertTrue(obsClient.getAbortedUploads().isEmpty());
+    }
+
+    @Test
+    public void modifiedFileAbortsOldUploadAndStartsOver() throws IOException {
+        obsClient.failPart(4);
+        uploadExpectingFailure();
+        String oldUploadId = UploadCheckpoint.load(checkpointFile).getUploadId();
+
+        file = writeFile("video.mp4", 18 * MB + 123, 2);
+        assertTrue(file.setLastModified(file.lastModified() + 10000));
+        obsClient.clearFailures();
+        obsClient.resetUploadedPartNumbers();
+
+        engine.uploadFile(BUCKET, KEY, file, checkpointFile);
+
+        assertEquals(Collections.singleton(oldUploadId), obsClient.getAbortedUploads());
+        assertArrayEquals(Files.readAllBytes(file.toPath()), obsClient.getObject(KEY));
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void expiredUploadStartsOver() throws IOException {
+        obsClient.failPart(4);
+        uploadExpectingFailure();
+        String oldUploadId = UploadCheckpoint.load(checkpointFile).getUploadId();
+        obsClient.abortMultipartUpload(new AbortMultipartUploadRequest(BUCKET, KEY, oldUploadId));
+        obsClient.clearFailures();
+        obsClient.resetUploadedPartNumbers();
+
+        engine.uploadFile(BUCKET, KEY, file, checkpointFile);
+
+        // 新上传的分段大小按实测速率重新计算，这里只核对内容
+        assertArrayEquals(Files.readAllBytes(file.toPath()), obsClient.getObject(KEY));
+        assertTrue(obsClient.getActiveUploads().isEmpty());
+    }
+
+    @Test
+    public void abortCheckpointedUploadAbortsPartsAndDeletesCheckpoint() throws IOException {
+        obsClient.failPart(4);
+        uploadExpectingFailure();
+        String uploadId = UploadCheckpoint.load(checkpointFile).getUploadId();
+
+        engine.abortCheckpointedUpload(checkpointFile);
+
+        assertEquals(Collections.singleton(uploadId), obsClient.getAbortedUploads());
+        assertTrue(obsClient.getActiveUploads().isEmpty());
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void unreadableCheckpointIsDiscarded() throws IOException {
+        Files.write(checkpointFile.toPath(), "{\"upload_id\":".getBytes(StandardCharsets.UTF_8));
+
+        engine.uploadFile(BUCKET, KEY, file, checkpointFile);
+
+        assertArrayEquals(Files.readAllBytes(file.toPath()), obsClient.getObject(KEY));
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void failedUploadWithoutCheckpointIsAborted() {
+        obsClient.failPart(2);
+        try {
+            engine.uploadFile(BUCKET, KEY, file);
+            fail("upload should fail");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(1, obsClient.getAbortedUploads().size());
+        assertTrue(obsClient.getActiveUploads().isEmpty());
+    }
+
+    private void uploadExpectingFailure() {
+        try {
+            engine.uploadFile(BUCKET, KEY, file, checkpointFile);
+            fail("upload should fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private File writeFile(String name, int length, long seed) throws IOException {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        File target = new File(folder.getRoot(), name);
+        Files.write(target.toPath(), data);
+        return target;
+    }
+
+    private static List<Integer> sorted(List<Integer> values) {
+        List<Integer> result = new ArrayList<>(values);
+        Collections.sort(result);
+        return result;
+    }
+}